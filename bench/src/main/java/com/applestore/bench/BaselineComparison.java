@@ -0,0 +1,94 @@
+package com.applestore.bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基准回归比较 | Benchmark Regression Check
+ * 比较两次 JMH 运行的 CSV 结果（-rf csv -rff 文件），打印变慢超过阈值且超出两边 99.9% 误差的基准，有回归时退出码为 1 |
+ * Compares the CSV results of two JMH runs (-rf csv -rff file), printing benchmarks that slowed down beyond the threshold and
+ * outside both 99.9% error bounds, and exits with 1 on regressions
+ *
+ * 只适用于 AverageTime 等分数越低越好的模式 | Only meaningful for modes where a lower score is better, such as AverageTime
+ *
+ * 用法 | Usage:
+ * java -cp bench/target/benchmarks.jar com.applestore.bench.BaselineComparison baseline.csv results.csv [threshold 0.1]
+ */
+public final class BaselineComparison {
+    private BaselineComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("用法: BaselineComparison 基线.csv 结果.csv [阈值] | Usage: BaselineComparison baseline.csv results.csv [threshold]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 0.1;
+        Map<String, double[]> baseline = read(Paths.get(args[0]));
+        Map<String, double[]> current = read(Paths.get(args[1]));
+
+        int regressions = 0;
+        for (Map.Entry<String, double[]> entry : current.entrySet()) {
+            double[] before = baseline.get(entry.getKey());
+            if (before == null) {
+                continue;
+            }
+            double[] after = entry.getValue();
+            double change = after[0] / before[0] - 1;
+            boolean beyondError = after[0] - after[1] > before[0] + before[1];
+            if (change > threshold && beyondError) {
+                regressions++;
+                System.out.printf("REGRESSION %-60s %.3f -> %.3f (+%.1f%%)%n", entry.getKey(), before[0], after[0], change * 100);
+            }
+        }
+        System.out.println(regressions + " 个回归 | regression(s)");
+        if (regressions > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * 读出“基准名 + 参数”到 {分数, 误差} 的映射 | Read a map from benchmark name plus parameters to {score, error}
+     */
+    static Map<String, double[]> read(Path file) throws IOException {
+        Map<String, double[]> results = new HashMap<>();
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            List<String> header = split(in.readLine());
+            int score = header.indexOf("Score");
+            int error = header.indexOf("Score Error (99.9%)");
+            String line;
+            while ((line = in.readLine()) != null) {
+                List<String> fields = split(line);
+                StringBuilder key = new StringBuilder(fields.get(0));
+                for (int i = 0; i < header.size(); i++) {
+                    if (header.get(i).startsWith("Param: ")) {
+                        key.append(' ').append(header.get(i).substring(7)).append('=').append(fields.get(i));
+                    }
+                }
+                String errorField = fields.get(error);
+                results.put(key.toString(), new double[]{Double.parseDouble(fields.get(score)),
+                        errorField.isEmpty() || errorField.equals("NaN") ? 0 : Double.parseDouble(errorField)});
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 拆分 JMH 写出的一行 CSV；字段可带引号，引号内不含逗号 | Split one CSV line as JMH writes it; fields may be quoted and quoted fields hold no commas
+     */
+    private static List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        for (String field : line.split(",", -1)) {
+            fields.add(field.length() >= 2 && field.startsWith("\"") && field.endsWith("\"") ? field.substring(1, field.length() - 1) : field);
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,189 @@
+package com.applestore.bench;
+
+import com.applestore.model.Product;
+import com.applestore.model.iPhone;
+import com.applestore.service.CatalogGenerator;
+import com.applestore.service.ProductManager;
+import com.applestore.service.ProductQuery;
+import com.applestore.util.ColorPrinter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 目录基准测试 | Catalog Benchmarks
+ * 在 CatalogGenerator 生成的 1 千、10 万和 1 千万个产品上测量 ProductManager 的查找、搜索、过滤、排序和统计 |
+ * Measures ProductManager lookups, search, filters, sorts and aggregates over 1 thousand, 100 thousand and 10 million
+ * products from CatalogGenerator
+ *
+ * 每个基准和规模都在新的 JVM 中运行（@Fork），互不影响 JIT 编译和堆状态；1 千万个产品需要约 16GB 堆 |
+ * Every benchmark and size runs in a fresh JVM (@Fork) so they never share JIT compilation or heap state; 10 million products
+ * need about a 16 GB heap
+ *
+ * Hit 重复同一查询（命中查询缓存），Miss 轮换 1024 个不同查询（超出缓存容量），Cold 每次先修改一个相关字段使缓存失效（含修改本身的开销） |
+ * Hit repeats one query (served by the query cache), Miss rotates 1024 distinct queries (more than the cache holds),
+ * Cold first modifies one relevant field each call to invalidate the cache (including the cost of that edit)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx16g")
+public class CatalogBenchmark {
+    static final int ROTATION = 1024;
+    static final long SEED = 42;
+
+    @Param({"1000", "100000", "10000000"})
+    public int size;
+
+    private ProductManager manager;
+    private String[] ids;
+    private String[] keywords;
+    private double[] lows;
+    private Product probe;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        manager = new ProductManager();
+        new CatalogGenerator(SEED).generateInto(manager, size);
+        List<Product> catalog = manager.getAllProducts();
+        Random random = new Random(SEED);
+
+        ids = new String[ROTATION];
+        keywords = new String[ROTATION];
+        lows = new double[ROTATION];
+        for (int i = 0; i < ROTATION; i++) {
+            Product product = catalog.get(random.nextInt(size));
+            ids[i] = product.getId();
+            String model = product.getModel();
+            // 型号末尾部件号的前五位，每个关键词只命中少数产品 | The first five characters of the part number ending a model, so each keyword matches few products
+            keywords[i] = model.substring(model.length() - 9, model.length() - 4);
+            lows[i] = 1000 + random.nextInt(300) * 50;
+        }
+        probe = catalog.get(size / 2);
+    }
+
+    /**
+     * 关掉本线程的彩色输出，计时只包含操作本身；迭代级的 @Setup 在执行该迭代的工作线程上运行 |
+     * Silence this thread's colored output so only the operation is timed; iteration-level @Setup runs on the worker thread
+     * executing that iteration
+     */
+    @Setup(Level.Iteration)
+    public void silence() throws UnsupportedEncodingException {
+        ColorPrinter.setOutput(new PrintStream(OutputStream.nullOutputStream(), false, "UTF-8"));
+    }
+
+    @TearDown(Level.Iteration)
+    public void restoreOutput() {
+        ColorPrinter.setOutput(null);
+    }
+
+    private int nextIndex() {
+        return next++ & (ROTATION - 1);
+    }
+
+    @Benchmark
+    public Product findById() {
+        return manager.findById(ids[nextIndex()]);
+    }
+
+    @Benchmark
+    public List<Product> searchHit() {
+        return manager.search("pro");
+    }
+
+    @Benchmark
+    public List<Product> searchMiss() {
+        return manager.search(keywords[nextIndex()]);
+    }
+
+    @Benchmark
+    public List<Product> filterByPriceHit() {
+        return manager.filterByPrice(3000, 3100);
+    }
+
+    @Benchmark
+    public List<Product> filterByPriceMiss() {
+        double low = lows[nextIndex()];
+        return manager.filterByPrice(low, low + 100);
+    }
+
+    @Benchmark
+    public List<Product> filterByColorHit() {
+        return manager.filterByColor("蓝");
+    }
+
+    @Benchmark
+    public List<Product> filterByColorCold() {
+        probe.setColor((next++ & 1) == 0 ? "蓝色" : "银色");
+        return manager.filterByColor("蓝");
+    }
+
+    @Benchmark
+    public List<Product> queryAndMiss() {
+        double low = lows[nextIndex()];
+        return manager.query(ProductQuery.where(ProductQuery.and(ProductQuery.type(iPhone.class),
+                ProductQuery.priceBetween(low, low + 500), ProductQuery.storage(256))));
+    }
+
+    @Benchmark
+    public List<Product> sortByPriceHit() {
+        return manager.sortByPrice(true);
+    }
+
+    @Benchmark
+    public List<Product> sortByPriceCold() {
+        probe.setStock(next++ & 1);
+        return manager.sortByPrice(true);
+    }
+
+    @Benchmark
+    public List<Product> sortByNameHit() {
+        return manager.sortByName();
+    }
+
+    @Benchmark
+    public List<Product> sortByNameCold() {
+        probe.setStock(next++ & 1);
+        return manager.sortByName();
+    }
+
+    @Benchmark
+    public long getTotalStock() {
+        return manager.getTotalStock();
+    }
+
+    @Benchmark
+    public double getAveragePrice() {
+        return manager.getAveragePrice();
+    }
+
+    @Benchmark
+    public double getInventoryValue() {
+        return manager.getInventoryValue();
+    }
+
+    @Benchmark
+    public int getProductCountByType() {
+        return manager.getProductCountByType(iPhone.class);
+    }
+}
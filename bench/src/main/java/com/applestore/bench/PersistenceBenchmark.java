@@ -0,0 +1,113 @@
+package com.applestore.bench;
+
+import com.applestore.model.Product;
+import com.applestore.service.CatalogGenerator;
+import com.applestore.service.ProductManager;
+import com.applestore.util.ColorPrinter;
+import com.applestore.util.FileManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 持久化基准测试 | Persistence Benchmarks
+ * 在 CatalogGenerator 生成的 1 千、10 万和 1 千万个产品上测量 FileManager 的保存、加载和 CSV 导入导出 |
+ * Measures FileManager save, load and CSV import/export over 1 thousand, 100 thousand and 10 million products from CatalogGenerator
+ *
+ * 文件写到临时目录（-Dapplestore.dataDir），不会碰到 data 下的真实数据；加载和导入读取 @Setup 预先写出的文件 |
+ * Files go to a temp directory (-Dapplestore.dataDir), never touching the real data under data; load and import read the
+ * files written up front in @Setup
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx16g")
+public class PersistenceBenchmark {
+    private static final String CSV_FILE = "bench.csv";
+
+    @Param({"1000", "100000", "10000000"})
+    public int size;
+
+    private Path dataDir;
+    private ProductManager manager;
+
+    @Setup
+    public void setUp() throws IOException {
+        // 必须在 FileManager 加载前设置 | Must be set before FileManager is loaded
+        if (System.getProperty("applestore.dataDir") == null) {
+            dataDir = Files.createTempDirectory("applestore-bench");
+            System.setProperty("applestore.dataDir", dataDir.toString());
+        }
+        silence();
+        manager = new ProductManager();
+        new CatalogGenerator(CatalogBenchmark.SEED).generateInto(manager, size);
+        if (!FileManager.saveProducts(manager, false) || !FileManager.exportToCSV(manager, CSV_FILE)) {
+            throw new IOException("无法写出基准数据 | Failed to write the benchmark data");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (dataDir != null) {
+            try (Stream<Path> paths = Files.walk(dataDir)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * 关掉本线程的彩色输出，计时只包含操作本身 | Silence this thread's colored output so only the operation is timed
+     */
+    @Setup(Level.Iteration)
+    public void silence() throws UnsupportedEncodingException {
+        ColorPrinter.setOutput(new PrintStream(OutputStream.nullOutputStream(), false, "UTF-8"));
+    }
+
+    @TearDown(Level.Iteration)
+    public void restoreOutput() {
+        ColorPrinter.setOutput(null);
+    }
+
+    @Benchmark
+    public boolean saveProducts() {
+        return FileManager.saveProducts(manager, false);
+    }
+
+    @Benchmark
+    public List<Product> loadProducts() {
+        return FileManager.loadProducts();
+    }
+
+    @Benchmark
+    public boolean exportToCSV() {
+        return FileManager.exportToCSV(manager, CSV_FILE);
+    }
+
+    @Benchmark
+    public boolean importFromCSV() {
+        return FileManager.importFromCSV(CSV_FILE, new ProductManager());
+    }
+}
@@ -1,15 +1,25 @@
 package com.applestore;
 
 import com.applestore.model.*;
+import com.applestore.server.ConsoleServer;
+import com.applestore.server.HttpApiServer;
+import com.applestore.service.CatalogGenerator;
 import com.applestore.service.ProductManager;
 import com.applestore.service.Store;
-import com.applestore.ui.ConsoleUI;
-import com.applestore.ui.Menu;
+import com.applestore.ui.ConsoleSession;
+import com.applestore.util.CatalogMetrics;
 import com.applestore.util.ColorPrinter;
 import com.applestore.util.FileManager;
+import com.applestore.util.PersistenceWorker;
+import com.applestore.util.WriteAheadLog;
 
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
 
 /**
  * AppleStore 主程序 | AppleStore Main Program
@@ -20,11 +30,29 @@ import java.util.Scanner;
 public class App {
     private static ProductManager productManager;
     private static Store store;
-    private static ConsoleUI consoleUI;
-    private static Menu menu;
     private static Scanner scanner;
+    private static WriteAheadLog writeAheadLog; // 仅 --wal 模式 | Only in --wal mode
+    private static PersistenceWorker persistenceWorker; // 默认的后台保存 | Default background saving
+
     /**
      * 主程序入口 | Main program entry point
+     *
+     * @param args 传入 --wal 启用预写日志模式，--http 以 HTTP 接口代替控制台菜单，--console-server 让多个终端通过 TCP 同时使用控制台菜单 |
+     *             Pass --wal to enable write-ahead log mode, --http to serve the HTTP API instead of the console menu,
+     *             --console-server to let many terminals use the console menu over TCP at once
+     *             端口用 -Dapplestore.httpPort 和 -Dapplestore.consolePort 指定 | Ports are set with -Dapplestore.httpPort and -Dapplestore.consolePort
+     *             两种服务默认只监听本机回环地址，-Dapplestore.httpBind=地址 和 -Dapplestore.consoleBind=地址 改为其他地址（0.0.0.0 为全部网卡；都没有身份验证） |
+     *             Both servers listen on loopback only unless -Dapplestore.httpBind=address or -Dapplestore.consoleBind=address says otherwise
+     *             (0.0.0.0 for every interface; neither is authenticated)
+     *             后台保存可用 -Dapplestore.saveDelayMillis 和 -Dapplestore.saveBatchSize 调整 |
+     *             Background saving is tuned with -Dapplestore.saveDelayMillis and -Dapplestore.saveBatchSize
+     *             数据目录默认为 data，可用 -Dapplestore.dataDir 指定 | The data directory defaults to data and is set with -Dapplestore.dataDir
+     *             操作耗时指标以 JMX MBean com.applestore:type=CatalogMetrics 发布，-Dapplestore.metrics=false 关闭 |
+     *             Operation latency metrics are published as the JMX MBean com.applestore:type=CatalogMetrics and disabled with -Dapplestore.metrics=false
+     *             用 -XX:StartFlightRecording 录制时，保存、加载、CSV 导入导出和查询会发出 com.applestore.FileOperation 和 com.applestore.Query 事件 |
+     *             When recording with -XX:StartFlightRecording, saves, loads, CSV imports/exports and queries emit com.applestore.FileOperation and com.applestore.Query events
+     *             首次运行时 -Dapplestore.generate=N 用 CatalogGenerator 生成 N 个产品代替示例数据，种子用 -Dapplestore.seed 指定 |
+     *             On first run -Dapplestore.generate=N generates N products with CatalogGenerator instead of the sample data, seeded by -Dapplestore.seed
      */
     public static void main(String[] args) {
         // 初始化组件 | Initialize components
@@ -34,27 +62,38 @@ public class App {
         ColorPrinter.printWelcome();
 
         // 加载数据 | Load data
-        loadData();
+        loadData(hasFlag(args, "--wal"));
 
         // 如果数据为空，初始化示例数据 | If data is empty, initialize sample data
         if (productManager.getProductCount() == 0) {
-            ColorPrinter.printInfo("第一次运行，正在初始化示例数据... | First run, initializing sample data...");
-            store.initializeSampleData();
-            FileManager.saveProducts(productManager); // 自动保存 | Auto save
+            int generate = Integer.getInteger("applestore.generate", 0);
+            if (generate > 0) {
+                ColorPrinter.printInfo("第一次运行，正在生成 " + generate + " 个产品... | First run, generating " + generate + " products...");
+                new CatalogGenerator(Long.getLong("applestore.seed", 42)).generateInto(productManager, generate);
+            } else {
+                ColorPrinter.printInfo("第一次运行，正在初始化示例数据... | First run, initializing sample data...");
+                store.initializeSampleData();
+            }
         }
 
-        // 运行主循环 | Run the main loop
-        runMainLoop();
+        // 运行主循环、HTTP 服务或控制台服务 | Run the main loop, the HTTP server or the console server
+        if (hasFlag(args, "--http")) {
+            runHttpServer();
+        } else if (hasFlag(args, "--console-server")) {
+            runConsoleServer();
+        } else {
+            runMainLoop();
+        }
 
-        // 退出前保存数据 | Save data before exit
-        FileManager.saveProducts(productManager);
+        // 退出前把未保存的修改刷到磁盘 | Flush pending changes before exit
+        if (writeAheadLog != null) {
+            writeAheadLog.close();
+        } else {
+            persistenceWorker.close();
+        }
 
         // 显示退出信息 | Display exit message
-        ColorPrinter.printLine(60);
-        ColorPrinter.printRainbow("  ════════ 感谢使用 AppleStore ════════ |  ════════ Thank you for using AppleStore ════════");
-        ColorPrinter.printLine(60);
-        ColorPrinter.println("  👋 再见！期待您的下次光临！ | 👋 Goodbye! We look forward to your next visit!", ColorPrinter.BOLD_GREEN);
-        ColorPrinter.printLine(60);
+        ColorPrinter.printGoodbye();
     }
 
     /**
@@ -63,345 +102,124 @@ public class App {
     private static void initializeComponents() {
         productManager = new ProductManager();
         store = new Store(productManager);
-        menu = new Menu();
-        consoleUI = new ConsoleUI(productManager, menu);
         scanner = new Scanner(System.in);
+        // 操作耗时指标，可在 JConsole 等工具中查看 | Operation latency metrics, viewable in JConsole and similar tools
+        CatalogMetrics.registerMBean();
     }
 
     /**
-     * 加载数据 | Load data
-     */
-    private static void loadData() {
-        List<Product> products = FileManager.loadProducts();
-        if (!products.isEmpty()) {
-            productManager.setProducts(products);
-        }
-    }
-
-    /**
-     * 运行主循环 | Run the main loop
+     * 检查命令行参数 | Check a command line flag
      */
-    private static void runMainLoop() {
-        while (true) {
-            // 清屏（打印空行模拟） | Clear screen (print empty lines as simulation)
-            System.out.println("\n\n");
-
-            // 显示主菜单 | Display main menu
-            menu.showMainMenu();
-
-            // 获取用户选择 | Get user choice
-            int choice = menu.getUserChoice();
-
-            // 处理用户选择 | Handle user choice
-            if (!handleUserChoice(choice)) {
-                break; // 用户选择退出 | User chose to exit
-            }
-
-            // 等待用户按键 | Wait for user key press
-            if (choice != 0) {
-                menu.waitForEnter();
+    private static boolean hasFlag(String[] args, String flag) {
+        for (String arg : args) {
+            if (flag.equals(arg)) {
+                return true;
             }
         }
+        return false;
     }
 
     /**
-     * 处理用户选择 | Handle user choice
+     * 加载数据 | Load data
+     *
+     * @param walMode 是否从快照加日志恢复并开启日志 | Whether to recover from snapshot plus log and keep logging
      */
-    private static boolean handleUserChoice(int choice) {
-        switch (choice) {
-            case 1:
-                consoleUI.displayAllProducts();
-                break;
-
-            case 2:
-                addProduct();
-                break;
-
-            case 3:
-                updateProduct();
-                break;
-
-            case 4:
-                deleteProduct();
-                break;
-
-            case 5:
-                searchProduct();
-                break;
-
-            case 6:
-                consoleUI.showFilterMenu();
-                break;
-
-            case 7:
-                consoleUI.showSortMenu();
-                break;
-
-            case 8:
-                store.printStatistics();
-                break;
-
-            case 9:
-                consoleUI.showDataManagementMenu();
-                break;
-
-            case 0:
-                return false; // 退出程序 | Exit program
-
-            default:
-                ColorPrinter.printError("无效的选择，请输入 0-9 之间的数字 | Invalid choice, please enter a number between 0-9");
+    private static void loadData(boolean walMode) {
+        List<Product> products = walMode ? WriteAheadLog.recover() : FileManager.loadProducts();
+        if (!products.isEmpty()) {
+            productManager.setProducts(products);
         }
-        return true;
-    }
-
-    /**
-     * 添加产品 | Add product
-     */
-    private static void addProduct() {
-        int type = menu.chooseProductType();
-        if (type == -1) return;
-
-        Product product = null;
-
-        try {
-            // 根据类型选择不同的配置选项 | Choose different configuration options based on type
-            switch (type) {
-                case 1: // Apple Vision Pro
-                    product = createAppleVisionPro();
-                    break;
-
-                case 2: // MacBook
-                    product = createMacBook();
-                    break;
-
-                case 3: // iPad
-                    product = createiPad();
-                    break;
-
-                case 4: // iPhone
-                    product = createiPhone();
-                    break;
-
-                case 5: // Apple Watch
-                    product = createAppleWatch();
-                    break;
-
-                case 6: // AirPods
-                    product = createAirPods();
-                    break;
-            }
 
-            if (product != null) {
-                productManager.addProduct(product);
-                FileManager.saveProducts(productManager); // 自动保存 | Auto save
+        // 之后的每次修改由监听器自动持久化 | From here on every mutation is persisted by a listener
+        if (walMode) {
+            writeAheadLog = new WriteAheadLog(productManager);
+            writeAheadLog.open();
+            if (writeAheadLog.isOpen()) {
+                productManager.addCatalogListener(writeAheadLog);
+                ColorPrinter.printInfo("预写日志模式已开启 | Write-ahead log mode enabled");
+            } else {
+                writeAheadLog = null;
             }
-
-        } catch (Exception e) {
-            ColorPrinter.printError("添加产品失败: " + e.getMessage() + " | Failed to add product: " + e.getMessage());
+        }
+        if (writeAheadLog == null) {
+            persistenceWorker = new PersistenceWorker(productManager,
+                    Long.getLong("applestore.saveDelayMillis", PersistenceWorker.DEFAULT_DELAY_MILLIS),
+                    Integer.getInteger("applestore.saveBatchSize", PersistenceWorker.DEFAULT_BATCH_SIZE));
+            productManager.addCatalogListener(persistenceWorker);
         }
     }
 
     /**
-     * 创建Apple Vision Pro | Create Apple Vision Pro
-     */
-    private static Product createAppleVisionPro() {
-        int storage = menu.chooseStorage(new int[]{256, 512});
-        String color = menu.chooseColor(new String[]{"深空灰", "深空黑色"});
-        double price = menu.inputPrice();
-        int stock = menu.inputStock();
-
-        return new AppleVisionPro(storage + "GB", price, stock, color, storage);
-    }
-
-    /**
-     * 创建MacBook | Create MacBook
-     */
-    private static Product createMacBook() {
-        ColorPrinter.print("请输入型号 (例如: MacBook Pro M3 14英寸): | Please enter model (e.g.: MacBook Pro M3 14-inch): ", ColorPrinter.BOLD_YELLOW);
-        String model = menu.inputSearchKeyword();
-        String screenSize = menu.chooseScreenSize(new String[]{"13.6英寸", "15.3英寸", "14.2英寸", "16.2英寸"});
-        ColorPrinter.print("请输入芯片 (例如: M3, M3 Max): | Please enter chip (e.g.: M3, M3 Max): ", ColorPrinter.BOLD_YELLOW);
-        String chip = menu.inputSearchKeyword();
-        String color = menu.chooseColor(new String[]{"午夜色", "星光色", "深空灰色", "深空黑色", "银色"});
-        int storage = menu.chooseStorage(new int[]{256, 512, 1024});
-        double price = menu.inputPrice();
-        int stock = menu.inputStock();
-
-        return new MacBook(model, price, stock, color, storage, screenSize, chip);
-    }
-
-    /**
-     * 创建iPad | Create iPad
-     */
-    private static Product createiPad() {
-        ColorPrinter.print("请输入型号 (例如: iPad Air 第5代): | Please enter model (e.g.: iPad Air 5th Gen): ", ColorPrinter.BOLD_YELLOW);
-        String model = menu.inputSearchKeyword();
-        String screenSize = menu.chooseScreenSize(new String[]{"10.9英寸", "11英寸", "12.9英寸"});
-        boolean cellular = menu.chooseCellular();
-        String color = menu.chooseColor(new String[]{"深空灰", "银色", "蓝色", "粉色", "紫色"});
-        int storage = menu.chooseStorage(new int[]{64, 128, 256, 512});
-        double price = menu.inputPrice();
-        int stock = menu.inputStock();
-
-        return new iPad(model, price, stock, color, storage, screenSize, cellular);
-    }
-
-    /**
-     * 创建iPhone | Create iPhone
-     */
-    private static Product createiPhone() {
-        ColorPrinter.print("请输入型号 (例如: iPhone 15 Pro): | Please enter model (e.g.: iPhone 15 Pro): ", ColorPrinter.BOLD_YELLOW);
-        String model = menu.inputSearchKeyword();
-        String screenSize = menu.chooseScreenSize(new String[]{"6.1英寸", "6.7英寸"});
-        ColorPrinter.print("请输入摄像头配置: | Please enter camera configuration: ", ColorPrinter.BOLD_YELLOW);
-        String camera = menu.inputSearchKeyword();
-        String color = menu.chooseColor(new String[]{"深空灰", "银色", "金色", "原色钛金属", "蓝色钛金属",
-                "粉色", "黄色", "绿色", "蓝色", "午夜色"});
-        int storage = menu.chooseStorage(new int[]{128, 256, 512, 1024});
-        double price = menu.inputPrice();
-        int stock = menu.inputStock();
-
-        return new iPhone(model, price, stock, color, storage, screenSize, camera);
-    }
-
-    /**
-     * 创建Apple Watch | Create Apple Watch
-     */
-    private static Product createAppleWatch() {
-        ColorPrinter.print("请输入型号 (例如: Apple Watch Series 9): | Please enter model (e.g.: Apple Watch Series 9): ", ColorPrinter.BOLD_YELLOW);
-        String model = menu.inputSearchKeyword();
-        String caseSize = menu.chooseScreenSize(new String[]{"41mm", "44mm", "45mm", "49mm"});
-        String caseMaterial = menu.chooseColor(new String[]{"铝金属", "铝合金", "不锈钢", "钛金属"});
-        boolean cellular = menu.chooseCellular();
-        String color = menu.chooseColor(new String[]{"午夜色", "星光色", "粉砂色", "午夜色铝金属",
-                "星光色铝金属", "深空灰色不锈钢", "银色不锈钢", "钛金属原色"});
-        double price = menu.inputPrice();
-        int stock = menu.inputStock();
-
-        return new AppleWatch(model, price, stock, color, 64, caseSize, caseMaterial, cellular);
-    }
-
-    /**
-     * 创建AirPods | Create AirPods
+     * 运行 HTTP 接口，直到在控制台按 Enter | Serve the HTTP API until Enter is pressed on the console
      */
-    private static Product createAirPods() {
-        ColorPrinter.print("请输入型号 (例如: AirPods Pro 第2代): | Please enter model (e.g.: AirPods Pro 2nd Gen): ", ColorPrinter.BOLD_YELLOW);
-        String model = menu.inputSearchKeyword();
-        String noiseCancellation = menu.chooseColor(new String[]{"主动降噪", "自适应均衡", "无降噪"});
-
-        int batteryLife = 30;
-        while (true) {
-            ColorPrinter.print("请输入续航时间(小时): | Please enter battery life (hours): ", ColorPrinter.BOLD_YELLOW);
+    private static void runHttpServer() {
+        int port = Integer.getInteger("applestore.httpPort", HttpApiServer.DEFAULT_PORT);
+        try (HttpApiServer server = new HttpApiServer(productManager, bindAddress("applestore.httpBind"), port)) {
+            server.start();
+            String endpoint = server.getAddress().getHostAddress() + ":" + server.getPort();
+            ColorPrinter.printSuccess("HTTP 接口已启动，监听 " + endpoint + " | HTTP API listening on " + endpoint);
+            ColorPrinter.printInfo("按 Enter 停止服务 | Press Enter to stop the server");
             try {
-                String batteryInput = scanner.nextLine().trim();
-                if (batteryInput.isEmpty()) {
-                    batteryLife = 30; // 默认值 | Default value
-                    break;
-                }
-                batteryLife = Integer.parseInt(batteryInput);
-                if (batteryLife > 0) {
-                    break;
-                } else {
-                    ColorPrinter.printError("续航时间必须大于0 | Battery life must be greater than 0");
-                }
-            } catch (NumberFormatException e) {
-                ColorPrinter.printError("请输入有效的数字 | Please enter a valid number");
+                scanner.nextLine();
+            } catch (NoSuchElementException e) {
+                // 没有控制台（如后台运行）时一直服务到进程被终止 | Without a console (e.g. in the background) serve until the process is killed
+                awaitForever();
             }
+        } catch (IOException e) {
+            ColorPrinter.printError("启动 HTTP 接口失败: " + e.getMessage() + " | Failed to start HTTP API: " + e.getMessage());
         }
-
-        String color = menu.chooseColor(new String[]{"白色", "银色", "深空灰色", "粉色", "黄色", "绿色", "紫色"});
-        double price = menu.inputPrice();
-        int stock = menu.inputStock();
-
-        return new AirPods(model, price, stock, color, 256, noiseCancellation, batteryLife);
     }
 
     /**
-     * 更新产品 | Update product
+     * 运行控制台服务，直到在控制台按 Enter | Serve console sessions over TCP until Enter is pressed on the console
      */
-    private static void updateProduct() {
-        consoleUI.displayAllProducts();
-        String id = menu.selectProduct(productManager);
-        if (id == null) return;
-
-        Product product = productManager.findById(id);
-        ColorPrinter.printInfo("正在更新产品... | Updating product...");
-
-        try {
-            // 更新价格 | Update price
-            ColorPrinter.print("请输入新价格 (¥, 保持不变请按Enter): | Please enter new price (¥, press Enter to keep unchanged): ", ColorPrinter.BOLD_YELLOW);
-            String priceInput = scanner.nextLine().trim();
-            if (!priceInput.isEmpty()) {
-                try {
-                    double newPrice = Double.parseDouble(priceInput);
-                    if (newPrice > 0) {
-                        product.setPrice(newPrice);
-                    } else {
-                        ColorPrinter.printError("价格必须大于0 | Price must be greater than 0");
-                        return;
-                    }
-                } catch (NumberFormatException e) {
-                    ColorPrinter.printError("请输入有效的数字 | Please enter a valid number");
-                    return;
-                }
-            }
-
-            // 更新库存 | Update stock
-            ColorPrinter.print("请输入新库存 (保持不变请按Enter): | Please enter new stock (press Enter to keep unchanged): ", ColorPrinter.BOLD_YELLOW);
-            String stockInput = scanner.nextLine().trim();
-            if (!stockInput.isEmpty()) {
-                try {
-                    int newStock = Integer.parseInt(stockInput);
-                    if (newStock >= 0) {
-                        product.setStock(newStock);
-                    } else {
-                        ColorPrinter.printError("库存不能为负数 | Stock cannot be negative");
-                        return;
-                    }
-                } catch (NumberFormatException e) {
-                    ColorPrinter.printError("请输入有效的数字 | Please enter a valid number");
-                    return;
-                }
+    private static void runConsoleServer() {
+        int port = Integer.getInteger("applestore.consolePort", ConsoleServer.DEFAULT_PORT);
+        try (ConsoleServer server = new ConsoleServer(productManager, store, bindAddress("applestore.consoleBind"), port)) {
+            server.start();
+            String endpoint = server.getAddress().getHostAddress() + ":" + server.getPort();
+            ColorPrinter.printSuccess("控制台服务已启动，监听 " + endpoint + " | Console server listening on " + endpoint);
+            ColorPrinter.printInfo("按 Enter 停止服务 | Press Enter to stop the server");
+            try {
+                scanner.nextLine();
+            } catch (NoSuchElementException e) {
+                awaitForever();
             }
-
-            productManager.updateProduct(id, product);
-            FileManager.saveProducts(productManager); // 自动保存 | Auto save
-
-        } catch (Exception e) {
-            ColorPrinter.printError("更新失败: " + e.getMessage() + " | Update failed: " + e.getMessage());
+        } catch (IOException e) {
+            ColorPrinter.printError("启动控制台服务失败: " + e.getMessage() + " | Failed to start console server: " + e.getMessage());
         }
     }
 
     /**
-     * 删除产品 | Delete product
+     * 读取监听地址的系统属性，未设置时为本机回环地址 | Read a bind address system property, defaulting to the loopback address
      */
-    private static void deleteProduct() {
-        consoleUI.displayAllProducts();
-        String id = menu.selectProduct(productManager);
-        if (id == null) return;
-
-        Product product = productManager.findById(id);
-        consoleUI.displayProductDetails(product);
+    private static InetAddress bindAddress(String property) throws UnknownHostException {
+        String host = System.getProperty(property);
+        return host == null || host.isBlank() ? InetAddress.getLoopbackAddress() : InetAddress.getByName(host.trim());
+    }
 
-        if (menu.confirmDelete()) {
-            productManager.deleteProduct(id);
-            FileManager.saveProducts(productManager); // 自动保存 | Auto save
-        } else {
-            ColorPrinter.printInfo("已取消删除操作 | Deletion operation cancelled");
+    private static void awaitForever() {
+        try {
+            new CountDownLatch(1).await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
     /**
-     * 搜索产品 | Search product
+     * 运行主循环 | Run the main loop
      */
-    private static void searchProduct() {
-        String keyword = menu.inputSearchKeyword();
-        if (keyword.isEmpty()) {
-            ColorPrinter.printError("搜索关键词不能为空 | Search keyword cannot be empty");
-            return;
+    private static void runMainLoop() {
+        ConsoleSession session = new ConsoleSession(productManager, store);
+        session.start();
+        while (!session.isClosed()) {
+            String line;
+            try {
+                line = scanner.nextLine();
+            } catch (NoSuchElementException e) {
+                break; // 输入已结束 | Input ended
+            }
+            session.accept(line);
         }
-        
-        List<Product> results = productManager.search(keyword);
-        consoleUI.displaySearchResults(results, keyword);
     }
 }
@@ -0,0 +1,197 @@
+package com.applestore.bench;
+
+import com.applestore.model.Product;
+import com.applestore.server.HttpApiServer;
+import com.applestore.service.CatalogGenerator;
+import com.applestore.service.ProductManager;
+import com.applestore.util.ColorPrinter;
+import com.applestore.util.LatencyHistogram;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP 接口负载客户端 | HTTP API Load Client
+ * 在同一 JVM 内以 CatalogGenerator 生成的目录启动 HttpApiServer（只监听回环地址），再用若干长连接按固定比例发送
+ * 按 ID 查询和库存预留请求，报告每秒请求数和延迟分位数 |
+ * Starts an HttpApiServer (loopback only) in the same JVM over a catalog from CatalogGenerator, then drives it over a number of
+ * keep-alive connections with a fixed mix of lookups by ID and stock reservations, reporting requests per second and latency percentiles
+ *
+ * 每个连接一个线程，发完一个请求、读完整个响应才发下一个（闭环负载），所以吞吐量受连接数和延迟共同限制。
+ * 预留请求在同一连接上交替预留一件和归还同一件，库存保持不变；目录里本就无货的产品预留时得到 409，单独计数 |
+ * One thread per connection sends a request and reads the whole response before the next (closed-loop load), so throughput is
+ * bounded by the connection count and latency together. Reservation requests alternate reserve and release of one unit on each
+ * connection, releasing the same unit it reserved so stock stays steady; reserving a product already out of stock gets a 409,
+ * counted separately
+ *
+ * 用法 | Usage:
+ * java -cp out com.applestore.bench.HttpLoadClient [-products 10000] [-connections 8] [-warmup 2] [-seconds 10] [-reserve 0.1]
+ * -reserve 为预留请求所占比例，其余为 GET /products/{id} | -reserve is the fraction of reservation requests; the rest are GET /products/{id}
+ */
+public class HttpLoadClient {
+    private static final long SEED = 42;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int products = Integer.parseInt(options.getOrDefault("products", "10000"));
+        int connections = Integer.parseInt(options.getOrDefault("connections", "8"));
+        long warmupMillis = (long) (Double.parseDouble(options.getOrDefault("warmup", "2")) * 1000);
+        long measureMillis = (long) (Double.parseDouble(options.getOrDefault("seconds", "10")) * 1000);
+        double reserveRatio = Double.parseDouble(options.getOrDefault("reserve", "0.1"));
+
+        // 关掉本线程的彩色输出 | Silence this thread's colored output
+        ColorPrinter.setOutput(new PrintStream(OutputStream.nullOutputStream(), false, "UTF-8"));
+        ProductManager manager = new ProductManager();
+        new CatalogGenerator(SEED).generateInto(manager, products);
+        List<Product> catalog = manager.getAllProducts();
+        String[] ids = new String[catalog.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = catalog.get(i).getId();
+        }
+        ColorPrinter.setOutput(null);
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        LongAdder conflicts = new LongAdder();
+        LongAdder errors = new LongAdder();
+        try (HttpApiServer server = new HttpApiServer(manager, 0)) {
+            server.start();
+            long warmupEnd = System.nanoTime() + warmupMillis * 1_000_000;
+            long end = warmupEnd + measureMillis * 1_000_000;
+
+            Thread[] threads = new Thread[connections];
+            for (int c = 0; c < connections; c++) {
+                SplittableRandom random = new SplittableRandom(SEED + c);
+                threads[c] = new Thread(() -> {
+                    try {
+                        drive(server.getPort(), ids, reserveRatio, random, warmupEnd, end, histogram, conflicts, errors);
+                    } catch (IOException e) {
+                        System.err.println("连接失败 | Connection failed: " + e);
+                    }
+                }, "applestore-load-" + c);
+                threads[c].start();
+            }
+            Thread.sleep(warmupMillis);
+            histogram.reset();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+
+        LatencyHistogram.Snapshot result = histogram.snapshot();
+        System.out.printf("connections=%d products=%d reserve=%.0f%% requests=%d conflicts(409)=%d errors=%d%n",
+                connections, ids.length, reserveRatio * 100, result.getCount(), conflicts.sum(), errors.sum());
+        System.out.printf("throughput %.0f req/s%n", result.getThroughputPerSecond());
+        System.out.printf("latency us: mean %.1f  p50 %.1f  p90 %.1f  p99 %.1f  p99.9 %.1f  max %.1f%n",
+                result.getMeanNanos() / 1e3, result.getP50Nanos() / 1e3, result.getP90Nanos() / 1e3,
+                result.getP99Nanos() / 1e3, result.getP999Nanos() / 1e3, result.getMaxNanos() / 1e3);
+    }
+
+    /**
+     * 一个长连接上的闭环负载，预热期间的请求只发不计 | Closed-loop load over one keep-alive connection; requests during warmup are sent but not counted
+     */
+    private static void drive(int port, String[] ids, double reserveRatio, SplittableRandom random, long warmupEnd, long end,
+                              LatencyHistogram histogram, LongAdder conflicts, LongAdder errors) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setTcpNoDelay(true);
+            OutputStream out = socket.getOutputStream();
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            // 已预留、下一次要归还的产品 | The product reserved and due to be released next
+            String held = null;
+            long now;
+            while ((now = System.nanoTime()) < end) {
+                String id = ids[random.nextInt(ids.length)];
+                String request;
+                boolean reserving = false;
+                if (random.nextDouble() < reserveRatio) {
+                    reserving = held == null;
+                    if (!reserving) {
+                        id = held;
+                        held = null;
+                    }
+                    request = "POST /products/" + id + (reserving ? "/reserve" : "/release") + "?qty=1 HTTP/1.1\r\n"
+                            + "Host: localhost\r\nContent-Length: 0\r\n\r\n";
+                } else {
+                    request = "GET /products/" + id + " HTTP/1.1\r\nHost: localhost\r\n\r\n";
+                }
+                out.write(request.getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+                int status = readResponse(in);
+                if (reserving && status == 200) {
+                    held = id;
+                }
+                if (now >= warmupEnd) {
+                    histogram.record(System.nanoTime() - now);
+                    if (status == 409) {
+                        conflicts.increment();
+                    } else if (status < 200 || status >= 300) {
+                        errors.increment();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 读完一个响应（状态行、头和 Content-Length 个字节的正文），返回状态码 |
+     * Read one whole response (status line, headers and Content-Length bytes of body) and return the status code
+     */
+    private static int readResponse(InputStream in) throws IOException {
+        String statusLine = readLine(in);
+        int status = Integer.parseInt(statusLine.substring(9, 12));
+        long length = 0;
+        for (String header; !(header = readLine(in)).isEmpty(); ) {
+            if (header.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                length = Long.parseLong(header.substring(15).trim());
+            }
+        }
+        while (length > 0) {
+            long skipped = in.skip(length);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("响应不完整 | Truncated response");
+                }
+                skipped = 1;
+            }
+            length -= skipped;
+        }
+        return status;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                throw new EOFException("连接已关闭 | Connection closed");
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return line.toString(StandardCharsets.US_ASCII);
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("-") || i + 1 == args.length) {
+                throw new IllegalArgumentException("参数应为 -name value | Arguments must be -name value: " + args[i]);
+            }
+            options.put(args[i].substring(1), args[++i]);
+        }
+        return options;
+    }
+}
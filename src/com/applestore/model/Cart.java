@@ -0,0 +1,38 @@
+package com.applestore.model;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 购物车 | Shopping Cart
+ * 记录产品ID和购买数量，同一产品多次加入时数量累加 | Holds product IDs and quantities; adding the same product again adds up the quantity
+ */
+public class Cart {
+    private final Map<String, Integer> items = new LinkedHashMap<>();
+
+    /**
+     * 加入产品 | Add a product
+     */
+    public Cart addItem(String productId, int quantity) {
+        if (productId == null) {
+            throw new IllegalArgumentException("产品ID不能为空 | Product ID cannot be null");
+        }
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("数量必须为正数 | Quantity must be positive");
+        }
+        items.merge(productId, quantity, Math::addExact);
+        return this;
+    }
+
+    /**
+     * 产品ID -> 数量（只读） | Product ID -> quantity (read-only)
+     */
+    public Map<String, Integer> getItems() {
+        return Collections.unmodifiableMap(items);
+    }
+
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+}
@@ -0,0 +1,52 @@
+package com.applestore.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 订单 | Order
+ * 结账成功后生成，内容不可变 | Created by a successful checkout; immutable
+ */
+public class Order {
+    private final String id;
+    private final long createdAt;
+    private final List<OrderLine> lines;
+
+    public Order(String id, long createdAt, List<OrderLine> lines) {
+        this.id = id;
+        this.createdAt = createdAt;
+        this.lines = Collections.unmodifiableList(lines);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * 下单时间（毫秒时间戳） | Checkout time (epoch millis)
+     */
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public List<OrderLine> getLines() {
+        return lines;
+    }
+
+    /**
+     * 订单总额 | Order total
+     */
+    public double getTotal() {
+        double total = 0;
+        for (OrderLine line : lines) {
+            total += line.getSubtotal();
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("订单 %s | 共 %d 行 | 总额: ¥%.2f | Order %s | %d lines | Total: ¥%.2f",
+                id, lines.size(), getTotal(), id, lines.size(), getTotal());
+    }
+}
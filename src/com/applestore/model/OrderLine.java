@@ -0,0 +1,42 @@
+package com.applestore.model;
+
+/**
+ * 订单行 | Order Line
+ * 记录下单时的产品型号和单价，之后改价不影响已下的订单 | Records the product model and unit price at checkout, so later price changes leave placed orders alone
+ */
+public class OrderLine {
+    private final String productId;
+    private final String model;
+    private final int quantity;
+    private final double unitPrice;
+
+    public OrderLine(String productId, String model, int quantity, double unitPrice) {
+        this.productId = productId;
+        this.model = model;
+        this.quantity = quantity;
+        this.unitPrice = unitPrice;
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public double getUnitPrice() {
+        return unitPrice;
+    }
+
+    /**
+     * 小计 | Subtotal
+     */
+    public double getSubtotal() {
+        return unitPrice * quantity;
+    }
+}
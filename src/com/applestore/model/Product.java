@@ -1,23 +1,44 @@
 package com.applestore.model;
 
 import java.io.Serializable;
-import java.util.UUID;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.ThreadLocalRandom;
 
 
 /**
  * 产品抽象基类 | Abstract Product Base Class
  * 定义所有苹果产品的通用属性 | Defines common attributes for all Apple products
  */
-public abstract class Product implements Serializable {
+public abstract class Product implements Serializable, Cloneable {
     private static final long serialVersionUID = 1L;
 
+    /**
+     * 可被索引的字段 | Indexable fields
+     */
+    public enum Field {
+        ID, MODEL, PRICE, STOCK, COLOR, STORAGE
+    }
+
     private String id;
     private String name;
     private String model;
     private double price;
-    private int stock; // 库存数量 | Stock quantity
+    private volatile int stock; // 库存数量，可被 adjustStock 并发修改 | Stock quantity, may be changed concurrently by adjustStock
     private String color;
     private int storage; // 存储容量（GB） | Storage capacity (GB)
+    private transient ProductChangeListener changeListener; // 所属管理器 | Owning manager
+    private transient volatile StripedStock flashSaleStock; // 抢购模式下分条带的库存，否则为 null | Striped stock in flash-sale mode, otherwise null
+
+    private static final VarHandle STOCK;
+
+    static {
+        try {
+            STOCK = MethodHandles.lookup().findVarHandle(Product.class, "stock", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
 
     public Product(String name, String model, double price, int stock, String color, int storage) {
         this.id = generateId();
@@ -33,10 +54,48 @@ public abstract class Product implements Serializable {
      * 生成唯一ID | Generate unique ID
      */
     private String generateId() {
+        // 与 UUID 前 8 位相同的 32 位随机数，但不经过 SecureRandom | Same 32 random bits as a UUID prefix, without going through SecureRandom
+        String hex = Integer.toHexString(ThreadLocalRandom.current().nextInt());
+        return "00000000".substring(hex.length()) + hex;
+    }
+
+    /**
+     * 设置变更监听器（由 ProductManager 管理） | Set change listener (managed by ProductManager)
+     */
+    public void setChangeListener(ProductChangeListener changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    public ProductChangeListener getChangeListener() {
+        return changeListener;
+    }
 
-        return UUID.randomUUID().toString().substring(0, 8);
+    /**
+     * 复制当前状态（含子类字段），副本不属于任何管理器 | Copy the current state (including subclass fields); the copy belongs to no manager
+     */
+    public Product copy() {
+        try {
+            Product copy = (Product) super.clone();
+            copy.changeListener = null;
+            copy.stock = getStock();
+            copy.flashSaleStock = null;
+            return copy;
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
     }
 
+    /**
+     * 通过监听器执行字段修改 | Apply a field change through the listener
+     */
+    private void applyChange(Field field, Runnable change) {
+        ProductChangeListener listener = changeListener;
+        if (listener == null) {
+            change.run();
+        } else {
+            listener.onChange(this, field, change);
+        }
+    }
 
 
     // Getters and Setters
@@ -45,7 +104,7 @@ public abstract class Product implements Serializable {
     }
 
     public void setId(String id) {
-        this.id = id;
+        applyChange(Field.ID, () -> this.id = id);
     }
 
     public String getName() {
@@ -57,7 +116,7 @@ public abstract class Product implements Serializable {
     }
 
     public void setModel(String model) {
-        this.model = model;
+        applyChange(Field.MODEL, () -> this.model = model);
     }
 
     public double getPrice() {
@@ -68,18 +127,85 @@ public abstract class Product implements Serializable {
         if (price < 0) {
             throw new IllegalArgumentException("价格不能为负数 | Price cannot be negative");
         }
-        this.price = price;
+        applyChange(Field.PRICE, () -> this.price = price);
     }
 
     public int getStock() {
-        return stock;
+        StripedStock striped = flashSaleStock;
+        return striped != null ? striped.sum() : stock;
     }
 
     public void setStock(int stock) {
         if (stock < 0) {
             throw new IllegalArgumentException("库存不能为负数 | Stock cannot be negative");
         }
-        this.stock = stock;
+        applyChange(Field.STOCK, () -> {
+            StripedStock striped = flashSaleStock;
+            if (striped != null) {
+                striped.reset(stock);
+            } else {
+                this.stock = stock;
+            }
+        });
+    }
+
+    /**
+     * 开启抢购模式：库存分散到各核的条带上，热门产品的并发扣减不再争抢同一字段 |
+     * Enter flash-sale mode: stock is split across per-core stripes so concurrent orders on a hot product stop contending on one field
+     * 切换期间不能有并发的 adjustStock；受管产品请通过 ProductManager.startFlashSale 切换 |
+     * No adjustStock may run during the switch; switch managed products through ProductManager.startFlashSale
+     */
+    public void startFlashSale() {
+        if (flashSaleStock == null) {
+            flashSaleStock = new StripedStock(stock);
+        }
+    }
+
+    /**
+     * 结束抢购模式，把各条带的库存合并回来 | Leave flash-sale mode, folding the stripes back into one figure
+     * 同样不能与 adjustStock 并发 | Likewise must not run concurrently with adjustStock
+     */
+    public void endFlashSale() {
+        StripedStock striped = flashSaleStock;
+        if (striped != null) {
+            stock = striped.sum();
+            flashSaleStock = null;
+        }
+    }
+
+    public boolean isFlashSale() {
+        return flashSaleStock != null;
+    }
+
+    /**
+     * 原子地增减库存，不加锁，结果不会为负 | Atomically add delta to the stock without locking; the result never goes negative
+     * 并发调用互不丢失更新 | Concurrent calls never lose each other's updates
+     *
+     * @return 库存不足（或会溢出）时不做修改并返回 false | false, with nothing changed, if stock is insufficient (or would overflow)
+     */
+    public boolean adjustStock(int delta) {
+        ProductChangeListener listener = changeListener;
+        if (listener == null) {
+            return casStock(delta);
+        }
+        return listener.onStockAdjust(this, delta, () -> casStock(delta));
+    }
+
+    private boolean casStock(int delta) {
+        StripedStock striped = flashSaleStock;
+        if (striped != null) {
+            return striped.adjust(delta);
+        }
+        while (true) {
+            int current = stock;
+            long next = (long) current + delta;
+            if (next < 0 || next > Integer.MAX_VALUE) {
+                return false;
+            }
+            if (STOCK.compareAndSet(this, current, (int) next)) {
+                return true;
+            }
+        }
     }
 
     public String getColor() {
@@ -87,7 +213,7 @@ public abstract class Product implements Serializable {
     }
 
     public void setColor(String color) {
-        this.color = color;
+        applyChange(Field.COLOR, () -> this.color = color);
     }
 
     public int getStorage() {
@@ -95,7 +221,7 @@ public abstract class Product implements Serializable {
     }
 
     public void setStorage(int storage) {
-        this.storage = storage;
+        applyChange(Field.STORAGE, () -> this.storage = storage);
     }
 
     /**
@@ -106,7 +232,7 @@ public abstract class Product implements Serializable {
     @Override
     public String toString() {
         return String.format("%s - %s | 颜色: %s | 存储: %dGB   | 价格: ¥%.2f | 库存: %d | Color: %s | Storage: %dGB | Price: ¥%.2f | Stock: %d",
-                name, model, color, storage, price, stock, color, storage, price, stock);
+                name, model, color, storage, price, getStock(), color, storage, price, getStock());
     }
 
     @Override
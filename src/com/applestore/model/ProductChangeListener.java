@@ -0,0 +1,25 @@
+package com.applestore.model;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * 产品变更监听器 | Product Change Listener
+ * 产品字段被修改时通知所属的管理器，以便增量维护索引 | Notifies the owning manager of field changes so indexes are maintained incrementally
+ */
+public interface ProductChangeListener {
+
+    /**
+     * 字段即将修改 | A field is about to change
+     * 实现方负责调用 change.run()，并在前后更新相关索引 | Implementations must call change.run() and update affected indexes around it
+     */
+    void onChange(Product product, Product.Field field, Runnable change);
+
+    /**
+     * 库存即将原子增减（adjustStock） | Stock is about to be adjusted atomically (adjustStock)
+     * 实现方负责调用 adjust.getAsBoolean() 并返回其结果，结果为 false 时库存未变 |
+     * Implementations must call adjust.getAsBoolean() and return its result; false means the stock did not change
+     */
+    default boolean onStockAdjust(Product product, int delta, BooleanSupplier adjust) {
+        return adjust.getAsBoolean();
+    }
+}
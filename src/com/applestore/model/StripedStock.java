@@ -0,0 +1,118 @@
+package com.applestore.model;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 分条带库存计数器（抢购模式） | Striped Stock Counter (flash-sale mode)
+ * 库存分散到按核数划分的条带上，每个线程优先扣减自己的条带，热门产品的并发扣减不再争抢同一个字段 |
+ * Stock is split across per-core stripes and each thread deducts from its own stripe first, so concurrent orders on a hot product stop fighting over one field
+ *
+ * 自己的条带不够时依次从其他条带扣减；各条带都不够一次扣完时，在监视器下把全部条带归拢再判断 |
+ * When its own stripe runs short it deducts from the others in turn; if no single stripe can cover the order, all stripes are gathered under the monitor before deciding
+ * 每次扣减都是对单个条带的 CAS，条带不会为负，因此售出总量永远不超过库存 | Every deduction is a CAS on one stripe and stripes never go negative, so total sold never exceeds stock
+ */
+final class StripedStock {
+    static final int STRIPES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors()) * 2;
+    // 每个条带占一条缓存行，避免伪共享 | One cache line per stripe to avoid false sharing
+    private static final int PADDING = 16;
+    // 单个条带的上限，保证总和不超过 int | Per-stripe cap so the total always fits in an int
+    private static final int STRIPE_CAP = Integer.MAX_VALUE / STRIPES;
+
+    private final AtomicIntegerArray cells = new AtomicIntegerArray(STRIPES * PADDING);
+
+    StripedStock(int stock) {
+        reset(stock);
+    }
+
+    /**
+     * 精确总库存；与归拢互斥，不会漏掉正在搬运的库存 | Exact total stock; excludes gathering so units in transit are never missed
+     */
+    synchronized int sum() {
+        int sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    /**
+     * 重新平均分配库存（调用方保证期间没有并发增减） | Redistribute the stock evenly (caller guarantees no concurrent adjustments)
+     */
+    synchronized void reset(int stock) {
+        for (int i = 0; i < STRIPES; i++) {
+            cells.set(i * PADDING, stock / STRIPES + (i < stock % STRIPES ? 1 : 0));
+        }
+    }
+
+    /**
+     * 原子增减库存 | Atomically add delta to the stock
+     *
+     * @return 库存不足（或会溢出）时不做修改并返回 false | false, with nothing changed, if stock is insufficient (or would overflow)
+     */
+    boolean adjust(int delta) {
+        int home = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        if (delta >= 0) {
+            for (int i = 0; i < STRIPES; i++) {
+                if (tryAdd((home + i) & (STRIPES - 1), delta)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        int quantity = -delta;
+        for (int i = 0; i < STRIPES; i++) {
+            if (tryTake((home + i) & (STRIPES - 1), quantity)) {
+                return true;
+            }
+        }
+        return gatherAndTake(home, quantity);
+    }
+
+    private boolean tryAdd(int stripe, int amount) {
+        int index = stripe * PADDING;
+        while (true) {
+            int current = cells.get(index);
+            if (current > STRIPE_CAP - amount) {
+                return false;
+            }
+            if (cells.compareAndSet(index, current, current + amount)) {
+                return true;
+            }
+        }
+    }
+
+    private boolean tryTake(int stripe, int quantity) {
+        int index = stripe * PADDING;
+        while (true) {
+            int current = cells.get(index);
+            if (current < quantity) {
+                return false;
+            }
+            if (cells.compareAndSet(index, current, current - quantity)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 慢路径：没有单个条带够扣时，把各条带清空归拢，够则扣减，余量放回自己的条带 |
+     * Slow path when no single stripe can cover the order: drain every stripe, deduct if the total suffices, and put the rest back on the home stripe
+     */
+    private synchronized boolean gatherAndTake(int home, int quantity) {
+        long gathered = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            gathered += cells.getAndSet(i * PADDING, 0);
+        }
+        boolean taken = gathered >= quantity;
+        if (taken) {
+            gathered -= quantity;
+        }
+        // 放回时按上限分摊到各条带 | Spread the remainder back without exceeding the per-stripe cap
+        for (int i = 0; i < STRIPES && gathered > 0; i++) {
+            int amount = (int) Math.min(gathered, STRIPE_CAP);
+            cells.getAndAdd(((home + i) & (STRIPES - 1)) * PADDING, amount);
+            gathered -= amount;
+        }
+        return taken;
+    }
+}
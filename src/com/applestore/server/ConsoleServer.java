@@ -0,0 +1,360 @@
+package com.applestore.server;
+
+import com.applestore.service.ProductManager;
+import com.applestore.service.Store;
+import com.applestore.ui.ConsoleSession;
+import com.applestore.util.ColorPrinter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 多会话控制台服务 | Multi-session Console Server
+ * 店员用 telnet 或 nc 连接，每个连接得到一个与本地控制台相同的菜单会话，所有会话共享同一个 ProductManager |
+ * Staff connect with telnet or nc and each connection gets the same menu session as the local console, all sharing one ProductManager
+ *
+ * 一个选择器线程负责全部连接的接受、读和写；读到完整的行就把连接交给按核数定长的工作线程池执行菜单操作，
+ * 输出写回缓冲区后由选择器线程发送。会话在等待输入时不占用任何线程，数百个连接只需几个线程 |
+ * One selector thread accepts, reads and writes for every connection; once whole lines arrive the connection is handed to a worker pool
+ * sized by cores to run the menu operations, and the output is buffered for the selector thread to send. A session waiting for input
+ * holds no thread, so hundreds of connections need only a handful
+ * 菜单操作可能等待目录写锁或磁盘，因此不在选择器线程上执行 | Menu operations may wait on the catalog write lock or the disk, so they stay off the selector thread
+ *
+ * 会话没有身份验证，却能保存、加载和导入导出整个目录，所以默认只监听本机回环地址；要让其他机器连接须显式指定监听地址 |
+ * Sessions are unauthenticated yet can save, load, import and export the whole catalog, so by default only the loopback address
+ * is listened on; other machines can connect only when a bind address is given explicitly
+ */
+public class ConsoleServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 2323;
+    // 单行最大字节数，超过则断开 | Longest accepted line in bytes; longer lines drop the connection
+    private static final int MAX_LINE_BYTES = 8192;
+    // 待发送输出超过此值时暂停读取该连接，直到对方收走 | Stop reading a connection while more than this much output waits for the peer
+    private static final int MAX_PENDING_OUTPUT = 1 << 22;
+
+    private final ProductManager productManager;
+    private final Store store;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final ExecutorService workers;
+    private final Thread selectorThread;
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(8192);
+    // 有新输出待发送的连接，由选择器线程注册写事件 | Connections with new output, registered for writing by the selector thread
+    private final Queue<Connection> writeRequests = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger sessions = new AtomicInteger();
+    private volatile boolean running;
+
+    /**
+     * 只监听本机回环地址 | Listen on the loopback address only
+     *
+     * @param port 监听端口，0 表示任选空闲端口 | Port to listen on; 0 picks a free one
+     */
+    public ConsoleServer(ProductManager productManager, Store store, int port) throws IOException {
+        this(productManager, store, InetAddress.getLoopbackAddress(), port);
+    }
+
+    /**
+     * @param bindAddress 监听地址；通配地址会把菜单开放给所有能连到本机的人 | Address to listen on; the wildcard address opens the menu to anyone who can reach this host
+     * @param port        监听端口，0 表示任选空闲端口 | Port to listen on; 0 picks a free one
+     */
+    public ConsoleServer(ProductManager productManager, Store store, InetAddress bindAddress, int port) throws IOException {
+        this.productManager = productManager;
+        this.store = store;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(bindAddress, port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        AtomicInteger count = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+            Thread thread = new Thread(r, "applestore-console-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.selectorThread = new Thread(this::runSelector, "applestore-console-selector");
+        selectorThread.setDaemon(true);
+    }
+
+    public void start() {
+        running = true;
+        selectorThread.start();
+    }
+
+    /**
+     * 实际监听的端口 | Port actually listened on
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * 实际监听的地址 | Address actually listened on
+     */
+    public InetAddress getAddress() {
+        return serverChannel.socket().getInetAddress();
+    }
+
+    /**
+     * 当前连接的会话数 | Number of connected sessions
+     */
+    public int getSessionCount() {
+        return sessions.get();
+    }
+
+    /**
+     * 断开所有会话并停止服务 | Disconnect every session and stop the server
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdown();
+        try {
+            workers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runSelector() {
+        try {
+            while (running) {
+                selector.select();
+                for (Connection connection; (connection = writeRequests.poll()) != null; ) {
+                    connection.enableWrite();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            connection.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.write();
+                        }
+                    } catch (IOException e) {
+                        connection.close();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            ColorPrinter.printError("控制台服务出错: " + e.getMessage() + " | Console server failed: " + e.getMessage());
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection) {
+                    ((Connection) key.attachment()).close();
+                }
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException ignored) {
+                // 已在关闭 | Already shutting down
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        sessions.incrementAndGet();
+        // 由工作线程打印欢迎界面和主菜单 | A worker prints the welcome screen and main menu
+        connection.schedule();
+    }
+
+    /**
+     * 一个连接：行缓冲和 key 只由选择器线程访问，会话同一时刻只由一个工作线程执行 |
+     * One connection: the line buffer and key are only touched by the selector thread, and the session runs on one worker at a time
+     */
+    private final class Connection implements Runnable {
+        private final SocketChannel channel;
+        private final ConsoleSession session = new ConsoleSession(productManager, store);
+        private final ByteArrayOutputStream lineBytes = new ByteArrayOutputStream();
+        private final Queue<String> lines = new ConcurrentLinkedQueue<>();
+        private final Queue<ByteBuffer> output = new ConcurrentLinkedQueue<>();
+        private final AtomicLong pendingOutput = new AtomicLong();
+        // 已交给工作线程，尚未处理完所有行 | Handed to a worker that has not yet drained all lines
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private SelectionKey key;
+        private boolean started; // 仅工作线程 | Worker only
+        private volatile boolean closing; // 用户已退出，发完输出后断开 | The user exited; disconnect once the output is sent
+        private boolean closed;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * 选择器线程：读取并切分完整的行，有新行时调度会话 | Selector thread: read and split whole lines, scheduling the session when any arrive
+         */
+        void read() throws IOException {
+            readBuffer.clear();
+            int read = channel.read(readBuffer);
+            if (read < 0) {
+                close();
+                return;
+            }
+            boolean newLines = false;
+            byte[] bytes = readBuffer.array();
+            for (int i = 0; i < read; i++) {
+                byte b = bytes[i];
+                if (b == '\n') {
+                    // 按字节切行后再解码，多字节字符不会被拆开 | Split on bytes before decoding, so multi-byte characters are never cut
+                    String line = lineBytes.toString(StandardCharsets.UTF_8);
+                    lines.add(line.endsWith("\r") ? line.substring(0, line.length() - 1) : line);
+                    lineBytes.reset();
+                    newLines = true;
+                } else if (lineBytes.size() >= MAX_LINE_BYTES) {
+                    close();
+                    return;
+                } else {
+                    lineBytes.write(b);
+                }
+            }
+            if (newLines && !closing) {
+                schedule();
+            }
+            if (pendingOutput.get() > MAX_PENDING_OUTPUT) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            }
+        }
+
+        void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                workers.execute(this);
+            }
+        }
+
+        /**
+         * 工作线程：把已到达的行依次送入会话，输出写入缓冲区；发出输出后才释放调度标记，保证输出顺序 |
+         * Worker: feed the lines that have arrived into the session, capturing output; the schedule flag is released only after
+         * the output is queued, which keeps output in order
+         */
+        @Override
+        public void run() {
+            while (true) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                PrintStream out = new PrintStream(buffer, false, StandardCharsets.UTF_8);
+                ColorPrinter.setOutput(out);
+                try {
+                    if (!started) {
+                        started = true;
+                        ColorPrinter.printWelcome();
+                        session.start();
+                    }
+                    for (String line; !session.isClosed() && (line = lines.poll()) != null; ) {
+                        session.accept(line);
+                    }
+                    if (session.isClosed() && !closing) {
+                        ColorPrinter.printGoodbye();
+                        closing = true;
+                    }
+                } finally {
+                    ColorPrinter.setOutput(null);
+                }
+                out.flush();
+                send(buffer.toByteArray());
+
+                scheduled.set(false);
+                if (closing || lines.isEmpty() || !scheduled.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        }
+
+        private void send(byte[] bytes) {
+            if (bytes.length == 0 && !closing) {
+                return;
+            }
+            if (bytes.length > 0) {
+                pendingOutput.addAndGet(bytes.length);
+                output.add(ByteBuffer.wrap(bytes));
+            }
+            writeRequests.add(this);
+            selector.wakeup();
+        }
+
+        /**
+         * 选择器线程：有输出待发送时关注写事件 | Selector thread: watch for writability while output is pending
+         */
+        void enableWrite() {
+            if (key.isValid()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        }
+
+        /**
+         * 选择器线程：尽量发送输出，发完后取消写事件，用户已退出则断开 |
+         * Selector thread: send as much output as the socket takes, stop watching writability once done, and disconnect if the user exited
+         */
+        void write() throws IOException {
+            for (ByteBuffer buffer; (buffer = output.peek()) != null; ) {
+                channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    return;
+                }
+                output.poll();
+                pendingOutput.addAndGet(-buffer.capacity());
+            }
+            if (closing) {
+                close();
+                return;
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            closing = true;
+            sessions.decrementAndGet();
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // 连接已断开 | Connection already gone
+            }
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package com.applestore.server;
+
+import com.applestore.model.*;
+import com.applestore.service.ProductManager;
+import com.applestore.service.ProductPage;
+import com.applestore.service.ProductQuery;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 内嵌 HTTP 接口 | Embedded HTTP API
+ * 基于 JDK 自带的 com.sun.net.httpserver，把 ProductManager 的查询、统计和库存预留以 JSON 暴露出来 |
+ * Built on the JDK's com.sun.net.httpserver, exposing ProductManager lookups, stats and stock reservation as JSON
+ *
+ * 接口 | Endpoints:
+ * GET  /products/{id}                          单个产品 | One product
+ * GET  /products?q=&color=&minPrice=&maxPrice=&type=&storage=&chip=&cellular=&sort=price|-price|name&limit=
+ *                                              搜索、过滤、排序，条件以 AND 组合 | Search, filter and sort; conditions combine with AND
+ * GET  /products?cursor=&limit=               不带条件时按游标分页，响应中的 next 即下一页游标 | Without conditions, pages by cursor; next in the response is the next page's cursor
+ * GET  /stats                                  统计 | Statistics
+ * POST /products/{id}/reserve?qty=N            预留库存（不足时 409） | Reserve stock (409 when short)
+ * POST /products/{id}/release?qty=N            归还库存 | Release stock
+ *
+ * JSON 手工拼接，不经反射；响应带 Content-Length 以保持长连接 | JSON is built by hand without reflection; responses carry Content-Length so connections stay alive
+ *
+ * 接口没有身份验证，任何能连上的人都能预留和归还库存，所以默认只监听本机回环地址；要对外开放须显式指定监听地址 |
+ * The API is unauthenticated and anyone who can connect may reserve and release stock, so by default only the loopback address
+ * is listened on; serving other machines requires an explicit bind address
+ */
+public class HttpApiServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 8080;
+    // 列表接口默认和最多返回的产品数 | Default and maximum number of products a list returns
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 1000;
+    private static final List<Class<? extends Product>> PRODUCT_TYPES = Arrays.asList(
+            AppleVisionPro.class, MacBook.class, iPad.class, iPhone.class, AppleWatch.class, AirPods.class);
+
+    private final ProductManager productManager;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * 只监听本机回环地址 | Listen on the loopback address only
+     *
+     * @param port 监听端口，0 表示任选空闲端口 | Port to listen on; 0 picks a free one
+     */
+    public HttpApiServer(ProductManager productManager, int port) throws IOException {
+        this(productManager, InetAddress.getLoopbackAddress(), port);
+    }
+
+    /**
+     * @param bindAddress 监听地址；通配地址会把库存接口开放给所有能连到本机的人 | Address to listen on; the wildcard address opens the stock endpoints to anyone who can reach this host
+     * @param port        监听端口，0 表示任选空闲端口 | Port to listen on; 0 picks a free one
+     */
+    public HttpApiServer(ProductManager productManager, InetAddress bindAddress, int port) throws IOException {
+        this.productManager = productManager;
+        // 响应头和响应体分两次写出，不关 Nagle 会与客户端的延迟确认叠加，每个请求卡 40ms；须在创建第一个服务器前设置 |
+        // Headers and body go out in separate writes, and with Nagle on they stall 40 ms per request against the client's delayed ACK; must be set before the first server is created
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        this.server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+        this.executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/products", this::handleProducts);
+        server.createContext("/stats", this::handleStats);
+    }
+
+    /**
+     * 每个请求一个虚拟线程（JDK 21 起）；更早的 JDK 没有虚拟线程，退回按核数定长的平台线程池 |
+     * One virtual thread per request (JDK 21+); older JDKs have no virtual threads, so fall back to a fixed platform pool sized by cores
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2, r -> {
+                Thread thread = new Thread(r, "applestore-http-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * 实际监听的端口 | Port actually listened on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * 实际监听的地址 | Address actually listened on
+     */
+    public InetAddress getAddress() {
+        return server.getAddress().getAddress();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handleProducts(HttpExchange exchange) throws IOException {
+        try {
+            // /products、/products/{id}、/products/{id}/reserve
+            String rest = exchange.getRequestURI().getRawPath().substring("/products".length());
+            if (!rest.isEmpty() && rest.charAt(0) != '/') {
+                sendError(exchange, 404, "Not found");
+                return;
+            }
+            String[] path = rest.split("/");
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String method = exchange.getRequestMethod();
+
+            if (path.length <= 1) {
+                if (!"GET".equals(method)) {
+                    sendError(exchange, 405, "Method not allowed");
+                    return;
+                }
+                sendProducts(exchange, query);
+            } else if (path.length == 2) {
+                if (!"GET".equals(method)) {
+                    sendError(exchange, 405, "Method not allowed");
+                    return;
+                }
+                Product product = productManager.findById(decode(path[1]));
+                if (product == null) {
+                    sendError(exchange, 404, "Product not found");
+                    return;
+                }
+                StringBuilder json = new StringBuilder(256);
+                appendProduct(json, product);
+                send(exchange, 200, json);
+            } else if (path.length == 3 && ("reserve".equals(path[2]) || "release".equals(path[2]))) {
+                if (!"POST".equals(method)) {
+                    sendError(exchange, 405, "Method not allowed");
+                    return;
+                }
+                adjustStock(exchange, decode(path[1]), "reserve".equals(path[2]), query);
+            } else {
+                sendError(exchange, 404, "Not found");
+            }
+        } catch (IllegalArgumentException e) {
+            // 含 NumberFormatException | Includes NumberFormatException
+            sendError(exchange, 400, e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void sendProducts(HttpExchange exchange, Map<String, String> query) throws IOException {
+        List<ProductQuery.Condition> conditions = new ArrayList<>();
+        String keyword = query.get("q");
+        if (keyword != null && !keyword.trim().isEmpty()) {
+            conditions.add(ProductQuery.text(keyword));
+        }
+        String color = query.get("color");
+        if (color != null && !color.trim().isEmpty()) {
+            conditions.add(ProductQuery.color(color));
+        }
+        if (query.containsKey("minPrice") || query.containsKey("maxPrice")) {
+            double min = Double.parseDouble(query.getOrDefault("minPrice", "0"));
+            double max = query.containsKey("maxPrice") ? Double.parseDouble(query.get("maxPrice")) : Double.MAX_VALUE;
+            if (!(min <= max)) {
+                // 与 filterByPrice 一致：空区间没有结果 | Consistent with filterByPrice: an empty range has no results
+                sendList(exchange, new ArrayList<>(), 0);
+                return;
+            }
+            conditions.add(ProductQuery.priceBetween(min, max));
+        }
+        if (query.containsKey("type")) {
+            conditions.add(ProductQuery.type(parseType(query.get("type"))));
+        }
+        if (query.containsKey("storage")) {
+            conditions.add(ProductQuery.storage(Integer.parseInt(query.get("storage"))));
+        }
+        if (query.containsKey("chip")) {
+            conditions.add(ProductQuery.chip(query.get("chip")));
+        }
+        if (query.containsKey("cellular")) {
+            conditions.add(ProductQuery.cellular(parseBoolean(query.get("cellular"))));
+        }
+        String sort = query.get("sort");
+        if (sort != null && !sort.equals("price") && !sort.equals("-price") && !sort.equals("name")) {
+            throw new IllegalArgumentException("sort must be price, -price or name");
+        }
+        int limit = Math.min(MAX_LIMIT, Integer.parseInt(query.getOrDefault("limit", String.valueOf(DEFAULT_LIMIT))));
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative");
+        }
+        if (conditions.isEmpty() && sort == null && limit > 0) {
+            sendPage(exchange, productManager.getPage(query.get("cursor"), limit));
+            return;
+        }
+        if (query.containsKey("cursor")) {
+            throw new IllegalArgumentException("cursor only applies to unfiltered, unsorted listings");
+        }
+
+        // 条件组合成一个查询，由规划器选择索引；不加数量上限，total 要给出全部匹配数 |
+        // Conditions combine into one query and the planner picks the index; no limit is set because total reports every match
+        ProductQuery productQuery = conditions.isEmpty() ? ProductQuery.all()
+                : ProductQuery.where(ProductQuery.and(conditions.toArray(new ProductQuery.Condition[0])));
+        if (sort != null) {
+            productQuery = productQuery.sortBy(sort.equals("name") ? ProductQuery.Sort.NAME
+                    : sort.startsWith("-") ? ProductQuery.Sort.PRICE_DESCENDING : ProductQuery.Sort.PRICE_ASCENDING);
+        }
+        sendList(exchange, productManager.query(productQuery), limit);
+    }
+
+    private void sendList(HttpExchange exchange, List<Product> products, int limit) throws IOException {
+        int count = Math.min(limit, products.size());
+        StringBuilder json = new StringBuilder(64 + count * 160);
+        json.append("{\"total\":").append(products.size()).append(",\"products\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendProduct(json, products.get(i));
+        }
+        json.append("]}");
+        send(exchange, 200, json);
+    }
+
+    /**
+     * 按类名（不区分大小写）解析产品类型 | Parse a product type by class name (case-insensitive)
+     */
+    private static Class<? extends Product> parseType(String name) {
+        for (Class<? extends Product> type : PRODUCT_TYPES) {
+            if (type.getSimpleName().equalsIgnoreCase(name)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("unknown type: " + name);
+    }
+
+    private static boolean parseBoolean(String value) {
+        if ("true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value)) {
+            return Boolean.parseBoolean(value);
+        }
+        throw new IllegalArgumentException("cellular must be true or false");
+    }
+
+    /**
+     * 不带条件的列表按游标分页，只复制一页；next 为下一页的游标 | Unfiltered listings page by cursor, copying one page only; next is the next page's cursor
+     */
+    private void sendPage(HttpExchange exchange, ProductPage page) throws IOException {
+        List<Product> products = page.getProducts();
+        StringBuilder json = new StringBuilder(64 + products.size() * 160);
+        json.append("{\"total\":").append(productManager.getProductCount()).append(",\"next\":");
+        appendString(json, page.getNextCursor());
+        json.append(",\"products\":[");
+        for (int i = 0; i < products.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendProduct(json, products.get(i));
+        }
+        json.append("]}");
+        send(exchange, 200, json);
+    }
+
+    private void adjustStock(HttpExchange exchange, String id, boolean reserve, Map<String, String> query) throws IOException {
+        // 长连接需要读完请求体 | The request body must be consumed for keep-alive
+        try (InputStream body = exchange.getRequestBody()) {
+            body.transferTo(OutputStream.nullOutputStream());
+        }
+        int quantity = Integer.parseInt(query.getOrDefault("qty", "1"));
+        Product product = productManager.findById(id);
+        if (product == null) {
+            sendError(exchange, 404, "Product not found");
+            return;
+        }
+        boolean done = reserve ? productManager.reserve(id, quantity) : productManager.release(id, quantity);
+        if (!done) {
+            sendError(exchange, 409, reserve ? "Insufficient stock" : "Stock overflow");
+            return;
+        }
+        StringBuilder json = new StringBuilder(64);
+        json.append("{\"id\":");
+        appendString(json, id);
+        json.append(",\"stock\":").append(product.getStock()).append('}');
+        send(exchange, 200, json);
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try {
+            StringBuilder json = new StringBuilder(128);
+            json.append("{\"count\":").append(productManager.getProductCount())
+                    .append(",\"totalStock\":").append(productManager.getTotalStock())
+                    .append(",\"averagePrice\":").append(productManager.getAveragePrice())
+                    .append(",\"inventoryValue\":").append(productManager.getInventoryValue())
+                    .append('}');
+            send(exchange, 200, json);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void appendProduct(StringBuilder json, Product product) {
+        json.append("{\"id\":");
+        appendString(json, product.getId());
+        json.append(",\"type\":");
+        appendString(json, product.getClass().getSimpleName());
+        json.append(",\"model\":");
+        appendString(json, product.getModel());
+        json.append(",\"price\":").append(product.getPrice());
+        json.append(",\"stock\":").append(product.getStock());
+        json.append(",\"color\":");
+        appendString(json, product.getColor());
+        json.append(",\"storage\":").append(product.getStorage());
+        json.append('}');
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    private static void send(HttpExchange exchange, int status, CharSequence json) throws IOException {
+        byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringBuilder json = new StringBuilder(64);
+        json.append("{\"error\":");
+        appendString(json, message);
+        json.append('}');
+        send(exchange, status, json);
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq < 0) {
+                query.put(decode(pair), "");
+            } else {
+                query.put(decode(pair.substring(0, eq)), decode(pair.substring(eq + 1)));
+            }
+        }
+        return query;
+    }
+
+    private static String decode(String text) {
+        return URLDecoder.decode(text, StandardCharsets.UTF_8);
+    }
+}
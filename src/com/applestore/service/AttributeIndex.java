@@ -0,0 +1,69 @@
+package com.applestore.service;
+
+import com.applestore.model.Product;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 属性索引 | Attribute Index
+ * 属性值 -> 产品的哈希索引，同值产品按加入顺序；不适用的产品（键为 null）不入索引 |
+ * Attribute value -> products hash index, same-value products in the order they were added; products the attribute does not apply to (null key) are left out
+ *
+ * 与价格索引一样，写操作须由调用方串行化，查询与写入交错时由调用方校验 |
+ * Like the price index, writes must be serialized by the caller, and queries racing a write are validated by the caller
+ */
+class AttributeIndex<K> {
+    private final Function<Product, K> key;
+    private final Map<K, Set<Product>> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * @param key 取产品的属性值，不适用时返回 null | Extracts a product's attribute value, or null when it does not apply
+     */
+    AttributeIndex(Function<Product, K> key) {
+        this.key = key;
+    }
+
+    void add(Product product) {
+        K value = key.apply(product);
+        if (value != null) {
+            buckets.computeIfAbsent(value, k -> new LinkedHashSet<>()).add(product);
+        }
+    }
+
+    /**
+     * 移出索引（须在字段修改前调用） | Remove from index (must be called before the field changes)
+     */
+    void remove(Product product) {
+        K value = key.apply(product);
+        if (value == null) {
+            return;
+        }
+        Set<Product> bucket = buckets.get(value);
+        if (bucket != null && bucket.remove(product) && bucket.isEmpty()) {
+            buckets.remove(value);
+        }
+    }
+
+    void clear() {
+        buckets.clear();
+    }
+
+    /**
+     * 某个属性值的产品，没有时为空集 | Products with an attribute value, or an empty set if none
+     */
+    Set<Product> get(K value) {
+        return buckets.getOrDefault(value, Collections.emptySet());
+    }
+
+    /**
+     * 全部属性值及其产品 | Every attribute value with its products
+     */
+    Map<K, Set<Product>> buckets() {
+        return buckets;
+    }
+}
@@ -0,0 +1,326 @@
+package com.applestore.service;
+
+import com.applestore.model.Cart;
+import com.applestore.model.Product;
+import com.applestore.util.ColorPrinter;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 购物车库存保留服务 | Cart Hold Service
+ * 购物车可以把库存保留几分钟，到期自动归还 | Carts may hold stock for a few minutes, and it is returned automatically on expiry
+ *
+ * 到期由哈希时间轮驱动：每个保留按到期刻度放进对应槽位，每个刻度只处理一个槽位，不扫描全部保留，均摊 O(1) |
+ * Expiry is driven by a hashed timing wheel: each hold sits in the slot of its expiry tick and every tick visits one slot only,
+ * never scanning all holds, for O(1) amortized cost
+ * 新保留先进入无锁队列，时间轮只由计时线程访问；取消和认领只改状态，轮到该槽位时再丢弃 |
+ * New holds go through a lock-free queue so only the timer thread touches the wheel; cancel and claim just flip the state and
+ * the hold is dropped when its slot comes round
+ *
+ * 同一刻度到期的库存合并归还，只通知一次监听器 | Stock expiring on the same tick is returned together with a single listener notification
+ */
+public class CartHoldService implements AutoCloseable {
+    public static final long DEFAULT_TICK_MILLIS = 100;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private static final int ACTIVE = 0;
+    private static final int CLAIMED = 1;
+    private static final int CANCELLED = 2;
+    private static final int EXPIRED = 3;
+
+    private final ProductManager productManager;
+    private final long tickNanos;
+    private final long startNanos = System.nanoTime();
+    private final ScheduledThreadPoolExecutor timer;
+    private final Queue<Hold> incoming = new ConcurrentLinkedQueue<>();
+    private final AtomicLong holdSequence = new AtomicLong();
+
+    // 以下字段只由计时线程访问 | The fields below are only touched by the timer thread
+    private final List<Hold>[] wheel;
+    private final int mask;
+    private long processedTick = -1;
+
+    // 统计 | Metrics
+    private final AtomicInteger activeHolds = new AtomicInteger();
+    private final AtomicLong expiredHolds = new AtomicLong();
+    private volatile long expiryLatencyTotalNanos;
+    private volatile long maxExpiryLatencyNanos;
+
+    /**
+     * 一次库存保留 | One stock hold
+     */
+    public static final class Hold {
+        private final String id;
+        private final List<Product> products;
+        private final List<Integer> quantities;
+        private final long deadlineNanos;
+        private final long deadlineTick;
+        private final AtomicInteger state = new AtomicInteger(ACTIVE);
+
+        private Hold(String id, List<Product> products, List<Integer> quantities, long deadlineNanos, long deadlineTick) {
+            this.id = id;
+            this.products = products;
+            this.quantities = quantities;
+            this.deadlineNanos = deadlineNanos;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * 产品ID -> 保留数量 | Product ID -> held quantity
+         */
+        public Map<String, Integer> getItems() {
+            Map<String, Integer> items = new LinkedHashMap<>();
+            for (int i = 0; i < products.size(); i++) {
+                items.put(products.get(i).getId(), quantities.get(i));
+            }
+            return items;
+        }
+
+        /**
+         * 仍在保留中（未到期、未取消、未认领） | Still held (not expired, cancelled or claimed)
+         */
+        public boolean isActive() {
+            return state.get() == ACTIVE;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+    }
+
+    public CartHoldService(ProductManager productManager) {
+        this(productManager, DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * @param tickMillis 时间轮刻度，即到期精度 | Wheel tick, i.e. the expiry resolution
+     * @param wheelSize  槽位数，取整为 2 的幂；超过一圈的保留在槽位里多等几圈 | Number of slots, rounded up to a power of two; holds longer than one turn wait extra rounds in their slot
+     */
+    public CartHoldService(ProductManager productManager, long tickMillis, int wheelSize) {
+        this.productManager = productManager;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+        int slots = Integer.highestOneBit(Math.max(2, wheelSize) * 2 - 1);
+        @SuppressWarnings("unchecked")
+        List<Hold>[] wheel = (List<Hold>[]) new List<?>[slots];
+        this.wheel = wheel;
+        for (int i = 0; i < slots; i++) {
+            wheel[i] = new ArrayList<>();
+        }
+        this.mask = slots - 1;
+
+        this.timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "applestore-hold-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long tick = Math.max(1, tickMillis);
+        timer.scheduleAtFixedRate(this::advance, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 保留购物车中所有产品的库存 | Hold stock for every product in the cart
+     *
+     * @param ttlMillis 保留时长 | How long to hold
+     * @return 保留；有产品不存在或库存不足时返回 null，库存不变 | The hold, or null with stock unchanged if a product is missing or short of stock
+     */
+    public Hold hold(Cart cart, long ttlMillis) {
+        if (cart == null || cart.isEmpty()) {
+            throw new IllegalArgumentException("购物车为空 | Cart is empty");
+        }
+        if (timer.isShutdown()) {
+            throw new IllegalStateException("保留服务已关闭 | Hold service is closed");
+        }
+        List<Product> reserved = productManager.reserveAllQuietly(cart.getItems());
+        if (reserved == null) {
+            return null;
+        }
+        publish(reserved);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, ttlMillis));
+        // 向上取整，不会早于到期时间被处理 | Rounded up so a hold is never processed before its deadline
+        long deadlineTick = Math.max(0, (deadline - startNanos + tickNanos - 1) / tickNanos);
+        Hold hold = new Hold("H" + holdSequence.incrementAndGet(), reserved,
+                new ArrayList<>(cart.getItems().values()), deadline, deadlineTick);
+        activeHolds.incrementAndGet();
+        incoming.add(hold);
+        if (timer.isShutdown()) {
+            // 与 close 交错：保留可能错过了最后的清理 | Raced with close: the hold may have missed the final sweep
+            cancel(hold);
+            throw new IllegalStateException("保留服务已关闭 | Hold service is closed");
+        }
+        return hold;
+    }
+
+    /**
+     * 取消保留并立即归还库存 | Cancel a hold and return its stock right away
+     *
+     * @return 保留已不在进行中（已到期、取消或认领）时返回 false | false if the hold is no longer active (expired, cancelled or claimed)
+     */
+    public boolean cancel(Hold hold) {
+        if (!hold.state.compareAndSet(ACTIVE, CANCELLED)) {
+            return false;
+        }
+        activeHolds.decrementAndGet();
+        productManager.releaseAllQuietly(hold.products, hold.quantities);
+        publish(hold.products);
+        return true;
+    }
+
+    /**
+     * 认领保留（如已付款）：库存不再归还 | Claim a hold (e.g. paid for): its stock is kept rather than returned
+     *
+     * @return 保留已不在进行中时返回 false，此时库存可能已归还 | false if the hold is no longer active, in which case the stock may already be back
+     */
+    public boolean claim(Hold hold) {
+        if (!hold.state.compareAndSet(ACTIVE, CLAIMED)) {
+            return false;
+        }
+        activeHolds.decrementAndGet();
+        return true;
+    }
+
+    /**
+     * 进行中的保留数 | Number of active holds
+     */
+    public int getActiveHolds() {
+        return activeHolds.get();
+    }
+
+    /**
+     * 累计到期的保留数 | Total number of holds that expired
+     */
+    public long getExpiredHolds() {
+        return expiredHolds.get();
+    }
+
+    /**
+     * 平均到期延迟（到期时间到实际归还之间，毫秒） | Mean expiry latency (from deadline to actual return, in milliseconds)
+     */
+    public double getAverageExpiryLatencyMillis() {
+        long expired = expiredHolds.get();
+        return expired == 0 ? 0 : expiryLatencyTotalNanos / 1e6 / expired;
+    }
+
+    /**
+     * 最大到期延迟（毫秒） | Maximum expiry latency (milliseconds)
+     */
+    public double getMaxExpiryLatencyMillis() {
+        return maxExpiryLatencyNanos / 1e6;
+    }
+
+    /**
+     * 计时线程：补处理到当前时刻为止的所有刻度，再合并归还到期的库存 |
+     * Timer thread: process every tick up to now, then return the expired stock in one batch
+     */
+    private void advance() {
+        long currentTick = (System.nanoTime() - startNanos) / tickNanos;
+        List<Hold> expired = new ArrayList<>();
+        while (processedTick < currentTick) {
+            long tick = ++processedTick;
+            for (Hold hold; (hold = incoming.poll()) != null; ) {
+                if (hold.deadlineTick <= tick) {
+                    expire(hold, expired);
+                } else {
+                    wheel[(int) (hold.deadlineTick & mask)].add(hold);
+                }
+            }
+
+            // 原地压缩槽位：丢弃已结束的，到期的取出，未到的留待下一圈 | Compact the slot in place: drop finished holds, take expired ones, keep the rest for a later round
+            List<Hold> slot = wheel[(int) (tick & mask)];
+            int kept = 0;
+            for (int i = 0; i < slot.size(); i++) {
+                Hold hold = slot.get(i);
+                if (hold.state.get() != ACTIVE) {
+                    continue;
+                }
+                if (hold.deadlineTick <= tick) {
+                    expire(hold, expired);
+                } else {
+                    slot.set(kept++, hold);
+                }
+            }
+            slot.subList(kept, slot.size()).clear();
+        }
+        if (!expired.isEmpty()) {
+            releaseExpired(expired);
+        }
+    }
+
+    private void expire(Hold hold, List<Hold> expired) {
+        if (hold.state.compareAndSet(ACTIVE, EXPIRED)) {
+            expired.add(hold);
+        }
+    }
+
+    /**
+     * 按产品合并到期数量后一次归还，并记录延迟 | Merge expired quantities per product, return them at once, and record latency
+     */
+    private void releaseExpired(List<Hold> expired) {
+        Map<Product, Integer> merged = new IdentityHashMap<>();
+        for (Hold hold : expired) {
+            for (int i = 0; i < hold.products.size(); i++) {
+                merged.merge(hold.products.get(i), hold.quantities.get(i), Integer::sum);
+            }
+        }
+        List<Product> products = new ArrayList<>(merged.keySet());
+        productManager.releaseAllQuietly(products, merged.values());
+        publish(products);
+
+        long now = System.nanoTime();
+        long total = expiryLatencyTotalNanos;
+        long max = maxExpiryLatencyNanos;
+        for (Hold hold : expired) {
+            long latency = Math.max(0, now - hold.deadlineNanos);
+            total += latency;
+            max = Math.max(max, latency);
+        }
+        expiryLatencyTotalNanos = total;
+        maxExpiryLatencyNanos = max;
+        activeHolds.addAndGet(-expired.size());
+        expiredHolds.addAndGet(expired.size());
+    }
+
+    /**
+     * 通知库存变更；监听器的异常只报告，不让调用方丢掉已预留的库存，也不让计时线程停止 |
+     * Notify the stock changes; a listener failure is only reported, so callers never lose stock already reserved and the timer keeps running
+     */
+    private void publish(List<Product> products) {
+        try {
+            productManager.publishStockAdjusted(products);
+        } catch (RuntimeException e) {
+            ColorPrinter.printError("通知库存变更失败: " + e.getMessage() + " | Failed to notify stock changes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 停止计时并归还所有仍在保留的库存 | Stop the timer and return the stock of every hold still active
+     */
+    @Override
+    public void close() {
+        timer.shutdown();
+        try {
+            timer.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<Hold> remaining = new ArrayList<>(incoming);
+        incoming.clear();
+        for (List<Hold> slot : wheel) {
+            remaining.addAll(slot);
+            slot.clear();
+        }
+        for (Hold hold : remaining) {
+            cancel(hold);
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package com.applestore.service;
+
+import com.applestore.model.*;
+import com.applestore.util.ColorPrinter;
+import com.applestore.util.ProductCodec;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 目录生成器 | Catalog Generator
+ * 按种子确定地生成大规模的逼真目录，用于负载和规模测试：六类产品、真实的产品线与起售价、按容量档位加价、各产品线自己的配色、偏向小容量的档位分布、
+ * 长尾的库存（少数售罄）以及少量降价 |
+ * Deterministically generates large realistic catalogs from a seed for load and scale testing: six product types with real product
+ * lines and starting prices, per-tier storage surcharges, each line's own colors, tier choices skewed toward small capacities,
+ * long-tailed stock (a few sold out) and occasional markdowns
+ *
+ * 按固定大小的块并行生成，每块用 (种子, 块号) 派生的随机数，结果与线程数和调度无关；块按顺序交给调用方，在途块数有上限，
+ * 直接流入 ProductManager 或数据文件，内存不随产品数增长 |
+ * Generates fixed-size chunks in parallel, each from a random stream derived from (seed, chunk number), so the result does not depend
+ * on threads or scheduling; chunks reach the caller in order with a bounded number in flight, streaming straight into a ProductManager
+ * or a data file so memory does not grow with the product count
+ *
+ * ID 是下标经 32 位双射打散后的 8 位十六进制，同一种子下互不重复，且可被 ProductCodec 压缩 |
+ * IDs are the index scrambled by a 32-bit bijection, as 8 hex digits: never repeated under one seed, and packable by ProductCodec
+ */
+public final class CatalogGenerator {
+    public static final int CHUNK_SIZE = 16_384;
+
+    // 类型占比（累计权重） | Type mix (cumulative weights)
+    private static final int[] TYPE_WEIGHTS = cumulative(3, 12, 15, 35, 15, 20);
+    // 容量档位的选择偏向低档 | Storage tier choice skewed toward the lower tiers
+    private static final int[] TIER_WEIGHTS = cumulative(45, 33, 15, 7);
+    private static final double SOLD_OUT_RATE = 0.06;
+    private static final double MARKDOWN_RATE = 0.1;
+    private static final double MEAN_STOCK = 40;
+    private static final int MAX_STOCK = 500;
+    private static final char[] PART_CHARS = "ABCDEFGHJKLMNPQRSTUVWXYZ0123456789".toCharArray();
+
+    private static final String[] VISION_PRO_COLORS = {"深空灰"};
+    private static final String[] MAC_LINES = {"MacBook Air M2 13英寸", "MacBook Air M3 13英寸", "MacBook Air M3 15英寸",
+            "MacBook Pro M3 14英寸", "MacBook Pro M3 Pro 14英寸", "MacBook Pro M3 Max 16英寸"};
+    private static final double[] MAC_PRICES = {7999, 8999, 10499, 12999, 14999, 24999};
+    private static final String[] MAC_SCREENS = {"13.6英寸", "13.6英寸", "15.3英寸", "14.2英寸", "14.2英寸", "16.2英寸"};
+    private static final String[] MAC_CHIPS = {"M2", "M3", "M3", "M3", "M3 Pro", "M3 Max"};
+    private static final String[] MAC_COLORS = {"午夜色", "星光色", "银色", "深空灰色", "深空黑色"};
+    private static final String[] IPAD_LINES = {"iPad (第10代)", "iPad Air (第5代)", "iPad mini (第6代)", "iPad Pro 11英寸", "iPad Pro 12.9英寸"};
+    private static final double[] IPAD_PRICES = {3599, 4399, 3799, 6799, 9299};
+    private static final String[] IPAD_SCREENS = {"10.9英寸", "10.9英寸", "8.3英寸", "11英寸", "12.9英寸"};
+    private static final String[] IPAD_COLORS = {"深空灰", "银色", "蓝色", "粉色", "紫色", "星光色"};
+    private static final String[] IPHONE_LINES = {"iPhone 14", "iPhone 15", "iPhone 15 Plus", "iPhone 15 Pro", "iPhone 15 Pro Max"};
+    private static final double[] IPHONE_PRICES = {5199, 5999, 6999, 7999, 9999};
+    private static final String[] IPHONE_SCREENS = {"6.1英寸", "6.1英寸", "6.7英寸", "6.1英寸", "6.7英寸"};
+    private static final String[] IPHONE_COLORS = {"黑色", "蓝色", "绿色", "黄色", "粉色"};
+    private static final String[] IPHONE_PRO_COLORS = {"原色钛金属", "蓝色钛金属", "白色钛金属", "黑色钛金属"};
+    private static final String[] WATCH_LINES = {"Apple Watch SE (第2代)", "Apple Watch Series 9", "Apple Watch Ultra 2"};
+    private static final double[] WATCH_PRICES = {1999, 2999, 6499};
+    private static final String[][] WATCH_CASES = {{"40mm", "44mm"}, {"41mm", "45mm"}, {"49mm"}};
+    private static final String[] WATCH_MATERIALS = {"铝合金", "铝金属", "钛金属"};
+    private static final String[] WATCH_COLORS = {"午夜色", "星光色", "银色", "粉砂色", "红色"};
+    private static final String[] AIRPODS_LINES = {"AirPods (第2代)", "AirPods (第3代)", "AirPods Pro (第2代)", "AirPods Max"};
+    private static final double[] AIRPODS_PRICES = {999, 1399, 1899, 4399};
+    private static final String[] AIRPODS_NOISE = {"无", "自适应均衡", "主动降噪", "主动降噪"};
+    private static final int[] AIRPODS_BATTERY = {24, 30, 30, 20};
+    private static final String[] AIRPODS_COLORS = {"白色", "白色", "白色", "银色"};
+
+    private final long seed;
+
+    public CatalogGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * 生成 count 个产品，按块批量加入管理器 | Generate count products and add them to the manager chunk by chunk
+     *
+     * @return 实际加入的产品数（与已有产品 ID 重复的被跳过） | Products actually added (ones whose ID clashes with an existing product are skipped)
+     */
+    public int generateInto(ProductManager productManager, int count) {
+        int added = 0;
+        try (Chunks chunks = new Chunks(count)) {
+            while (chunks.hasNext()) {
+                added += productManager.addProducts(Arrays.asList(chunks.next()));
+            }
+        }
+        return added;
+    }
+
+    /**
+     * 以 ProductCodec 目录格式写出 count 个产品，FileManager.loadProducts 可直接读取；不关闭输出流 |
+     * Write count products in the ProductCodec catalog format that FileManager.loadProducts reads directly; the stream is not closed
+     */
+    public void writeTo(OutputStream out, int count) throws IOException {
+        try (Chunks chunks = new Chunks(count)) {
+            ProductCodec.writeCatalog(out, new AbstractCollection<Product>() {
+                @Override
+                public Iterator<Product> iterator() {
+                    return new Iterator<Product>() {
+                        private Product[] chunk = new Product[0];
+                        private int position;
+
+                        @Override
+                        public boolean hasNext() {
+                            return position < chunk.length || chunks.hasNext();
+                        }
+
+                        @Override
+                        public Product next() {
+                            if (position == chunk.length) {
+                                chunk = chunks.next();
+                                position = 0;
+                            }
+                            return chunk[position++];
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return count;
+                }
+            });
+        }
+    }
+
+    /**
+     * 生成第 chunk 块（从下标 from 起 length 个产品） | Generate chunk number chunk (length products starting at index from)
+     */
+    private Product[] generateChunk(int chunk, int from, int length) {
+        SplittableRandom random = new SplittableRandom(mix(seed + 0x9E3779B97F4A7C15L * (chunk + 1)));
+        Product[] products = new Product[length];
+        for (int i = 0; i < length; i++) {
+            Product product = generate(random);
+            product.setId(id(from + i));
+            products[i] = product;
+        }
+        return products;
+    }
+
+    private Product generate(SplittableRandom random) {
+        int tier = pick(random, TIER_WEIGHTS);
+        int stock = stock(random);
+        String part = partNumber(random);
+        switch (pick(random, TYPE_WEIGHTS)) {
+            case 0: {
+                int storage = 256 << Math.min(tier, 2);
+                return new AppleVisionPro("Apple Vision Pro " + storage + "GB " + part,
+                        price(random, 29999 + Math.min(tier, 2) * 2000), stock, VISION_PRO_COLORS[0], storage);
+            }
+            case 1: {
+                int line = random.nextInt(MAC_LINES.length);
+                int storage = 256 << tier;
+                return new MacBook(MAC_LINES[line] + " " + storage + "GB " + part, price(random, MAC_PRICES[line] + tier * 1500),
+                        stock, color(random, MAC_COLORS), storage, MAC_SCREENS[line], MAC_CHIPS[line]);
+            }
+            case 2: {
+                int line = random.nextInt(IPAD_LINES.length);
+                int storage = 64 << tier;
+                boolean cellular = random.nextInt(100) < 35;
+                return new iPad(IPAD_LINES[line] + " " + storage + "GB" + (cellular ? " 蜂窝网络 " : " ") + part,
+                        price(random, IPAD_PRICES[line] + tier * 1100 + (cellular ? 1000 : 0)), stock,
+                        color(random, IPAD_COLORS), storage, IPAD_SCREENS[line], cellular);
+            }
+            case 3: {
+                int line = random.nextInt(IPHONE_LINES.length);
+                int storage = 128 << tier;
+                boolean pro = line >= 3;
+                return new iPhone(IPHONE_LINES[line] + " " + storage + "GB " + part, price(random, IPHONE_PRICES[line] + tier * 1000),
+                        stock, color(random, pro ? IPHONE_PRO_COLORS : IPHONE_COLORS), storage, IPHONE_SCREENS[line], pro ? "Pro三摄" : "双摄像头");
+            }
+            case 4: {
+                int line = random.nextInt(WATCH_LINES.length);
+                String caseSize = WATCH_CASES[line][random.nextInt(WATCH_CASES[line].length)];
+                boolean cellular = line == 2 || random.nextInt(100) < 30;
+                return new AppleWatch(WATCH_LINES[line] + " " + caseSize + (cellular ? " 蜂窝网络 " : " ") + part,
+                        price(random, WATCH_PRICES[line] + (cellular && line < 2 ? 700 : 0)), stock,
+                        line == 2 ? "钛金属原色" : color(random, WATCH_COLORS), line == 0 ? 32 : 64, caseSize, WATCH_MATERIALS[line], cellular);
+            }
+            default: {
+                int line = random.nextInt(AIRPODS_LINES.length);
+                return new AirPods(AIRPODS_LINES[line] + " " + part, price(random, AIRPODS_PRICES[line]), stock,
+                        AIRPODS_COLORS[line], line == 3 ? 512 : 256, AIRPODS_NOISE[line], AIRPODS_BATTERY[line]);
+            }
+        }
+    }
+
+    /**
+     * 起售价加档位价，少数降价 100 的整数倍，保持以 99 结尾 | List price plus tier surcharge; a few are marked down by multiples of 100, keeping the 99 ending
+     */
+    private static double price(SplittableRandom random, double listPrice) {
+        if (random.nextDouble() < MARKDOWN_RATE) {
+            return listPrice - 100 * (1 + random.nextInt(Math.max(1, (int) (listPrice / 1000))));
+        }
+        return listPrice;
+    }
+
+    /**
+     * 少数售罄，其余按指数分布的长尾 | A few sold out, the rest long-tailed by an exponential distribution
+     */
+    private static int stock(SplittableRandom random) {
+        if (random.nextDouble() < SOLD_OUT_RATE) {
+            return 0;
+        }
+        return Math.min(MAX_STOCK, 1 + (int) (-Math.log(1 - random.nextDouble()) * MEAN_STOCK));
+    }
+
+    /**
+     * 形如 MTUV3CH/A 的国行部件号 | A Chinese-market part number like MTUV3CH/A
+     */
+    private static String partNumber(SplittableRandom random) {
+        char[] part = {'M', 0, 0, 0, 0, 'C', 'H', '/', 'A'};
+        for (int i = 1; i <= 4; i++) {
+            part[i] = PART_CHARS[random.nextInt(PART_CHARS.length)];
+        }
+        return new String(part);
+    }
+
+    private static String color(SplittableRandom random, String[] colors) {
+        return colors[random.nextInt(colors.length)];
+    }
+
+    private static int pick(SplittableRandom random, int[] cumulative) {
+        int value = random.nextInt(cumulative[cumulative.length - 1]);
+        int i = 0;
+        while (value >= cumulative[i]) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int[] cumulative(int... weights) {
+        int[] cumulative = new int[weights.length];
+        int sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += weights[i];
+            cumulative[i] = sum;
+        }
+        return cumulative;
+    }
+
+    /**
+     * 下标经种子偏移后做 32 位双射（异或移位与奇数乘法都可逆），2^32 以内不会重复 |
+     * The seed-offset index goes through a 32-bit bijection (xor-shifts and odd multiplications are invertible), so it never repeats within 2^32
+     */
+    private String id(int index) {
+        int x = index + (int) mix(seed);
+        x ^= x >>> 16;
+        x *= 0x7FEB352D;
+        x ^= x >>> 15;
+        x *= 0x846CA68B;
+        x ^= x >>> 16;
+        String hex = Integer.toHexString(x);
+        return "00000000".substring(hex.length()) + hex;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * 按顺序交出各块；后面的块在工作线程上提前生成，在途块数有上限 | Hands out the chunks in order; later chunks are generated ahead on worker
+     * threads with a bounded number in flight
+     */
+    private final class Chunks implements Iterator<Product[]>, AutoCloseable {
+        private final int count;
+        private final ExecutorService workers;
+        private final int maxInFlight;
+        private final Deque<Future<Product[]>> inFlight = new ArrayDeque<>();
+        private int nextChunk;
+
+        Chunks(int count) {
+            if (count < 0) {
+                throw new IllegalArgumentException("产品数不能为负数 | Product count cannot be negative");
+            }
+            this.count = count;
+            int threads = Runtime.getRuntime().availableProcessors();
+            this.maxInFlight = threads * 2;
+            this.workers = Executors.newFixedThreadPool(threads, r -> {
+                Thread thread = new Thread(r, "applestore-catalog-generator");
+                thread.setDaemon(true);
+                return thread;
+            });
+            fill();
+        }
+
+        private void fill() {
+            while (inFlight.size() < maxInFlight && (long) nextChunk * CHUNK_SIZE < count) {
+                int chunk = nextChunk++;
+                int from = chunk * CHUNK_SIZE;
+                int length = Math.min(CHUNK_SIZE, count - from);
+                inFlight.add(workers.submit(() -> generateChunk(chunk, from, length)));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !inFlight.isEmpty();
+        }
+
+        @Override
+        public Product[] next() {
+            Future<Product[]> head = inFlight.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            try {
+                Product[] chunk = head.get();
+                fill();
+                return chunk;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("生成被中断 | Generation interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("生成失败 | Generation failed", e.getCause());
+            }
+        }
+
+        @Override
+        public void close() {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * 生成数据文件 | Generate a data file
+     * 用法 | Usage: java -cp out com.applestore.service.CatalogGenerator 产品数 count [种子 seed] [文件 file，默认 data/products.dat]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            ColorPrinter.printError("用法: CatalogGenerator 产品数 [种子] [文件] | Usage: CatalogGenerator count [seed] [file]");
+            return;
+        }
+        int count = Integer.parseInt(args[0]);
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+        String file = args.length > 2 ? args[2] : "data/products.dat";
+        long start = System.nanoTime();
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16)) {
+            new CatalogGenerator(seed).writeTo(out, count);
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        ColorPrinter.printSuccess("已生成 " + count + " 个产品到 " + file + "，用时 " + millis + "ms | Generated " + count + " products into " + file + " in " + millis + "ms");
+    }
+}
@@ -0,0 +1,63 @@
+package com.applestore.service;
+
+import com.applestore.model.Product;
+
+import java.util.List;
+
+/**
+ * 目录变更监听器 | Catalog Listener
+ * 在 ProductManager 的每次修改完成后收到通知，用于持久化等 | Notified after every ProductManager mutation, e.g. for persistence
+ *
+ * 通常在写锁下调用；库存预留（adjustStock）不加锁，其 stockAdjusted 可能从多个线程并发到达 |
+ * Usually called under the write lock; stock reservations (adjustStock) take no lock, so their stockAdjusted may arrive concurrently from several threads
+ * 监听器持有自己的锁时不能再等待 ProductManager 的锁（包括 getAllProducts 等读操作），否则会与持有写锁的通知方死锁 |
+ * A listener must never wait for ProductManager's lock (reads such as getAllProducts included) while holding its own lock,
+ * or it deadlocks with a notifier that holds the write lock
+ */
+public interface CatalogListener {
+
+    /**
+     * 产品已添加 | Product added
+     */
+    default void productAdded(Product product) {
+    }
+
+    /**
+     * 一批产品已添加（addProducts），默认逐个转发 | A batch of products added (addProducts), forwarded one by one by default
+     */
+    default void productsAdded(List<Product> products) {
+        for (Product product : products) {
+            productAdded(product);
+        }
+    }
+
+    /**
+     * 产品已更新（包括受管产品的字段修改） | Product updated (including field changes on a managed product)
+     */
+    default void productUpdated(Product product) {
+    }
+
+    /**
+     * 一批受管产品的库存已原子增减（预留、归还、结账），默认逐个转发给 productUpdated |
+     * The stock of some managed products was adjusted atomically (reserve, release, checkout); forwarded to productUpdated one by one by default
+     * 不持有写锁，期间产品可能已被删除；只应记录库存，不能据此重新加入产品 |
+     * Not called under the write lock, so a product may have been deleted meanwhile; record the stock only, never re-add the product from it
+     */
+    default void stockAdjusted(List<Product> products) {
+        for (Product product : products) {
+            productUpdated(product);
+        }
+    }
+
+    /**
+     * 产品已删除 | Product removed
+     */
+    default void productRemoved(String id) {
+    }
+
+    /**
+     * 整个目录已被替换（setProducts） | Whole catalog replaced (setProducts)
+     */
+    default void catalogReplaced() {
+    }
+}
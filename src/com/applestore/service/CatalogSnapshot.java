@@ -0,0 +1,97 @@
+package com.applestore.service;
+
+import com.applestore.model.Product;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 目录快照 | Catalog Snapshot
+ * 创建时不复制目录，按插入顺序逐块读出创建那一刻的产品状态，期间的修改互不影响 |
+ * Created without copying the catalog; iterates the products as they were at creation, block by block, unaffected by later edits
+ *
+ * 迭代得到的是脱离管理器的副本，修改它们不会影响目录 | Iteration yields detached copies; changing them does not touch the catalog
+ * 用完须关闭，否则管理器会一直为它保留修改前的状态 | Must be closed, otherwise the manager keeps pre-change states around for it
+ */
+public final class CatalogSnapshot implements Iterable<Product>, AutoCloseable {
+    static final int BLOCK_SIZE = 256;
+
+    private final ProductManager owner;
+    private final ProductVector.Shared shared;
+    private final long version;
+    private final int size;
+    private volatile boolean closed;
+
+    CatalogSnapshot(ProductManager owner, ProductVector.Shared shared, long version, int size) {
+        this.owner = owner;
+        this.shared = shared;
+        this.version = version;
+        this.size = size;
+    }
+
+    /**
+     * 快照中的产品数 | Number of products in the snapshot
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 创建快照时的目录版本 | Catalog version the snapshot was taken at
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    ProductVector.Shared shared() {
+        return shared;
+    }
+
+    @Override
+    public Iterator<Product> iterator() {
+        return new Iterator<Product>() {
+            private final Product[] block = new Product[BLOCK_SIZE];
+            private int position;
+            private int blockSize;
+            private int blockIndex;
+
+            @Override
+            public boolean hasNext() {
+                if (blockIndex < blockSize) {
+                    return true;
+                }
+                if (position >= shared.size) {
+                    return false;
+                }
+                if (closed) {
+                    throw new IllegalStateException("快照已关闭 | Snapshot is closed");
+                }
+                Arrays.fill(block, null);
+                position = owner.resolve(CatalogSnapshot.this, position, block);
+                blockIndex = 0;
+                blockSize = 0;
+                while (blockSize < block.length && block[blockSize] != null) {
+                    blockSize++;
+                }
+                return blockSize > 0;
+            }
+
+            @Override
+            public Product next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return block[blockIndex++];
+            }
+        };
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            owner.release(this);
+        }
+    }
+}
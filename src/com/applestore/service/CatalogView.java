@@ -0,0 +1,100 @@
+package com.applestore.service;
+
+import com.applestore.model.Product;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+
+/**
+ * 目录只读视图 | Read-only Catalog View
+ * 直接引用 ProductVector 交出的数组，创建时不复制；之后的写入按块复制，视图内容保持不变 |
+ * References the arrays handed out by ProductVector without copying them; later writes copy the touched chunk, so the view never changes
+ *
+ * 元素是目录中的产品本身（不是副本），与 getAllProducts 以前返回的列表相同；列表本身不可修改 |
+ * Elements are the catalog's products themselves (not copies), as in the lists getAllProducts used to return; the list itself is unmodifiable
+ * 删除留下的空位在遍历时跳过；按下标访问在有空位时首次建立下标表 |
+ * Holes left by removals are skipped while iterating; indexed access builds a position table the first time when holes exist
+ */
+final class CatalogView extends AbstractList<Product> implements RandomAccess {
+    private final ProductVector.Shared shared;
+    private final int size;
+    // 第 i 个产品所在的槽位，有空位时按需建立 | Slot of the i-th product, built on demand when holes exist
+    private volatile int[] positions;
+
+    CatalogView(ProductVector.Shared shared, int size) {
+        this.shared = shared;
+        this.size = size;
+    }
+
+    @Override
+    public Product get(int index) {
+        Objects.checkIndex(index, size);
+        if (size == shared.size) {
+            return shared.get(index);
+        }
+        int[] table = positions;
+        if (table == null) {
+            table = new int[size];
+            int count = 0;
+            for (int i = 0; i < shared.size; i++) {
+                if (shared.get(i) != null) {
+                    table[count++] = i;
+                }
+            }
+            positions = table;
+        }
+        return shared.get(table[index]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<Product> iterator() {
+        return new Iterator<Product>() {
+            private int position;
+            private Product next = advance();
+
+            private Product advance() {
+                while (position < shared.size) {
+                    Product product = shared.get(position++);
+                    if (product != null) {
+                        return product;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Product next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Product product = next;
+                next = advance();
+                return product;
+            }
+        };
+    }
+
+    @Override
+    public void forEach(Consumer<? super Product> action) {
+        for (int i = 0; i < shared.size; i++) {
+            Product product = shared.get(i);
+            if (product != null) {
+                action.accept(product);
+            }
+        }
+    }
+}
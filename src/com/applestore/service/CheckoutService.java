@@ -0,0 +1,243 @@
+package com.applestore.service;
+
+import com.applestore.model.Cart;
+import com.applestore.model.Order;
+import com.applestore.model.OrderLine;
+import com.applestore.model.Product;
+import com.applestore.util.ColorPrinter;
+import com.applestore.util.CsvWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 结账服务 | Checkout Service
+ * 调用线程校验购物车并原子预留所有行的库存，再把订单交给提交线程；提交线程把同时到达的一组订单写入订单日志，
+ * 整组只写入和刷盘一次，再合并通知目录监听器，然后唤醒各自的调用方 |
+ * The calling thread validates the cart and reserves stock for all lines atomically, then hands the order to the commit thread,
+ * which writes whatever orders arrived together to the order journal with one write and one sync, notifies catalog listeners
+ * once for the group, and wakes the callers
+ *
+ * 订单日志为 CSV，每个订单行一条记录：订单ID,时间戳,产品ID,型号,数量,单价 |
+ * The order journal is CSV with one record per order line: order ID,timestamp,product ID,model,quantity,unit price
+ */
+public class CheckoutService implements AutoCloseable {
+    public static final String DEFAULT_JOURNAL = "data/orders.csv";
+    // 一组最多提交的订单数 | Most orders committed in one group
+    private static final int MAX_GROUP_SIZE = 512;
+    private static final PendingOrder STOP = new PendingOrder(null, null);
+
+    private final ProductManager productManager;
+    private final CsvWriter journal;
+    private final FileChannel channel;
+    private final BlockingQueue<PendingOrder> queue = new LinkedBlockingQueue<>();
+    private final Thread committer;
+    // 以启动时刻为起点，重启后订单号仍递增 | Seeded from the start time so order IDs keep increasing across restarts
+    private final AtomicLong orderSequence = new AtomicLong(System.currentTimeMillis() * 1000);
+    private volatile long committedOrders;
+    private volatile long commitGroups;
+    private boolean closed;
+
+    /**
+     * 已预留库存、等待写入日志的订单 | An order with its stock reserved, waiting to be journaled
+     */
+    private static final class PendingOrder {
+        final Order order;
+        final List<Product> products;
+        final CompletableFuture<Boolean> committed = new CompletableFuture<>();
+
+        PendingOrder(Order order, List<Product> products) {
+            this.order = order;
+            this.products = products;
+        }
+    }
+
+    public CheckoutService(ProductManager productManager) throws IOException {
+        this(productManager, DEFAULT_JOURNAL);
+    }
+
+    /**
+     * @param journalPath 订单日志路径，追加写入 | Order journal path, appended to
+     */
+    public CheckoutService(ProductManager productManager, String journalPath) throws IOException {
+        this.productManager = productManager;
+        File file = new File(journalPath);
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.journal = new CsvWriter(channel);
+        this.committer = new Thread(this::runCommitter, "applestore-checkout-commit");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    /**
+     * 结账：原子预留购物车中所有产品的库存，订单写入日志后返回 |
+     * Check out: reserve stock for every product in the cart atomically, returning once the order is journaled
+     *
+     * @return 订单；有产品不存在、库存不足或日志写入失败时返回 null，库存不变 |
+     * The order, or null with stock unchanged if a product is missing, short of stock, or the journal write failed
+     */
+    public Order checkout(Cart cart) {
+        if (cart == null || cart.isEmpty()) {
+            throw new IllegalArgumentException("购物车为空 | Cart is empty");
+        }
+        Map<String, Integer> items = cart.getItems();
+        List<Product> reserved = productManager.reserveAllQuietly(items);
+        if (reserved == null) {
+            return null;
+        }
+
+        // 按预留时的价格成交 | Priced as of the reservation
+        List<OrderLine> lines = new ArrayList<>(reserved.size());
+        Iterator<Integer> quantities = items.values().iterator();
+        for (Product product : reserved) {
+            lines.add(new OrderLine(product.getId(), product.getModel(), quantities.next(), product.getPrice()));
+        }
+        Order order = new Order("O" + orderSequence.incrementAndGet(), System.currentTimeMillis(), lines);
+
+        PendingOrder pending = new PendingOrder(order, reserved);
+        synchronized (queue) {
+            if (closed) {
+                productManager.releaseAllQuietly(reserved, items.values());
+                throw new IllegalStateException("结账服务已关闭 | Checkout service is closed");
+            }
+            queue.add(pending);
+        }
+        return pending.committed.join() ? order : null;
+    }
+
+    /**
+     * 已提交的订单数 | Number of orders committed
+     */
+    public long getCommittedOrders() {
+        return committedOrders;
+    }
+
+    /**
+     * 提交的组数（日志写入次数），与订单数之比即平均组大小 | Number of groups committed (journal writes); orders divided by this is the mean group size
+     */
+    public long getCommitGroups() {
+        return commitGroups;
+    }
+
+    private void runCommitter() {
+        List<PendingOrder> group = new ArrayList<>(MAX_GROUP_SIZE);
+        while (true) {
+            try {
+                group.add(queue.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(group, MAX_GROUP_SIZE - 1);
+            // 关闭标记总是最后入队 | The stop marker is always enqueued last
+            boolean stop = group.get(group.size() - 1) == STOP;
+            if (stop) {
+                group.remove(group.size() - 1);
+            }
+            if (!group.isEmpty()) {
+                commit(group);
+            }
+            group.clear();
+            if (stop) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 整组写入并刷盘一次，再合并通知库存变更；写入失败时整组回滚 |
+     * Write and sync the whole group once, then notify the stock changes in one batch; roll the whole group back if the write fails
+     * 无论监听器是否抛出异常都会唤醒调用方，提交线程也不会因此退出 |
+     * Callers are woken whether or not a listener throws, and the commit thread does not die because of one
+     */
+    private void commit(List<PendingOrder> group) {
+        boolean written = false;
+        try {
+            try {
+                for (PendingOrder pending : group) {
+                    Order order = pending.order;
+                    for (OrderLine line : order.getLines()) {
+                        journal.field(order.getId())
+                                .field(order.getCreatedAt())
+                                .field(line.getProductId())
+                                .field(line.getModel())
+                                .field(line.getQuantity())
+                                .fieldCents(line.getUnitPrice())
+                                .endRecord();
+                    }
+                }
+                journal.flush();
+                channel.force(false);
+                written = true;
+            } catch (IOException | RuntimeException e) {
+                ColorPrinter.printError("写入订单日志失败: " + e.getMessage() + " | Failed to write order journal: " + e.getMessage());
+            }
+
+            if (written) {
+                committedOrders += group.size();
+                commitGroups++;
+                Set<Product> touched = new LinkedHashSet<>();
+                for (PendingOrder pending : group) {
+                    touched.addAll(pending.products);
+                }
+                try {
+                    productManager.publishStockAdjusted(new ArrayList<>(touched));
+                } catch (RuntimeException e) {
+                    // 订单已写入日志，照常成交 | The orders are journaled, so they still go through
+                    ColorPrinter.printError("通知库存变更失败: " + e.getMessage() + " | Failed to notify stock changes: " + e.getMessage());
+                }
+            } else {
+                for (PendingOrder pending : group) {
+                    List<Integer> quantities = new ArrayList<>(pending.products.size());
+                    for (OrderLine line : pending.order.getLines()) {
+                        quantities.add(line.getQuantity());
+                    }
+                    productManager.releaseAllQuietly(pending.products, quantities);
+                }
+            }
+        } finally {
+            for (PendingOrder pending : group) {
+                pending.committed.complete(written);
+            }
+        }
+    }
+
+    /**
+     * 提交已排队的订单后关闭日志 | Commit the queued orders, then close the journal
+     */
+    @Override
+    public void close() {
+        synchronized (queue) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.add(STOP);
+        }
+        boolean interrupted = false;
+        while (committer.isAlive()) {
+            try {
+                committer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            ColorPrinter.printError("关闭订单日志失败: " + e.getMessage() + " | Failed to close order journal: " + e.getMessage());
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package com.applestore.service;
+
+import com.applestore.model.Product;
+
+import java.util.*;
+
+/**
+ * N-gram 倒排索引 | N-gram Inverted Index
+ * 对名称、型号、颜色建立二元和三元切片，子串搜索变为倒排表求交再校验 |
+ * Indexes bigrams and trigrams of name, model and color so substring search becomes posting-list intersection plus verification
+ *
+ * 按 char 切片，中文（如 深空灰）与英文（如 MacBook Pro M3）一视同仁 | Slices by char, so Chinese (e.g. 深空灰) and English (e.g. MacBook Pro M3) are handled alike
+ *
+ * 每个产品占一个递增的槽位，倒排表是槽位差值的变长编码，每条约 1 字节，百万级目录也能放进内存 |
+ * Each product takes an increasing slot and posting lists hold varint slot deltas, about one byte per entry, so multi-million catalogs fit in memory
+ * 删除只清空槽位，失效条目在查询时跳过，死槽过多时整体重建 | Removal only clears the slot; stale entries are skipped by queries and the index is rebuilt once dead slots dominate
+ *
+ * 写操作须由调用方串行化；查询只把数组读进局部变量，与写入交错时可能得到错误结果或抛出异常，但总会结束，由调用方校验 |
+ * Writes must be serialized by the caller; queries read arrays into locals, so a racing write may yield wrong results or an exception but never a hang, and the caller validates
+ */
+class NGramIndex {
+    private static final int MIN_GRAM = 2;
+    private static final int MAX_GRAM = 3;
+    private static final int MIN_REBUILD_SLOTS = 1024;
+    // 倒排表比当前候选多这么多倍时不再求交，直接交给校验 | Lists this many times larger than the candidates are left to verification instead of intersected
+    private static final int MAX_INTERSECT_RATIO = 8;
+
+    private static final int INITIAL_TABLE_SIZE = 1 << 12;
+
+    // 切片（按字符打包成 long）-> 倒排表的开放寻址表，0 表示空位 | Open-addressing table of gram (chars packed into a long) -> posting list, 0 marks an empty cell
+    private long[] gramKeys = new long[INITIAL_TABLE_SIZE];
+    private Posting[] gramPostings = new Posting[INITIAL_TABLE_SIZE];
+    private int gramCount;
+    private final Map<Product, Integer> slotOf = new IdentityHashMap<>();
+    private Product[] slots = new Product[MIN_REBUILD_SLOTS];
+    private int slotCount;
+
+    /**
+     * 加入索引 | Add to index
+     */
+    void add(Product product) {
+        if (slotCount == slots.length) {
+            slots = Arrays.copyOf(slots, slots.length * 2);
+        }
+        int slot = slotCount++;
+        slots[slot] = product;
+        slotOf.put(product, slot);
+        addGrams(slot, product.getName());
+        addGrams(slot, product.getModel());
+        addGrams(slot, product.getColor());
+    }
+
+    /**
+     * 移出索引（须在字段修改前调用） | Remove from index (must be called before the fields change)
+     */
+    void remove(Product product) {
+        Integer slot = slotOf.remove(product);
+        if (slot == null) {
+            return;
+        }
+        slots[slot] = null;
+        if (slotCount - slotOf.size() > Math.max(MIN_REBUILD_SLOTS, slotOf.size())) {
+            rebuild();
+        }
+    }
+
+    void clear() {
+        gramKeys = new long[INITIAL_TABLE_SIZE];
+        gramPostings = new Posting[INITIAL_TABLE_SIZE];
+        gramCount = 0;
+        slotOf.clear();
+        slots = new Product[MIN_REBUILD_SLOTS];
+        slotCount = 0;
+    }
+
+    /**
+     * 按槽位顺序重新编号存活产品，丢弃失效条目 | Renumber live products in slot order and drop stale entries
+     */
+    private void rebuild() {
+        Product[] live = new Product[slotOf.size()];
+        int count = 0;
+        for (int i = 0; i < slotCount; i++) {
+            if (slots[i] != null) {
+                live[count++] = slots[i];
+            }
+        }
+        clear();
+        for (int i = 0; i < count; i++) {
+            add(live[i]);
+        }
+    }
+
+    /**
+     * 查找名称、型号或颜色包含关键词的产品 | Find products whose name, model or color contains the keyword
+     *
+     * @param lowerKeyword 已转小写的关键词 | Lower-cased keyword
+     * @param all          单字关键词无法用索引时回退扫描的全集 | Full set scanned when a single-char keyword cannot use the index
+     * @return 候选集为空时返回空列表 | Empty list when there are no candidates
+     */
+    List<Product> search(String lowerKeyword, Iterable<Product> all) {
+        int length = lowerKeyword.length();
+        if (length < MIN_GRAM) {
+            return verify(all, lowerKeyword);
+        }
+        if (length <= MAX_GRAM) {
+            // 关键词本身就是一个切片，倒排表即为精确结果 | The keyword is itself a gram, so its posting list is exact
+            Posting posting = find(pack(lowerKeyword, 0, length));
+            List<Product> result = new ArrayList<>();
+            if (posting != null) {
+                int[] decoded = posting.decode();
+                for (int slot : decoded) {
+                    if (slots[slot] != null) {
+                        result.add(slots[slot]);
+                    }
+                }
+            }
+            return result;
+        }
+
+        List<Posting> lists = new ArrayList<>();
+        for (int i = 0; i + MAX_GRAM <= length; i++) {
+            Posting posting = find(pack(lowerKeyword, i, MAX_GRAM));
+            if (posting == null) {
+                return new ArrayList<>();
+            }
+            lists.add(posting);
+        }
+        lists.sort(Comparator.comparingInt(p -> p.count));
+
+        int[] candidates = lists.get(0).decode();
+        int size = candidates.length;
+        for (int i = 1; i < lists.size() && size > 0; i++) {
+            Posting posting = lists.get(i);
+            if (posting.count / MAX_INTERSECT_RATIO > size) {
+                break;
+            }
+            size = posting.intersect(candidates, size);
+        }
+
+        List<Product> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            if (slots[candidates[i]] != null) {
+                result.add(slots[candidates[i]]);
+            }
+        }
+        // 三元切片分散在不同字段时会误命中，需要校验 | Grams may come from different fields, so verify
+        return verify(result, lowerKeyword);
+    }
+
+    /**
+     * search 会取出的候选数上限（倒排表含失效条目，只会偏大），用于查询规划；单字关键词无法用索引，返回 Integer.MAX_VALUE |
+     * Upper bound on the candidates search would take (posting lists include stale entries, so it can only overshoot), for query planning;
+     * single-char keywords cannot use the index and return Integer.MAX_VALUE
+     */
+    int estimate(String lowerKeyword) {
+        int length = lowerKeyword.length();
+        if (length < MIN_GRAM) {
+            return Integer.MAX_VALUE;
+        }
+        int gram = Math.min(length, MAX_GRAM);
+        int smallest = Integer.MAX_VALUE;
+        for (int i = 0; i + gram <= length; i++) {
+            Posting posting = find(pack(lowerKeyword, i, gram));
+            if (posting == null) {
+                return 0;
+            }
+            smallest = Math.min(smallest, posting.count);
+        }
+        return smallest;
+    }
+
+    private static List<Product> verify(Iterable<Product> candidates, String lowerKeyword) {
+        List<Product> result = new ArrayList<>();
+        for (Product p : candidates) {
+            if (contains(p.getName(), lowerKeyword) ||
+                    contains(p.getModel(), lowerKeyword) ||
+                    contains(p.getColor(), lowerKeyword)) {
+                result.add(p);
+            }
+        }
+        return result;
+    }
+
+    private static boolean contains(String field, String lowerKeyword) {
+        return field != null && field.toLowerCase().contains(lowerKeyword);
+    }
+
+    private void addGrams(int slot, String field) {
+        if (field == null) {
+            return;
+        }
+        String text = field.toLowerCase();
+        for (int n = MIN_GRAM; n <= MAX_GRAM; n++) {
+            for (int i = 0; i + n <= text.length(); i++) {
+                findOrCreate(pack(text, i, n)).append(slot);
+            }
+        }
+    }
+
+    /**
+     * 查找切片；只读一次表引用，与写入交错时也一定会停在空位上 | Look up a gram; reads the table once, so it stops at an empty cell even when racing a write
+     */
+    private Posting find(long key) {
+        long[] keys = gramKeys;
+        Posting[] values = gramPostings;
+        int mask = keys.length - 1;
+        for (int i = (int) (key >>> 32) & mask; keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+        return null;
+    }
+
+    private Posting findOrCreate(long key) {
+        int mask = gramKeys.length - 1;
+        int i = (int) (key >>> 32) & mask;
+        for (; gramKeys[i] != 0; i = (i + 1) & mask) {
+            if (gramKeys[i] == key) {
+                return gramPostings[i];
+            }
+        }
+        Posting posting = new Posting();
+        gramKeys[i] = key;
+        gramPostings[i] = posting;
+        if (++gramCount * 2 > gramKeys.length) {
+            growTable();
+        }
+        return posting;
+    }
+
+    private void growTable() {
+        long[] oldKeys = gramKeys;
+        Posting[] oldPostings = gramPostings;
+        gramKeys = new long[oldKeys.length * 2];
+        gramPostings = new Posting[oldKeys.length * 2];
+        int mask = gramKeys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != 0) {
+                int i = (int) (oldKeys[j] >>> 32) & mask;
+                while (gramKeys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                gramKeys[i] = oldKeys[j];
+                gramPostings[i] = oldPostings[j];
+            }
+        }
+    }
+
+    /**
+     * 把 n 个字符连同长度打包成 long，避免为每个切片创建字符串 | Pack n chars plus the length into a long, avoiding a String per gram
+     * 乘以奇数常量打散各位（仍是一一映射且不为 0），高位直接用作哈希 | Multiplying by an odd constant scrambles the bits (still one-to-one and never 0); the high bits serve as the hash
+     */
+    private static long pack(String text, int start, int n) {
+        long key = n;
+        for (int i = start; i < start + n; i++) {
+            key = (key << 16) | text.charAt(i);
+        }
+        return key * 0x9E3779B97F4A7C15L;
+    }
+
+    /**
+     * 按槽位递增的倒排表，存储相邻槽位差值的变长编码 | Posting list in ascending slot order, stored as varint deltas
+     */
+    private static class Posting {
+        private byte[] data = new byte[4];
+        private int length;
+        private int count;
+        private int lastSlot = -1;
+
+        void append(int slot) {
+            // 同一产品的重复切片只记一次 | A gram repeated within one product is recorded once
+            if (slot == lastSlot) {
+                return;
+            }
+            if (length + 5 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            int delta = slot - lastSlot;
+            while ((delta & ~0x7F) != 0) {
+                data[length++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            data[length++] = (byte) delta;
+            lastSlot = slot;
+            count++;
+        }
+
+        int[] decode() {
+            byte[] bytes = data;
+            int[] slots = new int[count];
+            int slot = -1;
+            int pos = 0;
+            for (int i = 0; i < slots.length; i++) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = bytes[pos++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                slot += delta;
+                slots[i] = slot;
+            }
+            return slots;
+        }
+
+        /**
+         * 与升序候选数组归并求交，结果原地写回 | Merge-intersect with the ascending candidates, writing the result in place
+         *
+         * @return 交集大小 | Size of the intersection
+         */
+        int intersect(int[] candidates, int size) {
+            byte[] bytes = data;
+            int entries = count;
+            int kept = 0;
+            int next = 0;
+            int slot = -1;
+            int pos = 0;
+            for (int i = 0; i < entries && next < size; i++) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = bytes[pos++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                slot += delta;
+
+                while (next < size && candidates[next] < slot) {
+                    next++;
+                }
+                if (next < size && candidates[next] == slot) {
+                    candidates[kept++] = slot;
+                    next++;
+                }
+            }
+            return kept;
+        }
+    }
+}
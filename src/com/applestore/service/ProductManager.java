@@ -1,110 +1,658 @@
 package com.applestore.service;
 
 import com.applestore.model.*;
+import com.applestore.util.CatalogMetrics;
 import com.applestore.util.ColorPrinter;
 
+import java.lang.invoke.VarHandle;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
 //We search and know that CRUD is crucial for constant manage...
 
 /**
  * 产品管理器 | Product Manager
  * 负责产品的CRUD操作和数据管理 | Responsible for product CRUD operations and data management
+ *
+ * 线程安全：写操作在可重入写锁下串行执行（监听器可以在写入中回读）；读操作先走乐观路径，
+ * 不加锁直接读取，再用写序号校验，期间有写入时才退回读锁重试 |
+ * Thread-safe: writes are serialized under a reentrant write lock (listeners may read back mid-write); reads first run optimistically
+ * without locking and are validated against a write sequence, falling back to the read lock only if a write overlapped
+ *
+ * 库存预留（reserve/release）不加锁：只登记在分散的进行中计数上再 CAS 库存，写操作开始时等这些计数归零 |
+ * Stock reservations (reserve/release) take no lock: they register on striped in-flight counters and CAS the stock,
+ * and a write waits for those counters to drain when it begins
  */
 public class ProductManager {
-    private List<Product> products;
+    // ID -> 产品的哈希索引 | ID -> product hash index
+    private final Map<String, Product> products;
+    // 插入顺序，写时复制，供遍历和快照使用 | Insertion order, copy-on-write, used for iteration and snapshots
+    private final ProductVector vector = new ProductVector();
+    // 价格 -> 产品的有序索引，同价产品按插入顺序 | Price -> products sorted index, same-price products in insertion order
+    private final NavigableMap<Double, Set<Product>> priceIndex;
+    // 名称/型号/颜色的 n-gram 倒排索引 | N-gram inverted index over name/model/color
+    private final NGramIndex textIndex;
+    // 类型、颜色、存储、芯片、蜂窝网络的属性索引，供组合查询使用 | Attribute indexes on type, color, storage, chip and cellular, used by composite queries
+    private final AttributeIndex<Class<? extends Product>> typeIndex = new AttributeIndex<>(Product::getClass);
+    private final AttributeIndex<String> colorIndex = new AttributeIndex<>(p -> p.getColor() == null ? null : p.getColor().toLowerCase());
+    private final AttributeIndex<Integer> storageIndex = new AttributeIndex<>(Product::getStorage);
+    private final AttributeIndex<String> chipIndex = new AttributeIndex<>(ProductQuery::chipOf);
+    private final AttributeIndex<Boolean> cellularIndex = new AttributeIndex<>(ProductQuery::cellularOf);
+    private final QueryPlanner planner;
+    // 增量维护的统计量 | Incrementally maintained aggregates
+    private final Map<Class<? extends Product>, Integer> typeCounts;
+    private final LongAdder totalStock = new LongAdder();
+    private double priceSum;
+    private final DoubleAdder inventoryValue = new DoubleAdder();
+    private final ProductChangeListener changeListener = new ProductChangeListener() {
+        @Override
+        public void onChange(Product product, Product.Field field, Runnable change) {
+            onProductChange(product, field, change);
+        }
+
+        @Override
+        public boolean onStockAdjust(Product product, int delta, BooleanSupplier adjust) {
+            return onProductStockAdjust(product, delta, adjust);
+        }
+    };
+    private final List<CatalogListener> catalogListeners = new CopyOnWriteArrayList<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // 写序号：写入进行中为奇数 | Write sequence: odd while a write is in progress
+    private volatile long writeSequence;
+    // 按线程分散的进行中预留计数，每个占一条缓存行 | In-flight reservation counts striped by thread, one cache line each
+    private static final int RESERVATION_STRIPES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors()) * 2;
+    private static final int STRIPE_PADDING = 16;
+    private final AtomicIntegerArray reservationsInFlight = new AtomicIntegerArray(RESERVATION_STRIPES * STRIPE_PADDING);
+    // 非空时本线程的库存变更先收集起来，稍后批量通知 | When set, this thread's stock changes are collected for a later batched notification
+    private final ThreadLocal<List<Product>> deferredStockUpdates = new ThreadLocal<>();
+    // 快照版本号 | Version counter for snapshots
+    private long version;
+    // 各字段的变更计数，最后一格记录产品增删和替换，供查询缓存判断条目是否失效 |
+    // Change counts per field, the last slot counting products added, removed or replaced; used by the query cache to spot stale entries
+    private static final int STRUCTURE = Product.Field.values().length;
+    private final long[] changeCounts = new long[STRUCTURE + 1];
+    private final QueryCache queryCache = new QueryCache(QueryCache.DEFAULT_MAX_ENTRIES, QueryCache.DEFAULT_MAX_PRODUCTS);
+    // 打开的快照版本 -> 数量，以及它们仍需要的修改前状态 | Open snapshot versions -> count, and the pre-change states they still need
+    private final NavigableMap<Long, Integer> openSnapshots = new TreeMap<>();
+    private final Map<Product, PreImage> preImages = new IdentityHashMap<>();
+    // 各排序方式的结果，目录版本不变时直接复用 | Result of each sort order, reused while the catalog version is unchanged
+    private static final int BY_PRICE_ASCENDING = 0;
+    private static final int BY_PRICE_DESCENDING = 1;
+    private static final int BY_NAME = 2;
+    // 各排序方式在 JFR 事件中的查询形状 | Query shape of each sort order in JFR events
+    private static final ProductQuery[] SORT_QUERIES = {ProductQuery.all().sortBy(ProductQuery.Sort.PRICE_ASCENDING),
+            ProductQuery.all().sortBy(ProductQuery.Sort.PRICE_DESCENDING), ProductQuery.all().sortBy(ProductQuery.Sort.NAME)};
+    private final AtomicReferenceArray<SortedProducts> sortedProducts = new AtomicReferenceArray<>(3);
+
+    /**
+     * 某个目录版本的排序结果，发布后不再修改 | Sorted products of one catalog version, never modified once published
+     */
+    private static final class SortedProducts {
+        final long version;
+        final List<Product> list;
+        final List<Product> products;
+
+        SortedProducts(long version, List<Product> list) {
+            this.version = version;
+            this.list = list;
+            this.products = Collections.unmodifiableList(list);
+        }
+    }
+
+    /**
+     * 产品在某次修改前的状态，按从新到旧链接 | A product's state before a change, linked newest first
+     */
+    private static final class PreImage {
+        final long supersededAt;
+        final Product state;
+        final PreImage older;
+
+        PreImage(long supersededAt, Product state, PreImage older) {
+            this.supersededAt = supersededAt;
+            this.state = state;
+            this.older = older;
+        }
+    }
 
     public ProductManager() {
-        this.products = new ArrayList<>();
+        // 并发容器保证乐观读不会因并发写入而死循环 | Concurrent containers keep optimistic reads from looping on a racing write
+        this.products = new ConcurrentHashMap<>();
+        this.priceIndex = new ConcurrentSkipListMap<>();
+        this.textIndex = new NGramIndex();
+        this.typeCounts = new ConcurrentHashMap<>();
+        this.planner = new QueryPlanner(vector, priceIndex, textIndex, typeIndex, colorIndex, storageIndex, chipIndex, cellularIndex);
+    }
+
+    /**
+     * 开始写入：加写锁，最外层写入把写序号变为奇数，并等待进行中的预留完成 |
+     * Begin a write: take the write lock; the outermost write makes the sequence odd and waits for in-flight reservations
+     */
+    private void beginWrite() {
+        lock.writeLock().lock();
+        if (lock.getWriteHoldCount() == 1) {
+            writeSequence++;
+            // 序号先于任何数据修改可见 | The sequence becomes visible before any data change
+            VarHandle.releaseFence();
+            awaitReservations();
+        }
+    }
+
+    /**
+     * 等待所有进行中的预留结束；之后开始的预留会看到奇数序号而改走写锁 |
+     * Wait until no reservation is in flight; reservations starting later see the odd sequence and take the write lock instead
+     */
+    private void awaitReservations() {
+        for (int i = 0; i < RESERVATION_STRIPES; i++) {
+            for (int spins = 0; reservationsInFlight.get(i * STRIPE_PADDING) != 0; spins++) {
+                if (spins < 100) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+            }
+        }
+    }
+
+    private void endWrite() {
+        if (lock.getWriteHoldCount() == 1) {
+            writeSequence++;
+        }
+        lock.writeLock().unlock();
+    }
+
+    /**
+     * 乐观读：不加锁执行，写序号未变才采用结果；否则（或读到不一致状态抛出异常时）在读锁下重做 |
+     * Optimistic read: run without locking and keep the result only if the write sequence did not move;
+     * otherwise (or if inconsistent state made it throw) redo it under the read lock
+     *
+     * reader 不能有副作用，并且只能调用不加锁的内部方法 | The reader must be side-effect free and only call unlocked internals
+     */
+    private <T> T read(Supplier<T> reader) {
+        long sequence = writeSequence;
+        if ((sequence & 1) == 0) {
+            try {
+                T result = reader.get();
+                VarHandle.acquireFence();
+                if (writeSequence == sequence) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                // 与写入交错，稍后在读锁下重试 | Raced with a write; retried under the read lock below
+            }
+        }
+        lock.readLock().lock();
+        try {
+            return reader.get();
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
      * 添加产品 | Add product
      */
     public boolean addProduct(Product product) {
-        if (product == null) {
-            ColorPrinter.printError("产品不能为空 | Product cannot be null");
-            return false;
+        long start = CatalogMetrics.start();
+        try {
+            if (product == null) {
+                ColorPrinter.printError("产品不能为空 | Product cannot be null");
+                return false;
+            }
+
+            beginWrite();
+            try {
+                // 检查ID是否已存在 | Check if ID already exists
+                if (products.containsKey(product.getId())) {
+                    ColorPrinter.printWarning("产品ID已存在: " + product.getId() + " | Product ID already exists: " + product.getId());
+                    return false;
+                }
+
+                products.put(product.getId(), product);
+                attach(product);
+                vector.add(product);
+                productsChanged();
+                for (CatalogListener listener : catalogListeners) {
+                    listener.productAdded(product);
+                }
+            } finally {
+                endWrite();
+            }
+            ColorPrinter.printSuccess("产品添加成功: " + product.getName() + " - " + product.getModel() + " | Product added successfully: " + product.getName() + " - " + product.getModel());
+            return true;
+        } finally {
+            CatalogMetrics.record(CatalogMetrics.Operation.ADD, start);
         }
+    }
 
-        // 检查ID是否已存在 | Check if ID already exists
-        if (findById(product.getId()) != null) {
-            ColorPrinter.printWarning("产品ID已存在: " + product.getId() + " | Product ID already exists: " + product.getId());
-            return false;
+    /**
+     * 批量添加产品（用于导入） | Add products in bulk (for imports)
+     * 整批只加一次锁、只通知一次监听器，不逐个打印；空产品和重复ID被跳过 |
+     * Takes the lock and notifies listeners once per batch without per-product output; nulls and duplicate IDs are skipped
+     *
+     * @return 实际添加的产品数 | Number of products actually added
+     */
+    public int addProducts(Collection<? extends Product> batch) {
+        long start = CatalogMetrics.start();
+        try {
+            List<Product> added = new ArrayList<>(batch.size());
+            beginWrite();
+            try {
+                for (Product product : batch) {
+                    if (product != null && products.putIfAbsent(product.getId(), product) == null) {
+                        attach(product);
+                        vector.add(product);
+                        added.add(product);
+                    }
+                }
+                if (!added.isEmpty()) {
+                    productsChanged();
+                    for (CatalogListener listener : catalogListeners) {
+                        listener.productsAdded(added);
+                    }
+                }
+            } finally {
+                endWrite();
+            }
+            return added.size();
+        } finally {
+            CatalogMetrics.record(CatalogMetrics.Operation.ADD_BATCH, start);
         }
-                 // After vision2.2,the use of UUID made it easier to generate unique ID
-                // so maybe this part is unnecessary?
+    }
 
-        products.add(product);
-        ColorPrinter.printSuccess("产品添加成功: " + product.getName() + " - " + product.getModel() + " | Product added successfully: " + product.getName() + " - " + product.getModel());
+    /**
+     * 预留库存（下单时扣减） | Reserve stock (deducted when ordering)
+     * 以 CAS 原子扣减，不加全局锁，同一产品上大量并发预留也不会丢失更新 |
+     * Deducted atomically by CAS without a global lock, so heavy concurrent reservations on one product never lose updates
+     *
+     * @return 产品不存在或库存不足时不做修改并返回 false | false, with nothing changed, if the product is missing or stock is insufficient
+     */
+    public boolean reserve(String id, int quantity) {
+        requirePositive(quantity);
+        Product product = lookup(id);
+        return product != null && product.adjustStock(-quantity);
+    }
+
+    /**
+     * 归还预留的库存（取消订单时） | Release reserved stock (when an order is cancelled)
+     *
+     * @return 产品不存在（或库存会溢出）时返回 false | false if the product is missing (or the stock would overflow)
+     */
+    public boolean release(String id, int quantity) {
+        requirePositive(quantity);
+        Product product = lookup(id);
+        return product != null && product.adjustStock(quantity);
+    }
+
+    /**
+     * 为指定产品开启抢购模式，库存分散到各核的条带上 | Put a product into flash-sale mode, splitting its stock across per-core stripes
+     * 在写锁下切换，期间没有进行中的预留；getStock 与 getTotalStock 仍给出精确值 |
+     * Switched under the write lock so no reservation is in flight; getStock and getTotalStock still report exact figures
+     */
+    public boolean startFlashSale(String id) {
+        return switchFlashSale(id, true);
+    }
+
+    /**
+     * 结束抢购模式，库存合并回单个字段 | End flash-sale mode, folding the stock back into one field
+     */
+    public boolean endFlashSale(String id) {
+        return switchFlashSale(id, false);
+    }
+
+    private boolean switchFlashSale(String id, boolean on) {
+        beginWrite();
+        try {
+            Product product = lookup(id);
+            if (product == null) {
+                ColorPrinter.printError("未找到ID为 " + id + " 的产品 | Product with ID " + id + " not found");
+                return false;
+            }
+            if (on) {
+                product.startFlashSale();
+            } else {
+                product.endFlashSale();
+            }
+            return true;
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * 原子预留多行库存：全部成功，或任一行失败时已预留的行全部回滚 | Reserve several lines atomically: all succeed, or the lines already reserved are rolled back if any fails
+     * 监听器只收到一次批量通知 | Listeners get a single batched notification
+     *
+     * @param quantities 产品ID -> 数量 | Product ID -> quantity
+     * @return 有产品不存在或库存不足时返回 false，库存不变 | false, with stock unchanged, if a product is missing or short of stock
+     */
+    public boolean reserveAll(Map<String, Integer> quantities) {
+        List<Product> reserved = reserveAllQuietly(quantities);
+        if (reserved == null) {
+            return false;
+        }
+        publishStockAdjusted(reserved);
         return true;
     }
 
+    /**
+     * 同 reserveAll，但不通知监听器，由调用方之后合并通知（用于成组提交） |
+     * Like reserveAll but without notifying listeners; the caller notifies later in a merged batch (for group commit)
+     * 回滚期间其他线程可能短暂看到被占用的库存 | Other threads may briefly see the stock as taken while a rollback is underway
+     *
+     * @return 按行顺序预留的产品，失败时返回 null | Reserved products in line order, or null on failure
+     */
+    List<Product> reserveAllQuietly(Map<String, Integer> quantities) {
+        for (int quantity : quantities.values()) {
+            requirePositive(quantity);
+        }
+        List<Product> reserved = new ArrayList<>(quantities.size());
+        deferredStockUpdates.set(new ArrayList<>());
+        try {
+            for (Map.Entry<String, Integer> line : quantities.entrySet()) {
+                Product product = lookup(line.getKey());
+                if (product == null || !product.adjustStock(-line.getValue())) {
+                    // 回滚已预留的行 | Roll back the lines already reserved
+                    releaseAllQuietly(reserved, quantities.values());
+                    return null;
+                }
+                reserved.add(product);
+            }
+            return reserved;
+        } finally {
+            deferredStockUpdates.remove();
+        }
+    }
+
+    /**
+     * 归还 reserveAllQuietly 预留的库存，同样不通知监听器 | Give back stock taken by reserveAllQuietly, likewise without notifying listeners
+     *
+     * @param quantities 与 products 按顺序对应，多余的忽略 | Matched to products in order; extras are ignored
+     */
+    void releaseAllQuietly(List<Product> products, Collection<Integer> quantities) {
+        List<Product> outer = deferredStockUpdates.get();
+        if (outer == null) {
+            deferredStockUpdates.set(new ArrayList<>());
+        }
+        try {
+            Iterator<Integer> quantity = quantities.iterator();
+            for (Product product : products) {
+                product.adjustStock(quantity.next());
+            }
+        } finally {
+            if (outer == null) {
+                deferredStockUpdates.remove();
+            }
+        }
+    }
+
+    /**
+     * 把一批库存变更通知给监听器 | Notify listeners of a batch of stock changes
+     */
+    void publishStockAdjusted(List<Product> adjusted) {
+        if (adjusted.isEmpty()) {
+            return;
+        }
+        for (CatalogListener listener : catalogListeners) {
+            listener.stockAdjusted(adjusted);
+        }
+    }
+
+    private static void requirePositive(int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("数量必须为正数 | Quantity must be positive");
+        }
+    }
+
     /**
      * 根据ID查找产品 | Find product by ID
      */
     public Product findById(String id) {
-        return products.stream()
-                .filter(p -> p.getId().equals(id))
-                .findFirst()
-                .orElse(null);
+        long start = CatalogMetrics.start();
+        try {
+            return lookup(id);
+        } finally {
+            CatalogMetrics.record(CatalogMetrics.Operation.FIND_BY_ID, start);
+        }
+    }
+
+    /**
+     * 不计量的查找，供内部使用 | Unmeasured lookup for internal use
+     */
+    private Product lookup(String id) {
+        if (id == null) {
+            return null;
+        }
+        // 并发哈希表本身保证单次查找的一致性，无需校验 | The concurrent map makes a single lookup consistent on its own
+        return products.get(id);
     }
 
     /**
      * 获取所有产品 | Get all products
+     *
+     * 返回按插入顺序的只读视图，不复制目录：两次写入之间的调用共用同一个视图，之后的修改不影响已返回的视图 |
+     * Returns a read-only view in insertion order without copying the catalog: calls between two writes share one view,
+     * and later changes do not affect views already returned
      */
     public List<Product> getAllProducts() {
-        return new ArrayList<>(products);
+        CatalogView view = vector.cachedView();
+        if (view != null) {
+            return view;
+        }
+        // 建立视图会修改纪元，须与写入互斥，不能走乐观读 | Creating the view bumps the epoch, so it must exclude writes rather than read optimistically
+        lock.readLock().lock();
+        try {
+            return vector.view();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按插入顺序分页读取产品，只复制一页 | Read the products page by page in insertion order, copying one page only
+     *
+     * @param cursor   上一页返回的游标，null 表示第一页 | Cursor returned with a previous page, or null for the first page
+     * @param pageSize 每页产品数 | Products per page
+     * @throws IllegalArgumentException 游标无效或每页数量不为正 | If the cursor is malformed or the page size is not positive
+     */
+    public ProductPage getPage(String cursor, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("每页数量必须为正数 | Page size must be positive");
+        }
+        long boundary = cursor == null ? -1 : ProductPage.sequence(cursor);
+        boolean forward = cursor == null || ProductPage.isForward(cursor);
+        return read(() -> vector.page(forward, boundary, pageSize));
     }
 
     /**
      * 根据类型查找产品 | Find products by type
      */
     public <T extends Product> List<T> getProductsByType(Class<T> type) {
-        return products.stream()
-                .filter(type::isInstance)
-                .map(type::cast)
-                .collect(Collectors.toList());
+        long start = CatalogMetrics.start();
+        try {
+            List<T> result = new ArrayList<>();
+            for (Product product : runQuery(ProductQuery.where(ProductQuery.type(type)), CatalogMetrics.Operation.FILTER_BY_TYPE)) {
+                result.add(type.cast(product));
+            }
+            return result;
+        } finally {
+            CatalogMetrics.record(CatalogMetrics.Operation.FILTER_BY_TYPE, start);
+        }
     }
 
     /**
-     * 更新产品 | Update product
+     * 执行组合查询：按索引选出候选最少的条件，再校验其余条件，最后排序并截取 |
+     * Run a composite query: pick the condition whose index yields the fewest candidates, verify the rest, then sort and truncate
+     *
+     * 结果进入查询缓存，直到查询依赖的字段被修改或目录增删产品 | Results go into the query cache until a field the query depends on is modified or products are added or removed
+     *
+     * @return 满足条件的产品（只读）；未指定排序时按插入顺序 | Matching products (read-only), in insertion order unless a sort is given
      */
-    public boolean updateProduct(String id, Product updatedProduct) {
-        Product product = findById(id);
-        if (product == null) {
-            ColorPrinter.printError("未找到ID为 " + id + " 的产品 | Product with ID " + id + " not found");
-            return false;
+    public List<Product> query(ProductQuery query) {
+        long start = CatalogMetrics.start();
+        try {
+            return runQuery(query, CatalogMetrics.Operation.QUERY);
+        } finally {
+            CatalogMetrics.record(CatalogMetrics.Operation.QUERY, start);
         }
+    }
 
-        if (updatedProduct == null) {
-            ColorPrinter.printError("更新数据不能为空 | Update data cannot be null");
-            return false;
+    /**
+     * 不计量的查询，供按具体操作计量的方法使用；JFR 事件记在调用方的操作名下 |
+     * Unmeasured query, for the methods measured as their own operation; the JFR event carries the caller's operation name
+     */
+    private List<Product> runQuery(ProductQuery query, CatalogMetrics.Operation operation) {
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        int dependencies = query.dependencies();
+        QueryCache.Entry cached = queryCache.get(query);
+        if (cached != null && read(() -> stamp(dependencies) == cached.stamp)) {
+            queryCache.recordHit();
+            emit(event, operation, query, cached.products, true);
+            return cached.products;
         }
+        queryCache.recordMiss();
+        QueryCache.Entry fresh = read(() -> new QueryCache.Entry(query, stamp(dependencies), planner.run(query)));
+        queryCache.put(fresh);
+        emit(event, operation, query, fresh.products, false);
+        return fresh.products;
+    }
 
-        // 保留原有ID | Preserve original ID
-        updatedProduct.setId(id);
+    /**
+     * 结束查询事件，录制中且超过阈值时才填字段并提交 | End a query event, filling in the fields and committing only while recording and over the threshold
+     */
+    private void emit(QueryEvent event, CatalogMetrics.Operation operation, ProductQuery query, List<Product> results, boolean cacheHit) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation.getLabel();
+            event.query = query.key();
+            event.results = results.size();
+            event.catalogSize = products.size();
+            event.cacheHit = cacheHit;
+            event.commit();
+        }
+    }
 
-        int index = products.indexOf(product);
-        products.set(index, updatedProduct);
+    /**
+     * 查询缓存，可读取命中、未命中和淘汰计数 | The query cache, whose hit, miss and eviction counts can be read
+     */
+    public QueryCache getQueryCache() {
+        return queryCache;
+    }
 
-        ColorPrinter.printSuccess("产品更新成功: " + updatedProduct.getName() + " - " + updatedProduct.getModel() + " | Product updated successfully: " + updatedProduct.getName() + " - " + updatedProduct.getModel());
-        return true;
+    /**
+     * 所依赖字段与产品增删的变更计数之和；计数只增不减，任何一项变化都会改变总和 |
+     * Sum of the change counts of the given fields and of product additions and removals; counts only grow, so any change moves the sum
+     */
+    private long stamp(int fields) {
+        long stamp = changeCounts[STRUCTURE];
+        for (int field = 0; field < STRUCTURE; field++) {
+            if ((fields & (1 << field)) != 0) {
+                stamp += changeCounts[field];
+            }
+        }
+        return stamp;
+    }
+
+    /**
+     * 产品增删或替换后调用（在写锁下） | Call after products were added, removed or replaced (under the write lock)
+     */
+    private void productsChanged() {
+        version++;
+        changeCounts[STRUCTURE]++;
+    }
+
+    /**
+     * 受管产品的字段修改后调用（在写锁下）；改 ID 会移动产品位置，按增删计 |
+     * Call after a managed product's field was modified (under the write lock); an ID change moves the product, so it counts as add/remove
+     */
+    private void fieldChanged(Product.Field field) {
+        version++;
+        changeCounts[field == Product.Field.ID ? STRUCTURE : field.ordinal()]++;
+    }
+
+    /**
+     * 更新产品 | Update product
+     */
+    public boolean updateProduct(String id, Product updatedProduct) {
+        long start = CatalogMetrics.start();
+        try {
+            beginWrite();
+            try {
+                Product product = lookup(id);
+                if (product == null) {
+                    ColorPrinter.printError("未找到ID为 " + id + " 的产品 | Product with ID " + id + " not found");
+                    return false;
+                }
+
+                if (updatedProduct == null) {
+                    ColorPrinter.printError("更新数据不能为空 | Update data cannot be null");
+                    return false;
+                }
+
+                // 保留原有ID | Preserve original ID
+                updatedProduct.setId(id);
+
+                if (updatedProduct != product) {
+                    // 原位替换，保持插入顺序 | Replace in place, keeping the insertion order
+                    preserve(product);
+                    detach(product);
+                    products.put(id, updatedProduct);
+                    attach(updatedProduct);
+                    vector.replace(product, updatedProduct);
+                    productsChanged();
+                    for (CatalogListener listener : catalogListeners) {
+                        listener.productUpdated(updatedProduct);
+                    }
+                }
+            } finally {
+                endWrite();
+            }
+
+            ColorPrinter.printSuccess("产品更新成功: " + updatedProduct.getName() + " - " + updatedProduct.getModel() + " | Product updated successfully: " + updatedProduct.getName() + " - " + updatedProduct.getModel());
+            return true;
+        } finally {
+            CatalogMetrics.record(CatalogMetrics.Operation.UPDATE, start);
+        }
     }
 
     /**
      * 删除产品 | Delete product
      */
     public boolean deleteProduct(String id) {
-        Product product = findById(id);
-        if (product == null) {
-            ColorPrinter.printError("未找到ID为 " + id + " 的产品 | Product with ID " + id + " not found");
-            return false;
-        }
+        long start = CatalogMetrics.start();
+        try {
+            Product product;
+            beginWrite();
+            try {
+                product = id == null ? null : products.remove(id);
+                if (product == null) {
+                    ColorPrinter.printError("未找到ID为 " + id + " 的产品 | Product with ID " + id + " not found");
+                    return false;
+                }
+                preserve(product);
+                detach(product);
+                vector.remove(product);
+                productsChanged();
+                for (CatalogListener listener : catalogListeners) {
+                    listener.productRemoved(id);
+                }
+            } finally {
+                endWrite();
+            }
 
-        products.remove(product);
-        ColorPrinter.printSuccess("产品删除成功: " + product.getName() + " - " + product.getModel() + " | Product deleted successfully: " + product.getName() + " - " + product.getModel());
-        return true;
+            ColorPrinter.printSuccess("产品删除成功: " + product.getName() + " - " + product.getModel() + " | Product deleted successfully: " + product.getName() + " - " + product.getModel());
+            return true;
+        } finally {
+            CatalogMetrics.record(CatalogMetrics.Operation.DELETE, start);
+        }
     }
 
 
@@ -114,39 +662,49 @@ public class ProductManager {
      * 搜索产品（综合搜索，包括名称、型号、颜色） | Search products (comprehensive search including name, model, color)
      */
     public List<Product> search(String keyword) {
-        if (keyword == null || keyword.trim().isEmpty()) {
-            return getAllProducts();
-        }
+        long start = CatalogMetrics.start();
+        try {
+            if (keyword == null || keyword.trim().isEmpty()) {
+                return getAllProducts();
+            }
 
-        String lowerKeyword = keyword.toLowerCase();
-        return products.stream()
-                .filter(p -> p.getName().toLowerCase().contains(lowerKeyword) ||
-                           p.getModel().toLowerCase().contains(lowerKeyword) ||
-                           p.getColor().toLowerCase().contains(lowerKeyword))
-                .collect(Collectors.toList());
+            return runQuery(ProductQuery.where(ProductQuery.text(keyword)), CatalogMetrics.Operation.SEARCH);
+        } finally {
+            CatalogMetrics.record(CatalogMetrics.Operation.SEARCH, start);
+        }
     }
 
     /**
      * 按价格范围过滤产品 | Filter products by price range
+     * 候选取自价格索引，结果仍按插入顺序返回；要按价格排序用 query 加 Sort.PRICE_ASCENDING |
+     * Candidates come from the price index, but results are returned in insertion order; use query with Sort.PRICE_ASCENDING for price order
      */
     public List<Product> filterByPrice(double minPrice, double maxPrice) {
-        return products.stream()
-                .filter(p -> p.getPrice() >= minPrice && p.getPrice() <= maxPrice)
-                .collect(Collectors.toList());
+        long start = CatalogMetrics.start();
+        try {
+            if (!(minPrice <= maxPrice)) {
+                return new ArrayList<>();
+            }
+            return runQuery(ProductQuery.where(ProductQuery.priceBetween(minPrice, maxPrice)), CatalogMetrics.Operation.FILTER_BY_PRICE);
+        } finally {
+            CatalogMetrics.record(CatalogMetrics.Operation.FILTER_BY_PRICE, start);
+        }
     }
 
     /**
      * 按颜色过滤产品 | Filter products by color
      */
     public List<Product> filterByColor(String color) {
-        if (color == null || color.trim().isEmpty()) {
-            return getAllProducts();
-        }
+        long start = CatalogMetrics.start();
+        try {
+            if (color == null || color.trim().isEmpty()) {
+                return getAllProducts();
+            }
 
-        String lowerColor = color.toLowerCase();
-        return products.stream()
-                .filter(p -> p.getColor().toLowerCase().contains(lowerColor))
-                .collect(Collectors.toList());
+            return runQuery(ProductQuery.where(ProductQuery.color(color)), CatalogMetrics.Operation.FILTER_BY_COLOR);
+        } finally {
+            CatalogMetrics.record(CatalogMetrics.Operation.FILTER_BY_COLOR, start);
+        }
     }
 
     /**
@@ -156,56 +714,462 @@ public class ProductManager {
         return products.size();
     }
 
+    /**
+     * 统计某类型（含子类）的产品数量 | Count products of a type (including subclasses)
+     */
+    public int getProductCountByType(Class<? extends Product> type) {
+        return read(() -> {
+            int count = 0;
+            for (Map.Entry<Class<? extends Product>, Integer> entry : typeCounts.entrySet()) {
+                if (type.isAssignableFrom(entry.getKey())) {
+                    count += entry.getValue();
+                }
+            }
+            return count;
+        });
+    }
+
     /**
      * 获取产品库存总量 | Get total product stock
      */
-    public int getTotalStock() {
-        return products.stream()
-                .mapToInt(Product::getStock)
-                .sum();
+    public long getTotalStock() {
+        return read(totalStock::sum);
     }
 
     /**
      * 获取平均价格 | Get average price
      */
     public double getAveragePrice() {
-        if (products.isEmpty()) {
-            return 0;
-        }
-        return products.stream()
-                .mapToDouble(Product::getPrice)
-                .average()
-                .orElse(0);
+        return read(() -> {
+            int count = products.size();
+            return count == 0 ? 0 : priceSum / count;
+        });
+    }
+
+    /**
+     * 获取库存总价值（价格 × 库存） | Get inventory value (price × stock)
+     */
+    public double getInventoryValue() {
+        return read(inventoryValue::sum);
     }
 
     /**
      * 按价格排序 | Sort by price
+     *
+     * 返回只读列表，目录未修改时重复调用返回同一个结果 | Returns a read-only list; repeated calls return the same result while the catalog is unchanged
      */
     public List<Product> sortByPrice(boolean ascending) {
-        List<Product> sorted = new ArrayList<>(products);
-        sorted.sort((p1, p2) -> {
-            if (ascending) {
-                return Double.compare(p1.getPrice(), p2.getPrice());
-            } else {
-                return Double.compare(p2.getPrice(), p1.getPrice());
-            }
-        });
-        return sorted;
+        long start = CatalogMetrics.start();
+        try {
+            NavigableMap<Double, Set<Product>> view = ascending ? priceIndex : priceIndex.descendingMap();
+            return sorted(ascending ? BY_PRICE_ASCENDING : BY_PRICE_DESCENDING, () -> {
+                List<Product> sorted = new ArrayList<>(products.size());
+                for (Set<Product> bucket : view.values()) {
+                    sorted.addAll(bucket);
+                }
+                return sorted;
+            }, null);
+        } finally {
+            CatalogMetrics.record(CatalogMetrics.Operation.SORT_BY_PRICE, start);
+        }
     }
 
     /**
      * 按名称排序 | Sort by name
+     *
+     * 返回只读列表，目录未修改时重复调用返回同一个结果 | Returns a read-only list; repeated calls return the same result while the catalog is unchanged
      */
     public List<Product> sortByName() {
-        List<Product> sorted = new ArrayList<>(products);
-        sorted.sort(Comparator.comparing(Product::getName));
-        return sorted;
+        long start = CatalogMetrics.start();
+        try {
+            return sorted(BY_NAME, vector::toList, Comparator.comparing(Product::getName));
+        } finally {
+            CatalogMetrics.record(CatalogMetrics.Operation.SORT_BY_NAME, start);
+        }
+    }
+
+    /**
+     * 取缓存的排序结果，目录版本变化后才重新收集 | Take the cached sort result, collecting again only after the catalog version changed
+     *
+     * @param collect    在读取中收集产品 | Collects the products inside a read
+     * @param comparator 收集后还需排序时的比较器，否则为 null | Comparator if the collected products still need sorting, otherwise null
+     */
+    private List<Product> sorted(int order, Supplier<List<Product>> collect, Comparator<Product> comparator) {
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        CatalogMetrics.Operation operation = order == BY_NAME ? CatalogMetrics.Operation.SORT_BY_NAME : CatalogMetrics.Operation.SORT_BY_PRICE;
+        SortedProducts cached = sortedProducts.get(order);
+        if (cached != null && read(() -> cached.version == version)) {
+            emit(event, operation, SORT_QUERIES[order], cached.products, true);
+            return cached.products;
+        }
+        SortedProducts fresh = read(() -> new SortedProducts(version, collect.get()));
+        if (comparator != null) {
+            // 排序在校验通过的副本上进行，不必放进乐观读 | Sort the validated copy outside the optimistic read
+            fresh.list.sort(comparator);
+        }
+        sortedProducts.set(order, fresh);
+        emit(event, operation, SORT_QUERIES[order], fresh.products, false);
+        return fresh.products;
     }
 
     /**
      * 设置产品列表（用于从文件加载） | Set product list (for loading from file)
      */
     public void setProducts(List<Product> products) {
-        this.products = new ArrayList<>(products);
+        beginWrite();
+        try {
+            for (Product product : this.products.values()) {
+                preserve(product);
+                product.setChangeListener(null);
+            }
+            this.products.clear();
+            vector.clear();
+            priceIndex.clear();
+            textIndex.clear();
+            queryCache.clear();
+            typeIndex.clear();
+            colorIndex.clear();
+            storageIndex.clear();
+            chipIndex.clear();
+            cellularIndex.clear();
+            typeCounts.clear();
+            totalStock.reset();
+            priceSum = 0;
+            inventoryValue.reset();
+
+            for (Product product : products) {
+                // 重复ID以先出现的为准，与 addProduct 一致 | First occurrence wins on duplicate IDs, same as addProduct
+                if (this.products.putIfAbsent(product.getId(), product) == null) {
+                    attach(product);
+                    vector.add(product);
+                }
+            }
+            productsChanged();
+            for (CatalogListener listener : catalogListeners) {
+                listener.catalogReplaced();
+            }
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * 注册目录变更监听器 | Register a catalog listener
+     */
+    public void addCatalogListener(CatalogListener listener) {
+        catalogListeners.add(listener);
+    }
+
+    /**
+     * 移除目录变更监听器 | Remove a catalog listener
+     */
+    public void removeCatalogListener(CatalogListener listener) {
+        catalogListeners.remove(listener);
+    }
+
+    /**
+     * 创建目录快照，O(1)，不复制目录 | Take a catalog snapshot in O(1) without copying the catalog
+     * 快照在关闭前始终反映创建那一刻的状态，期间可以继续修改目录 | Until closed it reflects the catalog at this moment while edits continue
+     */
+    public CatalogSnapshot snapshot() {
+        beginWrite();
+        try {
+            openSnapshots.merge(version, 1, Integer::sum);
+            return new CatalogSnapshot(this, vector.share(), version, vector.liveCount());
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * 从 from 位置起读出一块快照时刻的产品状态 | Read one block of snapshot-time product states starting at position from
+     * 要复制产品状态，所以在读锁下进行 | Copies product state, so it runs under the read lock
+     *
+     * @return 下一次读取的起始位置 | Position to resume from
+     */
+    int resolve(CatalogSnapshot snapshot, int from, Product[] block) {
+        lock.readLock().lock();
+        try {
+            ProductVector.Shared shared = snapshot.shared();
+            int position = from;
+            int count = 0;
+            while (count < block.length && position < shared.size) {
+                Product product = shared.get(position++);
+                if (product != null) {
+                    block[count++] = stateAt(product, snapshot.getVersion());
+                }
+            }
+            return position;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void release(CatalogSnapshot snapshot) {
+        beginWrite();
+        try {
+            openSnapshots.merge(snapshot.getVersion(), -1, (a, b) -> a + b == 0 ? null : a + b);
+            if (openSnapshots.isEmpty()) {
+                preImages.clear();
+            }
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * 修改前保存产品状态，仅当某个打开的快照还看得到当前状态时 | Save a product's state before a change, only if an open snapshot can still see the current state
+     */
+    private void preserve(Product product) {
+        if (openSnapshots.isEmpty()) {
+            return;
+        }
+        PreImage newest = preImages.get(product);
+        // 当前状态自 newest.supersededAt 起生效 | The current state has been in effect since newest.supersededAt
+        if (newest == null || openSnapshots.lastKey() >= newest.supersededAt) {
+            preImages.put(product, new PreImage(version + 1, product.copy(), newest));
+        }
+    }
+
+    /**
+     * 产品在版本 v 时的状态副本 | Copy of a product's state at version v
+     */
+    private Product stateAt(Product product, long v) {
+        Product state = null;
+        for (PreImage pre = preImages.get(product); pre != null && pre.supersededAt > v; pre = pre.older) {
+            state = pre.state;
+        }
+        return state != null ? state : product.copy();
+    }
+
+    /**
+     * 将产品纳入二级索引并监听其变更 | Add product to secondary indexes and listen for its changes
+     */
+    private void attach(Product product) {
+        index(product);
+        product.setChangeListener(changeListener);
+    }
+
+    /**
+     * 将产品移出二级索引并停止监听 | Remove product from secondary indexes and stop listening
+     */
+    private void detach(Product product) {
+        product.setChangeListener(null);
+        unindex(product);
+    }
+
+    private void index(Product product) {
+        indexPrice(product);
+        textIndex.add(product);
+        typeIndex.add(product);
+        colorIndex.add(product);
+        storageIndex.add(product);
+        chipIndex.add(product);
+        cellularIndex.add(product);
+        typeCounts.merge(product.getClass(), 1, Integer::sum);
+        addAggregates(product, 1);
+    }
+
+    private void unindex(Product product) {
+        unindexPrice(product);
+        textIndex.remove(product);
+        typeIndex.remove(product);
+        colorIndex.remove(product);
+        storageIndex.remove(product);
+        chipIndex.remove(product);
+        cellularIndex.remove(product);
+        typeCounts.merge(product.getClass(), -1, (a, b) -> a + b == 0 ? null : a + b);
+        addAggregates(product, -1);
+    }
+
+    /**
+     * 将产品计入（sign=1）或移出（sign=-1）统计量 | Add (sign=1) or remove (sign=-1) a product from the aggregates
+     */
+    private void addAggregates(Product product, int sign) {
+        int stock = product.getStock();
+        totalStock.add(sign * (long) stock);
+        priceSum += sign * product.getPrice();
+        inventoryValue.add(sign * product.getPrice() * stock);
+    }
+
+    private void indexPrice(Product product) {
+        priceIndex.computeIfAbsent(product.getPrice(), k -> new LinkedHashSet<>()).add(product);
+    }
+
+    private void unindexPrice(Product product) {
+        Set<Product> bucket = priceIndex.get(product.getPrice());
+        if (bucket != null && bucket.remove(product) && bucket.isEmpty()) {
+            priceIndex.remove(product.getPrice());
+        }
+    }
+
+    /**
+     * 受管产品的字段变更回调 | Field change callback for managed products
+     */
+    private void onProductChange(Product product, Product.Field field, Runnable change) {
+        beginWrite();
+        try {
+            String oldId = product.getId();
+            preserve(product);
+            applyProductChange(product, field, change);
+            fieldChanged(field);
+
+            if (!oldId.equals(product.getId())) {
+                for (CatalogListener listener : catalogListeners) {
+                    listener.productRemoved(oldId);
+                }
+            }
+            for (CatalogListener listener : catalogListeners) {
+                listener.productUpdated(product);
+            }
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * 受管产品的库存原子增减回调 | Atomic stock adjustment callback for managed products
+     * 没有写入和打开的快照时不加锁：登记为进行中后直接 CAS，写操作会等它完成，因此价格和统计量在期间保持稳定；
+     * 否则在写锁下进行，以便为快照保存修改前状态 |
+     * Lock-free while no write is running and no snapshot is open: register as in flight and CAS directly, and since writes wait
+     * for it the price and aggregates stay stable meanwhile; otherwise it runs under the write lock so snapshots get their pre-image
+     */
+    private boolean onProductStockAdjust(Product product, int delta, BooleanSupplier adjust) {
+        int counter = ((int) Thread.currentThread().getId() & (RESERVATION_STRIPES - 1)) * STRIPE_PADDING;
+        boolean lockFree;
+        boolean adjusted = false;
+        reservationsInFlight.incrementAndGet(counter);
+        try {
+            lockFree = (writeSequence & 1) == 0 && openSnapshots.isEmpty() && product.getChangeListener() == changeListener;
+            if (lockFree && adjust.getAsBoolean()) {
+                adjusted = true;
+                totalStock.add(delta);
+                inventoryValue.add(delta * product.getPrice());
+            }
+        } finally {
+            reservationsInFlight.decrementAndGet(counter);
+        }
+
+        if (!lockFree) {
+            return adjustStockLocked(product, delta, adjust);
+        }
+        if (adjusted) {
+            // 在登记区外通知，监听器可以再发起写入 | Notify outside the in-flight section so listeners may start writes
+            notifyStockAdjusted(product);
+        }
+        return adjusted;
+    }
+
+    private boolean adjustStockLocked(Product product, int delta, BooleanSupplier adjust) {
+        beginWrite();
+        try {
+            if (product.getChangeListener() != changeListener) {
+                // 期间已被移出目录 | Removed from the catalog meanwhile
+                return product.adjustStock(delta);
+            }
+            preserve(product);
+            if (!adjust.getAsBoolean()) {
+                return false;
+            }
+            totalStock.add(delta);
+            inventoryValue.add(delta * product.getPrice());
+            fieldChanged(Product.Field.STOCK);
+            notifyStockAdjusted(product);
+            return true;
+        } finally {
+            endWrite();
+        }
+    }
+
+    private void notifyStockAdjusted(Product product) {
+        List<Product> deferred = deferredStockUpdates.get();
+        if (deferred != null) {
+            deferred.add(product);
+        } else {
+            publishStockAdjusted(Collections.singletonList(product));
+        }
+    }
+
+    private void applyProductChange(Product product, Product.Field field, Runnable change) {
+        switch (field) {
+            case ID:
+                changeId(product, change);
+                break;
+            case PRICE:
+                unindexPrice(product);
+                addAggregates(product, -1);
+                try {
+                    change.run();
+                } finally {
+                    indexPrice(product);
+                    addAggregates(product, 1);
+                }
+                break;
+            case STOCK:
+                addAggregates(product, -1);
+                try {
+                    change.run();
+                } finally {
+                    addAggregates(product, 1);
+                }
+                break;
+            case MODEL:
+                textIndex.remove(product);
+                try {
+                    change.run();
+                } finally {
+                    textIndex.add(product);
+                }
+                break;
+            case COLOR:
+                textIndex.remove(product);
+                colorIndex.remove(product);
+                try {
+                    change.run();
+                } finally {
+                    textIndex.add(product);
+                    colorIndex.add(product);
+                }
+                break;
+            case STORAGE:
+                storageIndex.remove(product);
+                try {
+                    change.run();
+                } finally {
+                    storageIndex.add(product);
+                }
+                break;
+            default:
+                change.run();
+        }
+    }
+
+    /**
+     * 修改受管产品的ID（二级索引按ID哈希，需要整体重建该产品的条目） | Change a managed product's ID (secondary indexes hash by ID, so re-index the product)
+     */
+    private void changeId(Product product, Runnable change) {
+        String oldId = product.getId();
+        unindex(product);
+        try {
+            change.run();
+            String newId = product.getId();
+            if (!oldId.equals(newId)) {
+                if (newId == null || products.containsKey(newId)) {
+                    // 回滚，避免覆盖其他产品 | Roll back so another product is not overwritten
+                    product.setChangeListener(null);
+                    product.setId(oldId);
+                    product.setChangeListener(changeListener);
+                    throw new IllegalArgumentException("产品ID已存在: " + newId + " | Product ID already exists: " + newId);
+                }
+                products.remove(oldId);
+                products.put(newId, product);
+                // 改ID视为重新加入，移到末尾 | A rename counts as re-adding, so the product moves to the end
+                vector.remove(product);
+                vector.add(product);
+            }
+        } finally {
+            index(product);
+        }
     }
 }
@@ -0,0 +1,79 @@
+package com.applestore.service;
+
+import com.applestore.model.Product;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 产品分页 | Product Page
+ * 按插入顺序的一页产品，以及前后翻页用的游标 | One page of products in insertion order, plus the cursors for paging back and forth
+ *
+ * 游标记录的是产品的插入序号而不是下标，翻页期间的新增、删除和压缩都不会让已有产品重复或漏掉；新增的产品出现在最后一页 |
+ * Cursors hold insertion sequence numbers rather than indexes, so inserts, deletes and compaction while paging never repeat or
+ * skip existing products; new products show up on the last page
+ * 游标对调用方不透明，只应原样传回 ProductManager.getPage | Cursors are opaque to callers and should only be passed back to ProductManager.getPage
+ */
+public final class ProductPage {
+    private final List<Product> products;
+    private final String previousCursor;
+    private final String nextCursor;
+
+    ProductPage(List<Product> products, String previousCursor, String nextCursor) {
+        this.products = Collections.unmodifiableList(products);
+        this.previousCursor = previousCursor;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    /**
+     * 上一页的游标，已是第一页时为 null | Cursor of the previous page, or null on the first page
+     */
+    public String getPreviousCursor() {
+        return previousCursor;
+    }
+
+    /**
+     * 下一页的游标，已是最后一页时为 null | Cursor of the next page, or null on the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasPrevious() {
+        return previousCursor != null;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    /**
+     * 向后（n）或向前（p）翻页的游标：方向加上边界插入序号的 36 进制 |
+     * Cursor for paging forward (n) or backward (p): the direction followed by the boundary insertion sequence in base 36
+     */
+    static String cursor(boolean forward, long sequence) {
+        return (forward ? "n" : "p") + Long.toString(sequence, 36);
+    }
+
+    static boolean isForward(String cursor) {
+        return cursor.charAt(0) == 'n';
+    }
+
+    /**
+     * @throws IllegalArgumentException 游标格式无效 | If the cursor is malformed
+     */
+    static long sequence(String cursor) {
+        if (cursor.length() < 2 || (cursor.charAt(0) != 'n' && cursor.charAt(0) != 'p')) {
+            throw new IllegalArgumentException("无效的分页游标: " + cursor + " | Invalid page cursor: " + cursor);
+        }
+        try {
+            return Long.parseLong(cursor.substring(1), 36);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("无效的分页游标: " + cursor + " | Invalid page cursor: " + cursor);
+        }
+    }
+}
@@ -0,0 +1,574 @@
+package com.applestore.service;
+
+import com.applestore.model.AppleWatch;
+import com.applestore.model.MacBook;
+import com.applestore.model.Product;
+import com.applestore.model.iPad;
+
+import java.util.*;
+
+/**
+ * 组合查询 | Composite Query
+ * 用 AND/OR 组合类型、价格区间、颜色、存储、关键词以及芯片、蜂窝网络等子类属性，再加上排序和数量上限；由 ProductManager.query 执行 |
+ * Combines type, price range, color, storage, keyword and subclass attributes such as chip or cellular with AND/OR,
+ * plus a sort order and a limit; run by ProductManager.query
+ *
+ * 查询不可变，构造时规范化（小写、展平嵌套、子条件排序去重），语义相同的查询 key() 相同 |
+ * Queries are immutable and normalized on construction (lower-cased, nesting flattened, children sorted and deduplicated),
+ * so queries with the same meaning share the same key()
+ *
+ * 示例 | Example:
+ * ProductQuery.where(ProductQuery.and(ProductQuery.type(iPhone.class), ProductQuery.priceBetween(5000, 9000),
+ *         ProductQuery.or(ProductQuery.color("蓝"), ProductQuery.color("黑")))).sortBy(ProductQuery.Sort.PRICE_ASCENDING).limit(20)
+ */
+public final class ProductQuery {
+
+    /**
+     * 排序方式；同价或同名时按插入顺序 | Sort order; ties on price or name keep insertion order
+     */
+    public enum Sort {
+        NONE, PRICE_ASCENDING, PRICE_DESCENDING, NAME
+    }
+
+    private final Condition condition;
+    private final Sort sort;
+    private final int limit;
+    private final String key;
+
+    private ProductQuery(Condition condition, Sort sort, int limit) {
+        this.condition = condition;
+        this.sort = sort;
+        this.limit = limit;
+        this.key = (condition == null ? "all" : condition.key)
+                + (sort == Sort.NONE ? "" : " sort=" + sort)
+                + (limit == Integer.MAX_VALUE ? "" : " limit=" + limit);
+    }
+
+    /**
+     * 不带条件的查询（全部产品） | A query without conditions (every product)
+     */
+    public static ProductQuery all() {
+        return new ProductQuery(null, Sort.NONE, Integer.MAX_VALUE);
+    }
+
+    public static ProductQuery where(Condition condition) {
+        return new ProductQuery(Objects.requireNonNull(condition, "condition"), Sort.NONE, Integer.MAX_VALUE);
+    }
+
+    public ProductQuery sortBy(Sort sort) {
+        return new ProductQuery(condition, Objects.requireNonNull(sort, "sort"), limit);
+    }
+
+    /**
+     * @throws IllegalArgumentException 上限不为正数 | If the limit is not positive
+     */
+    public ProductQuery limit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("数量上限必须为正数 | Limit must be positive");
+        }
+        return new ProductQuery(condition, sort, limit);
+    }
+
+    /**
+     * 条件，不带条件时为 null | The condition, or null if there is none
+     */
+    public Condition getCondition() {
+        return condition;
+    }
+
+    public Sort getSort() {
+        return sort;
+    }
+
+    /**
+     * 数量上限，没有时为 Integer.MAX_VALUE | The limit, or Integer.MAX_VALUE if there is none
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * 结果依赖的可变字段（条件和排序），按 Product.Field 序号的位掩码；目录增删总是影响结果，不在其中 |
+     * Mutable fields the result depends on (condition and sort) as a bit mask by Product.Field ordinal; adding or removing products
+     * always affects results and is not included
+     */
+    int dependencies() {
+        int fields = condition == null ? 0 : condition.fields;
+        if (sort == Sort.PRICE_ASCENDING || sort == Sort.PRICE_DESCENDING) {
+            fields |= bit(Product.Field.PRICE);
+        }
+        return fields;
+    }
+
+    private static int bit(Product.Field field) {
+        return 1 << field.ordinal();
+    }
+
+    /**
+     * 规范化后的查询文本 | Normalized query text
+     */
+    public String key() {
+        return key;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof ProductQuery && key.equals(((ProductQuery) obj).key);
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+
+    // ---- 条件 | Conditions ----
+
+    /**
+     * 按类型（含子类） | By type (including subclasses)
+     */
+    public static Condition type(Class<? extends Product> type) {
+        return new TypeCondition(Objects.requireNonNull(type, "type"));
+    }
+
+    /**
+     * 按价格区间，两端都包含 | By price range, both ends inclusive
+     *
+     * @throws IllegalArgumentException 下限大于上限 | If min is greater than max
+     */
+    public static Condition priceBetween(double min, double max) {
+        if (!(min <= max)) {
+            throw new IllegalArgumentException("价格下限不能大于上限 | Minimum price cannot exceed maximum price");
+        }
+        return new PriceCondition(min, max);
+    }
+
+    /**
+     * 颜色包含该文字（不区分大小写），与 filterByColor 相同 | Color contains the text (case-insensitive), same as filterByColor
+     */
+    public static Condition color(String color) {
+        return new ColorCondition(normalize(color, "color"));
+    }
+
+    /**
+     * 按存储容量（GB） | By storage capacity (GB)
+     */
+    public static Condition storage(int storage) {
+        return new StorageCondition(storage);
+    }
+
+    /**
+     * 名称、型号或颜色包含关键词，与 search 相同 | Name, model or color contains the keyword, same as search
+     */
+    public static Condition text(String keyword) {
+        if (keyword == null || keyword.trim().isEmpty()) {
+            throw new IllegalArgumentException("keyword 不能为空 | keyword cannot be empty");
+        }
+        return new TextCondition(keyword.toLowerCase());
+    }
+
+    /**
+     * MacBook 芯片（不区分大小写的完全匹配） | MacBook chip (case-insensitive exact match)
+     */
+    public static Condition chip(String chip) {
+        return new ChipCondition(normalize(chip, "chip"));
+    }
+
+    /**
+     * 是否支持蜂窝网络（iPad 和 Apple Watch） | Cellular support (iPad and Apple Watch)
+     */
+    public static Condition cellular(boolean cellular) {
+        return new CellularCondition(cellular);
+    }
+
+    public static Condition and(Condition... conditions) {
+        return combine(true, conditions);
+    }
+
+    public static Condition or(Condition... conditions) {
+        return combine(false, conditions);
+    }
+
+    private static String normalize(String value, String name) {
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException(name + " 不能为空 | " + name + " cannot be empty");
+        }
+        return value.trim().toLowerCase();
+    }
+
+    /**
+     * 展平同类嵌套，按 key 排序去重；只剩一个子条件时直接返回它 |
+     * Flatten nesting of the same kind and sort and deduplicate by key; a single remaining child is returned as is
+     */
+    private static Condition combine(boolean and, Condition[] conditions) {
+        if (conditions.length == 0) {
+            throw new IllegalArgumentException("至少需要一个条件 | At least one condition is required");
+        }
+        TreeMap<String, Condition> children = new TreeMap<>();
+        for (Condition condition : conditions) {
+            Objects.requireNonNull(condition, "condition");
+            if (condition instanceof Junction && ((Junction) condition).and == and) {
+                for (Condition child : ((Junction) condition).children) {
+                    children.put(child.key, child);
+                }
+            } else {
+                children.put(condition.key, condition);
+            }
+        }
+        if (children.size() == 1) {
+            return children.firstEntry().getValue();
+        }
+        return new Junction(and, children.values().toArray(new Condition[0]));
+    }
+
+    /**
+     * 查询条件 | Query Condition
+     * 由 ProductQuery 的静态方法创建；规划器先问每个条件用索引能取到多少候选，选最少的那个取出候选，再逐个校验整个条件 |
+     * Created by ProductQuery's static methods; the planner asks each condition how many candidates its index would yield,
+     * takes the candidates of the smallest, then verifies the whole condition on each
+     */
+    public abstract static class Condition {
+        final String key;
+        // 条件读取的可变字段，按 Product.Field 序号的位掩码 | Mutable fields the condition reads, as a bit mask by Product.Field ordinal
+        final int fields;
+
+        private Condition(String key, int fields) {
+            this.key = key;
+            this.fields = fields;
+        }
+
+        /**
+         * 产品是否满足条件 | Whether a product satisfies the condition
+         */
+        abstract boolean test(Product product);
+
+        /**
+         * 用索引能取到的候选数，不超过 bound；无法使用索引或不少于 bound 时返回 bound |
+         * Number of candidates the indexes would yield, capped at bound; returns bound if no index applies or there would be at least bound
+         */
+        abstract int estimate(QueryPlanner planner, int bound);
+
+        /**
+         * 从索引取出候选（可多于满足条件的产品，不会少），只在 estimate 小于 bound 时调用 |
+         * Take the candidates from the indexes (possibly more than the matches, never fewer); only called when estimate was below bound
+         */
+        abstract void collect(QueryPlanner planner, Collection<Product> out);
+
+        @Override
+        public String toString() {
+            return key;
+        }
+    }
+
+    private static final class TypeCondition extends Condition {
+        private final Class<? extends Product> type;
+
+        TypeCondition(Class<? extends Product> type) {
+            super("type(" + type.getName() + ")", 0);
+            this.type = type;
+        }
+
+        @Override
+        boolean test(Product product) {
+            return type.isInstance(product);
+        }
+
+        @Override
+        int estimate(QueryPlanner planner, int bound) {
+            long count = 0;
+            for (Map.Entry<Class<? extends Product>, Set<Product>> bucket : planner.types().buckets().entrySet()) {
+                if (type.isAssignableFrom(bucket.getKey())) {
+                    count += bucket.getValue().size();
+                }
+            }
+            return (int) Math.min(count, bound);
+        }
+
+        @Override
+        void collect(QueryPlanner planner, Collection<Product> out) {
+            for (Map.Entry<Class<? extends Product>, Set<Product>> bucket : planner.types().buckets().entrySet()) {
+                if (type.isAssignableFrom(bucket.getKey())) {
+                    out.addAll(bucket.getValue());
+                }
+            }
+        }
+    }
+
+    private static final class PriceCondition extends Condition {
+        private final double min;
+        private final double max;
+
+        PriceCondition(double min, double max) {
+            super("price[" + min + "," + max + "]", bit(Product.Field.PRICE));
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        boolean test(Product product) {
+            return product.getPrice() >= min && product.getPrice() <= max;
+        }
+
+        @Override
+        int estimate(QueryPlanner planner, int bound) {
+            return planner.countPrice(min, max, bound);
+        }
+
+        @Override
+        void collect(QueryPlanner planner, Collection<Product> out) {
+            planner.collectPrice(min, max, out);
+        }
+    }
+
+    private static final class ColorCondition extends Condition {
+        private final String color;
+
+        ColorCondition(String color) {
+            super("color(" + color + ")", bit(Product.Field.COLOR));
+            this.color = color;
+        }
+
+        @Override
+        boolean test(Product product) {
+            return product.getColor().toLowerCase().contains(color);
+        }
+
+        /**
+         * 颜色种类很少，逐个比较索引中的颜色即可 | There are few distinct colors, so each indexed color is simply compared
+         */
+        @Override
+        int estimate(QueryPlanner planner, int bound) {
+            long count = 0;
+            for (Map.Entry<String, Set<Product>> bucket : planner.colors().buckets().entrySet()) {
+                if (bucket.getKey().contains(color)) {
+                    count += bucket.getValue().size();
+                }
+            }
+            return (int) Math.min(count, bound);
+        }
+
+        @Override
+        void collect(QueryPlanner planner, Collection<Product> out) {
+            for (Map.Entry<String, Set<Product>> bucket : planner.colors().buckets().entrySet()) {
+                if (bucket.getKey().contains(color)) {
+                    out.addAll(bucket.getValue());
+                }
+            }
+        }
+    }
+
+    private static final class StorageCondition extends Condition {
+        private final int storage;
+
+        StorageCondition(int storage) {
+            super("storage(" + storage + ")", bit(Product.Field.STORAGE));
+            this.storage = storage;
+        }
+
+        @Override
+        boolean test(Product product) {
+            return product.getStorage() == storage;
+        }
+
+        @Override
+        int estimate(QueryPlanner planner, int bound) {
+            return Math.min(planner.storages().get(storage).size(), bound);
+        }
+
+        @Override
+        void collect(QueryPlanner planner, Collection<Product> out) {
+            out.addAll(planner.storages().get(storage));
+        }
+    }
+
+    private static final class TextCondition extends Condition {
+        private final String keyword;
+
+        TextCondition(String keyword) {
+            // 名称不可修改 | The name cannot be modified
+            super("text(" + keyword + ")", bit(Product.Field.MODEL) | bit(Product.Field.COLOR));
+            this.keyword = keyword;
+        }
+
+        @Override
+        boolean test(Product product) {
+            return contains(product.getName()) || contains(product.getModel()) || contains(product.getColor());
+        }
+
+        private boolean contains(String field) {
+            return field != null && field.toLowerCase().contains(keyword);
+        }
+
+        @Override
+        int estimate(QueryPlanner planner, int bound) {
+            return planner.countText(keyword, bound);
+        }
+
+        @Override
+        void collect(QueryPlanner planner, Collection<Product> out) {
+            planner.collectText(keyword, out);
+        }
+    }
+
+    private static final class ChipCondition extends Condition {
+        private final String chip;
+
+        ChipCondition(String chip) {
+            super("chip(" + chip + ")", 0);
+            this.chip = chip;
+        }
+
+        @Override
+        boolean test(Product product) {
+            return chip.equals(chipOf(product));
+        }
+
+        @Override
+        int estimate(QueryPlanner planner, int bound) {
+            return Math.min(planner.chips().get(chip).size(), bound);
+        }
+
+        @Override
+        void collect(QueryPlanner planner, Collection<Product> out) {
+            out.addAll(planner.chips().get(chip));
+        }
+    }
+
+    private static final class CellularCondition extends Condition {
+        private final boolean cellular;
+
+        CellularCondition(boolean cellular) {
+            super("cellular(" + cellular + ")", 0);
+            this.cellular = cellular;
+        }
+
+        @Override
+        boolean test(Product product) {
+            return Boolean.valueOf(cellular).equals(cellularOf(product));
+        }
+
+        @Override
+        int estimate(QueryPlanner planner, int bound) {
+            return Math.min(planner.cellulars().get(cellular).size(), bound);
+        }
+
+        @Override
+        void collect(QueryPlanner planner, Collection<Product> out) {
+            out.addAll(planner.cellulars().get(cellular));
+        }
+    }
+
+    /**
+     * AND 取候选最少的子条件；OR 在每个子条件都能用索引时取并集，否则整体无法使用索引 |
+     * AND takes the child with the fewest candidates; OR takes the union when every child can use an index, otherwise it cannot use one at all
+     */
+    private static final class Junction extends Condition {
+        private final boolean and;
+        private final Condition[] children;
+
+        Junction(boolean and, Condition[] children) {
+            super(keyOf(and, children), fieldsOf(children));
+            this.and = and;
+            this.children = children;
+        }
+
+        private static String keyOf(boolean and, Condition[] children) {
+            StringJoiner key = new StringJoiner(",", and ? "and(" : "or(", ")");
+            for (Condition child : children) {
+                key.add(child.key);
+            }
+            return key.toString();
+        }
+
+        private static int fieldsOf(Condition[] children) {
+            int fields = 0;
+            for (Condition child : children) {
+                fields |= child.fields;
+            }
+            return fields;
+        }
+
+        @Override
+        boolean test(Product product) {
+            for (Condition child : children) {
+                if (child.test(product) != and) {
+                    return !and;
+                }
+            }
+            return and;
+        }
+
+        @Override
+        int estimate(QueryPlanner planner, int bound) {
+            if (and) {
+                int best = bound;
+                for (Condition child : children) {
+                    best = child.estimate(planner, best);
+                }
+                return best;
+            }
+            int total = 0;
+            for (Condition child : children) {
+                total += child.estimate(planner, bound - total);
+                if (total >= bound) {
+                    return bound;
+                }
+            }
+            return total;
+        }
+
+        @Override
+        void collect(QueryPlanner planner, Collection<Product> out) {
+            if (and) {
+                // 再估算一次找出最少的子条件；估算在上限内进行，代价远小于取候选 |
+                // Estimate again to find the smallest child; estimates run within a bound and cost far less than collecting
+                Condition smallest = children[0];
+                int best = planner.catalogSize();
+                for (Condition child : children) {
+                    int estimate = child.estimate(planner, best);
+                    if (estimate < best) {
+                        best = estimate;
+                        smallest = child;
+                    }
+                }
+                smallest.collect(planner, out);
+                return;
+            }
+            Set<Product> union = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Condition child : children) {
+                child.collect(planner, union);
+            }
+            out.addAll(union);
+        }
+    }
+
+    // ---- 子类属性 | Subclass attributes ----
+
+    /**
+     * 规范化的芯片名，不是 MacBook 时为 null | Normalized chip name, or null if not a MacBook
+     */
+    static String chipOf(Product product) {
+        if (product instanceof MacBook) {
+            String chip = ((MacBook) product).getChip();
+            return chip == null ? null : chip.trim().toLowerCase();
+        }
+        return null;
+    }
+
+    /**
+     * 是否支持蜂窝网络，不适用时为 null | Cellular support, or null if it does not apply
+     */
+    static Boolean cellularOf(Product product) {
+        if (product instanceof iPad) {
+            return ((iPad) product).isCellular();
+        }
+        if (product instanceof AppleWatch) {
+            return ((AppleWatch) product).isCellular();
+        }
+        return null;
+    }
+}
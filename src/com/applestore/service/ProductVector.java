@@ -0,0 +1,310 @@
+package com.applestore.service;
+
+import com.applestore.model.Product;
+
+import java.util.*;
+
+/**
+ * 分块写时复制的产品数组 | Chunked Copy-on-Write Product Array
+ * 按插入顺序保存产品，删除留下空位，空位过多时整体压缩 | Keeps products in insertion order; removal leaves a hole and the array is compacted once holes dominate
+ *
+ * share() 以 O(1) 交出当前数组给快照；之后第一次写入才复制顶层数组和被改动的块 |
+ * share() hands the current arrays to a snapshot in O(1); only the first write afterwards copies the top array and the touched chunk
+ * view() 同样交出数组，并缓存视图直到下一次写入，两次写入之间的所有读取共用同一个视图 |
+ * view() hands them out the same way and caches the view until the next write, so all reads between two writes share one view
+ *
+ * 每个槽位另记一个严格递增、不复用的插入序号，压缩时随产品保留，分页游标据此二分定位 |
+ * Each slot also records a strictly increasing, never reused insertion sequence that survives compaction; page cursors binary-search it
+ *
+ * 写操作须由调用方串行化；读取先把数组引用取到局部变量，与写入交错时最多抛出异常，不会死循环 |
+ * Writes must be serialized by the caller; reads take the arrays into locals first, so a racing write can at worst make them throw, never loop
+ */
+class ProductVector implements Iterable<Product> {
+    static final int CHUNK_SHIFT = 10;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private Product[][] chunks = new Product[0][];
+    // 每块最后一次复制时的纪元，与当前纪元不同说明被快照共享 | Epoch each chunk was last copied in; a different epoch means a snapshot shares it
+    private int[] chunkEpochs = new int[0];
+    private int topEpoch;
+    private int epoch;
+    private int size;
+    private final Map<Product, Integer> positions = new IdentityHashMap<>();
+    // 各槽位的插入序号，只供分页读取，不与快照共享 | Insertion sequence per slot, read only by paging and never shared with snapshots
+    private long[] sequences = new long[0];
+    private long nextSequence;
+    // 当前内容的视图，任何写入都会清除 | View of the current contents, cleared by any write
+    private volatile CatalogView view;
+
+    /**
+     * 快照持有的只读数组 | Read-only arrays held by a snapshot
+     */
+    static final class Shared {
+        final Product[][] chunks;
+        final int size;
+
+        private Shared(Product[][] chunks, int size) {
+            this.chunks = chunks;
+            this.size = size;
+        }
+
+        Product get(int index) {
+            return chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+        }
+    }
+
+    Shared share() {
+        epoch++;
+        return new Shared(chunks, size);
+    }
+
+    /**
+     * 已缓存的视图，没有时为 null；可在任何线程不加锁调用 | The cached view, or null if none; callable from any thread without locking
+     */
+    CatalogView cachedView() {
+        return view;
+    }
+
+    /**
+     * 当前内容的只读视图；会修改纪元，调用方须持有读锁（与写入互斥），并发的读取者由 synchronized 串行 |
+     * Read-only view of the current contents; it bumps the epoch, so the caller must hold the read lock (excluding writes),
+     * and concurrent readers are serialized by synchronized
+     */
+    synchronized CatalogView view() {
+        CatalogView current = view;
+        if (current == null) {
+            current = new CatalogView(share(), positions.size());
+            view = current;
+        }
+        return current;
+    }
+
+    int liveCount() {
+        return positions.size();
+    }
+
+    /**
+     * 产品当前的位置，位置越小插入越早；不在其中时返回 -1 | The product's current position, smaller meaning inserted earlier; -1 if absent
+     */
+    int positionOf(Product product) {
+        Integer position = positions.get(product);
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * 按插入顺序复制出存活产品 | Copy the live products out in insertion order
+     */
+    List<Product> toList() {
+        List<Product> list = new ArrayList<>(positions.size());
+        forEach(list::add);
+        return list;
+    }
+
+    @Override
+    public Iterator<Product> iterator() {
+        Product[][] chunks = this.chunks;
+        int size = this.size;
+        return new Iterator<Product>() {
+            private int index;
+            private Product next = advance();
+
+            private Product advance() {
+                while (index < size) {
+                    Product product = chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+                    index++;
+                    if (product != null) {
+                        return product;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Product next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Product product = next;
+                next = advance();
+                return product;
+            }
+        };
+    }
+
+    void add(Product product) {
+        append(product, nextSequence++);
+    }
+
+    private void append(Product product, long sequence) {
+        view = null;
+        if (size == sequences.length) {
+            sequences = Arrays.copyOf(sequences, Math.max(CHUNK_SIZE, sequences.length * 2));
+        }
+        sequences[size] = sequence;
+        int chunk = size >>> CHUNK_SHIFT;
+        if (chunk == chunks.length) {
+            // 扩容本身就复制了顶层数组 | Growing copies the top array anyway
+            chunks = Arrays.copyOf(chunks, Math.max(4, chunks.length * 2));
+            chunkEpochs = Arrays.copyOf(chunkEpochs, chunks.length);
+            topEpoch = epoch;
+        }
+        if (chunks[chunk] == null) {
+            ownTop();
+            chunks[chunk] = new Product[CHUNK_SIZE];
+            chunkEpochs[chunk] = epoch;
+        }
+        writable(chunk)[size & CHUNK_MASK] = product;
+        positions.put(product, size++);
+    }
+
+    void remove(Product product) {
+        Integer position = positions.remove(product);
+        if (position == null) {
+            return;
+        }
+        view = null;
+        writable(position >>> CHUNK_SHIFT)[position & CHUNK_MASK] = null;
+        if (size - positions.size() > Math.max(CHUNK_SIZE, positions.size())) {
+            compact();
+        }
+    }
+
+    /**
+     * 原位替换，保持顺序 | Replace in place, keeping the order
+     */
+    void replace(Product oldProduct, Product newProduct) {
+        Integer position = positions.remove(oldProduct);
+        if (position == null) {
+            add(newProduct);
+            return;
+        }
+        view = null;
+        writable(position >>> CHUNK_SHIFT)[position & CHUNK_MASK] = newProduct;
+        positions.put(newProduct, position);
+    }
+
+    void clear() {
+        view = null;
+        chunks = new Product[0][];
+        chunkEpochs = new int[0];
+        topEpoch = epoch;
+        size = 0;
+        positions.clear();
+        // 序号不归零，旧游标不会指向新产品之间 | Sequences keep counting, so old cursors never land among new products
+        sequences = new long[0];
+    }
+
+    /**
+     * 去掉空位；总是新建数组，已交出的数组保持不变 | Squeeze out holes; always builds new arrays so shared ones stay untouched
+     */
+    private void compact() {
+        Product[] live = new Product[positions.size()];
+        long[] liveSequences = new long[live.length];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            Product product = chunks[i >>> CHUNK_SHIFT][i & CHUNK_MASK];
+            if (product != null) {
+                liveSequences[count] = sequences[i];
+                live[count++] = product;
+            }
+        }
+        clear();
+        for (int i = 0; i < count; i++) {
+            append(live[i], liveSequences[i]);
+        }
+    }
+
+    /**
+     * 读取一页：向后取插入序号大于 boundary 的前 limit 个，向前取小于 boundary 的后 limit 个（不足一页时改为第一页） |
+     * Read one page: forward takes the first limit products with a sequence above boundary, backward the last limit below it
+     * (falling back to the first page when fewer remain)
+     */
+    ProductPage page(boolean forward, long boundary, int limit) {
+        Product[][] chunks = this.chunks;
+        long[] sequences = this.sequences;
+        int size = this.size;
+        List<Product> page = new ArrayList<>(Math.min(limit, size));
+        int first = -1;
+        int last = -1;
+        if (forward) {
+            for (int position = firstAbove(sequences, size, boundary); position < size && page.size() < limit; position++) {
+                Product product = chunks[position >>> CHUNK_SHIFT][position & CHUNK_MASK];
+                if (product != null) {
+                    first = first < 0 ? position : first;
+                    last = position;
+                    page.add(product);
+                }
+            }
+            if (page.isEmpty()) {
+                // 游标之后已没有产品，仍可回到前一页 | Nothing after the cursor, but the previous page is still reachable
+                boolean before = hasLive(chunks, 0, firstAbove(sequences, size, boundary));
+                return new ProductPage(page, before ? ProductPage.cursor(false, boundary + 1) : null, null);
+            }
+        } else {
+            for (int position = firstAbove(sequences, size, boundary - 1) - 1; position >= 0 && page.size() < limit; position--) {
+                Product product = chunks[position >>> CHUNK_SHIFT][position & CHUNK_MASK];
+                if (product != null) {
+                    last = last < 0 ? position : last;
+                    first = position;
+                    page.add(product);
+                }
+            }
+            if (page.size() < limit) {
+                return page(true, -1, limit);
+            }
+            Collections.reverse(page);
+        }
+        String previous = hasLive(chunks, 0, first) ? ProductPage.cursor(false, sequences[first]) : null;
+        String next = hasLive(chunks, last + 1, size) ? ProductPage.cursor(true, sequences[last]) : null;
+        return new ProductPage(page, previous, next);
+    }
+
+    /**
+     * 第一个插入序号大于 boundary 的槽位（空位也保留序号，数组严格递增） |
+     * First slot whose sequence is above boundary (holes keep their sequence, so the array is strictly increasing)
+     */
+    private static int firstAbove(long[] sequences, int size, long boundary) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sequences[mid] > boundary) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    private static boolean hasLive(Product[][] chunks, int from, int to) {
+        for (int position = from; position < to; position++) {
+            if (chunks[position >>> CHUNK_SHIFT][position & CHUNK_MASK] != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void ownTop() {
+        if (topEpoch != epoch) {
+            chunks = chunks.clone();
+            topEpoch = epoch;
+        }
+    }
+
+    private Product[] writable(int chunk) {
+        if (chunkEpochs[chunk] != epoch) {
+            ownTop();
+            chunks[chunk] = chunks[chunk].clone();
+            chunkEpochs[chunk] = epoch;
+        }
+        return chunks[chunk];
+    }
+}
@@ -0,0 +1,149 @@
+package com.applestore.service;
+
+import com.applestore.model.Product;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 查询结果缓存 | Query Result Cache
+ * 以规范化的 ProductQuery 为键、按最近最少使用淘汰的有界缓存；条目数和结果中的产品总数都有上限 |
+ * Bounded cache keyed by normalized ProductQuery with least-recently-used eviction; both the entry count and the products held across results are capped
+ *
+ * 每个条目记下查询所依赖字段的变更计数，只有这些字段（或目录增删）变过才失效；库存变化不影响任何查询，从不使缓存失效 |
+ * Each entry records the change counts of the fields its query depends on and goes stale only when those fields (or the set of
+ * products) changed; no query depends on stock, so stock changes never invalidate it
+ *
+ * 命中、未命中和淘汰计数用于调整容量 | Hit, miss and eviction counts are there for sizing it
+ */
+public final class QueryCache {
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+    public static final int DEFAULT_MAX_PRODUCTS = 1 << 20;
+
+    private final int maxEntries;
+    private final int maxProducts;
+    private final LinkedHashMap<ProductQuery, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long heldProducts;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * 缓存的一个查询结果 | One cached query result
+     */
+    static final class Entry {
+        final ProductQuery query;
+        final long stamp;
+        final List<Product> products;
+
+        /**
+         * @param stamp 计算结果时所依赖字段的变更计数之和 | Sum of the change counts of the fields depended on, taken when the result was computed
+         */
+        Entry(ProductQuery query, long stamp, List<Product> products) {
+            this.query = query;
+            this.stamp = stamp;
+            this.products = Collections.unmodifiableList(products);
+        }
+    }
+
+    QueryCache(int maxEntries, int maxProducts) {
+        if (maxEntries <= 0 || maxProducts <= 0) {
+            throw new IllegalArgumentException("缓存容量必须为正数 | Cache capacity must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.maxProducts = maxProducts;
+    }
+
+    /**
+     * 取缓存的条目并标记为最近使用，没有时为 null；是否仍有效由调用方判断 |
+     * Take the cached entry and mark it recently used, or null if none; the caller decides whether it is still current
+     */
+    synchronized Entry get(ProductQuery query) {
+        return entries.get(query);
+    }
+
+    /**
+     * 放入条目，超出上限时淘汰最久未用的；结果超过产品上限的四分之一时不缓存，以免冲掉其他条目 |
+     * Store an entry, evicting the least recently used beyond the caps; results over a quarter of the product cap are not cached
+     * so they cannot flush everything else
+     */
+    synchronized void put(Entry entry) {
+        int size = entry.products.size();
+        if (size > maxProducts / 4) {
+            Entry old = entries.remove(entry.query);
+            if (old != null) {
+                heldProducts -= old.products.size();
+            }
+            return;
+        }
+        Entry old = entries.put(entry.query, entry);
+        heldProducts += size - (old == null ? 0 : old.products.size());
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries || heldProducts > maxProducts) {
+            Entry evicted = eldest.next();
+            eldest.remove();
+            heldProducts -= evicted.products.size();
+            evictions.increment();
+        }
+    }
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * 未命中次数，包括找到但已失效的条目 | Misses, including entries found but stale
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * 所有条目结果中的产品总数 | Products held across all cached results
+     */
+    public synchronized long getHeldProducts() {
+        return heldProducts;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public int getMaxProducts() {
+        return maxProducts;
+    }
+
+    /**
+     * 命中率，还没有查询时为 0 | Hit rate, or 0 before any query
+     */
+    public double getHitRate() {
+        long hit = getHits();
+        long total = hit + getMisses();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        heldProducts = 0;
+    }
+}
@@ -0,0 +1,44 @@
+package com.applestore.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * 查询的 JFR 事件 | JFR Event for Queries
+ * ProductManager 的搜索、过滤、组合查询和排序各发一个，带查询形状（规范化的条件、排序和上限）、结果数、目录大小和是否命中缓存 |
+ * Emitted per ProductManager search, filter, composite query and sort with the query shape (normalized condition, sort and limit),
+ * result count, catalog size and whether the cache served it
+ *
+ * 查询很频繁，默认只记录超过 1 毫秒的，也不带调用栈；要全部记录可在录制设置中把 com.applestore.Query#threshold 设为 0 ms。
+ * 未录制或低于阈值时 shouldCommit() 为 false，不组装任何字段 |
+ * Queries are frequent, so by default only those over 1 ms are recorded, without stack traces; set com.applestore.Query#threshold
+ * to 0 ms in the recording settings to record all. When not recording or below the threshold shouldCommit() is false and no field is filled in
+ */
+@Name("com.applestore.Query")
+@Label("Catalog Query")
+@Category({"AppleStore", "Catalog"})
+@Description("ProductManager search, filter, composite query or sort")
+@Threshold("1 ms")
+@StackTrace(false)
+final class QueryEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Query")
+    @Description("Normalized condition, sort and limit")
+    String query;
+
+    @Label("Results")
+    int results;
+
+    @Label("Catalog Size")
+    int catalogSize;
+
+    @Label("Cache Hit")
+    boolean cacheHit;
+}
@@ -0,0 +1,179 @@
+package com.applestore.service;
+
+import com.applestore.model.Product;
+
+import java.util.*;
+
+/**
+ * 查询规划器 | Query Planner
+ * 执行 ProductQuery：估算各条件用索引能取到的候选数，取最少的一组候选再校验整个条件；都不比全表少时顺序扫描 |
+ * Runs a ProductQuery: estimates how many candidates each condition's index would yield, takes the smallest set and verifies
+ * the whole condition on it, and scans in order when no index beats the full catalog
+ *
+ * 按价格排序且有数量上限时，若沿价格索引走到凑够结果所需的预计行数（上限 × 总数 / 候选数）少于候选数，就改为按价格顺序扫描 |
+ * With a price sort and a limit, walks the price index in order instead whenever the rows expected before the limit is
+ * filled (limit × total / candidates) are fewer than the candidates
+ *
+ * 只在 ProductManager 的读取中调用，不修改任何状态 | Only called inside ProductManager reads and never modifies state
+ */
+final class QueryPlanner {
+    private final ProductVector vector;
+    private final NavigableMap<Double, Set<Product>> priceIndex;
+    private final NGramIndex textIndex;
+    private final AttributeIndex<Class<? extends Product>> typeIndex;
+    private final AttributeIndex<String> colorIndex;
+    private final AttributeIndex<Integer> storageIndex;
+    private final AttributeIndex<String> chipIndex;
+    private final AttributeIndex<Boolean> cellularIndex;
+
+    QueryPlanner(ProductVector vector, NavigableMap<Double, Set<Product>> priceIndex, NGramIndex textIndex,
+                 AttributeIndex<Class<? extends Product>> typeIndex, AttributeIndex<String> colorIndex,
+                 AttributeIndex<Integer> storageIndex, AttributeIndex<String> chipIndex, AttributeIndex<Boolean> cellularIndex) {
+        this.vector = vector;
+        this.priceIndex = priceIndex;
+        this.textIndex = textIndex;
+        this.typeIndex = typeIndex;
+        this.colorIndex = colorIndex;
+        this.storageIndex = storageIndex;
+        this.chipIndex = chipIndex;
+        this.cellularIndex = cellularIndex;
+    }
+
+    List<Product> run(ProductQuery query) {
+        ProductQuery.Condition condition = query.getCondition();
+        ProductQuery.Sort sort = query.getSort();
+        int limit = query.getLimit();
+        int total = catalogSize();
+        int estimate = condition == null ? total : condition.estimate(this, total);
+
+        boolean bySort = sort == ProductQuery.Sort.PRICE_ASCENDING || sort == ProductQuery.Sort.PRICE_DESCENDING;
+        if (bySort && limit < total && (long) limit * total < (long) estimate * estimate) {
+            return scanByPrice(condition, sort == ProductQuery.Sort.PRICE_ASCENDING, limit);
+        }
+
+        List<Product> result;
+        if (estimate < total) {
+            List<Product> candidates = new ArrayList<>(estimate);
+            condition.collect(this, candidates);
+            result = new ArrayList<>(Math.min(candidates.size(), limit));
+            for (Product product : candidates) {
+                if (condition.test(product)) {
+                    result.add(product);
+                }
+            }
+            // 各索引桶合起来不是插入顺序，需要按位置重排 | Index buckets put together are not in insertion order, so re-sort by position
+            if (sort == ProductQuery.Sort.NONE) {
+                result.sort(byPosition());
+            }
+        } else {
+            List<Product> matches = new ArrayList<>();
+            for (Product product : vector) {
+                if (condition == null || condition.test(product)) {
+                    matches.add(product);
+                    if (sort == ProductQuery.Sort.NONE && matches.size() == limit) {
+                        break;
+                    }
+                }
+            }
+            result = matches;
+        }
+        if (sort != ProductQuery.Sort.NONE) {
+            result.sort(comparator(sort));
+        }
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    /**
+     * 沿价格索引顺序扫描，凑够上限即停 | Walk the price index in order and stop once the limit is filled
+     */
+    private List<Product> scanByPrice(ProductQuery.Condition condition, boolean ascending, int limit) {
+        List<Product> result = new ArrayList<>(Math.min(limit, 1024));
+        List<Product> bucketMatches = new ArrayList<>();
+        for (Set<Product> bucket : (ascending ? priceIndex : priceIndex.descendingMap()).values()) {
+            bucketMatches.clear();
+            for (Product product : bucket) {
+                if (condition == null || condition.test(product)) {
+                    bucketMatches.add(product);
+                }
+            }
+            // 同价产品按插入顺序，与其他执行方式一致 | Same-price products in insertion order, consistent with the other plans
+            bucketMatches.sort(byPosition());
+            for (Product product : bucketMatches) {
+                result.add(product);
+                if (result.size() == limit) {
+                    return result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private Comparator<Product> comparator(ProductQuery.Sort sort) {
+        switch (sort) {
+            case PRICE_ASCENDING:
+                return Comparator.comparingDouble(Product::getPrice).thenComparing(byPosition());
+            case PRICE_DESCENDING:
+                return Comparator.comparingDouble(Product::getPrice).reversed().thenComparing(byPosition());
+            case NAME:
+                return Comparator.comparing(Product::getName).thenComparing(byPosition());
+            default:
+                return byPosition();
+        }
+    }
+
+    private Comparator<Product> byPosition() {
+        return Comparator.comparingInt(vector::positionOf);
+    }
+
+    int catalogSize() {
+        return vector.liveCount();
+    }
+
+    /**
+     * 价格区间内的产品数，数到 bound 即停 | Products in the price range, counting stops at bound
+     */
+    int countPrice(double min, double max, int bound) {
+        int count = 0;
+        for (Set<Product> bucket : priceIndex.subMap(min, true, max, true).values()) {
+            count += bucket.size();
+            if (count >= bound) {
+                return bound;
+            }
+        }
+        return count;
+    }
+
+    void collectPrice(double min, double max, Collection<Product> out) {
+        for (Set<Product> bucket : priceIndex.subMap(min, true, max, true).values()) {
+            out.addAll(bucket);
+        }
+    }
+
+    int countText(String lowerKeyword, int bound) {
+        return Math.min(textIndex.estimate(lowerKeyword), bound);
+    }
+
+    void collectText(String lowerKeyword, Collection<Product> out) {
+        out.addAll(textIndex.search(lowerKeyword, vector));
+    }
+
+    AttributeIndex<Class<? extends Product>> types() {
+        return typeIndex;
+    }
+
+    AttributeIndex<String> colors() {
+        return colorIndex;
+    }
+
+    AttributeIndex<Integer> storages() {
+        return storageIndex;
+    }
+
+    AttributeIndex<String> chips() {
+        return chipIndex;
+    }
+
+    AttributeIndex<Boolean> cellulars() {
+        return cellularIndex;
+    }
+}
@@ -1,6 +1,7 @@
 package com.applestore.service;
 
 import com.applestore.model.*;
+import com.applestore.util.CatalogMetrics;
 import com.applestore.util.ColorPrinter;
 
 /**
@@ -77,19 +78,52 @@ public class Store {
     public void printStatistics() {
         ColorPrinter.printTitleBox("商店统计信息| Store Statistics");
 
-        ColorPrinter.printInfo("产品总数: " + productManager.getProductCount() + " | Total Products: " + productManager.getProductCount());
-        ColorPrinter.printInfo("总库存: " + productManager.getTotalStock() + " | Total Stock: " + productManager.getTotalStock());
-        ColorPrinter.printInfo("平均价格: ¥" + String.format("%.2f", productManager.getAveragePrice()) + " | Average Price: ¥" + String.format("%.2f", productManager.getAveragePrice()));
+        int count = productManager.getProductCount();
+        long totalStock = productManager.getTotalStock();
+        String averagePrice = String.format("%.2f", productManager.getAveragePrice());
+        String inventoryValue = String.format("%.2f", productManager.getInventoryValue());
+        ColorPrinter.printInfo("产品总数: " + count + " | Total Products: " + count);
+        ColorPrinter.printInfo("总库存: " + totalStock + " | Total Stock: " + totalStock);
+        ColorPrinter.printInfo("平均价格: ¥" + averagePrice + " | Average Price: ¥" + averagePrice);
+        ColorPrinter.printInfo("库存总价值: ¥" + inventoryValue + " | Inventory Value: ¥" + inventoryValue);
 
         // 按类型统计 | Statistics by type
         ColorPrinter.println("\n按类型统计: | Statistics by Type:", ColorPrinter.BOLD_CYAN);
-        ColorPrinter.printInfo("Apple Vision Pro: " + productManager.getProductsByType(AppleVisionPro.class).size() + " | Apple Vision Pro: " + productManager.getProductsByType(AppleVisionPro.class).size());
-        ColorPrinter.printInfo("MacBook: " + productManager.getProductsByType(MacBook.class).size() + " | MacBook: " + productManager.getProductsByType(MacBook.class).size());
-        ColorPrinter.printInfo("iPad: " + productManager.getProductsByType(iPad.class).size() + " | iPad: " + productManager.getProductsByType(iPad.class).size());
-        ColorPrinter.printInfo("iPhone: " + productManager.getProductsByType(iPhone.class).size() + " | iPhone: " + productManager.getProductsByType(iPhone.class).size());
-        ColorPrinter.printInfo("Apple Watch: " + productManager.getProductsByType(AppleWatch.class).size() + " | Apple Watch: " + productManager.getProductsByType(AppleWatch.class).size());
-        ColorPrinter.printInfo("AirPods: " + productManager.getProductsByType(AirPods.class).size() + " | AirPods: " + productManager.getProductsByType(AirPods.class).size());
-
-        System.out.println();
+        printTypeCount("Apple Vision Pro", AppleVisionPro.class);
+        printTypeCount("MacBook", MacBook.class);
+        printTypeCount("iPad", iPad.class);
+        printTypeCount("iPhone", iPhone.class);
+        printTypeCount("Apple Watch", AppleWatch.class);
+        printTypeCount("AirPods", AirPods.class);
+
+        // 查询缓存，用于调整容量 | Query cache, for sizing it
+        QueryCache cache = productManager.getQueryCache();
+        String hitRate = String.format("%.1f%%", cache.getHitRate() * 100);
+        ColorPrinter.println("\n查询缓存: | Query Cache:", ColorPrinter.BOLD_CYAN);
+        ColorPrinter.printInfo("条目: " + cache.size() + "/" + cache.getMaxEntries() + " | Entries: " + cache.size() + "/" + cache.getMaxEntries());
+        ColorPrinter.printInfo("命中: " + cache.getHits() + ", 未命中: " + cache.getMisses() + ", 淘汰: " + cache.getEvictions() + ", 命中率: " + hitRate
+                + " | Hits: " + cache.getHits() + ", Misses: " + cache.getMisses() + ", Evictions: " + cache.getEvictions() + ", Hit rate: " + hitRate);
+
+        ColorPrinter.println("", ColorPrinter.RESET);
+    }
+
+    /**
+     * 打印各操作的调用次数、延迟分位数和吞吐量 | Print call counts, latency percentiles and throughput per operation
+     */
+    public void printOperationMetrics() {
+        ColorPrinter.printTitleBox("操作耗时指标 | Operation Latency Metrics");
+        if (!CatalogMetrics.ENABLED) {
+            ColorPrinter.printWarning("指标已用 -Dapplestore.metrics=false 关闭 | Metrics are disabled by -Dapplestore.metrics=false");
+            return;
+        }
+        ColorPrinter.println(CatalogMetrics.report(), ColorPrinter.CYAN);
+    }
+
+    /**
+     * 打印单个类型的产品数量 | Print product count of one type
+     */
+    private void printTypeCount(String label, Class<? extends Product> type) {
+        int count = productManager.getProductCountByType(type);
+        ColorPrinter.printInfo(label + ": " + count + " | " + label + ": " + count);
     }
 }
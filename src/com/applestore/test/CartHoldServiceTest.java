@@ -0,0 +1,109 @@
+package com.applestore.test;
+
+import com.applestore.model.*;
+import com.applestore.service.CartHoldService;
+import com.applestore.service.CatalogListener;
+import com.applestore.service.ProductManager;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CartHoldServiceTest {
+
+    private static void awaitNoActiveHolds(CartHoldService holds) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (holds.getActiveHolds() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void testHold_ExpiresAndReturnsStock() throws InterruptedException {
+        ProductManager manager = new ProductManager();
+        iPhone iphone = new iPhone("iPhone 15", 5999.0, 10, "粉色", 128, "6.1英寸", "双摄像头");
+        manager.addProduct(iphone);
+
+        try (CartHoldService holds = new CartHoldService(manager, 5, 8)) {
+            // 到期时间跨越好几圈时间轮；最早的也留出余量，下面的断言之前不会有保留到期 |
+            // Deadlines span several turns of the wheel; even the earliest leaves headroom so nothing expires before the assertions below
+            List<CartHoldService.Hold> placed = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                placed.add(holds.hold(new Cart().addItem(iphone.getId(), 1), 200 + 20L * i));
+            }
+            assertNull(holds.hold(new Cart().addItem(iphone.getId(), 1), 1000));
+            assertEquals(0, iphone.getStock());
+            assertEquals(10, holds.getActiveHolds());
+
+            awaitNoActiveHolds(holds);
+            assertEquals(10, iphone.getStock());
+            assertEquals(10, manager.getTotalStock());
+            assertEquals(10, holds.getExpiredHolds());
+            assertTrue(holds.getMaxExpiryLatencyMillis() >= holds.getAverageExpiryLatencyMillis());
+            for (CartHoldService.Hold hold : placed) {
+                assertTrue(hold.isExpired());
+            }
+        }
+    }
+
+    @Test
+    void testHold_CancelAndClaim() throws InterruptedException {
+        ProductManager manager = new ProductManager();
+        iPhone iphone = new iPhone("iPhone 15", 5999.0, 10, "粉色", 128, "6.1英寸", "双摄像头");
+        MacBook mac = new MacBook("MacBook Air M3", 8999.0, 5, "午夜色", 256, "13.6英寸", "M3");
+        manager.addProduct(iphone);
+        manager.addProduct(mac);
+
+        try (CartHoldService holds = new CartHoldService(manager, 5, 64)) {
+            CartHoldService.Hold cancelled = holds.hold(new Cart().addItem(iphone.getId(), 3).addItem(mac.getId(), 1), 60_000);
+            CartHoldService.Hold claimed = holds.hold(new Cart().addItem(mac.getId(), 2), 20);
+            assertEquals(7, iphone.getStock());
+            assertEquals(2, mac.getStock());
+
+            assertTrue(holds.cancel(cancelled));
+            assertFalse(holds.cancel(cancelled));
+            assertEquals(10, iphone.getStock());
+            assertEquals(3, mac.getStock());
+
+            assertTrue(holds.claim(claimed));
+            awaitNoActiveHolds(holds);
+            Thread.sleep(50);
+            // 已认领的保留到期后也不归还 | A claimed hold is not returned when its time is up
+            assertEquals(3, mac.getStock());
+            assertFalse(claimed.isExpired());
+
+            holds.hold(new Cart().addItem(iphone.getId(), 4), 60_000);
+        }
+        // 关闭时归还仍在保留的库存 | Closing returns the stock still on hold
+        assertEquals(10, iphone.getStock());
+        assertEquals(13, manager.getTotalStock());
+    }
+
+    @Test
+    void testHold_ThrowingListenerDoesNotStopExpiry() throws InterruptedException {
+        ProductManager manager = new ProductManager();
+        iPhone iphone = new iPhone("iPhone 15", 5999.0, 10, "粉色", 128, "6.1英寸", "双摄像头");
+        manager.addProduct(iphone);
+        manager.addCatalogListener(new CatalogListener() {
+            @Override
+            public void stockAdjusted(List<Product> products) {
+                throw new IllegalStateException("listener failure");
+            }
+        });
+
+        try (CartHoldService holds = new CartHoldService(manager, 5, 8)) {
+            // 第一次到期时监听器抛出异常，之后的保留仍要按时到期 | The listener throws on the first expiry, and later holds must still expire
+            for (int round = 0; round < 2; round++) {
+                assertNotNull(holds.hold(new Cart().addItem(iphone.getId(), 4), 10));
+                assertEquals(6, iphone.getStock());
+                awaitNoActiveHolds(holds);
+                assertEquals(10, iphone.getStock());
+            }
+            assertEquals(2, holds.getExpiredHolds());
+            assertTrue(holds.cancel(holds.hold(new Cart().addItem(iphone.getId(), 1), 60_000)));
+            assertEquals(10, iphone.getStock());
+        }
+    }
+}
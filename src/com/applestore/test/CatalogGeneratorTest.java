@@ -0,0 +1,67 @@
+package com.applestore.test;
+
+import com.applestore.model.Product;
+import com.applestore.service.CatalogGenerator;
+import com.applestore.service.ProductManager;
+import com.applestore.util.ProductCodec;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogGeneratorTest {
+    // 跨越多个块，最后一块不满 | Spans several chunks, the last one partial
+    private static final int COUNT = CatalogGenerator.CHUNK_SIZE * 2 + 123;
+
+    @Test
+    void testGenerateInto_SameSeedSameCatalogWithUniqueIds() {
+        ProductManager first = new ProductManager();
+        ProductManager second = new ProductManager();
+
+        assertEquals(COUNT, new CatalogGenerator(7).generateInto(first, COUNT));
+        assertEquals(COUNT, new CatalogGenerator(7).generateInto(second, COUNT));
+
+        List<Product> a = first.getAllProducts();
+        List<Product> b = second.getAllProducts();
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(a.get(i).getId(), b.get(i).getId());
+            assertEquals(a.get(i).toString(), b.get(i).toString());
+            assertTrue(ids.add(a.get(i).getId()));
+            assertTrue(a.get(i).getPrice() > 0);
+            assertTrue(a.get(i).getStock() >= 0);
+        }
+
+        ProductManager other = new ProductManager();
+        new CatalogGenerator(8).generateInto(other, 100);
+        assertNotEquals(a.get(0).toString(), other.getAllProducts().get(0).toString());
+    }
+
+    @Test
+    void testWriteTo_ReadsBackAsTheSameCatalog() throws IOException {
+        ProductManager manager = new ProductManager();
+        new CatalogGenerator(11).generateInto(manager, COUNT);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new CatalogGenerator(11).writeTo(bytes, COUNT);
+        List<Product> decoded = ProductCodec.readCatalog(new ByteArrayInputStream(bytes.toByteArray()));
+
+        List<Product> expected = manager.getAllProducts();
+        assertEquals(COUNT, decoded.size());
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(expected.get(i).getId(), decoded.get(i).getId());
+            assertEquals(expected.get(i).toString(), decoded.get(i).toString());
+        }
+    }
+
+    @Test
+    void testNegativeCount_Rejected() {
+        assertThrows(IllegalArgumentException.class, () -> new CatalogGenerator(1).generateInto(new ProductManager(), -1));
+    }
+}
@@ -0,0 +1,116 @@
+package com.applestore.test;
+
+import com.applestore.model.*;
+import com.applestore.service.CatalogListener;
+import com.applestore.service.CheckoutService;
+import com.applestore.service.ProductManager;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckoutServiceTest {
+
+    @Test
+    void testCheckout_ReservesAllLinesOrNone() throws IOException {
+        File journal = File.createTempFile("orders", ".csv");
+        journal.deleteOnExit();
+        ProductManager manager = new ProductManager();
+        iPhone iphone = new iPhone("iPhone 15", 5999.0, 5, "粉色", 128, "6.1英寸", "双摄像头");
+        AirPods airpods = new AirPods("AirPods Pro 2", 1899.0, 1, "白色", 0, "主动降噪", 30);
+        manager.addProduct(iphone);
+        manager.addProduct(airpods);
+
+        try (CheckoutService checkout = new CheckoutService(manager, journal.getPath())) {
+            Order order = checkout.checkout(new Cart().addItem(iphone.getId(), 2).addItem(airpods.getId(), 1));
+            assertNotNull(order);
+            assertEquals(2, order.getLines().size());
+            assertEquals(5999.0 * 2 + 1899.0, order.getTotal(), 1e-9);
+
+            // AirPods 已售罄，iPhone 那一行也不能被扣减 | AirPods are sold out, so the iPhone line must not be deducted either
+            assertNull(checkout.checkout(new Cart().addItem(iphone.getId(), 1).addItem(airpods.getId(), 1)));
+            assertNull(checkout.checkout(new Cart().addItem("missing", 1)));
+            assertEquals(3, iphone.getStock());
+            assertEquals(0, airpods.getStock());
+            assertEquals(3, manager.getTotalStock());
+            assertThrows(IllegalArgumentException.class, () -> checkout.checkout(new Cart()));
+        }
+
+        List<String> records = Files.readAllLines(journal.toPath(), StandardCharsets.UTF_8);
+        assertEquals(2, records.size());
+        assertTrue(records.get(0).endsWith(iphone.getId() + ",iPhone 15,2,5999.00"));
+    }
+
+    @Test
+    void testCheckout_ConcurrentOrdersAreGroupCommitted() throws Exception {
+        File journal = File.createTempFile("orders", ".csv");
+        journal.deleteOnExit();
+        ProductManager manager = new ProductManager();
+        iPhone iphone = new iPhone("iPhone 15 Pro", 7999.0, 300, "原色钛金属", 256, "6.1英寸", "三摄像头");
+        MacBook mac = new MacBook("MacBook Air M3", 8999.0, 1000, "午夜色", 256, "13.6英寸", "M3");
+        manager.addProduct(iphone);
+        manager.addProduct(mac);
+
+        AtomicInteger placed = new AtomicInteger();
+        try (CheckoutService checkout = new CheckoutService(manager, journal.getPath())) {
+            Thread[] buyers = new Thread[8];
+            for (int t = 0; t < buyers.length; t++) {
+                buyers[t] = new Thread(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        if (checkout.checkout(new Cart().addItem(iphone.getId(), 1).addItem(mac.getId(), 1)) != null) {
+                            placed.incrementAndGet();
+                        }
+                    }
+                });
+                buyers[t].start();
+            }
+            for (Thread buyer : buyers) {
+                buyer.join();
+            }
+
+            assertEquals(300, placed.get());
+            assertEquals(300, checkout.getCommittedOrders());
+            assertTrue(checkout.getCommitGroups() <= checkout.getCommittedOrders());
+        }
+        assertEquals(0, iphone.getStock());
+        assertEquals(700, mac.getStock());
+        assertEquals(700, manager.getTotalStock());
+        assertEquals(600, Files.readAllLines(journal.toPath(), StandardCharsets.UTF_8).size());
+    }
+
+    @Test
+    void testCheckout_ThrowingListenerStillCompletesOrders() throws Exception {
+        File journal = File.createTempFile("orders", ".csv");
+        journal.deleteOnExit();
+        ProductManager manager = new ProductManager();
+        iPhone iphone = new iPhone("iPhone 15", 5999.0, 5, "粉色", 128, "6.1英寸", "双摄像头");
+        manager.addProduct(iphone);
+        manager.addCatalogListener(new CatalogListener() {
+            @Override
+            public void stockAdjusted(List<Product> products) {
+                throw new IllegalStateException("listener failure");
+            }
+        });
+
+        try (CheckoutService checkout = new CheckoutService(manager, journal.getPath())) {
+            // 两单都要返回：第一单的监听器异常既不能卡住调用方，也不能让提交线程退出 |
+            // Both must return: the first order's listener failure must neither hang its caller nor kill the commit thread
+            for (int i = 0; i < 2; i++) {
+                Order order = CompletableFuture.supplyAsync(() -> checkout.checkout(new Cart().addItem(iphone.getId(), 1)))
+                        .get(10, TimeUnit.SECONDS);
+                assertNotNull(order);
+            }
+            assertEquals(2, checkout.getCommittedOrders());
+        }
+        assertEquals(3, iphone.getStock());
+        assertEquals(2, Files.readAllLines(journal.toPath(), StandardCharsets.UTF_8).size());
+    }
+}
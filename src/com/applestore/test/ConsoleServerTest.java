@@ -0,0 +1,83 @@
+package com.applestore.test;
+
+import com.applestore.model.*;
+import com.applestore.server.ConsoleServer;
+import com.applestore.service.ProductManager;
+import com.applestore.service.Store;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsoleServerTest {
+
+    private static Socket connect(int port) throws IOException {
+        Socket socket = new Socket("localhost", port);
+        socket.setSoTimeout(10000);
+        return socket;
+    }
+
+    private static void send(Socket socket, String lines) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write(lines.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    /**
+     * 读到服务端在用户退出后断开连接为止 | Read until the server disconnects after the user exits
+     */
+    private static String readUntilClosed(Socket socket) throws IOException {
+        InputStream in = socket.getInputStream();
+        return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testSessionsShareOneCatalog() throws IOException {
+        ProductManager manager = new ProductManager();
+        manager.addProduct(new iPhone("iPhone 15", 5999.0, 30, "粉色", 128, "6.1英寸", "双摄像头"));
+
+        try (ConsoleServer server = new ConsoleServer(manager, new Store(manager), 0)) {
+            server.start();
+            try (Socket viewer = connect(server.getPort()); Socket clerk = connect(server.getPort())) {
+                // 添加 iPhone：类型、型号、屏幕、摄像头、颜色、存储、价格（先输错一次）、库存，CRLF 换行 |
+                // Add an iPhone: type, model, screen, camera, color, storage, price (wrong once first), stock, with CRLF line ends
+                send(clerk, "2\r\n4\r\niPhone 16 Pro\r\n2\r\nPro三摄\r\n4\r\n2\r\nabc\r\n8999\r\n12\r\n\r\n0\r\n");
+                String clerkOutput = readUntilClosed(clerk);
+                assertTrue(clerkOutput.contains("主菜单 | Main Menu"));
+                assertTrue(clerkOutput.contains("请输入有效的数字 | Please enter a valid number"));
+                assertTrue(clerkOutput.contains("产品添加成功"));
+                assertTrue(clerkOutput.contains("Goodbye"));
+                assertEquals(2, manager.getProductCount());
+
+                // 另一个会话立即看到新产品，筛选中输错的价格只结束本次操作 | The other session sees it at once, and a bad price in the filter only ends that operation
+                send(viewer, "5\n16 pro\n\n6\n2\nx\n\n8\n\n0\n");
+                String viewerOutput = readUntilClosed(viewer);
+                assertTrue(viewerOutput.contains("iPhone 16 Pro"));
+                assertTrue(viewerOutput.contains("找到 1 个产品"));
+                assertTrue(viewerOutput.contains("操作失败"));
+                assertTrue(viewerOutput.contains("产品总数: 2"));
+                assertTrue(viewerOutput.contains("Goodbye"));
+            }
+        }
+
+        iPhone added = (iPhone) manager.search("16 Pro").get(0);
+        assertEquals("6.7英寸", added.getScreenSize());
+        assertEquals("原色钛金属", added.getColor());
+        assertEquals(256, added.getStorage());
+        assertEquals(8999.0, added.getPrice());
+        assertEquals(12, added.getStock());
+    }
+
+    @Test
+    void testServer_ListensOnLoopbackByDefault() throws IOException {
+        ProductManager manager = new ProductManager();
+        try (ConsoleServer server = new ConsoleServer(manager, new Store(manager), 0)) {
+            assertTrue(server.getAddress().isLoopbackAddress());
+        }
+    }
+}
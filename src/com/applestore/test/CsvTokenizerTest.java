@@ -0,0 +1,54 @@
+package com.applestore.test;
+
+import com.applestore.util.CsvTokenizer;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvTokenizerTest {
+
+    @Test
+    void testTokenize_PlainFields() {
+        String[] fields = new String[7];
+        int count = CsvTokenizer.tokenize("id,iPhone,iPhone 15 Pro,黑色,256,8999.00,25", fields);
+
+        assertEquals(7, count);
+        assertEquals("iPhone 15 Pro", fields[2]);
+        assertEquals("黑色", fields[3]);
+        assertEquals("25", fields[6]);
+    }
+
+    @Test
+    void testTokenize_QuotedFieldsWithCommasAndEscapedQuotes() {
+        String[] fields = new String[4];
+        int count = CsvTokenizer.tokenize("a,\"MacBook Pro, 14\"\"\",\"\",d", fields);
+
+        assertEquals(4, count);
+        assertEquals("MacBook Pro, 14\"", fields[1]);
+        assertEquals("", fields[2]);
+        assertEquals("d", fields[3]);
+    }
+
+    @Test
+    void testTokenize_EmptyFieldsAndOverflow() {
+        String[] fields = new String[2];
+        int count = CsvTokenizer.tokenize(",,x,", fields);
+
+        assertEquals(4, count);
+        assertEquals("", fields[0]);
+        assertEquals("", fields[1]);
+    }
+
+    @Test
+    void testReadRecord_JoinsLinesInsideQuotes() throws IOException {
+        BufferedReader reader = new BufferedReader(new StringReader("a,\"line1\nline2\",b\nc,d\n"));
+
+        assertEquals("a,\"line1\nline2\",b", CsvTokenizer.readRecord(reader));
+        assertEquals("c,d", CsvTokenizer.readRecord(reader));
+        assertNull(CsvTokenizer.readRecord(reader));
+    }
+}
@@ -0,0 +1,77 @@
+package com.applestore.test;
+
+import com.applestore.util.CsvTokenizer;
+import com.applestore.util.CsvWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvWriterTest {
+
+    private static String write(double... amounts) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (CsvWriter writer = new CsvWriter(Channels.newChannel(bytes))) {
+            for (double amount : amounts) {
+                writer.fieldCents(amount);
+                writer.endRecord();
+            }
+        }
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testFieldCents_MatchesFormatter() throws IOException {
+        Random random = new Random(42);
+        double[] amounts = new double[2000];
+        for (int i = 0; i < amounts.length; i++) {
+            amounts[i] = random.nextInt(4_000_000) / 100.0 + (i % 3 == 0 ? 0.005 : 0);
+        }
+        amounts[0] = 0.125;
+        amounts[1] = 1.005;
+        amounts[2] = 25999.0;
+        amounts[3] = -3.456;
+
+        String[] lines = write(amounts).split("\n");
+        for (int i = 0; i < amounts.length; i++) {
+            assertEquals(String.format("%.2f", amounts[i]), lines[i], "amount " + amounts[i]);
+        }
+    }
+
+    @Test
+    void testFields_RoundTripThroughTokenizer() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (CsvWriter writer = new CsvWriter(Channels.newChannel(bytes))) {
+            writer.field("MacBook Pro, 14\"").field("深空灰").field(512).field((String) null);
+            writer.endRecord();
+        }
+
+        String record = bytes.toString(StandardCharsets.UTF_8);
+        String[] fields = new String[4];
+        assertEquals(4, CsvTokenizer.tokenize(record.substring(0, record.length() - 1), fields));
+        assertEquals("MacBook Pro, 14\"", fields[0]);
+        assertEquals("深空灰", fields[1]);
+        assertEquals("512", fields[2]);
+        assertEquals("", fields[3]);
+    }
+
+    @Test
+    void testLargeOutput_SpansBufferBoundaries() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (CsvWriter writer = new CsvWriter(Channels.newChannel(bytes))) {
+            for (int i = 0; i < 100_000; i++) {
+                writer.field("原色钛金属😀").field(i);
+                writer.endRecord();
+            }
+        }
+
+        String[] lines = bytes.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(100_000, lines.length);
+        assertEquals("原色钛金属😀,99999", lines[99_999]);
+    }
+}
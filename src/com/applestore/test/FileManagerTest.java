@@ -0,0 +1,66 @@
+package com.applestore.test;
+
+import com.applestore.model.*;
+import com.applestore.service.ProductManager;
+import com.applestore.util.ColorPrinter;
+import com.applestore.util.FileManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileManagerTest {
+    private Path dataDir;
+
+    @BeforeEach
+    void setUp() {
+        dataDir = TestDataDirectory.reset();
+        ColorPrinter.setOutput(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        ColorPrinter.setOutput(null);
+    }
+
+    @Test
+    void testCsv_RoundTripsInsideDataDirectory() {
+        ProductManager manager = new ProductManager();
+        manager.addProduct(new iPhone("iPhone 15", 5999.0, 10, "粉色", 128, "6.1英寸", "双摄像头"));
+        manager.addProduct(new AirPods("AirPods Pro 2", 1899.0, 5, "白色", 0, "主动降噪", 30));
+
+        assertTrue(FileManager.exportToCSV(manager, "catalog.csv"));
+        assertTrue(Files.exists(dataDir.resolve("catalog.csv")));
+
+        ProductManager imported = new ProductManager();
+        assertTrue(FileManager.importFromCSV("catalog.csv", imported));
+        assertEquals(2, imported.getProductCount());
+    }
+
+    @Test
+    void testCsv_RejectsNamesOutsideDataDirectory() throws Exception {
+        ProductManager manager = new ProductManager();
+        manager.addProduct(new iPhone("iPhone 15", 5999.0, 10, "粉色", 128, "6.1英寸", "双摄像头"));
+        Path outside = dataDir.resolveSibling(dataDir.getFileName() + "-outside.csv");
+        Files.write(outside, "ID,Name\nX,secret\n".getBytes(StandardCharsets.UTF_8));
+        try {
+            String[] names = {"../" + outside.getFileName(), outside.toString(), "sub/catalog.csv", "..", ".", ""};
+            for (String name : names) {
+                assertFalse(FileManager.exportToCSV(manager, name), name);
+                assertFalse(FileManager.importFromCSV(name, new ProductManager()), name);
+            }
+            // 外面的文件既没被覆盖，也没被读进来 | The outside file was neither overwritten nor read
+            assertEquals("ID,Name\nX,secret\n", new String(Files.readAllBytes(outside), StandardCharsets.UTF_8));
+            assertFalse(Files.exists(dataDir.resolve("sub")));
+        } finally {
+            Files.deleteIfExists(outside);
+        }
+    }
+}
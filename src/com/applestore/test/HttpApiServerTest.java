@@ -0,0 +1,84 @@
+package com.applestore.test;
+
+import com.applestore.model.*;
+import com.applestore.server.HttpApiServer;
+import com.applestore.service.ProductManager;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpApiServerTest {
+
+    private static String[] request(int port, String method, String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+        connection.setRequestMethod(method);
+        int status = connection.getResponseCode();
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            return new String[]{String.valueOf(status), new String(in.readAllBytes(), StandardCharsets.UTF_8)};
+        }
+    }
+
+    @Test
+    void testEndpoints() throws IOException {
+        ProductManager manager = new ProductManager();
+        iPhone iphone = new iPhone("iPhone 15", 5999.0, 2, "粉色", 128, "6.1英寸", "双摄像头");
+        MacBook mac = new MacBook("MacBook \"Air\" M3", 8999.0, 20, "午夜色", 256, "13.6英寸", "M3");
+        manager.addProduct(iphone);
+        manager.addProduct(mac);
+
+        try (HttpApiServer server = new HttpApiServer(manager, 0)) {
+            server.start();
+            int port = server.getPort();
+
+            String[] response = request(port, "GET", "/products/" + iphone.getId());
+            assertEquals("200", response[0]);
+            assertTrue(response[1].contains("\"model\":\"iPhone 15\""));
+            assertTrue(response[1].contains("\"color\":\"粉色\""));
+
+            response = request(port, "GET", "/products?q=air&maxPrice=9000");
+            assertTrue(response[1].startsWith("{\"total\":1,"));
+            assertTrue(response[1].contains("MacBook \\\"Air\\\" M3"));
+
+            response = request(port, "GET", "/products?type=macbook&chip=m3&storage=256");
+            assertTrue(response[1].startsWith("{\"total\":1,"));
+            assertTrue(response[1].contains(mac.getId()));
+            assertEquals("400", request(port, "GET", "/products?type=Newton")[0]);
+
+            response = request(port, "GET", "/products?sort=-price&limit=1");
+            assertTrue(response[1].startsWith("{\"total\":2,"));
+            assertTrue(response[1].contains(mac.getId()));
+            assertFalse(response[1].contains(iphone.getId()));
+
+            response = request(port, "GET", "/products?limit=1");
+            assertTrue(response[1].contains(iphone.getId()));
+            String next = response[1].replaceAll(".*\"next\":\"([^\"]+)\".*", "$1");
+            response = request(port, "GET", "/products?limit=1&cursor=" + next);
+            assertTrue(response[1].contains(mac.getId()));
+            assertTrue(response[1].contains("\"next\":null"));
+
+            assertEquals("200", request(port, "POST", "/products/" + iphone.getId() + "/reserve?qty=2")[0]);
+            assertEquals("409", request(port, "POST", "/products/" + iphone.getId() + "/reserve?qty=1")[0]);
+            assertEquals("400", request(port, "POST", "/products/" + iphone.getId() + "/reserve?qty=x")[0]);
+            assertEquals("405", request(port, "GET", "/products/" + iphone.getId() + "/reserve")[0]);
+            assertEquals("404", request(port, "GET", "/products/missing")[0]);
+            assertEquals(0, iphone.getStock());
+
+            response = request(port, "GET", "/stats");
+            assertTrue(response[1].contains("\"count\":2"));
+            assertTrue(response[1].contains("\"totalStock\":20"));
+        }
+    }
+
+    @Test
+    void testServer_ListensOnLoopbackByDefault() throws IOException {
+        try (HttpApiServer server = new HttpApiServer(new ProductManager(), 0)) {
+            assertTrue(server.getAddress().isLoopbackAddress());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.applestore.test;
+
+import com.applestore.model.iPhone;
+import com.applestore.service.ProductManager;
+import com.applestore.util.CatalogMetrics;
+import com.applestore.util.LatencyHistogram;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void testPercentiles_WithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 1..100000 纳秒各一次 | One of each value from 1 to 100000 ns
+        for (long nanos = 1; nanos <= 100_000; nanos++) {
+            histogram.record(nanos);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100_000, snapshot.getCount());
+        assertEquals(50_000.5, snapshot.getMeanNanos(), 1e-6);
+        assertEquals(100_000, snapshot.getMaxNanos());
+        assertEquals(50_000, snapshot.getP50Nanos(), 50_000 * 0.04);
+        assertEquals(90_000, snapshot.getP90Nanos(), 90_000 * 0.04);
+        assertEquals(99_000, snapshot.getP99Nanos(), 99_000 * 0.04);
+        assertTrue(snapshot.getP999Nanos() <= snapshot.getMaxNanos());
+
+        histogram.record(7);
+        histogram.reset();
+        histogram.record(-5);
+        histogram.record(7);
+        snapshot = histogram.snapshot();
+        assertEquals(2, snapshot.getCount());
+        assertEquals(7, snapshot.getMaxNanos());
+        assertEquals(0, snapshot.getP50Nanos());
+    }
+
+    @Test
+    void testCatalogMetrics_CountOperationsAndPublishOverJmx() throws Exception {
+        ProductManager manager = new ProductManager();
+        iPhone iphone = new iPhone("iPhone 15", 5999.0, 30, "粉色", 128, "6.1英寸", "双摄像头");
+        long adds = CatalogMetrics.snapshot(CatalogMetrics.Operation.ADD).getCount();
+        long finds = CatalogMetrics.snapshot(CatalogMetrics.Operation.FIND_BY_ID).getCount();
+        long searches = CatalogMetrics.snapshot(CatalogMetrics.Operation.SEARCH).getCount();
+        long queries = CatalogMetrics.snapshot(CatalogMetrics.Operation.QUERY).getCount();
+
+        manager.addProduct(iphone);
+        manager.findById(iphone.getId());
+        manager.findById("missing");
+        manager.search("iphone");
+
+        assertEquals(adds + 1, CatalogMetrics.snapshot(CatalogMetrics.Operation.ADD).getCount());
+        assertEquals(finds + 2, CatalogMetrics.snapshot(CatalogMetrics.Operation.FIND_BY_ID).getCount());
+        assertEquals(searches + 1, CatalogMetrics.snapshot(CatalogMetrics.Operation.SEARCH).getCount());
+        // 搜索内部的查询不重复计入 query | The query inside a search is not counted again as query
+        assertEquals(queries, CatalogMetrics.snapshot(CatalogMetrics.Operation.QUERY).getCount());
+        assertTrue(CatalogMetrics.report().contains("search"));
+
+        CatalogMetrics.registerMBean();
+        CatalogMetrics.registerMBean();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        TabularData operations = (TabularData) server.getAttribute(new ObjectName(CatalogMetrics.OBJECT_NAME), "Operations");
+        CompositeData search = (CompositeData) operations.get(new Object[]{"search"}).get("value");
+        assertTrue((Long) search.get("count") >= searches + 1);
+    }
+}
@@ -0,0 +1,146 @@
+package com.applestore.test;
+
+import com.applestore.model.*;
+import com.applestore.service.CatalogSnapshot;
+import com.applestore.service.ProductManager;
+import com.applestore.util.ColorPrinter;
+import com.applestore.util.FileManager;
+import com.applestore.util.PersistenceWorker;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistenceWorkerTest {
+    private Path dataDir;
+
+    /**
+     * 每次保存开始时都会创建一次目录快照，以此计数 | Every save takes one catalog snapshot as it starts, which is what gets counted
+     */
+    private static final class CountingManager extends ProductManager {
+        final AtomicInteger saves = new AtomicInteger();
+
+        @Override
+        public CatalogSnapshot snapshot() {
+            saves.incrementAndGet();
+            return super.snapshot();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        dataDir = TestDataDirectory.reset();
+        ColorPrinter.setOutput(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        ColorPrinter.setOutput(null);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(condition.getAsBoolean(), "等待超时 | Timed out waiting");
+    }
+
+    private static iPhone newPhone(int i) {
+        return new iPhone("iPhone 15 #" + i, 5999.0, i, "粉色", 128, "6.1英寸", "双摄像头");
+    }
+
+    @Test
+    void testMutations_AreCoalescedIntoOneSave() throws InterruptedException {
+        CountingManager manager = new CountingManager();
+        PersistenceWorker worker = new PersistenceWorker(manager, 500, 1000);
+        manager.addCatalogListener(worker);
+        try {
+            for (int i = 0; i < 50; i++) {
+                manager.addProduct(newPhone(i));
+            }
+            assertTrue(worker.isDirty());
+            assertEquals(0, manager.saves.get());
+
+            await(() -> FileManager.loadProducts().size() == 50);
+            Thread.sleep(700);
+            assertEquals(1, manager.saves.get());
+            assertFalse(worker.isDirty());
+        } finally {
+            worker.close();
+        }
+    }
+
+    @Test
+    void testBatchSize_SavesBeforeDelayExpires() throws InterruptedException {
+        CountingManager manager = new CountingManager();
+        // 延迟远长于测试，只有批量能触发保存 | The delay outlasts the test, so only the batch can trigger a save
+        PersistenceWorker worker = new PersistenceWorker(manager, 60_000, 10);
+        manager.addCatalogListener(worker);
+        try {
+            for (int i = 0; i < 9; i++) {
+                manager.addProduct(newPhone(i));
+            }
+            Thread.sleep(100);
+            assertEquals(0, manager.saves.get());
+
+            manager.addProduct(newPhone(9));
+            await(() -> FileManager.loadProducts().size() == 10);
+            assertEquals(1, manager.saves.get());
+        } finally {
+            worker.close();
+        }
+    }
+
+    @Test
+    void testFailedSave_IsRetried() throws Exception {
+        CountingManager manager = new CountingManager();
+        PersistenceWorker worker = new PersistenceWorker(manager, 50, 1000);
+        manager.addCatalogListener(worker);
+        // 在临时文件的位置放一个非空目录，让保存失败 | A non-empty directory where the temp file goes makes the save fail
+        Path blocker = dataDir.resolve("products.dat.tmp");
+        Files.createDirectory(blocker);
+        Files.createFile(blocker.resolve("blocker"));
+        try {
+            manager.addProduct(newPhone(1));
+            // 失败后重新标记为脏，等待重试 | Marked dirty again after the failure, awaiting a retry
+            await(() -> manager.saves.get() == 1 && worker.isDirty());
+            assertFalse(Files.exists(dataDir.resolve("products.dat")));
+
+            Files.delete(blocker.resolve("blocker"));
+            Files.delete(blocker);
+            await(() -> FileManager.loadProducts().size() == 1);
+            assertEquals(2, manager.saves.get());
+            assertFalse(worker.isDirty());
+        } finally {
+            worker.close();
+        }
+    }
+
+    @Test
+    void testClose_FlushesPendingChanges() {
+        CountingManager manager = new CountingManager();
+        PersistenceWorker worker = new PersistenceWorker(manager, 60_000, 1000);
+        manager.addCatalogListener(worker);
+        manager.addProduct(newPhone(1));
+        manager.addProduct(newPhone(2));
+        assertTrue(worker.isDirty());
+
+        worker.close();
+
+        assertEquals(1, manager.saves.get());
+        assertFalse(worker.isDirty());
+        assertEquals(2, FileManager.loadProducts().size());
+        // 关闭后的修改不再排队 | Changes after close are no longer queued
+        manager.addProduct(newPhone(3));
+        assertFalse(worker.isDirty());
+    }
+}
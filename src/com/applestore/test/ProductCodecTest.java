@@ -0,0 +1,80 @@
+package com.applestore.test;
+
+import com.applestore.model.*;
+import com.applestore.util.ProductCodec;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductCodecTest {
+
+    private static List<Product> sampleCatalog() {
+        return Arrays.asList(
+                new AppleVisionPro("256GB", 25999.0, 15, "深空灰", 256),
+                new MacBook("MacBook Pro M3 14英寸", 15999.0, 18, "深空灰色", 512, "14.2英寸", "M3"),
+                new iPad("iPad Pro 12.9英寸", 9299.0, 15, "深空灰", 512, "12.9英寸", true),
+                new iPhone("iPhone 15 Pro 256GB", 8999.0, 25, "原色钛金属", 256, "6.1英寸", "Pro三摄"),
+                new AppleWatch("Apple Watch Ultra 2", 6499.0, 12, "钛金属原色", 64, "49mm", "钛金属", true),
+                new AirPods("AirPods Max", 4399.0, 20, "银色", 512, "主动降噪", 20));
+    }
+
+    @Test
+    void testCatalogRoundTrip_PreservesAllFields() throws IOException {
+        List<Product> catalog = sampleCatalog();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ProductCodec.writeCatalog(bytes, catalog);
+        List<Product> decoded = ProductCodec.readCatalog(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertEquals(catalog.size(), decoded.size());
+        for (int i = 0; i < catalog.size(); i++) {
+            Product expected = catalog.get(i);
+            Product actual = decoded.get(i);
+            assertEquals(expected.getClass(), actual.getClass());
+            assertEquals(expected.getId(), actual.getId());
+            // toString 覆盖了基类和子类的全部字段 | toString covers every base and subclass field
+            assertEquals(expected.toString(), actual.toString());
+        }
+    }
+
+    @Test
+    void testNullStrings_RoundTrip() throws IOException {
+        iPhone iphone = new iPhone(null, 5999.0, 30, null, 128, "6.1英寸", null);
+
+        byte[] bytes = ProductCodec.encode(iphone);
+        iPhone decoded = (iPhone) ProductCodec.decode(bytes, 0, bytes.length);
+
+        assertNull(decoded.getModel());
+        assertNull(decoded.getColor());
+        assertNull(decoded.getCamera());
+        assertEquals("6.1英寸", decoded.getScreenSize());
+    }
+
+    @Test
+    void testBinaryFormat_SmallerThanJavaSerialization() throws IOException {
+        List<Product> catalog = new ArrayList<>(sampleCatalog());
+
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        ProductCodec.writeCatalog(binary, catalog);
+
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(serialized)) {
+            oos.writeObject(catalog);
+        }
+
+        assertTrue(binary.size() * 3 < serialized.size(),
+                "二进制格式应明显更小: " + binary.size() + " vs " + serialized.size());
+    }
+
+    @Test
+    void testReadCatalog_RejectsForeignData() {
+        byte[] garbage = {(byte) 0xAC, (byte) 0xED, 0, 5, 1, 2, 3, 4, 5, 6, 7, 8};
+        assertThrows(IOException.class,
+                () -> ProductCodec.readCatalog(new ByteArrayInputStream(garbage)));
+    }
+}
@@ -0,0 +1,619 @@
+package com.applestore.test;
+
+import com.applestore.model.*;
+import com.applestore.service.CatalogSnapshot;
+import com.applestore.service.ProductManager;
+import com.applestore.service.ProductPage;
+import com.applestore.service.ProductQuery;
+import com.applestore.service.QueryCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductManagerTest {
+
+    @Test
+    void testFindById_AfterAdd_ReturnsSameInstance() {
+        ProductManager manager = new ProductManager();
+        iPhone iphone = new iPhone("iPhone 15", 5999.0, 30, "粉色", 128, "6.1英寸", "双摄像头");
+        assertTrue(manager.addProduct(iphone));
+
+        assertSame(iphone, manager.findById(iphone.getId()));
+        assertNull(manager.findById("missing"));
+        assertNull(manager.findById(null));
+    }
+
+    @Test
+    void testAddProduct_DuplicateId_Rejected() {
+        ProductManager manager = new ProductManager();
+        MacBook first = new MacBook("MacBook Air M3", 8999.0, 20, "午夜色", 256, "13.6英寸", "M3");
+        MacBook second = new MacBook("MacBook Pro M3", 15999.0, 18, "深空灰色", 512, "14.2英寸", "M3");
+        second.setId(first.getId());
+
+        assertTrue(manager.addProduct(first));
+        assertFalse(manager.addProduct(second));
+        assertEquals(1, manager.getProductCount());
+    }
+
+    @Test
+    void testUpdateAndDelete_KeepIndexInSync() {
+        ProductManager manager = new ProductManager();
+        iPad a = new iPad("iPad Air", 4399.0, 22, "紫色", 256, "10.9英寸", false);
+        iPad b = new iPad("iPad Pro", 9299.0, 15, "深空灰", 512, "12.9英寸", true);
+        manager.addProduct(a);
+        manager.addProduct(b);
+
+        iPad replacement = new iPad("iPad Air M2", 4799.0, 10, "蓝色", 256, "11英寸", false);
+        assertTrue(manager.updateProduct(a.getId(), replacement));
+        assertSame(replacement, manager.findById(a.getId()));
+        assertEquals(Arrays.asList(replacement, b), manager.getAllProducts(), "更新不应改变顺序");
+
+        assertTrue(manager.deleteProduct(b.getId()));
+        assertNull(manager.findById(b.getId()));
+        assertFalse(manager.deleteProduct(b.getId()));
+        assertEquals(1, manager.getProductCount());
+    }
+
+    @Test
+    void testSetProducts_RebuildsIndex() {
+        ProductManager manager = new ProductManager();
+        AirPods old = new AirPods("AirPods Max", 4399.0, 20, "银色", 512, "主动降噪", 20);
+        manager.addProduct(old);
+
+        AirPods pro = new AirPods("AirPods Pro", 1899.0, 40, "白色", 256, "主动降噪", 30);
+        AppleWatch watch = new AppleWatch("Series 9", 2999.0, 28, "粉砂色", 64, "45mm", "铝金属", true);
+        List<Product> loaded = Arrays.asList(pro, watch);
+        manager.setProducts(loaded);
+
+        assertNull(manager.findById(old.getId()));
+        assertSame(pro, manager.findById(pro.getId()));
+        assertSame(watch, manager.findById(watch.getId()));
+        assertEquals(loaded, manager.getAllProducts());
+    }
+
+    @Test
+    void testFilterByPrice_UsesInclusiveRange() {
+        ProductManager manager = new ProductManager();
+        iPhone cheap = new iPhone("iPhone 15", 5999.0, 30, "粉色", 128, "6.1英寸", "双摄像头");
+        iPhone same = new iPhone("iPhone 15 Blue", 5999.0, 10, "蓝色", 128, "6.1英寸", "双摄像头");
+        iPhone pro = new iPhone("iPhone 15 Pro", 8999.0, 25, "原色钛金属", 256, "6.1英寸", "Pro三摄");
+        manager.addProduct(cheap);
+        manager.addProduct(same);
+        manager.addProduct(pro);
+
+        assertEquals(Arrays.asList(cheap, same), manager.filterByPrice(5999.0, 8000.0));
+        assertEquals(3, manager.filterByPrice(0, 8999.0).size());
+        assertTrue(manager.filterByPrice(9000.0, 1000.0).isEmpty());
+    }
+
+    @Test
+    void testFilterByPrice_KeepsInsertionOrder() {
+        ProductManager manager = new ProductManager();
+        iPhone pro = new iPhone("iPhone 15 Pro", 8999.0, 25, "原色钛金属", 256, "6.1英寸", "Pro三摄");
+        iPhone cheap = new iPhone("iPhone 15", 5999.0, 30, "粉色", 128, "6.1英寸", "双摄像头");
+        iPhone plus = new iPhone("iPhone 15 Plus", 6999.0, 10, "蓝色", 128, "6.7英寸", "双摄像头");
+        manager.addProduct(pro);
+        manager.addProduct(cheap);
+        manager.addProduct(plus);
+
+        // 与未加索引时相同，不按价格重排 | Same as before the index existed: not reordered by price
+        assertEquals(Arrays.asList(pro, cheap, plus), manager.filterByPrice(0, 10000.0));
+        assertEquals(Arrays.asList(cheap, plus), manager.filterByPrice(5000.0, 7000.0));
+    }
+
+    @Test
+    void testSortByPrice_FollowsSetPrice() {
+        ProductManager manager = new ProductManager();
+        AirPods a = new AirPods("AirPods (第3代)", 1399.0, 50, "白色", 256, "自适应均衡", 30);
+        AirPods b = new AirPods("AirPods Pro", 1899.0, 40, "白色", 256, "主动降噪", 30);
+        AirPods c = new AirPods("AirPods Max", 4399.0, 20, "银色", 512, "主动降噪", 20);
+        manager.addProduct(a);
+        manager.addProduct(b);
+        manager.addProduct(c);
+
+        a.setPrice(4999.0);
+
+        assertEquals(Arrays.asList(b, c, a), manager.sortByPrice(true));
+        assertEquals(Arrays.asList(a, c, b), manager.sortByPrice(false));
+        assertEquals(Arrays.asList(a), manager.filterByPrice(4500.0, 5000.0));
+
+        manager.deleteProduct(a.getId());
+        a.setPrice(100.0);
+        assertTrue(manager.filterByPrice(0, 1000.0).isEmpty(), "已删除的产品不应再被索引");
+    }
+
+    @Test
+    void testSearch_MixedChineseAndEnglish() {
+        ProductManager manager = new ProductManager();
+        MacBook pro = new MacBook("MacBook Pro M3 14英寸", 15999.0, 18, "深空灰色", 512, "14.2英寸", "M3");
+        iPad ipad = new iPad("iPad Pro 12.9英寸", 9299.0, 15, "深空灰", 512, "12.9英寸", true);
+        iPhone iphone = new iPhone("iPhone 15", 5999.0, 30, "银色", 128, "6.1英寸", "双摄像头");
+        manager.addProduct(pro);
+        manager.addProduct(ipad);
+        manager.addProduct(iphone);
+
+        assertEquals(Arrays.asList(pro, ipad), manager.search("深空灰"));
+        assertEquals(Arrays.asList(pro), manager.search("macbook pro m3"));
+        assertEquals(Arrays.asList(iphone), manager.search("银色"));
+        assertEquals(2, manager.search("pro").size());
+        assertEquals(3, manager.search("P").size(), "单字关键词回退扫描");
+        assertTrue(manager.search("Pro M3 12").isEmpty(), "跨字段的切片命中需被校验排除");
+    }
+
+    @Test
+    void testSearch_FollowsSetColorAndModel() {
+        ProductManager manager = new ProductManager();
+        iPhone iphone = new iPhone("iPhone 15", 5999.0, 30, "粉色", 128, "6.1英寸", "双摄像头");
+        manager.addProduct(iphone);
+
+        iphone.setColor("蓝色钛金属");
+        iphone.setModel("iPhone 15 Pro Max");
+
+        assertTrue(manager.search("粉色").isEmpty());
+        assertEquals(Arrays.asList(iphone), manager.search("钛金属"));
+        assertEquals(Arrays.asList(iphone), manager.search("Pro Max"));
+    }
+
+    @Test
+    void testAggregates_TrackEveryMutation() {
+        ProductManager manager = new ProductManager();
+        iPhone iphone = new iPhone("iPhone 15", 6000.0, 10, "粉色", 128, "6.1英寸", "双摄像头");
+        MacBook mac = new MacBook("MacBook Air M3", 9000.0, 5, "午夜色", 256, "13.6英寸", "M3");
+        manager.addProduct(iphone);
+        manager.addProduct(mac);
+
+        assertEquals(15, manager.getTotalStock());
+        assertEquals(7500.0, manager.getAveragePrice(), 1e-9);
+        assertEquals(105000.0, manager.getInventoryValue(), 1e-9);
+        assertEquals(1, manager.getProductCountByType(iPhone.class));
+        assertEquals(2, manager.getProductCountByType(Product.class));
+
+        iphone.setStock(20);
+        mac.setPrice(10000.0);
+        assertEquals(25, manager.getTotalStock());
+        assertEquals(8000.0, manager.getAveragePrice(), 1e-9);
+        assertEquals(170000.0, manager.getInventoryValue(), 1e-9);
+
+        manager.deleteProduct(iphone.getId());
+        assertEquals(0, manager.getProductCountByType(iPhone.class));
+        assertEquals(5, manager.getTotalStock());
+        assertEquals(50000.0, manager.getInventoryValue(), 1e-9);
+    }
+
+    @Test
+    void testAddProducts_SkipsDuplicatesAndIndexesBatch() {
+        ProductManager manager = new ProductManager();
+        iPhone existing = new iPhone("iPhone 15", 6000.0, 10, "粉色", 128, "6.1英寸", "双摄像头");
+        manager.addProduct(existing);
+        MacBook mac = new MacBook("MacBook Air M3", 9000.0, 5, "午夜色", 256, "13.6英寸", "M3");
+
+        int added = manager.addProducts(Arrays.asList(existing, mac, null, mac));
+
+        assertEquals(1, added);
+        assertEquals(2, manager.getProductCount());
+        assertSame(mac, manager.findById(mac.getId()));
+        assertEquals(Arrays.asList(mac), manager.search("午夜"));
+        assertEquals(15, manager.getTotalStock());
+    }
+
+    @Test
+    void testGetPage_StableUnderInsertsDeletesAndCompaction() {
+        ProductManager manager = new ProductManager();
+        List<Product> added = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            AirPods airPods = new AirPods("AirPods " + i, 1000.0 + i, 1, "白色", 256, "主动降噪", 30);
+            manager.addProduct(airPods);
+            added.add(airPods);
+        }
+
+        ProductPage first = manager.getPage(null, 100);
+        assertEquals(added.subList(0, 100), first.getProducts());
+        assertFalse(first.hasPrevious());
+        assertTrue(first.hasNext());
+
+        // 翻页期间：删除已看过的和未看到的产品（足以触发压缩），再追加新产品 |
+        // While paging: delete products both seen and unseen (enough to force compaction), then append new ones
+        for (int i = 0; i < 2000; i++) {
+            if (i != 100) {
+                manager.deleteProduct(added.get(i).getId());
+            }
+        }
+        AirPods late = new AirPods("AirPods late", 999.0, 1, "白色", 256, "主动降噪", 30);
+        manager.addProduct(late);
+
+        ProductPage second = manager.getPage(first.getNextCursor(), 100);
+        assertSame(added.get(100), second.getProducts().get(0), "游标之后的第一个存活产品");
+        assertSame(added.get(2000), second.getProducts().get(1));
+
+        List<Product> seen = new ArrayList<>(second.getProducts());
+        for (ProductPage page = second; page.hasNext(); ) {
+            page = manager.getPage(page.getNextCursor(), 100);
+            seen.addAll(page.getProducts());
+        }
+        assertEquals(manager.getProductCount(), seen.size(), "不重复也不遗漏");
+        assertSame(late, seen.get(seen.size() - 1));
+
+        ProductPage back = manager.getPage(manager.getPage(second.getNextCursor(), 100).getPreviousCursor(), 100);
+        assertEquals(second.getProducts(), back.getProducts());
+        // 向前不足一页时回到第一页 | Paging back short of a full page lands on the first page
+        assertFalse(manager.getPage(second.getPreviousCursor(), 100).hasPrevious());
+
+        assertThrows(IllegalArgumentException.class, () -> manager.getPage("x1", 10));
+        assertThrows(IllegalArgumentException.class, () -> manager.getPage(null, 0));
+    }
+
+    @Test
+    void testQuery_EveryPlanMatchesBruteForce() {
+        ProductManager manager = new ProductManager();
+        Random random = new Random(19);
+        String[] colors = {"深空灰色", "银色", "午夜色", "星光色", "蓝色", "粉色"};
+        int[] storages = {64, 128, 256, 512};
+        String[] chips = {"M3", "M3 Pro", "M2"};
+        List<Product> batch = new ArrayList<>();
+        for (int i = 0; i < 4000; i++) {
+            String color = colors[random.nextInt(colors.length)];
+            int storage = storages[random.nextInt(storages.length)];
+            double price = 1000 + random.nextInt(200) * 50;
+            switch (i % 4) {
+                case 0:
+                    batch.add(new MacBook("MacBook " + i, price, 5, color, storage, "14.2英寸", chips[random.nextInt(chips.length)]));
+                    break;
+                case 1:
+                    batch.add(new iPad("iPad " + i, price, 5, color, storage, "11英寸", random.nextBoolean()));
+                    break;
+                case 2:
+                    batch.add(new iPhone("iPhone " + i, price, 5, color, storage, "6.1英寸", "双摄像头"));
+                    break;
+                default:
+                    batch.add(new AppleWatch("Watch " + i, price, 5, color, 32, "45mm", "铝金属", random.nextBoolean()));
+            }
+        }
+        manager.addProducts(batch);
+        // 改颜色和存储后索引须跟上 | Indexes must follow color and storage changes
+        batch.get(8).setColor("蓝色钛金属");
+        batch.get(9).setStorage(2048);
+        manager.deleteProduct(batch.get(12).getId());
+
+        ProductQuery.Condition cheapBlueMac = ProductQuery.and(ProductQuery.type(MacBook.class), ProductQuery.chip("m3 pro"),
+                ProductQuery.priceBetween(2000, 4000), ProductQuery.color("蓝"));
+        assertEquals(brute(manager, p -> p instanceof MacBook && ((MacBook) p).getChip().equals("M3 Pro")
+                        && p.getPrice() >= 2000 && p.getPrice() <= 4000 && p.getColor().contains("蓝")),
+                manager.query(ProductQuery.where(cheapBlueMac)));
+
+        ProductQuery.Condition mixed = ProductQuery.or(ProductQuery.and(ProductQuery.cellular(true), ProductQuery.storage(512)),
+                ProductQuery.text("iphone 12"), ProductQuery.storage(2048));
+        List<Product> expected = brute(manager, p -> (p instanceof iPad && ((iPad) p).isCellular() || p instanceof AppleWatch && ((AppleWatch) p).isCellular())
+                && p.getStorage() == 512 || p.getModel().toLowerCase().contains("iphone 12") || p.getStorage() == 2048);
+        assertEquals(expected, manager.query(ProductQuery.where(mixed)));
+        assertTrue(expected.contains(batch.get(9)));
+
+        // 排序加上限：宽条件走价格顺序扫描，窄条件取候选后排序，两者同价时都按插入顺序 |
+        // Sort plus limit: a broad condition walks the price order, a narrow one sorts its candidates, and both keep insertion order on ties
+        List<Product> blue = brute(manager, p -> p.getColor().contains("蓝"));
+        blue.sort(Comparator.comparingDouble(Product::getPrice).reversed());
+        assertEquals(blue.subList(0, 25), manager.query(ProductQuery.where(ProductQuery.color("蓝"))
+                .sortBy(ProductQuery.Sort.PRICE_DESCENDING).limit(25)));
+        List<Product> cellular = brute(manager, p -> p instanceof AppleWatch && ((AppleWatch) p).isCellular() && p.getPrice() < 1500);
+        cellular.sort(Comparator.comparingDouble(Product::getPrice));
+        assertEquals(cellular.subList(0, 3), manager.query(ProductQuery.where(ProductQuery.and(ProductQuery.type(AppleWatch.class),
+                ProductQuery.cellular(true), ProductQuery.priceBetween(0, 1499))).sortBy(ProductQuery.Sort.PRICE_ASCENDING).limit(3)));
+        assertEquals(manager.sortByName().subList(0, 10), manager.query(ProductQuery.all().sortBy(ProductQuery.Sort.NAME).limit(10)));
+
+        assertEquals(ProductQuery.where(ProductQuery.and(ProductQuery.color(" 蓝 "), ProductQuery.type(iPad.class))),
+                ProductQuery.where(ProductQuery.and(ProductQuery.type(iPad.class), ProductQuery.and(ProductQuery.color("蓝")))), "规范化后相同");
+        assertEquals(1000, manager.getProductsByType(iPad.class).size());
+        assertThrows(IllegalArgumentException.class, () -> ProductQuery.priceBetween(2, 1));
+    }
+
+    @Test
+    void testQueryCache_InvalidatedOnlyByTouchedFields() {
+        ProductManager manager = new ProductManager();
+        iPad air = new iPad("iPad Air", 4399.0, 22, "紫色", 256, "10.9英寸", false);
+        iPad pro = new iPad("iPad Pro", 9299.0, 15, "深空灰", 512, "12.9英寸", true);
+        manager.addProduct(air);
+        manager.addProduct(pro);
+        QueryCache cache = manager.getQueryCache();
+
+        ProductQuery cellular = ProductQuery.where(ProductQuery.cellular(true));
+        List<Product> first = manager.query(cellular);
+        assertEquals(Arrays.asList(pro), first);
+        assertSame(first, manager.query(ProductQuery.where(ProductQuery.and(ProductQuery.cellular(true)))), "规范化后命中同一条目");
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertThrows(UnsupportedOperationException.class, () -> first.clear());
+
+        // 库存和价格都不影响按蜂窝网络的查询 | Neither stock nor price affects a query on cellular support
+        manager.reserve(pro.getId(), 3);
+        pro.setStock(10);
+        pro.setPrice(8999.0);
+        assertSame(first, manager.query(cellular));
+
+        List<Product> cheap = manager.filterByPrice(0, 5000);
+        assertEquals(Arrays.asList(air), cheap);
+        assertSame(cheap, manager.filterByPrice(0, 5000));
+        air.setPrice(5999.0);
+        assertTrue(manager.filterByPrice(0, 5000).isEmpty(), "价格变了，按价格的条目失效");
+        assertSame(first, manager.query(cellular));
+
+        List<Product> purple = manager.search("紫");
+        air.setColor("蓝色");
+        assertNotSame(purple, manager.search("紫"));
+        assertTrue(manager.search("紫").isEmpty());
+
+        // 增删产品使所有条目失效 | Adding or removing products invalidates every entry
+        iPad mini = new iPad("iPad mini", 3799.0, 40, "星光色", 128, "8.3英寸", true);
+        manager.addProduct(mini);
+        assertEquals(Arrays.asList(pro, mini), manager.query(cellular));
+        manager.deleteProduct(pro.getId());
+        assertEquals(Arrays.asList(mini), manager.query(cellular));
+
+        for (int storage = 0; storage < QueryCache.DEFAULT_MAX_ENTRIES + 10; storage++) {
+            manager.query(ProductQuery.where(ProductQuery.storage(storage)));
+        }
+        assertEquals(QueryCache.DEFAULT_MAX_ENTRIES, cache.size());
+        assertTrue(cache.getEvictions() >= 10);
+    }
+
+    private static List<Product> brute(ProductManager manager, Predicate<Product> condition) {
+        List<Product> result = new ArrayList<>();
+        for (Product product : manager.getAllProducts()) {
+            if (condition.test(product)) {
+                result.add(product);
+            }
+        }
+        return result;
+    }
+
+    @Test
+    void testReadOnlyViews_SharedUntilNextWriteAndUnchangedAfter() {
+        ProductManager manager = new ProductManager();
+        List<Product> added = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            iPad iPad = new iPad("Gen " + i, 3000.0 + i % 7, 5, "银色", 128, "11英寸", i % 2 == 0);
+            manager.addProduct(iPad);
+            added.add(iPad);
+        }
+        manager.deleteProduct(added.get(3).getId());
+
+        List<Product> all = manager.getAllProducts();
+        List<Product> byName = manager.sortByName();
+        assertSame(all, manager.getAllProducts(), "两次写入之间共用同一个视图");
+        assertSame(byName, manager.sortByName(), "目录未修改时复用排序结果");
+        assertThrows(UnsupportedOperationException.class, () -> all.add(added.get(0)));
+        assertThrows(UnsupportedOperationException.class, () -> byName.sort(null));
+        assertEquals(2499, all.size());
+        assertSame(added.get(4), all.get(3), "跳过删除留下的空位");
+
+        // 之后的增删和替换不影响已返回的视图 | Later adds, removals and replacements leave views already returned unchanged
+        List<Product> expected = new ArrayList<>(all);
+        manager.deleteProduct(added.get(0).getId());
+        manager.updateProduct(added.get(1).getId(), new iPad("Gen new", 1.0, 1, "深空灰色", 256, "13英寸", true));
+        manager.addProduct(new iPad("Gen late", 2.0, 1, "蓝色", 64, "11英寸", false));
+        assertEquals(expected, all);
+        assertEquals(expected, new ArrayList<>(all));
+        assertEquals(2499, byName.size());
+
+        List<Product> current = manager.getAllProducts();
+        assertNotSame(all, current);
+        assertEquals(2499, current.size());
+        assertEquals("Gen new", current.get(0).getModel());
+        assertEquals("Gen late", current.get(current.size() - 1).getModel());
+        assertNotSame(byName, manager.sortByName());
+        assertEquals(current, manager.sortByName(), "同名时保持插入顺序");
+        assertEquals(1.0, manager.sortByPrice(true).get(0).getPrice());
+    }
+
+    @Test
+    void testSnapshot_IsolatedFromLaterEdits() {
+        ProductManager manager = new ProductManager();
+        iPhone iphone = new iPhone("iPhone 15", 6000.0, 10, "粉色", 128, "6.1英寸", "双摄像头");
+        MacBook mac = new MacBook("MacBook Air M3", 9000.0, 5, "午夜色", 256, "13.6英寸", "M3");
+        manager.addProduct(iphone);
+        manager.addProduct(mac);
+
+        try (CatalogSnapshot snapshot = manager.snapshot()) {
+            iphone.setPrice(5000.0);
+            iphone.setPrice(4000.0);
+            manager.deleteProduct(mac.getId());
+            manager.addProduct(new AirPods("AirPods Pro 2", 1899.0, 40, "白色", 0, "主动降噪", 30));
+
+            List<Product> seen = new ArrayList<>();
+            for (Product product : snapshot) {
+                seen.add(product);
+            }
+            assertEquals(2, snapshot.size());
+            assertEquals(2, seen.size());
+            assertEquals(6000.0, seen.get(0).getPrice(), 1e-9);
+            assertEquals(mac.getId(), seen.get(1).getId());
+
+            // 快照里的是副本，修改它不影响目录 | Snapshot items are copies; editing them leaves the catalog alone
+            seen.get(0).setStock(0);
+            assertEquals(10, iphone.getStock());
+        }
+
+        try (CatalogSnapshot snapshot = manager.snapshot()) {
+            List<Product> seen = new ArrayList<>();
+            snapshot.forEach(seen::add);
+            assertEquals(2, seen.size());
+            assertEquals(4000.0, seen.get(0).getPrice(), 1e-9);
+        }
+    }
+
+    @Test
+    void testSnapshot_NestedSnapshotsSeeTheirOwnVersion() {
+        ProductManager manager = new ProductManager();
+        iPhone iphone = new iPhone("iPhone 15", 6000.0, 10, "粉色", 128, "6.1英寸", "双摄像头");
+        manager.addProduct(iphone);
+
+        try (CatalogSnapshot first = manager.snapshot()) {
+            iphone.setStock(8);
+            try (CatalogSnapshot second = manager.snapshot()) {
+                iphone.setStock(6);
+                assertEquals(10, first.iterator().next().getStock());
+                assertEquals(8, second.iterator().next().getStock());
+            }
+        }
+    }
+
+    @Test
+    void testConcurrentReadsDuringWrites_StayConsistent() throws InterruptedException {
+        ProductManager manager = new ProductManager();
+        List<Product> catalog = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            catalog.add(new iPhone("iPhone " + i, 1000.0 + i, 10, i % 2 == 0 ? "黑色" : "银色", 128, "6.1英寸", "双摄像头"));
+        }
+        manager.setProducts(catalog);
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            Random random = new Random(1);
+            for (int i = 0; i < 5000; i++) {
+                Product product = catalog.get(random.nextInt(catalog.size()));
+                product.setPrice(1000.0 + random.nextInt(500));
+                product.setStock(random.nextInt(20));
+            }
+        });
+        Runnable reader = () -> {
+            try {
+                for (int i = 0; i < 2000; i++) {
+                    assertEquals(500, manager.getAllProducts().size());
+                    // 改价是先移出再放回价格索引，一致的读取总能看到全部产品 | A price change moves the product out of and back into the index; a consistent read always sees all of them
+                    assertEquals(500, manager.filterByPrice(0, Double.MAX_VALUE).size());
+                    assertNotNull(manager.findById(catalog.get(i % catalog.size()).getId()));
+                    manager.search("phone 1");
+                    manager.getAveragePrice();
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        };
+        Thread reader1 = new Thread(reader);
+        Thread reader2 = new Thread(reader);
+        writer.start();
+        reader1.start();
+        reader2.start();
+        writer.join();
+        reader1.join();
+        reader2.join();
+
+        assertNull(failure.get());
+        long stock = 0;
+        for (Product product : catalog) {
+            stock += product.getStock();
+        }
+        assertEquals(stock, manager.getTotalStock());
+        assertEquals(500, manager.filterByPrice(0, Double.MAX_VALUE).size());
+    }
+
+    @Test
+    void testReserve_ConcurrentOrdersNeverOversell() throws InterruptedException {
+        ProductManager manager = new ProductManager();
+        iPhone iphone = new iPhone("iPhone 15 Pro", 7999.0, 1000, "原色钛金属", 256, "6.1英寸", "三摄像头");
+        MacBook mac = new MacBook("MacBook Air M3", 8999.0, 20, "午夜色", 256, "13.6英寸", "M3");
+        manager.addProduct(iphone);
+        manager.addProduct(mac);
+
+        int[] sold = new int[4];
+        Thread[] buyers = new Thread[sold.length];
+        for (int t = 0; t < buyers.length; t++) {
+            int index = t;
+            buyers[t] = new Thread(() -> {
+                for (int i = 0; i < 600; i++) {
+                    if (manager.reserve(iphone.getId(), 1)) {
+                        sold[index]++;
+                    }
+                }
+            });
+        }
+        // 并发改价，统计量仍须精确 | Concurrent price changes; the aggregates must stay exact
+        Thread pricer = new Thread(() -> {
+            for (int i = 0; i < 200; i++) {
+                mac.setPrice(8000.0 + i);
+            }
+        });
+        for (Thread buyer : buyers) {
+            buyer.start();
+        }
+        pricer.start();
+        for (Thread buyer : buyers) {
+            buyer.join();
+        }
+        pricer.join();
+
+        assertEquals(1000, Arrays.stream(sold).sum());
+        assertEquals(0, iphone.getStock());
+        assertEquals(20, manager.getTotalStock());
+        assertEquals(mac.getPrice() * 20, manager.getInventoryValue(), 1e-6);
+
+        assertTrue(manager.release(iphone.getId(), 3));
+        assertEquals(3, iphone.getStock());
+        assertFalse(manager.reserve(iphone.getId(), 4));
+        assertFalse(manager.reserve("missing", 1));
+        assertThrows(IllegalArgumentException.class, () -> manager.reserve(iphone.getId(), 0));
+    }
+
+    @Test
+    void testReserve_OpenSnapshotKeepsOldStock() {
+        ProductManager manager = new ProductManager();
+        iPhone iphone = new iPhone("iPhone 15", 6000.0, 10, "粉色", 128, "6.1英寸", "双摄像头");
+        manager.addProduct(iphone);
+
+        try (CatalogSnapshot snapshot = manager.snapshot()) {
+            assertTrue(manager.reserve(iphone.getId(), 4));
+            assertEquals(10, snapshot.iterator().next().getStock());
+        }
+        assertEquals(6, iphone.getStock());
+        assertEquals(6, manager.getTotalStock());
+    }
+
+    @Test
+    void testFlashSale_StripedStockNeverOversells() throws InterruptedException {
+        ProductManager manager = new ProductManager();
+        iPhone iphone = new iPhone("iPhone 15 Pro", 7999.0, 500, "原色钛金属", 256, "6.1英寸", "三摄像头");
+        manager.addProduct(iphone);
+        assertTrue(manager.startFlashSale(iphone.getId()));
+        assertTrue(iphone.isFlashSale());
+        assertEquals(500, iphone.getStock());
+
+        int[] sold = new int[4];
+        Thread[] buyers = new Thread[sold.length];
+        for (int t = 0; t < buyers.length; t++) {
+            int index = t;
+            buyers[t] = new Thread(() -> {
+                // 数量不一，迫使条带之间互相借库存 | Mixed quantities force stripes to borrow from each other
+                for (int i = 0; i < 400; i++) {
+                    int quantity = 1 + i % 3;
+                    if (manager.reserve(iphone.getId(), quantity)) {
+                        sold[index] += quantity;
+                    }
+                }
+            });
+            buyers[t].start();
+        }
+        for (Thread buyer : buyers) {
+            buyer.join();
+        }
+
+        int total = Arrays.stream(sold).sum();
+        assertTrue(total <= 500);
+        assertEquals(500 - total, iphone.getStock());
+        assertEquals(500 - total, manager.getTotalStock());
+
+        iphone.setStock(7);
+        assertTrue(manager.reserve(iphone.getId(), 7));
+        assertFalse(manager.reserve(iphone.getId(), 1));
+        assertTrue(manager.release(iphone.getId(), 2));
+        assertTrue(manager.endFlashSale(iphone.getId()));
+        assertFalse(iphone.isFlashSale());
+        assertEquals(2, iphone.getStock());
+        assertEquals(2, manager.getTotalStock());
+    }
+}
@@ -29,6 +29,17 @@ class ProductTest {
         assertThrows(IllegalArgumentException.class, () -> product.setStock(-5));
     }
 
+    @Test
+    void testAdjustStock_NeverGoesNegative() {
+        Product product = new TestProduct("iPad", "Air", 4799.0, 5, "Blue", 128);
+        assertTrue(product.adjustStock(-5));
+        assertFalse(product.adjustStock(-1));
+        assertEquals(0, product.getStock());
+        assertTrue(product.adjustStock(2));
+        assertFalse(product.adjustStock(Integer.MAX_VALUE));
+        assertEquals(2, product.getStock());
+    }
+
     @Test
     void testEqualsAndHashCode_SameId_ReturnsTrue() {
         String id = "abc12345";
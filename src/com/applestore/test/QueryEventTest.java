@@ -0,0 +1,57 @@
+package com.applestore.test;
+
+import com.applestore.model.*;
+import com.applestore.service.ProductManager;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryEventTest {
+
+    @Test
+    void testQueryEvents_CarryOperationShapeAndCacheHit() throws Exception {
+        ProductManager manager = new ProductManager();
+        manager.addProduct(new iPhone("iPhone 15 Pro", 7999.0, 25, "原色钛金属", 256, "6.1英寸", "Pro三摄"));
+        manager.addProduct(new iPhone("iPhone 15", 5999.0, 30, "粉色", 128, "6.1英寸", "双摄像头"));
+        manager.addProduct(new AirPods("AirPods Pro", 1899.0, 50, "白色", 256, "主动降噪", 30));
+
+        List<RecordedEvent> events = new ArrayList<>();
+        Path file = Files.createTempFile("applestore-query", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.applestore.Query").withoutThreshold();
+            recording.start();
+            manager.search("pro");
+            manager.search("pro");
+            manager.sortByName();
+            recording.stop();
+            recording.dump(file);
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                if (event.getEventType().getName().equals("com.applestore.Query")) {
+                    events.add(event);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        assertEquals(3, events.size());
+        RecordedEvent miss = events.get(0);
+        assertEquals("search", miss.getString("operation"));
+        assertEquals("text(pro)", miss.getString("query"));
+        assertEquals(2, miss.getInt("results"));
+        assertEquals(3, miss.getInt("catalogSize"));
+        assertFalse(miss.getBoolean("cacheHit"));
+        assertTrue(events.get(1).getBoolean("cacheHit"));
+        assertEquals("sortByName", events.get(2).getString("operation"));
+        assertEquals("all sort=NAME", events.get(2).getString("query"));
+        assertEquals(3, events.get(2).getInt("results"));
+    }
+}
@@ -0,0 +1,77 @@
+package com.applestore.test;
+
+import com.applestore.model.*;
+import com.applestore.ui.TableRenderer;
+import com.applestore.util.ColorPrinter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TableRendererTest {
+
+    private static String render(List<Product> products) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ColorPrinter.setOutput(new PrintStream(bytes, false, StandardCharsets.UTF_8));
+        try {
+            new TableRenderer().render(products);
+        } finally {
+            ColorPrinter.setOutput(null);
+        }
+        // 去掉颜色代码 | Strip the color codes
+        return bytes.toString(StandardCharsets.UTF_8).replaceAll("\033\\[[0-9;]*m", "");
+    }
+
+    @Test
+    void testDisplayWidth_CountsCjkAsTwoColumns() {
+        assertEquals(5, TableRenderer.displayWidth("iPad "));
+        assertEquals(8, TableRenderer.displayWidth("产品信息"));
+        assertEquals(12, TableRenderer.displayWidth("原色钛金属 A"));
+        assertEquals(1, TableRenderer.displayWidth("é"));
+    }
+
+    @Test
+    void testRender_AlignsCjkRowsAndTruncatesByDisplayWidth() {
+        String longModel = "MacBook Pro M3 Max 16英寸 深空黑色 1TB 超长型号名称用于测试截断效果";
+        List<Product> products = Arrays.asList(
+                new iPhone("iPhone 15 Pro 256GB", 8999.0, 25, "原色钛金属", 256, "6.1英寸", "Pro三摄"),
+                new MacBook(longModel, 24999.0, 3, "深空黑色", 1024, "16.2英寸", "M3 Max"),
+                new AirPods("AirPods (第2代)", 999.0, 0, "白色", 256, "无", 24));
+
+        String table = render(products);
+        String[] lines = table.split("\n");
+        // 三条边框、表头、三行数据，最后一个空行 | Three borders, the header and three rows, then an empty line
+        assertEquals(7, lines.length);
+        int width = TableRenderer.displayWidth(lines[0]);
+        for (String line : lines) {
+            assertEquals(width, TableRenderer.displayWidth(line), line);
+        }
+        assertTrue(lines[3].contains("iPhone iPhone 15 Pro 256GB"));
+        assertTrue(lines[3].contains("8999.0"));
+        assertTrue(lines[4].contains("MacBook MacBook Pro M3 Max 16英寸"));
+        assertTrue(lines[4].contains("..."));
+        assertFalse(lines[4].contains("截断效果"));
+        assertTrue(lines[5].contains("AirPods AirPods (第2代)"));
+    }
+
+    @Test
+    void testRender_LargeTableWrittenInBlocksWithEveryRow() {
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            products.add(new iPad("iPad Air " + i, 4399.0, i, "蓝色", 256, "10.9英寸", false));
+        }
+
+        String[] lines = render(products).split("\n");
+
+        assertEquals(5000 + 4, lines.length);
+        assertTrue(lines[3].contains("iPad Air 0 "));
+        assertTrue(lines[5002].contains("iPad Air 4999 "));
+        assertTrue(lines[5003].startsWith("└"));
+    }
+}
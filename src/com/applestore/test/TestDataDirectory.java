@@ -0,0 +1,58 @@
+package com.applestore.test;
+
+import com.applestore.util.FileManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 持久化测试共用的临时数据目录 | Temporary data directory shared by the persistence tests
+ * FileManager 在类加载时读取 applestore.dataDir，所以要在它加载前设置；已按默认目录加载时直接失败，不碰真实数据 |
+ * FileManager reads applestore.dataDir when its class loads, so it is set before that; if it already loaded with the default
+ * directory the test fails instead of touching real data
+ */
+final class TestDataDirectory {
+    private static final Path PATH;
+
+    static {
+        try {
+            PATH = Files.createTempDirectory("applestore-data");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        PATH.toFile().deleteOnExit();
+        System.setProperty("applestore.dataDir", PATH.toString());
+    }
+
+    private TestDataDirectory() {
+    }
+
+    /**
+     * 清空临时数据目录并返回它 | Empty the temporary data directory and return it
+     */
+    static Path reset() {
+        assertEquals(PATH.toString(), FileManager.getDataDirectory(), "FileManager 已按其他数据目录加载 | FileManager already loaded with another data directory");
+        File[] files = PATH.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                delete(file);
+            }
+        }
+        return PATH;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
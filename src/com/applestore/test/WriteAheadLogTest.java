@@ -0,0 +1,320 @@
+package com.applestore.test;
+
+import com.applestore.model.*;
+import com.applestore.service.ProductManager;
+import com.applestore.util.ColorPrinter;
+import com.applestore.util.FileManager;
+import com.applestore.util.WriteAheadLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+    private Path dataDir;
+
+    @BeforeEach
+    void setUp() {
+        dataDir = TestDataDirectory.reset();
+        ColorPrinter.setOutput(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        ColorPrinter.setOutput(null);
+    }
+
+    private static Map<String, Product> byId(List<Product> products) {
+        Map<String, Product> map = new HashMap<>();
+        for (Product product : products) {
+            map.put(product.getId(), product);
+        }
+        return map;
+    }
+
+    /**
+     * 两个产品的目录，写好快照并挂上日志 | A two-product catalog with its snapshot written and a log attached
+     */
+    private static WriteAheadLog openLog(ProductManager manager, Product... products) {
+        for (Product product : products) {
+            manager.addProduct(product);
+        }
+        WriteAheadLog log = new WriteAheadLog(manager);
+        log.open();
+        assertTrue(log.isOpen());
+        manager.addCatalogListener(log);
+        return log;
+    }
+
+    private File logFile() {
+        return dataDir.resolve("products.wal").toFile();
+    }
+
+    @Test
+    void testRecover_ReplaysLogOnTopOfSnapshot() {
+        ProductManager manager = new ProductManager();
+        iPhone iphone = new iPhone("iPhone 15", 5999.0, 10, "粉色", 128, "6.1英寸", "双摄像头");
+        AirPods airpods = new AirPods("AirPods Pro 2", 1899.0, 5, "白色", 0, "主动降噪", 30);
+        openLog(manager, iphone, airpods);
+
+        MacBook mac = new MacBook("MacBook Air M3", 8999.0, 3, "午夜色", 256, "13.6英寸", "M3");
+        manager.addProduct(mac);
+        manager.updateProduct(iphone.getId(), new iPhone("iPhone 15", 5499.0, 10, "粉色", 128, "6.1英寸", "双摄像头"));
+        manager.deleteProduct(airpods.getId());
+        assertTrue(manager.reserve(mac.getId(), 2));
+
+        // 不关闭日志，模拟崩溃：快照里仍是最初的两个产品 | The log is never closed, as in a crash: the snapshot still holds the original two products
+        assertEquals(2, FileManager.loadProducts().size());
+        List<Product> recovered = WriteAheadLog.recover();
+        assertEquals(2, recovered.size());
+        assertEquals(iphone.getId(), recovered.get(0).getId());
+        assertEquals(5499.0, recovered.get(0).getPrice(), 1e-9);
+        assertEquals(mac.getId(), recovered.get(1).getId());
+        assertEquals(1, recovered.get(1).getStock());
+    }
+
+    @Test
+    void testRecover_TruncatesTornTail() throws Exception {
+        ProductManager manager = new ProductManager();
+        iPhone iphone = new iPhone("iPhone 15", 5999.0, 10, "粉色", 128, "6.1英寸", "双摄像头");
+        openLog(manager, iphone);
+        assertTrue(manager.reserve(iphone.getId(), 3));
+        long validLength = logFile().length();
+
+        // 崩溃时写了一半的记录：声明 100 字节，只写了 3 字节 | A record torn by a crash: 100 bytes declared, 3 written
+        try (FileOutputStream out = new FileOutputStream(logFile(), true)) {
+            out.write(new byte[] {0, 0, 0, 100, 1, 2, 3, 4, 5, 6, 7});
+        }
+
+        List<Product> recovered = WriteAheadLog.recover();
+        assertEquals(7, recovered.get(0).getStock());
+        assertEquals(validLength, logFile().length());
+    }
+
+    @Test
+    void testRecover_DropsRecordWithBadChecksum() throws Exception {
+        ProductManager manager = new ProductManager();
+        iPhone iphone = new iPhone("iPhone 15", 5999.0, 10, "粉色", 128, "6.1英寸", "双摄像头");
+        openLog(manager, iphone);
+        assertTrue(manager.reserve(iphone.getId(), 3));
+        long validLength = logFile().length();
+        assertTrue(manager.reserve(iphone.getId(), 4));
+
+        // 改坏最后一条记录的最后一个字节 | Corrupt the last byte of the last record
+        try (RandomAccessFile raf = new RandomAccessFile(logFile(), "rw")) {
+            raf.seek(raf.length() - 1);
+            int last = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(last ^ 0xFF);
+        }
+
+        List<Product> recovered = WriteAheadLog.recover();
+        assertEquals(7, recovered.get(0).getStock());
+        assertEquals(validLength, logFile().length());
+    }
+
+    @Test
+    void testRecover_StockRecordDoesNotReviveDeletedProduct() {
+        ProductManager manager = new ProductManager();
+        iPhone iphone = new iPhone("iPhone 15", 5999.0, 10, "粉色", 128, "6.1英寸", "双摄像头");
+        AirPods airpods = new AirPods("AirPods Pro 2", 1899.0, 5, "白色", 0, "主动降噪", 30);
+        WriteAheadLog log = openLog(manager, iphone, airpods);
+
+        assertTrue(manager.deleteProduct(iphone.getId()));
+        // 无锁预留的通知晚于删除到达 | A lock-free reservation's notification arrives after the delete
+        iphone.setStock(9);
+        log.stockAdjusted(Arrays.asList(iphone));
+
+        List<Product> recovered = WriteAheadLog.recover();
+        assertEquals(1, recovered.size());
+        assertEquals(airpods.getId(), recovered.get(0).getId());
+    }
+
+    @Test
+    void testRecover_ReplayIsIdempotent() {
+        ProductManager manager = new ProductManager();
+        iPhone iphone = new iPhone("iPhone 15", 5999.0, 10, "粉色", 128, "6.1英寸", "双摄像头");
+        AirPods airpods = new AirPods("AirPods Pro 2", 1899.0, 5, "白色", 0, "主动降噪", 30);
+        openLog(manager, iphone, airpods);
+        manager.addProduct(new MacBook("MacBook Air M3", 8999.0, 3, "午夜色", 256, "13.6英寸", "M3"));
+        assertTrue(manager.reserve(iphone.getId(), 4));
+        manager.deleteProduct(airpods.getId());
+
+        Map<String, Product> first = byId(WriteAheadLog.recover());
+        Map<String, Product> second = byId(WriteAheadLog.recover());
+        // 快照已写入但日志尚未清空时崩溃：日志再重放到更新的快照上 | Crash after the snapshot was written but before the log was cleared: the log replays onto the newer snapshot
+        assertTrue(FileManager.saveProducts(manager, false));
+        Map<String, Product> third = byId(WriteAheadLog.recover());
+
+        for (Map<String, Product> recovered : Arrays.asList(first, second, third)) {
+            assertEquals(2, recovered.size());
+            assertEquals(6, recovered.get(iphone.getId()).getStock());
+            assertFalse(recovered.containsKey(airpods.getId()));
+        }
+    }
+
+    @Test
+    void testCheckpoint_ThenRecover() {
+        ProductManager manager = new ProductManager();
+        iPhone iphone = new iPhone("iPhone 15", 5999.0, 10, "粉色", 128, "6.1英寸", "双摄像头");
+        WriteAheadLog log = openLog(manager, iphone);
+        MacBook mac = new MacBook("MacBook Air M3", 8999.0, 3, "午夜色", 256, "13.6英寸", "M3");
+        manager.addProduct(mac);
+        assertTrue(manager.reserve(iphone.getId(), 1));
+
+        log.checkpoint();
+        // 日志只剩文件头，上一段已删除 | Only the header is left in the log and the previous segment is gone
+        assertEquals(8, logFile().length());
+        assertFalse(dataDir.resolve("products.wal.old").toFile().exists());
+        assertEquals(2, FileManager.loadProducts().size());
+
+        assertTrue(manager.reserve(mac.getId(), 2));
+        Map<String, Product> recovered = byId(WriteAheadLog.recover());
+        assertEquals(9, recovered.get(iphone.getId()).getStock());
+        assertEquals(1, recovered.get(mac.getId()).getStock());
+    }
+
+    /**
+     * 在临时文件的位置放一个非空目录，让快照写入失败 | Put a non-empty directory where the temp file goes so snapshots fail
+     */
+    private Path blockSnapshots() throws Exception {
+        Path blocker = dataDir.resolve("products.dat.tmp");
+        Files.createDirectory(blocker);
+        Files.createFile(blocker.resolve("blocker"));
+        return blocker;
+    }
+
+    private static void unblockSnapshots(Path blocker) throws Exception {
+        Files.delete(blocker.resolve("blocker"));
+        Files.delete(blocker);
+    }
+
+    @Test
+    void testRecover_ReplaysBothSegmentsAfterFailedSnapshot() throws Exception {
+        ProductManager manager = new ProductManager();
+        iPhone iphone = new iPhone("iPhone 15", 5999.0, 10, "粉色", 128, "6.1英寸", "双摄像头");
+        WriteAheadLog log = openLog(manager, iphone);
+        assertTrue(manager.reserve(iphone.getId(), 2));
+
+        // 切换了日志但快照没写成：之前的记录留在 .old，之后的写入新日志 | Logs switched but the snapshot failed: earlier records stay in .old, later ones go to the new log
+        Path blocker = blockSnapshots();
+        log.checkpoint();
+        assertTrue(dataDir.resolve("products.wal.old").toFile().exists());
+        assertTrue(manager.reserve(iphone.getId(), 3));
+        assertEquals(5, WriteAheadLog.recover().get(0).getStock());
+
+        // 下一次压缩成功后 .old 被删除，状态不变 | The next compaction succeeds, deletes .old and keeps the state
+        unblockSnapshots(blocker);
+        log.checkpoint();
+        assertFalse(dataDir.resolve("products.wal.old").toFile().exists());
+        assertEquals(5, FileManager.loadProducts().get(0).getStock());
+        assertEquals(5, WriteAheadLog.recover().get(0).getStock());
+    }
+
+    @Test
+    void testCatalogReplaced_IsLoggedWithoutSnapshot() {
+        ProductManager manager = new ProductManager();
+        iPhone iphone = new iPhone("iPhone 15", 5999.0, 10, "粉色", 128, "6.1英寸", "双摄像头");
+        openLog(manager, iphone);
+        long snapshotModified = new File(dataDir.toFile(), "products.dat").lastModified();
+
+        AirPods airpods = new AirPods("AirPods Pro 2", 1899.0, 5, "白色", 0, "主动降噪", 30);
+        MacBook mac = new MacBook("MacBook Air M3", 8999.0, 3, "午夜色", 256, "13.6英寸", "M3");
+        manager.setProducts(Arrays.asList(airpods, mac));
+
+        assertEquals(snapshotModified, new File(dataDir.toFile(), "products.dat").lastModified());
+        List<Product> recovered = WriteAheadLog.recover();
+        assertEquals(2, recovered.size());
+        assertEquals(airpods.getId(), recovered.get(0).getId());
+        assertEquals(mac.getId(), recovered.get(1).getId());
+    }
+
+    @Test
+    void testCompaction_RunsInBackgroundPastThreshold() throws Exception {
+        ProductManager manager = new ProductManager();
+        WriteAheadLog log = new WriteAheadLog(manager, 5);
+        log.open();
+        manager.addCatalogListener(log);
+        for (int i = 0; i < 20; i++) {
+            manager.addProduct(new iPad("iPad Air " + i, 4399.0, i, "蓝色", 256, "10.9英寸", false));
+        }
+
+        // 每次追加后日志记录数都不少于目录大小，总会触发压缩 | After every append the log is at least as long as the catalog, so compaction keeps triggering
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (FileManager.loadProducts().size() < 20 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            manager.addProduct(new iPad("iPad mini", 3999.0, 1, "紫色", 128, "8.3英寸", false));
+        }
+        log.close();
+        assertTrue(FileManager.loadProducts().size() >= 20);
+        assertEquals(manager.getProductCount(), WriteAheadLog.recover().size());
+        assertFalse(dataDir.resolve("products.wal.old").toFile().exists());
+    }
+
+    @Test
+    void testStockReservations_DoNotDeadlockWithUpdatesWhileCompacting() throws Exception {
+        ProductManager manager = new ProductManager();
+        iPhone iphone = new iPhone("iPhone 15", 5999.0, 1000, "粉色", 128, "6.1英寸", "双摄像头");
+        MacBook mac = new MacBook("MacBook Air M3", 8999.0, 10, "午夜色", 256, "13.6英寸", "M3");
+        manager.addProduct(iphone);
+        manager.addProduct(mac);
+        // 阈值很小，预留和更新的同时不停地压缩 | A tiny threshold keeps compacting while reservations and updates run
+        WriteAheadLog log = new WriteAheadLog(manager, 2);
+        log.open();
+        manager.addCatalogListener(log);
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[3];
+        for (int t = 0; t < 2; t++) {
+            threads[t] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 2000; i++) {
+                        if (manager.reserve(iphone.getId(), 1)) {
+                            manager.release(iphone.getId(), 1);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+        }
+        threads[2] = new Thread(() -> {
+            try {
+                for (int i = 0; i < 500; i++) {
+                    manager.updateProduct(mac.getId(), new MacBook("MacBook Air M3", 8999.0 + i, 10, "午夜色", 256, "13.6英寸", "M3"));
+                }
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        });
+        for (Thread thread : threads) {
+            thread.setDaemon(true);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join(60_000);
+            assertFalse(thread.isAlive(), "预留、更新与压缩死锁 | Reservations, updates and compaction deadlocked");
+        }
+        assertNull(failure.get());
+        log.close();
+
+        Map<String, Product> recovered = byId(WriteAheadLog.recover());
+        assertEquals(1000, recovered.get(iphone.getId()).getStock());
+        assertEquals(8999.0 + 499, recovered.get(mac.getId()).getPrice(), 1e-9);
+        assertFalse(dataDir.resolve("products.wal.old").toFile().exists());
+    }
+}
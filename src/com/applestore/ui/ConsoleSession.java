@@ -0,0 +1,538 @@
+package com.applestore.ui;
+
+import com.applestore.model.*;
+import com.applestore.service.ProductManager;
+import com.applestore.service.ProductPage;
+import com.applestore.service.Store;
+import com.applestore.util.ColorPrinter;
+import com.applestore.util.FileManager;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * 控制台会话 | Console Session
+ * 主菜单及其全部操作的逐行状态机：每送入一行就执行到下一个提示为止，期间从不等待输入 |
+ * Line-driven state machine for the main menu and all its operations: each line fed in runs until the next prompt, never waiting for input
+ *
+ * 本地控制台从 Scanner 逐行送入，控制台服务从网络连接逐行送入，两者看到的菜单和输入顺序完全相同 |
+ * The local console feeds it from a Scanner and the console server from a network connection, so both see exactly the same menus and input sequence
+ * 输出经 ColorPrinter，由调用方决定写到哪里；会话本身不是线程安全的，同一时刻只能由一个线程送入 |
+ * Output goes through ColorPrinter and the caller decides where it lands; a session is not thread-safe and must be fed by one thread at a time
+ */
+public class ConsoleSession {
+    private static final int[] VISION_PRO_STORAGE = {256, 512};
+    private static final String[] VISION_PRO_COLORS = {"深空灰", "深空黑色"};
+    private static final String[] MACBOOK_SCREENS = {"13.6英寸", "15.3英寸", "14.2英寸", "16.2英寸"};
+    private static final String[] MACBOOK_COLORS = {"午夜色", "星光色", "深空灰色", "深空黑色", "银色"};
+    private static final int[] MACBOOK_STORAGE = {256, 512, 1024};
+    private static final String[] IPAD_SCREENS = {"10.9英寸", "11英寸", "12.9英寸"};
+    private static final String[] IPAD_COLORS = {"深空灰", "银色", "蓝色", "粉色", "紫色"};
+    private static final int[] IPAD_STORAGE = {64, 128, 256, 512};
+    private static final String[] IPHONE_SCREENS = {"6.1英寸", "6.7英寸"};
+    private static final String[] IPHONE_COLORS = {"深空灰", "银色", "金色", "原色钛金属", "蓝色钛金属",
+            "粉色", "黄色", "绿色", "蓝色", "午夜色"};
+    private static final int[] IPHONE_STORAGE = {128, 256, 512, 1024};
+    private static final String[] WATCH_CASE_SIZES = {"41mm", "44mm", "45mm", "49mm"};
+    private static final String[] WATCH_CASE_MATERIALS = {"铝金属", "铝合金", "不锈钢", "钛金属"};
+    private static final String[] WATCH_COLORS = {"午夜色", "星光色", "粉砂色", "午夜色铝金属",
+            "星光色铝金属", "深空灰色不锈钢", "银色不锈钢", "钛金属原色"};
+    private static final String[] AIRPODS_NOISE_CANCELLATION = {"主动降噪", "自适应均衡", "无降噪"};
+    private static final String[] AIRPODS_COLORS = {"白色", "银色", "深空灰色", "粉色", "黄色", "绿色", "紫色"};
+
+    private final ProductManager productManager;
+    private final Store store;
+    private final Menu menu;
+    private final ConsoleUI consoleUI;
+    private LineHandler next; // 下一行输入的处理者，null 表示当前操作已结束 | Handler of the next line; null once the current operation is done
+    private boolean closed;
+
+    /**
+     * 一行输入的处理者 | Handler of one input line
+     */
+    @FunctionalInterface
+    private interface LineHandler {
+        void handle(String line);
+    }
+
+    /**
+     * 表单中的一项：打印提示，接受一行输入，返回 false 时重新提示 |
+     * One form field: print the prompt, accept a line, and prompt again if it returns false
+     */
+    private static final class Field {
+        final Runnable prompt;
+        final Predicate<String> accept;
+
+        Field(Runnable prompt, Predicate<String> accept) {
+            this.prompt = prompt;
+            this.accept = accept;
+        }
+    }
+
+    /**
+     * 正在填写的产品 | Product being filled in
+     */
+    private static final class Draft {
+        String model;
+        String screenSize;
+        String chip;
+        String camera;
+        String caseMaterial;
+        String noiseCancellation;
+        String color;
+        boolean cellular;
+        int storage;
+        int batteryLife;
+        double price;
+        int stock;
+    }
+
+    public ConsoleSession(ProductManager productManager, Store store) {
+        this.productManager = productManager;
+        this.store = store;
+        this.menu = new Menu();
+        this.consoleUI = new ConsoleUI(productManager, menu);
+    }
+
+    /**
+     * 显示主菜单，等待第一行输入 | Show the main menu and wait for the first line
+     */
+    public void start() {
+        showMainMenu();
+    }
+
+    /**
+     * 送入一行输入（不含换行符） | Feed one line of input (without the line terminator)
+     */
+    public void accept(String line) {
+        if (closed) {
+            return;
+        }
+        LineHandler handler = next;
+        next = null;
+        try {
+            handler.handle(line);
+        } catch (RuntimeException e) {
+            ColorPrinter.printError("操作失败: " + e.getMessage() + " | Operation failed: " + e.getMessage());
+            next = null;
+        }
+        // 操作结束：等待用户按键后回到主菜单 | Operation done: wait for a key press, then back to the main menu
+        if (next == null && !closed) {
+            ask(menu::promptEnter, ignored -> showMainMenu());
+        }
+    }
+
+    /**
+     * 用户已选择退出 | The user chose to exit
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private void ask(Runnable prompt, LineHandler handler) {
+        prompt.run();
+        next = handler;
+    }
+
+    /**
+     * 子菜单自己的按键等待，之后还有主循环的那一次 | A submenu's own key-press wait, followed by the main loop's
+     */
+    private void waitForEnter() {
+        ask(menu::promptEnter, ignored -> { });
+    }
+
+    private void showMainMenu() {
+        // 清屏（打印空行模拟） | Clear screen (print empty lines as simulation)
+        ColorPrinter.println("\n\n", ColorPrinter.RESET);
+        menu.showMainMenu();
+        ask(menu::promptChoice, this::handleUserChoice);
+    }
+
+    /**
+     * 处理用户选择 | Handle user choice
+     */
+    private void handleUserChoice(String line) {
+        switch (menu.parseChoice(line)) {
+            case 1:
+                browse(null, 1, menu::promptPageTurn, ignored -> showMainMenu());
+                break;
+
+            case 2:
+                addProduct();
+                break;
+
+            case 3:
+                updateProduct();
+                break;
+
+            case 4:
+                deleteProduct();
+                break;
+
+            case 5:
+                searchProduct();
+                break;
+
+            case 6:
+                ask(consoleUI::showFilterMenu, this::handleFilterChoice);
+                break;
+
+            case 7:
+                ask(consoleUI::showSortMenu, choice -> {
+                    if (consoleUI.displaySorted(menu.parseChoice(choice))) {
+                        waitForEnter();
+                    }
+                });
+                break;
+
+            case 8:
+                store.printStatistics();
+                break;
+
+            case 9:
+                ask(consoleUI::showDataManagementMenu, this::handleDataChoice);
+                break;
+
+            case 10:
+                store.printOperationMetrics();
+                break;
+
+            case 0:
+                closed = true; // 退出 | Exit
+                break;
+
+            default:
+                ColorPrinter.printError("无效的选择，请输入 0-10 之间的数字 | Invalid choice, please enter a number between 0-10");
+        }
+    }
+
+    /**
+     * 分页浏览产品：n、p 翻页，其他输入交给 onOther | Browse products page by page: n and p turn pages, any other input goes to onOther
+     */
+    private void browse(String cursor, int pageNumber, Runnable prompt, LineHandler onOther) {
+        ProductPage page = productManager.getPage(cursor, ConsoleUI.PAGE_SIZE);
+        // 向前翻到头时游标会退回第一页 | Paging back past the start falls back to the first page
+        int number = page.hasPrevious() ? pageNumber : 1;
+        consoleUI.displayPage(page, number);
+        ask(prompt, line -> {
+            String command = line.trim().toLowerCase();
+            if (command.equals("n")) {
+                if (page.hasNext()) {
+                    browse(page.getNextCursor(), number + 1, prompt, onOther);
+                } else {
+                    ColorPrinter.printWarning("已是最后一页 | Already on the last page");
+                    browse(cursor, number, prompt, onOther);
+                }
+            } else if (command.equals("p")) {
+                if (page.hasPrevious()) {
+                    browse(page.getPreviousCursor(), number - 1, prompt, onOther);
+                } else {
+                    ColorPrinter.printWarning("已是第一页 | Already on the first page");
+                    browse(cursor, number, prompt, onOther);
+                }
+            } else {
+                onOther.handle(line);
+            }
+        });
+    }
+
+    /**
+     * 添加产品 | Add product
+     */
+    private void addProduct() {
+        ask(menu::showProductTypes, line -> {
+            Draft draft = new Draft();
+            // 根据类型选择不同的配置选项 | Choose different configuration options based on type
+            switch (menu.parseProductType(line)) {
+                case 1: // Apple Vision Pro
+                    fill(List.of(storage(draft, VISION_PRO_STORAGE), option(VISION_PRO_COLORS, true, v -> draft.color = v),
+                                    price(draft), stock(draft)),
+                            () -> new AppleVisionPro(draft.storage + "GB", draft.price, draft.stock, draft.color, draft.storage));
+                    break;
+
+                case 2: // MacBook
+                    fill(List.of(text("请输入型号 (例如: MacBook Pro M3 14英寸): | Please enter model (e.g.: MacBook Pro M3 14-inch): ", v -> draft.model = v),
+                                    option(MACBOOK_SCREENS, false, v -> draft.screenSize = v),
+                                    text("请输入芯片 (例如: M3, M3 Max): | Please enter chip (e.g.: M3, M3 Max): ", v -> draft.chip = v),
+                                    option(MACBOOK_COLORS, true, v -> draft.color = v), storage(draft, MACBOOK_STORAGE),
+                                    price(draft), stock(draft)),
+                            () -> new MacBook(draft.model, draft.price, draft.stock, draft.color, draft.storage, draft.screenSize, draft.chip));
+                    break;
+
+                case 3: // iPad
+                    fill(List.of(text("请输入型号 (例如: iPad Air 第5代): | Please enter model (e.g.: iPad Air 5th Gen): ", v -> draft.model = v),
+                                    option(IPAD_SCREENS, false, v -> draft.screenSize = v), cellular(draft),
+                                    option(IPAD_COLORS, true, v -> draft.color = v), storage(draft, IPAD_STORAGE),
+                                    price(draft), stock(draft)),
+                            () -> new iPad(draft.model, draft.price, draft.stock, draft.color, draft.storage, draft.screenSize, draft.cellular));
+                    break;
+
+                case 4: // iPhone
+                    fill(List.of(text("请输入型号 (例如: iPhone 15 Pro): | Please enter model (e.g.: iPhone 15 Pro): ", v -> draft.model = v),
+                                    option(IPHONE_SCREENS, false, v -> draft.screenSize = v),
+                                    text("请输入摄像头配置: | Please enter camera configuration: ", v -> draft.camera = v),
+                                    option(IPHONE_COLORS, true, v -> draft.color = v), storage(draft, IPHONE_STORAGE),
+                                    price(draft), stock(draft)),
+                            () -> new iPhone(draft.model, draft.price, draft.stock, draft.color, draft.storage, draft.screenSize, draft.camera));
+                    break;
+
+                case 5: // Apple Watch
+                    fill(List.of(text("请输入型号 (例如: Apple Watch Series 9): | Please enter model (e.g.: Apple Watch Series 9): ", v -> draft.model = v),
+                                    option(WATCH_CASE_SIZES, false, v -> draft.screenSize = v),
+                                    option(WATCH_CASE_MATERIALS, true, v -> draft.caseMaterial = v), cellular(draft),
+                                    option(WATCH_COLORS, true, v -> draft.color = v),
+                                    price(draft), stock(draft)),
+                            () -> new AppleWatch(draft.model, draft.price, draft.stock, draft.color, 64, draft.screenSize, draft.caseMaterial, draft.cellular));
+                    break;
+
+                case 6: // AirPods
+                    fill(List.of(text("请输入型号 (例如: AirPods Pro 第2代): | Please enter model (e.g.: AirPods Pro 2nd Gen): ", v -> draft.model = v),
+                                    option(AIRPODS_NOISE_CANCELLATION, true, v -> draft.noiseCancellation = v), batteryLife(draft),
+                                    option(AIRPODS_COLORS, true, v -> draft.color = v),
+                                    price(draft), stock(draft)),
+                            () -> new AirPods(draft.model, draft.price, draft.stock, draft.color, 256, draft.noiseCancellation, draft.batteryLife));
+                    break;
+
+                default:
+                    // 无效类型已提示，返回主菜单 | Invalid type already reported, back to the main menu
+            }
+        });
+    }
+
+    /**
+     * 依次填写表单各项，全部完成后创建并添加产品 | Fill in the form fields in turn, then create and add the product
+     */
+    private void fill(List<Field> fields, Supplier<Product> create) {
+        fill(fields, 0, create);
+    }
+
+    private void fill(List<Field> fields, int index, Supplier<Product> create) {
+        if (index == fields.size()) {
+            try {
+                productManager.addProduct(create.get());
+            } catch (Exception e) {
+                ColorPrinter.printError("添加产品失败: " + e.getMessage() + " | Failed to add product: " + e.getMessage());
+            }
+            return;
+        }
+        Field field = fields.get(index);
+        ask(field.prompt, line -> fill(fields, field.accept.test(line) ? index + 1 : index, create));
+    }
+
+    private Field text(String prompt, Consumer<String> setter) {
+        return new Field(() -> ColorPrinter.print(prompt, ColorPrinter.BOLD_YELLOW), line -> {
+            setter.accept(line.trim());
+            return true;
+        });
+    }
+
+    /**
+     * 文字选项，按原菜单以颜色或屏幕尺寸的标题显示 | Text option, titled as color or screen size like the original menus
+     */
+    private Field option(String[] options, boolean colorTitle, Consumer<String> setter) {
+        Runnable prompt = colorTitle ? () -> menu.showColorOptions(options) : () -> menu.showScreenSizeOptions(options);
+        return new Field(prompt, line -> {
+            setter.accept(menu.parseOption(line, options));
+            return true;
+        });
+    }
+
+    private Field storage(Draft draft, int[] options) {
+        return new Field(() -> menu.showStorageOptions(options), line -> {
+            draft.storage = menu.parseStorage(line, options);
+            return true;
+        });
+    }
+
+    private Field cellular(Draft draft) {
+        return new Field(menu::showCellularOptions, line -> {
+            draft.cellular = menu.parseCellular(line);
+            return true;
+        });
+    }
+
+    private Field price(Draft draft) {
+        return new Field(menu::promptPrice, line -> (draft.price = menu.parsePrice(line)) > 0);
+    }
+
+    private Field stock(Draft draft) {
+        return new Field(menu::promptStock, line -> (draft.stock = menu.parseStock(line)) >= 0);
+    }
+
+    private Field batteryLife(Draft draft) {
+        return new Field(() -> ColorPrinter.print("请输入续航时间(小时): | Please enter battery life (hours): ", ColorPrinter.BOLD_YELLOW), line -> {
+            String batteryInput = line.trim();
+            if (batteryInput.isEmpty()) {
+                draft.batteryLife = 30; // 默认值 | Default value
+                return true;
+            }
+            try {
+                draft.batteryLife = Integer.parseInt(batteryInput);
+                if (draft.batteryLife > 0) {
+                    return true;
+                }
+                ColorPrinter.printError("续航时间必须大于0 | Battery life must be greater than 0");
+            } catch (NumberFormatException e) {
+                ColorPrinter.printError("请输入有效的数字 | Please enter a valid number");
+            }
+            return false;
+        });
+    }
+
+    /**
+     * 更新产品 | Update product
+     */
+    private void updateProduct() {
+        browse(null, 1, menu::promptProductId, line -> {
+            String id = menu.selectProduct(productManager, line);
+            if (id == null) return;
+
+            Product product = productManager.findById(id);
+            ColorPrinter.printInfo("正在更新产品... | Updating product...");
+
+            // 更新价格 | Update price
+            ask(() -> ColorPrinter.print("请输入新价格 (¥, 保持不变请按Enter): | Please enter new price (¥, press Enter to keep unchanged): ", ColorPrinter.BOLD_YELLOW), priceLine -> {
+                String priceInput = priceLine.trim();
+                if (!priceInput.isEmpty()) {
+                    try {
+                        double newPrice = Double.parseDouble(priceInput);
+                        if (newPrice > 0) {
+                            product.setPrice(newPrice);
+                        } else {
+                            ColorPrinter.printError("价格必须大于0 | Price must be greater than 0");
+                            return;
+                        }
+                    } catch (NumberFormatException e) {
+                        ColorPrinter.printError("请输入有效的数字 | Please enter a valid number");
+                        return;
+                    }
+                }
+
+                // 更新库存 | Update stock
+                ask(() -> ColorPrinter.print("请输入新库存 (保持不变请按Enter): | Please enter new stock (press Enter to keep unchanged): ", ColorPrinter.BOLD_YELLOW), stockLine -> {
+                    String stockInput = stockLine.trim();
+                    if (!stockInput.isEmpty()) {
+                        try {
+                            int newStock = Integer.parseInt(stockInput);
+                            if (newStock >= 0) {
+                                product.setStock(newStock);
+                            } else {
+                                ColorPrinter.printError("库存不能为负数 | Stock cannot be negative");
+                                return;
+                            }
+                        } catch (NumberFormatException e) {
+                            ColorPrinter.printError("请输入有效的数字 | Please enter a valid number");
+                            return;
+                        }
+                    }
+
+                    productManager.updateProduct(id, product);
+                });
+            });
+        });
+    }
+
+    /**
+     * 删除产品 | Delete product
+     */
+    private void deleteProduct() {
+        browse(null, 1, menu::promptProductId, line -> {
+            String id = menu.selectProduct(productManager, line);
+            if (id == null) return;
+
+            Product product = productManager.findById(id);
+            consoleUI.displayProductDetails(product);
+
+            ask(menu::promptConfirmDelete, confirm -> {
+                if (menu.parseConfirm(confirm)) {
+                    productManager.deleteProduct(id);
+                } else {
+                    ColorPrinter.printInfo("已取消删除操作 | Deletion operation cancelled");
+                }
+            });
+        });
+    }
+
+    /**
+     * 搜索产品 | Search product
+     */
+    private void searchProduct() {
+        ask(menu::promptSearchKeyword, line -> {
+            String keyword = line.trim();
+            if (keyword.isEmpty()) {
+                ColorPrinter.printError("搜索关键词不能为空 | Search keyword cannot be empty");
+                return;
+            }
+
+            List<Product> results = productManager.search(keyword);
+            consoleUI.displaySearchResults(results, keyword);
+        });
+    }
+
+    /**
+     * 处理筛选菜单的选择 | Handle a filter menu choice
+     */
+    private void handleFilterChoice(String line) {
+        switch (menu.parseChoice(line)) {
+            case 1:
+                ask(menu::promptSearchKeyword, keywordLine -> {
+                    String keyword = keywordLine.trim();
+                    List<Product> products = productManager.filterByColor(keyword);
+                    consoleUI.displaySearchResults(products, "颜色: " + keyword + " | Color: " + keyword);
+                    waitForEnter();
+                });
+                return;
+            case 2:
+                ask(() -> ColorPrinter.print("请输入最低价格: | Please enter minimum price: ", ColorPrinter.BOLD_YELLOW), minLine -> {
+                    double min = Double.parseDouble(minLine.trim());
+                    ask(() -> ColorPrinter.print("请输入最高价格: | Please enter maximum price: ", ColorPrinter.BOLD_YELLOW), maxLine -> {
+                        double max = Double.parseDouble(maxLine.trim());
+                        List<Product> products = productManager.filterByPrice(min, max);
+                        consoleUI.displaySearchResults(products, String.format("价格: ¥%.2f - ¥%.2f | Price: ¥%.2f - ¥%.2f", min, max, min, max));
+                        waitForEnter();
+                    });
+                });
+                return;
+            case 3:
+                return;
+            default:
+                ColorPrinter.printError("无效的选择 | Invalid choice");
+        }
+        waitForEnter();
+    }
+
+    /**
+     * 处理数据管理菜单的选择 | Handle a data management menu choice
+     */
+    private void handleDataChoice(String line) {
+        switch (menu.parseChoice(line)) {
+            case 1:
+                FileManager.saveProducts(productManager);
+                break;
+            case 2:
+                List<Product> products = FileManager.loadProducts();
+                productManager.setProducts(products);
+                break;
+            case 3:
+                ask(() -> ColorPrinter.print("请输入文件名 (不含扩展名): | Please enter filename (without extension): ", ColorPrinter.BOLD_YELLOW), file -> {
+                    FileManager.exportToCSV(productManager, file.trim() + ".csv");
+                    waitForEnter();
+                });
+                return;
+            case 4:
+                ask(() -> ColorPrinter.print("请输入CSV文件名: | Please enter CSV filename: ", ColorPrinter.BOLD_YELLOW), file -> {
+                    FileManager.importFromCSV(file.trim(), productManager);
+                    waitForEnter();
+                });
+                return;
+            case 5:
+                return;
+            default:
+                ColorPrinter.printError("无效的选择 | Invalid choice");
+        }
+
+        waitForEnter();
+    }
+}
@@ -2,8 +2,8 @@ package com.applestore.ui;
 
 import com.applestore.model.*;
 import com.applestore.service.ProductManager;
+import com.applestore.service.ProductPage;
 import com.applestore.util.ColorPrinter;
-import com.applestore.util.FileManager;
 
 import java.util.List;
 
@@ -12,8 +12,12 @@ import java.util.List;
  * 负责产品展示和用户交互 | Responsible for product display and user interaction
  */
 public class ConsoleUI {
+    // 产品列表每页行数 | Rows per page of the product list
+    public static final int PAGE_SIZE = 20;
+
     private Menu menu;
     private ProductManager productManager;
+    private final TableRenderer tableRenderer = new TableRenderer();
 
     public ConsoleUI(ProductManager productManager, Menu menu) {
         this.productManager = productManager;
@@ -21,30 +25,23 @@ public class ConsoleUI {
     }
 
     /**
-     * 显示所有产品 | Display all products
+     * 显示一页产品 | Display one page of products
+     *
+     * @param pageNumber 页码，从 1 开始 | Page number, starting at 1
      */
-    public void displayAllProducts() {
-        List<Product> products = productManager.getAllProducts();
+    public void displayPage(ProductPage page, int pageNumber) {
+        List<Product> products = page.getProducts();
 
-        if (products.isEmpty()) {
+        if (products.isEmpty() && !page.hasPrevious()) {
             ColorPrinter.printError("暂无产品 | No products available");
             return;
         }
 
         ColorPrinter.printTitleBox("产品列表 | Product List");
-        ColorPrinter.printTableHeader();
-
-        for (Product product : products) {
-            String row = String.format(("│%-10s│%-50s│%-13s│%-10s│" ),
-                    truncate(product.getId(), 10),
-                    truncate(product.getName() + " " + product.getModel(), 50),
-                    product.getPrice(),
-                    product.getStock());
-            ColorPrinter.println(row, ColorPrinter.WHITE);
-        }
-
-        ColorPrinter.printTableBottom();
-        ColorPrinter.printInfo("共 " + products.size() + " 个产品 | Total " + products.size() + " products");
+        tableRenderer.render(products);
+        int total = productManager.getProductCount();
+        int pages = Math.max(1, (total + PAGE_SIZE - 1) / PAGE_SIZE);
+        ColorPrinter.printInfo("第 " + pageNumber + "/" + pages + " 页，共 " + total + " 个产品 | Page " + pageNumber + " of " + pages + ", " + total + " products in total");
     }
 
     /**
@@ -101,18 +98,7 @@ public class ConsoleUI {
             return;
         }
 
-        ColorPrinter.printTableHeader();
-
-        for (Product product : products) {
-            String row = String.format("│%-10s│%-50s│%-13s│%-10s│",
-                    truncate(product.getId(), 10),
-                    truncate(product.getName() + " " + product.getModel(), 25),
-                    product.getPrice(),
-                    product.getStock());
-            ColorPrinter.println(row, ColorPrinter.WHITE);
-        }
-
-        ColorPrinter.printTableBottom();
+        tableRenderer.render(products);
         ColorPrinter.printInfo("找到 " + products.size() + " 个产品 | Found " + products.size() + " products");
     }
 
@@ -129,34 +115,7 @@ public class ConsoleUI {
         ColorPrinter.println("  4. 从CSV导入 | Import from CSV", ColorPrinter.MAGENTA);
         ColorPrinter.println("  5. 返回主菜单 | Return to main menu", ColorPrinter.WHITE);
         ColorPrinter.printLine(50);
-
-        int choice = menu.getUserChoice();
-
-        switch (choice) {
-            case 1:
-                FileManager.saveProducts(productManager);
-                break;
-            case 2:
-                List<Product> products = FileManager.loadProducts();
-                productManager.setProducts(products);
-                break;
-            case 3:
-                ColorPrinter.print("请输入文件名 (不含扩展名): | Please enter filename (without extension): ", ColorPrinter.BOLD_YELLOW);
-                String exportFile = menu.inputSearchKeyword() + ".csv";
-                FileManager.exportToCSV(productManager, exportFile);
-                break;
-            case 4:
-                ColorPrinter.print("请输入CSV文件名: | Please enter CSV filename: ", ColorPrinter.BOLD_YELLOW);
-                String importFile = menu.inputSearchKeyword();
-                FileManager.importFromCSV(importFile, productManager);
-                break;
-            case 5:
-                return;
-            default:
-                ColorPrinter.printError("无效的选择 | Invalid choice");
-        }
-
-        menu.waitForEnter();
+        menu.promptChoice();
     }
 
     /**
@@ -170,30 +129,7 @@ public class ConsoleUI {
         ColorPrinter.println("  2. 按价格范围筛选 | Filter by price range", ColorPrinter.GREEN);
         ColorPrinter.println("  3. 返回主菜单 | Return to main menu", ColorPrinter.WHITE);
         ColorPrinter.printLine(50);
-
-        int choice = menu.getUserChoice();
-
-        switch (choice) {
-            case 1:
-                String keyword = menu.inputSearchKeyword();
-                List<Product> products = productManager.filterByColor(keyword);
-                displaySearchResults(products, "颜色: " + keyword + " | Color: " + keyword);
-                break;
-            case 2:
-                ColorPrinter.print("请输入最低价格: | Please enter minimum price: ", ColorPrinter.BOLD_YELLOW);
-                double min = Double.parseDouble(menu.inputSearchKeyword());
-                ColorPrinter.print("请输入最高价格: | Please enter maximum price: ", ColorPrinter.BOLD_YELLOW);
-                double max = Double.parseDouble(menu.inputSearchKeyword());
-                products = productManager.filterByPrice(min, max);
-                displaySearchResults(products, String.format("价格: ¥%.2f - ¥%.2f | Price: ¥%.2f - ¥%.2f", min, max, min, max));
-                break;
-            case 3:
-                return;
-            default:
-                ColorPrinter.printError("无效的选择 | Invalid choice");
-        }
-
-        menu.waitForEnter();
+        menu.promptChoice();
     }
 
     /**
@@ -208,42 +144,35 @@ public class ConsoleUI {
         ColorPrinter.println("  3. 按名称排序 | Sort by name", ColorPrinter.BLUE);
         ColorPrinter.println("  4. 返回主菜单 | Return to main menu", ColorPrinter.WHITE);
         ColorPrinter.printLine(50);
+        menu.promptChoice();
+    }
 
-        int choice = menu.getUserChoice();
-
+    /**
+     * 按排序菜单的选项显示产品 | Display products for a sort menu option
+     *
+     * @return 选项有效并已显示时返回 true | true if the option was valid and displayed
+     */
+    public boolean displaySorted(int choice) {
         List<Product> sorted;
         switch (choice) {
             case 1:
                 sorted = productManager.sortByPrice(true);
                 displaySearchResults(sorted, "按价格升序 | Sort by price ascending");
-                break;
+                return true;
             case 2:
                 sorted = productManager.sortByPrice(false);
                 displaySearchResults(sorted, "按价格降序 | Sort by price descending");
-                break;
+                return true;
             case 3:
                 sorted = productManager.sortByName();
                 displaySearchResults(sorted, "按名称排序 | Sort by name");
-                break;
+                return true;
             case 4:
-                return;
+                return false;
             default:
                 ColorPrinter.printError("无效的选择 | Invalid choice");
-                return;
-        }
-
-        menu.waitForEnter();
-    }
-
-    /**
-     * 截断字符串 | Truncate string
-     */
-    private String truncate(String str, int maxLength) {
-        if (str.length() <= maxLength) {
-            return str;
+                return false;
         }
-        return str.substring(0, maxLength - 3) + "...";
-        //We enlarge the maximum length to ensure there is enough space to ensure the complete display of the string
     }
 }
 
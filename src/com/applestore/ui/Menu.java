@@ -3,18 +3,14 @@ package com.applestore.ui;
 import com.applestore.service.ProductManager;
 import com.applestore.util.ColorPrinter;
 
-import java.util.Scanner;
-
 /**
  * 菜单类 | Menu Class
- * 处理用户交互和选择菜单 | Handle user interaction and menu selection
+ * 显示菜单和提示，并解析用户输入的一行 | Display menus and prompts, and parse the line the user enters
+ *
+ * 不直接读取输入，由 ConsoleSession 逐行送入，因此同一套菜单可用于本地控制台和网络会话 |
+ * Reads no input itself; ConsoleSession feeds it line by line, so the same menus serve the local console and network sessions
  */
 public class Menu {
-    private Scanner scanner;
-
-    public Menu() {
-        this.scanner = new Scanner(System.in);
-    }
 
     /**
      * 显示主菜单 | Display main menu
@@ -32,26 +28,35 @@ public class Menu {
         ColorPrinter.println("  7️⃣  排序产品 | Sort products", ColorPrinter.YELLOW);
         ColorPrinter.println("  8️⃣  查看统计信息 | View statistics", ColorPrinter.CYAN);
         ColorPrinter.println("  9️⃣  保存/加载数据 | Save/Load data", ColorPrinter.BLUE);
+        ColorPrinter.println("  🔟  操作耗时指标 | Operation latency metrics", ColorPrinter.CYAN);
         ColorPrinter.println("  0️⃣  退出程序 | Exit program", ColorPrinter.MAGENTA);
         ColorPrinter.printLine(60);
     }
 
     /**
-     * 获取用户选择 | Get user choice
+     * 提示输入选项 | Prompt for an option
      */
-    public int getUserChoice() {
+    public void promptChoice() {
         ColorPrinter.print("请输入屏幕上的选项| Please enter the option on the screen : ", ColorPrinter.BOLD_YELLOW);
+    }
+
+    /**
+     * 解析用户选择 | Parse user choice
+     *
+     * @return 不是数字时返回 -1 | -1 if the line is not a number
+     */
+    public int parseChoice(String line) {
         try {
-            return Integer.parseInt(scanner.nextLine().trim());
+            return Integer.parseInt(line.trim());
         } catch (NumberFormatException e) {
             return -1;
         }
     }
 
     /**
-     * 选择产品类型 | Choose product type
+     * 显示产品类型 | Display product types
      */
-    public int chooseProductType() {
+    public void showProductTypes() {
         ColorPrinter.printLine(50);
         ColorPrinter.println("  请选择产品类型: | Please select product type:", ColorPrinter.BOLD_CYAN);
         ColorPrinter.println("  1. Apple Vision Pro 🥽", ColorPrinter.RED);
@@ -61,8 +66,16 @@ public class Menu {
         ColorPrinter.println("  5. Apple Watch ⌚", ColorPrinter.MAGENTA);
         ColorPrinter.println("  6. AirPods 🎧", ColorPrinter.CYAN);
         ColorPrinter.printLine(50);
+        promptChoice();
+    }
 
-        int choice = getUserChoice();
+    /**
+     * 解析产品类型 | Parse product type
+     *
+     * @return 1-6，无效时返回 -1 | 1-6, or -1 if invalid
+     */
+    public int parseProductType(String line) {
+        int choice = parseChoice(line);
         if (choice < 1 || choice > 6) {
             ColorPrinter.printError("无效的选择，返回主菜单 | Invalid choice, returning to main menu");
             return -1;
@@ -71,117 +84,155 @@ public class Menu {
     }
 
     /**
-     * 选择存储容量 | Choose storage capacity
+     * 显示存储容量选项 | Display storage capacity options
      */
-    public int chooseStorage(int[] options) {
+    public void showStorageOptions(int[] options) {
         ColorPrinter.println("\n请选择存储容量 (GB): | Please select storage capacity (GB):", ColorPrinter.CYAN);
         for (int i = 0; i < options.length; i++) {
             ColorPrinter.println("  " + (i + 1) + ". " + options[i] + "GB", ColorPrinter.WHITE);
         }
+        promptChoice();
+    }
 
-        int choice = getUserChoice();
-        if (choice >= 1 && choice <= options.length) {
-            return options[choice - 1];
-        }
-        return options[0]; // 默认返回第一个选项 | Default return first option
+    /**
+     * 解析存储容量 | Parse storage capacity
+     */
+    public int parseStorage(String line, int[] options) {
+        return options[parseOption(line, options.length)];
     }
 
     /**
-     * 选择颜色 | Choose color
+     * 显示颜色选项 | Display color options
      */
-    public String chooseColor(String[] colors) {
-        ColorPrinter.println("\n请选择颜色: | Please select color:", ColorPrinter.CYAN);
-        for (int i = 0; i < colors.length; i++) {
-            ColorPrinter.println("  " + (i + 1) + ". " + colors[i], ColorPrinter.WHITE);
-        }
+    public void showColorOptions(String[] colors) {
+        showOptions("\n请选择颜色: | Please select color:", colors);
+    }
 
-        int choice = getUserChoice();
-        if (choice >= 1 && choice <= colors.length) {
-            return colors[choice - 1];
-        }
-        return colors[0]; // 默认返回第一个选项 | Default return first option
+    /**
+     * 显示屏幕尺寸选项 | Display screen size options
+     */
+    public void showScreenSizeOptions(String[] sizes) {
+        showOptions("\n请选择屏幕尺寸: | Please select screen size:", sizes);
     }
 
     /**
-     * 选择屏幕尺寸 | Choose screen size
+     * 解析颜色、屏幕尺寸等文字选项 | Parse a text option such as color or screen size
      */
-    public String chooseScreenSize(String[] sizes) {
-        ColorPrinter.println("\n请选择屏幕尺寸: | Please select screen size:", ColorPrinter.CYAN);
-        for (int i = 0; i < sizes.length; i++) {
-            ColorPrinter.println("  " + (i + 1) + ". " + sizes[i], ColorPrinter.WHITE);
+    public String parseOption(String line, String[] options) {
+        return options[parseOption(line, options.length)];
+    }
+
+    private void showOptions(String title, String[] options) {
+        ColorPrinter.println(title, ColorPrinter.CYAN);
+        for (int i = 0; i < options.length; i++) {
+            ColorPrinter.println("  " + (i + 1) + ". " + options[i], ColorPrinter.WHITE);
         }
+        promptChoice();
+    }
 
-        int choice = getUserChoice();
-        if (choice >= 1 && choice <= sizes.length) {
-            return sizes[choice - 1];
+    /**
+     * @return 选项下标，无效时默认第一个选项 | Option index, defaulting to the first option when invalid
+     */
+    private int parseOption(String line, int count) {
+        int choice = parseChoice(line);
+        if (choice >= 1 && choice <= count) {
+            return choice - 1;
         }
-        return sizes[0];
+        return 0; // 默认返回第一个选项 | Default return first option
     }
 
     /**
-     * 选择是否支持蜂窝网络 | Choose whether cellular network is supported
+     * 显示是否支持蜂窝网络 | Display whether cellular network is supported
      */
-    public boolean chooseCellular() {
+    public void showCellularOptions() {
         ColorPrinter.println("\n是否支持蜂窝网络? | Does it support cellular network?", ColorPrinter.CYAN);
         ColorPrinter.println("  1. 是 | Yes", ColorPrinter.GREEN);
         ColorPrinter.println("  2. 否 | No", ColorPrinter.WHITE);
+        promptChoice();
+    }
+
+    public boolean parseCellular(String line) {
+        return parseChoice(line) == 1;
+    }
 
-        int choice = getUserChoice();
-        return choice == 1;
+    /**
+     * 提示输入价格 | Prompt for price
+     */
+    public void promptPrice() {
+        ColorPrinter.print("请输入价格 (¥): | Please enter price (¥): ", ColorPrinter.BOLD_YELLOW);
     }
 
     /**
-     * 输入价格 | Input price
+     * 解析价格 | Parse price
+     *
+     * @return 无效时打印原因并返回 -1 | -1 after printing the reason if invalid
      */
-    public double inputPrice() {
-        while (true) {
-            ColorPrinter.print("请输入价格 (¥): | Please enter price (¥): ", ColorPrinter.BOLD_YELLOW);
-            try {
-                double price = Double.parseDouble(scanner.nextLine().trim());
-                if (price > 0) {
-                    return price;
-                } else {
-                    ColorPrinter.printError("价格必须大于0 | Price must be greater than 0");
-                }
-            } catch (NumberFormatException e) {
-                ColorPrinter.printError("请输入有效的数字 | Please enter a valid number");
+    public double parsePrice(String line) {
+        try {
+            double price = Double.parseDouble(line.trim());
+            if (price > 0) {
+                return price;
             }
+            ColorPrinter.printError("价格必须大于0 | Price must be greater than 0");
+        } catch (NumberFormatException e) {
+            ColorPrinter.printError("请输入有效的数字 | Please enter a valid number");
         }
+        return -1;
+    }
+
+    /**
+     * 提示输入库存 | Prompt for stock
+     */
+    public void promptStock() {
+        ColorPrinter.print("请输入库存数量: | Please enter stock quantity: ", ColorPrinter.BOLD_YELLOW);
     }
 
     /**
-     * 输入库存 | Input stock
+     * 解析库存 | Parse stock
+     *
+     * @return 无效时打印原因并返回 -1 | -1 after printing the reason if invalid
      */
-    public int inputStock() {
-        while (true) {
-            ColorPrinter.print("请输入库存数量: | Please enter stock quantity: ", ColorPrinter.BOLD_YELLOW);
-            try {
-                int stock = Integer.parseInt(scanner.nextLine().trim());
-                if (stock >= 0) {
-                    return stock;
-                } else {
-                    ColorPrinter.printError("库存不能为负数 | Stock cannot be negative");
-                }
-            } catch (NumberFormatException e) {
-                ColorPrinter.printError("请输入有效的数字 | Please enter a valid number");
+    public int parseStock(String line) {
+        try {
+            int stock = Integer.parseInt(line.trim());
+            if (stock >= 0) {
+                return stock;
             }
+            ColorPrinter.printError("库存不能为负数 | Stock cannot be negative");
+        } catch (NumberFormatException e) {
+            ColorPrinter.printError("请输入有效的数字 | Please enter a valid number");
         }
+        return -1;
     }
 
     /**
-     * 输入搜索关键词 | Input search keyword
+     * 提示输入搜索关键词 | Prompt for search keyword
      */
-    public String inputSearchKeyword() {
+    public void promptSearchKeyword() {
         ColorPrinter.print("请输入搜索关键词: | Please enter search keyword: ", ColorPrinter.BOLD_YELLOW);
-        return scanner.nextLine().trim();
+    }
+
+    /**
+     * 提示输入产品ID，也可翻页 | Prompt for product ID, or a page turn
+     */
+    public void promptProductId() {
+        ColorPrinter.print("请输入产品ID (n 下一页, p 上一页): | Please enter product ID (n next page, p previous page): ", ColorPrinter.BOLD_YELLOW);
+    }
+
+    /**
+     * 提示翻页 | Prompt for a page turn
+     */
+    public void promptPageTurn() {
+        ColorPrinter.print("n 下一页, p 上一页, Enter 返回主菜单: | n next page, p previous page, Enter back to main menu: ", ColorPrinter.BOLD_YELLOW);
     }
 
     /**
      * 选择产品 | Select product
+     *
+     * @return 产品不存在时返回 null | null if the product does not exist
      */
-    public String selectProduct(ProductManager productManager) {
-        ColorPrinter.print("请输入产品ID: | Please enter product ID: ", ColorPrinter.BOLD_YELLOW);
-        String id = scanner.nextLine().trim();
+    public String selectProduct(ProductManager productManager, String line) {
+        String id = line.trim();
 
         if (productManager.findById(id) == null) {
             ColorPrinter.printError("未找到该产品 | Product not found");
@@ -192,19 +243,21 @@ public class Menu {
     }
 
     /**
-     * 确认删除 | Confirm deletion
+     * 提示确认删除 | Prompt to confirm deletion
      */
-    public boolean confirmDelete() {
+    public void promptConfirmDelete() {
         ColorPrinter.printWarning("确定要删除该产品吗? (y/n): | Are you sure you want to delete this product? (y/n): ");
-        String confirm = scanner.nextLine().trim().toLowerCase();
+    }
+
+    public boolean parseConfirm(String line) {
+        String confirm = line.trim().toLowerCase();
         return confirm.equals("y") || confirm.equals("yes");
     }
 
     /**
-     * 等待用户按键 | Wait for user key press
+     * 提示按键继续 | Prompt for a key press to continue
      */
-    public void waitForEnter() {
+    public void promptEnter() {
         ColorPrinter.print("\n按 Enter 键继续... | Press Enter to continue...", ColorPrinter.CYAN);
-        scanner.nextLine();
     }
 }
@@ -0,0 +1,187 @@
+package com.applestore.ui;
+
+import com.applestore.model.Product;
+import com.applestore.util.ColorPrinter;
+
+import java.util.List;
+
+/**
+ * 产品表格渲染器 | Product Table Renderer
+ * 把整张表直接填充到一个复用的 StringBuilder 里，不经过 String.format，也不为截断或拼接单元格创建子串，再通过 ColorPrinter
+ * 的输出一次写出并刷新 |
+ * Pads the whole table straight into one reusable StringBuilder, without String.format and without substrings for truncated or
+ * joined cells, then writes it through ColorPrinter's output with a single flush
+ *
+ * 列宽按终端显示宽度计算：中日韩文字和全角符号占两列，组合符号占零列，因此含中文的行也能对齐；
+ * 超过 BLOCK_CHARS 的大表分块写出，缓冲区大小不随行数增长 |
+ * Column widths use terminal display width: CJK and fullwidth characters take two columns and combining marks none, so rows with
+ * Chinese text line up; large tables are written in blocks past BLOCK_CHARS so the buffer does not grow with the row count
+ *
+ * 不是线程安全的，每个 ConsoleUI 一个 | Not thread-safe; one per ConsoleUI
+ */
+public final class TableRenderer {
+    private static final int ID_WIDTH = 10;
+    private static final int PRODUCT_WIDTH = 50;
+    private static final int PRICE_WIDTH = 13;
+    private static final int STOCK_WIDTH = 10;
+    private static final int INNER_WIDTH = ID_WIDTH + PRODUCT_WIDTH + PRICE_WIDTH + STOCK_WIDTH + 3;
+    private static final String ELLIPSIS = "...";
+    private static final int BLOCK_CHARS = 1 << 16;
+    private static final String BORDER = "─".repeat(INNER_WIDTH);
+
+    private final StringBuilder buffer = new StringBuilder(BLOCK_CHARS + 1024);
+
+    /**
+     * 渲染表头、各行和表底，整表一次刷新 | Render the header, the rows and the bottom, flushing once per table
+     */
+    public void render(List<? extends Product> products) {
+        buffer.setLength(0);
+        appendBorder('┌', '┐');
+        appendHeader();
+        appendBorder('┌', '┐');
+        for (Product product : products) {
+            appendRow(product);
+            if (buffer.length() >= BLOCK_CHARS) {
+                ColorPrinter.write(buffer);
+                buffer.setLength(0);
+            }
+        }
+        appendBorder('└', '┘');
+        buffer.append('\n');
+        ColorPrinter.write(buffer);
+        ColorPrinter.flush();
+        // 异常大的表之后不长期占用内存 | Do not hold on to memory after an unusually large table
+        if (buffer.capacity() > BLOCK_CHARS * 2) {
+            buffer.setLength(0);
+            buffer.trimToSize();
+        }
+    }
+
+    private void appendBorder(char left, char right) {
+        buffer.append(ColorPrinter.CYAN).append(left).append(BORDER).append(right).append(ColorPrinter.RESET).append('\n');
+    }
+
+    private void appendHeader() {
+        buffer.append(ColorPrinter.WHITE).append('│');
+        appendHeaderCell("ID", ID_WIDTH);
+        appendHeaderCell("产品信息", PRODUCT_WIDTH);
+        appendHeaderCell("价格", PRICE_WIDTH);
+        appendHeaderCell("库存", STOCK_WIDTH);
+        buffer.append(ColorPrinter.RESET).append('\n');
+    }
+
+    private void appendHeaderCell(String title, int width) {
+        buffer.append(ColorPrinter.BOLD_CYAN);
+        appendCell(title, null, width);
+        buffer.append(ColorPrinter.RESET).append(ColorPrinter.WHITE).append('│');
+    }
+
+    private void appendRow(Product product) {
+        buffer.append(ColorPrinter.WHITE).append('│');
+        appendCell(product.getId(), null, ID_WIDTH);
+        buffer.append('│');
+        appendCell(product.getName(), product.getModel(), PRODUCT_WIDTH);
+        buffer.append('│');
+        int start = buffer.length();
+        buffer.append(product.getPrice());
+        pad(PRICE_WIDTH - (buffer.length() - start));
+        buffer.append('│');
+        start = buffer.length();
+        buffer.append(product.getStock());
+        pad(STOCK_WIDTH - (buffer.length() - start));
+        buffer.append('│').append(ColorPrinter.RESET).append('\n');
+    }
+
+    /**
+     * 左对齐写出 first 与 second（以空格连接，second 可为 null），超宽时截断并以 ... 结尾 |
+     * Write first and second (joined by a space, second may be null) left-aligned, truncating with ... when too wide
+     */
+    private void appendCell(String first, String second, int width) {
+        first = String.valueOf(first);
+        int total = displayWidth(first) + (second == null ? 0 : 1 + displayWidth(second));
+        if (total <= width) {
+            buffer.append(first);
+            if (second != null) {
+                buffer.append(' ').append(second);
+            }
+            pad(width - total);
+            return;
+        }
+        int budget = width - ELLIPSIS.length();
+        int used = appendClipped(first, budget);
+        if (second != null && used < budget) {
+            buffer.append(' ');
+            used = used + 1 + appendClipped(second, budget - used - 1);
+        }
+        buffer.append(ELLIPSIS);
+        pad(budget - used);
+    }
+
+    /**
+     * 写出不超过 budget 列的前缀，返回实际占用的列数 | Write the prefix fitting in budget columns and return the columns it takes
+     */
+    private int appendClipped(String text, int budget) {
+        int used = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            int columns = columns(codePoint);
+            if (used + columns > budget) {
+                break;
+            }
+            buffer.appendCodePoint(codePoint);
+            used += columns;
+            i += Character.charCount(codePoint);
+        }
+        return used;
+    }
+
+    private void pad(int spaces) {
+        for (int i = 0; i < spaces; i++) {
+            buffer.append(' ');
+        }
+    }
+
+    /**
+     * 字符串在终端中占的列数 | Columns a string takes in a terminal
+     */
+    public static int displayWidth(String text) {
+        int width = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            width += columns(codePoint);
+            i += Character.charCount(codePoint);
+        }
+        return width;
+    }
+
+    /**
+     * 单个字符占的列数：东亚宽字符和全角字符为 2，组合符号和零宽字符为 0，其余为 1 |
+     * Columns of one character: 2 for East Asian wide and fullwidth characters, 0 for combining marks and zero-width characters, 1 otherwise
+     */
+    public static int columns(int codePoint) {
+        if (codePoint < 0x300) {
+            return 1; // 常见的快速路径 | The common fast path
+        }
+        if (codePoint <= 0x36F || (codePoint >= 0x200B && codePoint <= 0x200F) || (codePoint >= 0x20D0 && codePoint <= 0x20FF)
+                || (codePoint >= 0xFE00 && codePoint <= 0xFE0F)) {
+            return 0;
+        }
+        if ((codePoint >= 0x1100 && codePoint <= 0x115F)
+                || (codePoint >= 0x2E80 && codePoint <= 0x303E)
+                || (codePoint >= 0x3041 && codePoint <= 0x33FF)
+                || (codePoint >= 0x3400 && codePoint <= 0x4DBF)
+                || (codePoint >= 0x4E00 && codePoint <= 0x9FFF)
+                || (codePoint >= 0xA000 && codePoint <= 0xA4CF)
+                || (codePoint >= 0xAC00 && codePoint <= 0xD7A3)
+                || (codePoint >= 0xF900 && codePoint <= 0xFAFF)
+                || (codePoint >= 0xFE30 && codePoint <= 0xFE4F)
+                || (codePoint >= 0xFF00 && codePoint <= 0xFF60)
+                || (codePoint >= 0xFFE0 && codePoint <= 0xFFE6)
+                || (codePoint >= 0x1F300 && codePoint <= 0x1F64F)
+                || (codePoint >= 0x1F900 && codePoint <= 0x1F9FF)
+                || (codePoint >= 0x20000 && codePoint <= 0x3FFFD)) {
+            return 2;
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,27 @@
+package com.applestore.util;
+
+import java.util.Map;
+
+/**
+ * 目录操作指标的 JMX 接口，以 com.applestore:type=CatalogMetrics 注册 | JMX interface of the catalog operation metrics, registered as
+ * com.applestore:type=CatalogMetrics
+ */
+public interface CatalogMetricsMXBean {
+
+    /**
+     * 各操作的统计，键为操作名（如 search、FileManager.save） | Statistics per operation, keyed by operation name (e.g. search, FileManager.save)
+     */
+    Map<String, LatencyHistogram.Snapshot> getOperations();
+
+    /**
+     * 与控制台相同的文本报告 | The same text report as the console shows
+     */
+    String getReport();
+
+    boolean isEnabled();
+
+    /**
+     * 清零所有直方图 | Reset every histogram
+     */
+    void reset();
+}
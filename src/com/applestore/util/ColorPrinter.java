@@ -1,5 +1,6 @@
 package com.applestore.util;
 
+import java.io.PrintStream;
 import java.util.Random;
 
 /**
@@ -21,18 +22,53 @@ public class ColorPrinter {
     public static final String BOLD_YELLOW = "\033[1;33m";
     public static final String BOLD_CYAN = "\033[1;36m";
 
+    // 按线程重定向的输出，未设置时为 System.out | Per-thread output override, System.out when unset
+    private static final ThreadLocal<PrintStream> OUTPUT = new ThreadLocal<>();
+
+    /**
+     * 把当前线程的输出重定向到指定流（如网络会话），传入 null 恢复为 System.out |
+     * Redirect the current thread's output to the given stream (e.g. a network session); pass null to restore System.out
+     */
+    public static void setOutput(PrintStream out) {
+        if (out == null) {
+            OUTPUT.remove();
+        } else {
+            OUTPUT.set(out);
+        }
+    }
+
+    private static PrintStream out() {
+        PrintStream out = OUTPUT.get();
+        return out != null ? out : System.out;
+    }
+
     /**
      * 打印单个彩色文本 | Print single colored text
      */
     public static void print(String text, String color) {
-        System.out.print(color + text + RESET);
+        out().print(color + text + RESET);
     }
 
     /**
      * 打印彩色文本并换行 | Print colored text with newline
      */
     public static void println(String text, String color) {
-        System.out.println(color + text + RESET);
+        out().println(color + text + RESET);
+    }
+
+    /**
+     * 原样写出已着色的文本，不加颜色、不换行也不刷新 | Write pre-colored text as is, adding no color or newline and not flushing
+     * 用于一次写出整块内容（如表格） | For writing a whole block (such as a table) at once
+     */
+    public static void write(CharSequence text) {
+        out().append(text);
+    }
+
+    /**
+     * 刷新当前线程的输出 | Flush the current thread's output
+     */
+    public static void flush() {
+        out().flush();
     }
 
     /**
@@ -41,10 +77,11 @@ public class ColorPrinter {
     public static void printRainbow(String text) {
         String[] colors = {RED, YELLOW, GREEN, CYAN, BLUE, MAGENTA};
         char[] chars = text.toCharArray();
+        PrintStream out = out();
         for (int i = 0; i < chars.length; i++) {
-            System.out.print(colors[i % colors.length] + chars[i] + RESET);
+            out.print(colors[i % colors.length] + chars[i] + RESET);
         }
-        System.out.println();
+        out.println();
     }
 
     /**
@@ -88,6 +125,17 @@ public class ColorPrinter {
         println("", RESET);
     }
 
+    /**
+     * 打印告别信息 | Print goodbye message
+     */
+    public static void printGoodbye() {
+        printLine(60);
+        printRainbow("  ════════ 感谢使用 AppleStore ════════ |  ════════ Thank you for using AppleStore ════════");
+        printLine(60);
+        println("  👋 再见！期待您的下次光临！ | 👋 Goodbye! We look forward to your next visit!", BOLD_GREEN);
+        printLine(60);
+    }
+
     /**
      * 打印提示信息 | Print info message
      */
@@ -0,0 +1,98 @@
+package com.applestore.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+/**
+ * CSV 分词工具类 | CSV Tokenizer Utility Class
+ * 逐字符扫描，不使用正则；支持带引号的字段、"" 转义以及引号内换行 |
+ * Scans char by char without regex; supports quoted fields, "" escapes and line breaks inside quotes
+ */
+public final class CsvTokenizer {
+
+    private CsvTokenizer() {
+    }
+
+    /**
+     * 读取一条完整记录（引号未闭合时继续读下一行） | Read one complete record (keeps reading lines while a quote is open)
+     *
+     * @return 记录文本，输入结束时返回 null | Record text, or null at end of input
+     */
+    public static String readRecord(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        if (line == null || countQuotes(line) % 2 == 0) {
+            return line;
+        }
+
+        StringBuilder record = new StringBuilder(line);
+        int quotes = countQuotes(line);
+        while (quotes % 2 != 0 && (line = reader.readLine()) != null) {
+            record.append('\n').append(line);
+            quotes += countQuotes(line);
+        }
+        return record.toString();
+    }
+
+    private static int countQuotes(String line) {
+        int count = 0;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == '"') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 把一条记录拆成字段 | Split one record into fields
+     *
+     * @param fields 复用的输出数组，超出长度的字段被忽略 | Reused output array; fields beyond its length are dropped
+     * @return 记录中的字段总数 | Total number of fields in the record
+     */
+    public static int tokenize(String record, String[] fields) {
+        int count = 0;
+        int length = record.length();
+        int i = 0;
+        while (true) {
+            String field;
+            if (i < length && record.charAt(i) == '"') {
+                StringBuilder value = new StringBuilder();
+                i++;
+                while (i < length) {
+                    char c = record.charAt(i++);
+                    if (c == '"') {
+                        if (i < length && record.charAt(i) == '"') {
+                            value.append('"');
+                            i++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        value.append(c);
+                    }
+                }
+                // 跳过闭合引号和逗号之间的多余字符 | Skip stray chars between the closing quote and the comma
+                while (i < length && record.charAt(i) != ',') {
+                    value.append(record.charAt(i++));
+                }
+                field = value.toString();
+            } else {
+                int start = i;
+                while (i < length && record.charAt(i) != ',') {
+                    i++;
+                }
+                field = record.substring(start, i);
+            }
+
+            if (count < fields.length) {
+                fields[count] = field;
+            }
+            count++;
+
+            if (i >= length) {
+                return count;
+            }
+            i++; // 跳过逗号 | Skip the comma
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.applestore.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * CSV 写出工具类 | CSV Writer Utility Class
+ * 字段直接写入可复用的字符缓冲，数字手工格式化，按 UTF-8 编码后经大块缓冲写入通道 |
+ * Fields go straight into a reusable char buffer, numbers are formatted by hand, then encoded as UTF-8 and written to the channel in large blocks
+ *
+ * 含逗号、引号或换行的字段加引号，可被 CsvTokenizer 原样读回 | Fields with commas, quotes or line breaks are quoted, so CsvTokenizer reads them back unchanged
+ */
+public class CsvWriter implements Closeable {
+    private static final int CHAR_BUFFER_SIZE = 1 << 13;
+    private static final int BYTE_BUFFER_SIZE = 1 << 20;
+
+    private final WritableByteChannel channel;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+    private final ByteBuffer bytes = ByteBuffer.allocate(BYTE_BUFFER_SIZE);
+    private final char[] digits = new char[20];
+    private boolean firstField = true;
+
+    public CsvWriter(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * 写入文本字段，null 写为空字段 | Write a text field; null is written as an empty field
+     */
+    public CsvWriter field(String value) throws IOException {
+        separator();
+        if (value == null) {
+            return this;
+        }
+        if (needsQuotes(value)) {
+            put('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    put('"');
+                }
+                put(c);
+            }
+            put('"');
+        } else {
+            for (int i = 0; i < value.length(); i++) {
+                put(value.charAt(i));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 写入整数字段 | Write an integer field
+     */
+    public CsvWriter field(long value) throws IOException {
+        separator();
+        putLong(value);
+        return this;
+    }
+
+    /**
+     * 写入两位小数的金额字段，与 %.2f 的四舍五入一致 | Write an amount with two decimals, rounded the same way as %.2f
+     */
+    public CsvWriter fieldCents(double value) throws IOException {
+        separator();
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            putString(Double.toString(value));
+            return this;
+        }
+
+        double magnitude = Math.abs(value);
+        double scaled = magnitude * 100;
+        double fraction = scaled - Math.floor(scaled);
+        if (magnitude >= 1e15 || Math.abs(fraction - 0.5) < 1e-6) {
+            // 恰在进位边界或超出 long 精度时，按十进制表示精确舍入 | On a rounding boundary or beyond long precision, round the decimal representation exactly
+            putString(new BigDecimal(Double.toString(value)).setScale(2, RoundingMode.HALF_UP).toPlainString());
+            return this;
+        }
+
+        long cents = Math.round(scaled);
+        if (value < 0 && cents != 0) {
+            put('-');
+        }
+        putLong(cents / 100);
+        put('.');
+        long remainder = cents % 100;
+        put((char) ('0' + remainder / 10));
+        put((char) ('0' + remainder % 10));
+        return this;
+    }
+
+    /**
+     * 原样写入一整行（如标题行） | Write a whole line verbatim (e.g. the header)
+     */
+    public void line(String text) throws IOException {
+        putString(text);
+        endRecord();
+    }
+
+    /**
+     * 结束当前记录 | End the current record
+     */
+    public void endRecord() throws IOException {
+        put('\n');
+        firstField = true;
+    }
+
+    /**
+     * 把缓冲内容全部写入通道 | Write everything buffered to the channel
+     */
+    public void flush() throws IOException {
+        encode(true);
+        drain();
+        encoder.reset();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void separator() throws IOException {
+        if (firstField) {
+            firstField = false;
+        } else {
+            put(',');
+        }
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void putString(String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            put(value.charAt(i));
+        }
+    }
+
+    private void putLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            putString(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            put('-');
+            value = -value;
+        }
+        int pos = digits.length;
+        do {
+            digits[--pos] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        while (pos < digits.length) {
+            put(digits[pos++]);
+        }
+    }
+
+    private void put(char c) throws IOException {
+        if (!chars.hasRemaining()) {
+            encode(false);
+        }
+        chars.put(c);
+    }
+
+    /**
+     * 把字符缓冲编码进字节缓冲，字节缓冲满时写出 | Encode the char buffer into the byte buffer, writing it out whenever it fills
+     */
+    private void encode(boolean endOfInput) throws IOException {
+        chars.flip();
+        while (true) {
+            CoderResult result = encoder.encode(chars, bytes, endOfInput);
+            if (result.isOverflow()) {
+                drain();
+            } else if (result.isError()) {
+                result.throwException();
+            } else {
+                break;
+            }
+        }
+        if (endOfInput) {
+            while (encoder.flush(bytes).isOverflow()) {
+                drain();
+            }
+        }
+        // 未配对的代理字符留到下一轮 | A trailing unpaired surrogate waits for the next round
+        chars.compact();
+    }
+
+    private void drain() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+}
@@ -1,20 +1,52 @@
 package com.applestore.util;
 
 import com.applestore.model.*;
+import com.applestore.service.CatalogSnapshot;
 import com.applestore.service.ProductManager;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Scanner;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * 文件管理工具类 | File Management Utility Class
  * 负责数据的持久化存储 | Responsible for data persistence storage
  */
 public class FileManager {
-    private static final String DATA_DIR = "data";
-    private static final String PRODUCTS_FILE = DATA_DIR + "/products.txt";
+    // 数据目录，可用 -Dapplestore.dataDir 改到别处（例如基准测试时） | Data directory, movable with -Dapplestore.dataDir (e.g. for benchmarks)
+    static final String DATA_DIR = System.getProperty("applestore.dataDir", "data");
+    private static final String PRODUCTS_FILE = DATA_DIR + "/products.dat";
+    // 旧版 Java 序列化文件，仅用于迁移 | Legacy Java serialization file, only read for migration
+    private static final String LEGACY_PRODUCTS_FILE = DATA_DIR + "/products.txt";
+    private static final int LEGACY_MAGIC = 0xACED0005; // Java 序列化流头 | Java serialization stream header
+    private static final int BUFFER_SIZE = 1 << 16;
+    // 导入时每块的记录数，也是每批插入的大小 | Records per import chunk, also the size of each insert batch
+    private static final int IMPORT_CHUNK_SIZE = 50_000;
+    private static final int MAX_REPORTED_INVALID_ROWS = 10;
+
+    /**
+     * 当前使用的数据目录 | The data directory in use
+     */
+    public static String getDataDirectory() {
+        return DATA_DIR;
+    }
 
     /**
      * 确保数据目录存在 | Ensure data directory exists
@@ -30,127 +62,331 @@ public class FileManager {
      * 保存产品数据到文件 | Save product data to file
      */
     public static boolean saveProducts(ProductManager productManager) {
-        ensureDataDirectory();
+        return saveProducts(productManager, true);
+    }
 
-        try (ObjectOutputStream oos = new ObjectOutputStream(
-                new FileOutputStream(PRODUCTS_FILE))) {
+    /**
+     * 原子地保存产品数据：写临时文件、刷盘、再重命名覆盖 | Save product data atomically: write a temp file, force it to disk, then rename over
+     * 崩溃时旧文件保持完整；同一时间只允许一个保存 | The old file stays intact on a crash; only one save runs at a time
+     *
+     * @param verbose 是否打印成功信息（后台保存时关闭） | Whether to print the success message (off for background saves)
+     */
+    public static synchronized boolean saveProducts(ProductManager productManager, boolean verbose) {
+        long start = CatalogMetrics.start();
+        FileOperationEvent event = new FileOperationEvent("save");
+        try {
+            ensureDataDirectory();
 
-            oos.writeObject(productManager.getAllProducts());
-            ColorPrinter.printSuccess("产品数据已成功保存到文件 | Product data successfully saved to file");
-            return true;
+            File temp = new File(PRODUCTS_FILE + ".tmp");
+            // 写快照而不是在线的产品对象，并发修改时文件也是同一时刻的完整状态 |
+            // Write a snapshot rather than the live products, so concurrent edits still leave one point-in-time image in the file
+            try (CatalogSnapshot snapshot = productManager.snapshot()) {
+                try (FileOutputStream out = new FileOutputStream(temp)) {
+                    ProductCodec.writeCatalog(out, snapshot, snapshot.size());
+                    out.getChannel().force(true);
+                }
+                moveAtomically(temp.toPath(), new File(PRODUCTS_FILE).toPath());
+                event.file = PRODUCTS_FILE;
+                event.records = snapshot.size();
+                event.success = true;
 
-        } catch (IOException e) {
-            ColorPrinter.printError("保存产品数据失败: " + e.getMessage() + " | Failed to save product data: " + e.getMessage());
-            return false;
+                if (verbose) {
+                    ColorPrinter.printSuccess("产品数据已成功保存到文件 | Product data successfully saved to file");
+                }
+                return true;
+
+            } catch (IOException e) {
+                temp.delete();
+                ColorPrinter.printError("保存产品数据失败: " + e.getMessage() + " | Failed to save product data: " + e.getMessage());
+                return false;
+            }
+        } finally {
+            CatalogMetrics.record(CatalogMetrics.Operation.SAVE, start);
+            event.finish();
+        }
+    }
+
+    /**
+     * 重命名覆盖目标文件，文件系统不支持原子移动时退回普通替换 | Rename over the target, falling back to a plain replace if atomic moves are unsupported
+     */
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
         }
     }
 
     /**
      * 从文件加载产品数据 | Load product data from file
+     * 没有二进制文件时读取旧版序列化文件，下次保存即完成迁移 | Falls back to the legacy serialized file; the next save completes the migration
      */
-    @SuppressWarnings("unchecked")
     public static List<Product> loadProducts() {
-        ensureDataDirectory();
+        long start = CatalogMetrics.start();
+        FileOperationEvent event = new FileOperationEvent("load");
+        try {
+            ensureDataDirectory();
 
-        File file = new File(PRODUCTS_FILE);
-        if (!file.exists()) {
-            ColorPrinter.printInfo("数据文件不存在，将创建新文件 | Data file does not exist, will create new file");
-            return new ArrayList<>();
-        }
+            File file = new File(PRODUCTS_FILE);
+            if (!file.exists()) {
+                file = new File(LEGACY_PRODUCTS_FILE);
+            }
+            if (!file.exists()) {
+                ColorPrinter.printInfo("数据文件不存在，将创建新文件 | Data file does not exist, will create new file");
+                return new ArrayList<>();
+            }
 
-        try (ObjectInputStream ois = new ObjectInputStream(
-                new FileInputStream(PRODUCTS_FILE))) {
+            try (BufferedInputStream in = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE)) {
 
-            List<Product> products = (List<Product>) ois.readObject();
-            ColorPrinter.printSuccess("成功从文件加载 " + products.size() + " 个产品 | Successfully loaded " + products.size() + " products from file");
-            return products;
+                in.mark(4);
+                int magic = new DataInputStream(in).readInt();
+                in.reset();
+
+                List<Product> products;
+                if (magic == LEGACY_MAGIC) {
+                    products = readLegacy(in);
+                    ColorPrinter.printInfo("已读取旧版数据文件，保存时将转换为二进制格式 | Read legacy data file, it will be converted to binary format on save");
+                } else {
+                    products = ProductCodec.readCatalog(in);
+                }
+                event.file = file.getPath();
+                event.records = products.size();
+                event.success = true;
+                ColorPrinter.printSuccess("成功从文件加载 " + products.size() + " 个产品 | Successfully loaded " + products.size() + " products from file");
+                return products;
+
+            } catch (IOException | ClassNotFoundException e) {
+                ColorPrinter.printError("加载产品数据失败: " + e.getMessage() + " | Failed to load product data: " + e.getMessage());
+                return new ArrayList<>();
+            }
+        } finally {
+            CatalogMetrics.record(CatalogMetrics.Operation.LOAD, start);
+            event.finish();
+        }
+    }
 
-        } catch (IOException | ClassNotFoundException e) {
-            ColorPrinter.printError("加载产品数据失败: " + e.getMessage() + " | Failed to load product data: " + e.getMessage());
-            return new ArrayList<>();
+    /**
+     * 读取旧版 Java 序列化数据 | Read legacy Java serialized data
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Product> readLegacy(InputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream ois = new ObjectInputStream(in);
+        return (List<Product>) ois.readObject();
+    }
+
+    /**
+     * 把文件名解析为数据目录下的文件；含路径分隔符、.. 或绝对路径、会落到数据目录之外的名字一律拒绝 |
+     * Resolve a file name to a file directly inside the data directory, rejecting names with separators, .. or absolute paths
+     * that would land outside it
+     * 文件名可能来自远程控制台会话，不能让它读写主机上的任意文件 | Names may come from remote console sessions, which must not read or write arbitrary files on the host
+     *
+     * @return 文件路径，名字无效时打印错误并返回 null | The file path, or null with an error printed if the name is invalid
+     */
+    private static Path resolveDataFile(String filename) {
+        Path dataDir = Paths.get(DATA_DIR).toAbsolutePath().normalize();
+        Path path = null;
+        if (filename != null && !filename.isEmpty()) {
+            try {
+                path = dataDir.resolve(filename).normalize();
+            } catch (InvalidPathException e) {
+                path = null;
+            }
         }
+        if (path == null || !dataDir.equals(path.getParent())) {
+            ColorPrinter.printError("无效的文件名: " + filename + " | Invalid file name: " + filename);
+            return null;
+        }
+        return path;
     }
 
     /**
      * 导出产品数据为CSV格式 | Export product data to CSV format
+     * 遍历目录快照流式写出，不复制目录；导出期间可以继续修改，结果是开始那一刻的状态 |
+     * Streams a catalog snapshot without copying the catalog; edits may continue and the file reflects the moment the export started
      */
     public static boolean exportToCSV(ProductManager productManager, String filename) {
-        ensureDataDirectory();
+        long start = CatalogMetrics.start();
+        FileOperationEvent event = new FileOperationEvent("exportCSV");
+        try {
+            ensureDataDirectory();
 
-        try (PrintWriter writer = new PrintWriter(new FileWriter(DATA_DIR + "/" + filename))) {
+            Path path = resolveDataFile(filename);
+            if (path == null) {
+                return false;
+            }
+            try (CatalogSnapshot snapshot = productManager.snapshot();
+                 CsvWriter writer = new CsvWriter(FileChannel.open(path,
+                         StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))) {
 
-            writer.println("ID,产品名称,型号,颜色,存储(GB),价格,库存 | ID,Product Name,Model,Color,Storage(GB),Price,Stock");
+                writer.line("ID,产品名称,型号,颜色,存储(GB),价格,库存 | ID,Product Name,Model,Color,Storage(GB),Price,Stock");
 
-            for (Product product : productManager.getAllProducts()) {
-                writer.printf("%s,%s,%s,%s,%d,%.2f,%d%n",
-                        product.getId(),
-                        product.getName(),
-                        product.getModel(),
-                        product.getColor(),
-                        product.getStorage(),
-                        product.getPrice(),
-                        product.getStock());
-            }
+                for (Product product : snapshot) {
+                    writer.field(product.getId())
+                            .field(product.getName())
+                            .field(product.getModel())
+                            .field(product.getColor())
+                            .field(product.getStorage())
+                            .fieldCents(product.getPrice())
+                            .field(product.getStock());
+                    writer.endRecord();
+                    event.records++;
+                }
+                event.file = path.toString();
+                event.success = true;
 
-            ColorPrinter.printSuccess("数据已导出到 " + filename + " | Data exported to " + filename);
-            return true;
+                ColorPrinter.printSuccess("数据已导出到 " + filename + " | Data exported to " + filename);
+                return true;
 
-        } catch (IOException e) {
-            ColorPrinter.printError("导出CSV失败: " + e.getMessage() + " | CSV export failed: " + e.getMessage());
-            return false;
+            } catch (IOException e) {
+                ColorPrinter.printError("导出CSV失败: " + e.getMessage() + " | CSV export failed: " + e.getMessage());
+                return false;
+            }
+        } finally {
+            CatalogMetrics.record(CatalogMetrics.Operation.EXPORT_CSV, start);
+            event.finish();
         }
     }
 
     /**
      * 导入CSV数据 | Import CSV data
+     * 流式读取，按块在工作线程上解析，按块批量插入，每块只打印一行 |
+     * Streams the file, parses chunks on worker threads and inserts each chunk as one batch with a single log line
      */
     public static boolean importFromCSV(String filename, ProductManager productManager) {
-        ensureDataDirectory();
+        long start = CatalogMetrics.start();
+        FileOperationEvent event = new FileOperationEvent("importCSV");
+        try {
+            ensureDataDirectory();
 
-        File file = new File(DATA_DIR + "/" + filename);
-        if (!file.exists()) {
-            ColorPrinter.printError("文件不存在: " + filename + " | File does not exist: " + filename);
-            return false;
-        }
+            Path path = resolveDataFile(filename);
+            if (path == null) {
+                return false;
+            }
+            File file = path.toFile();
+            if (!file.exists()) {
+                ColorPrinter.printError("文件不存在: " + filename + " | File does not exist: " + filename);
+                return false;
+            }
 
-        try (Scanner scanner = new Scanner(file)) {
+            int threads = Runtime.getRuntime().availableProcessors();
+            ExecutorService parsers = Executors.newFixedThreadPool(threads, r -> {
+                Thread thread = new Thread(r, "applestore-csv-import");
+                thread.setDaemon(true);
+                return thread;
+            });
+            // 按提交顺序插入，在途块数有上限，内存不随文件大小增长 | Insert in submission order with a bounded number of chunks in flight, so memory does not grow with the file
+            Deque<Future<ParsedChunk>> inFlight = new ArrayDeque<>();
+            int[] totals = new int[4]; // 批次数、导入数、无效行数、重复ID数 | Batches, imported, invalid rows, duplicate IDs
 
-            if (scanner.hasNextLine()) {
-                scanner.nextLine(); // 跳过标题行 | Skip header line
-            }
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE)) {
 
-            int count = 0;
-            while (scanner.hasNextLine()) {
-                String line = scanner.nextLine();
-                String[] data = line.split(",");
-
-                if (data.length >= 7) {
-                    try {
-                        String name = data[1];
-                        String model = data[2];
-                        String color = data[3];
-                        int storage = Integer.parseInt(data[4]);
-                        double price = Double.parseDouble(data[5]);
-                        int stock = Integer.parseInt(data[6]);
-
-                        Product product = createProductByName(name, model, price, stock, color, storage);
-                        if (product != null) {
-                            productManager.addProduct(product);
-                            count++;
+                CsvTokenizer.readRecord(reader); // 跳过标题行 | Skip header line
+
+                List<String> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+                String record;
+                while ((record = CsvTokenizer.readRecord(reader)) != null) {
+                    chunk.add(record);
+                    if (chunk.size() == IMPORT_CHUNK_SIZE) {
+                        List<String> records = chunk;
+                        inFlight.add(parsers.submit(() -> parseChunk(records)));
+                        chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+                        if (inFlight.size() >= threads * 2) {
+                            insertChunk(inFlight.poll().get(), productManager, totals);
                         }
-                    } catch (Exception e) {
-                        ColorPrinter.printWarning("跳过无效数据行: " + line + " | Skipping invalid data row: " + line);
                     }
                 }
+                if (!chunk.isEmpty()) {
+                    List<String> records = chunk;
+                    inFlight.add(parsers.submit(() -> parseChunk(records)));
+                }
+                while (!inFlight.isEmpty()) {
+                    insertChunk(inFlight.poll().get(), productManager, totals);
+                }
+
+                if (totals[2] > 0) {
+                    ColorPrinter.printWarning("共跳过 " + totals[2] + " 行无效数据 | Skipped " + totals[2] + " invalid data rows in total");
+                }
+                if (totals[3] > 0) {
+                    ColorPrinter.printWarning("共跳过 " + totals[3] + " 个重复ID | Skipped " + totals[3] + " duplicate IDs in total");
+                }
+                event.file = file.getPath();
+                event.records = totals[1];
+                event.success = true;
+                ColorPrinter.printSuccess("成功导入 " + totals[1] + " 个产品 | Successfully imported " + totals[1] + " products");
+                return true;
+
+            } catch (IOException | ExecutionException e) {
+                ColorPrinter.printError("导入CSV失败: " + e.getMessage() + " | CSV import failed: " + e.getMessage());
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                ColorPrinter.printError("导入CSV被中断 | CSV import interrupted");
+                return false;
+            } finally {
+                parsers.shutdownNow();
+            }
+        } finally {
+            CatalogMetrics.record(CatalogMetrics.Operation.IMPORT_CSV, start);
+            event.finish();
+        }
+    }
+
+    /**
+     * 一块解析结果 | Result of parsing one chunk
+     */
+    private static class ParsedChunk {
+        final List<Product> products = new ArrayList<>();
+        final List<String> invalidRows = new ArrayList<>();
+    }
+
+    /**
+     * 在工作线程上解析一块记录 | Parse one chunk of records on a worker thread
+     */
+    private static ParsedChunk parseChunk(List<String> records) {
+        ParsedChunk parsed = new ParsedChunk();
+        String[] data = new String[7];
+        // 颜色取值很少，块内共享同一个字符串以减小常驻内存 | Colors repeat heavily, so share one String per chunk to cut resident memory
+        Map<String, String> colors = new HashMap<>();
+        for (String record : records) {
+            if (CsvTokenizer.tokenize(record, data) < 7) {
+                continue;
             }
+            try {
+                String name = data[1];
+                String model = data[2];
+                String color = colors.computeIfAbsent(data[3], c -> c);
+                int storage = Integer.parseInt(data[4]);
+                double price = Double.parseDouble(data[5]);
+                int stock = Integer.parseInt(data[6]);
 
-            ColorPrinter.printSuccess("成功导入 " + count + " 个产品 | Successfully imported " + count + " products");
-            return true;
+                Product product = createProductByName(name, model, price, stock, color, storage);
+                if (product != null) {
+                    parsed.products.add(product);
+                }
+            } catch (Exception e) {
+                parsed.invalidRows.add(record);
+            }
+        }
+        return parsed;
+    }
 
-        } catch (IOException e) {
-            ColorPrinter.printError("导入CSV失败: " + e.getMessage() + " | CSV import failed: " + e.getMessage());
-            return false;
+    /**
+     * 把一块产品作为一批插入并打印一行进度 | Insert one chunk of products as a batch and print one progress line
+     */
+    private static void insertChunk(ParsedChunk parsed, ProductManager productManager, int[] totals) {
+        for (String row : parsed.invalidRows) {
+            if (totals[2]++ < MAX_REPORTED_INVALID_ROWS) {
+                ColorPrinter.printWarning("跳过无效数据行: " + row + " | Skipping invalid data row: " + row);
+            }
         }
+
+        int added = productManager.addProducts(parsed.products);
+        int duplicates = parsed.products.size() - added;
+        totals[0]++;
+        totals[1] += added;
+        totals[3] += duplicates;
+        ColorPrinter.printInfo("第 " + totals[0] + " 批导入 " + added + " 个产品（重复ID " + duplicates + "），累计 " + totals[1]
+                + " | Batch " + totals[0] + ": imported " + added + " products (" + duplicates + " duplicate IDs), " + totals[1] + " in total");
     }
 
     /**
@@ -0,0 +1,63 @@
+package com.applestore.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.io.File;
+
+/**
+ * 文件操作的 JFR 事件 | JFR Event for File Operations
+ * FileManager 的保存、加载、CSV 导入和导出各发一个，带记录数、文件字节数和耗时，可在 JFR 录制中与 GC、文件 I/O 事件对照 |
+ * Emitted once per FileManager save, load, CSV import and export with the record count, file size and duration, so recordings can
+ * line them up with GC and file I/O events
+ *
+ * 用法：操作开始时创建，过程中填 records 和 success，finally 中 finish()。未录制时 shouldCommit() 为 false，
+ * 对象经逃逸分析消除，不读文件大小 |
+ * Usage: create at the start, fill in records and success along the way, finish() in a finally block. When not recording
+ * shouldCommit() is false, escape analysis removes the object and the file size is never read
+ */
+@Name("com.applestore.FileOperation")
+@Label("File Operation")
+@Category({"AppleStore", "Persistence"})
+@Description("FileManager save, load, CSV import or export")
+final class FileOperationEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("File")
+    String file;
+
+    @Label("Records")
+    @Description("Products written, read or imported")
+    int records;
+
+    @Label("Bytes")
+    @Description("Size of the data or CSV file")
+    @DataAmount
+    long bytes;
+
+    @Label("Success")
+    boolean success;
+
+    FileOperationEvent(String operation) {
+        this.operation = operation;
+        begin();
+    }
+
+    /**
+     * 结束计时，录制中时补上文件大小并提交 | Stop the clock and, while recording, add the file size and commit
+     */
+    void finish() {
+        end();
+        if (shouldCommit()) {
+            if (success && file != null) {
+                bytes = new File(file).length();
+            }
+            commit();
+        }
+    }
+}
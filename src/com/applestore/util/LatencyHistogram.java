@@ -0,0 +1,176 @@
+package com.applestore.util;
+
+import javax.management.ConstructorParameters;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 延迟直方图 | Latency Histogram
+ * 与 HdrHistogram 相同的对数线性分桶：每个 2 的幂区间再等分为 32 个子桶，任何值的相对误差不超过约 3%，覆盖 1 纳秒到数百年 |
+ * The same log-linear bucketing as HdrHistogram: each power-of-two range is split into 32 sub-buckets, so every value is within
+ * about 3% and the range covers 1 nanosecond to centuries
+ *
+ * 记录无锁且不分配：算桶号只需几次移位，再做一次原子自增和一次累加；只在出现新的最大值时才 CAS |
+ * Recording is lock-free and allocation-free: a few shifts find the bucket, then one atomic increment and one add; a CAS happens
+ * only on a new maximum
+ *
+ * 快照在记录进行中读取，各计数可能相差正在记录的几次，对统计没有影响 | Snapshots are read while recording goes on, so counts may
+ * disagree by the few recordings in progress, which does not matter for the statistics
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private volatile long startNanos = System.nanoTime();
+
+    /**
+     * 记录一次耗时，负值按 0 计 | Record one duration, counting negative values as 0
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts.getAndIncrement(bucketOf(nanos));
+        totalNanos.add(nanos);
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    /**
+     * 小于 64 的值各占一个桶；更大的值按最高位所在的 2 的幂区间，再取其后 5 位作子桶 |
+     * Values below 64 get a bucket each; larger ones go by the power of two of their top bit, then the next 5 bits pick the sub-bucket
+     */
+    static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (nanos >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * 桶内的最小值 | Smallest value in a bucket
+     */
+    static long lowestValue(int bucket) {
+        int range = bucket / SUB_BUCKETS;
+        long sub = bucket % SUB_BUCKETS;
+        return range == 0 ? sub : (SUB_BUCKETS + sub) << (range - 1);
+    }
+
+    /**
+     * 清零，吞吐量从此刻重新计算 | Reset to zero, with throughput measured from now on
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        totalNanos.reset();
+        maxNanos.set(0);
+        startNanos = System.nanoTime();
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        long max = maxNanos.get();
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return new Snapshot(count, count == 0 ? 0 : (double) totalNanos.sum() / count,
+                percentile(copy, count, 0.5, max), percentile(copy, count, 0.9, max),
+                percentile(copy, count, 0.99, max), percentile(copy, count, 0.999, max),
+                max, seconds <= 0 ? 0 : count / seconds);
+    }
+
+    /**
+     * 第 p 分位所在桶的最大值（不超过实际最大值），与 HdrHistogram 的报告方式相同 |
+     * Highest value of the bucket holding the p-th percentile (capped at the real maximum), as HdrHistogram reports it
+     */
+    private static long percentile(long[] counts, long total, double p, long max) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(p * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                long highest = i + 1 < BUCKETS ? lowestValue(i + 1) - 1 : Long.MAX_VALUE;
+                return Math.min(highest, max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * 某一时刻的统计 | Statistics at one moment
+     * 有公开的 getter 和构造器参数名，可作为 JMX 的 CompositeData 发布 | Has public getters and constructor parameter names so JMX can publish it as CompositeData
+     */
+    public static final class Snapshot {
+        private final long count;
+        private final double meanNanos;
+        private final long p50Nanos;
+        private final long p90Nanos;
+        private final long p99Nanos;
+        private final long p999Nanos;
+        private final long maxNanos;
+        private final double throughputPerSecond;
+
+        @ConstructorParameters({"count", "meanNanos", "p50Nanos", "p90Nanos", "p99Nanos", "p999Nanos", "maxNanos", "throughputPerSecond"})
+        public Snapshot(long count, double meanNanos, long p50Nanos, long p90Nanos, long p99Nanos, long p999Nanos,
+                        long maxNanos, double throughputPerSecond) {
+            this.count = count;
+            this.meanNanos = meanNanos;
+            this.p50Nanos = p50Nanos;
+            this.p90Nanos = p90Nanos;
+            this.p99Nanos = p99Nanos;
+            this.p999Nanos = p999Nanos;
+            this.maxNanos = maxNanos;
+            this.throughputPerSecond = throughputPerSecond;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMeanNanos() {
+            return meanNanos;
+        }
+
+        public long getP50Nanos() {
+            return p50Nanos;
+        }
+
+        public long getP90Nanos() {
+            return p90Nanos;
+        }
+
+        public long getP99Nanos() {
+            return p99Nanos;
+        }
+
+        public long getP999Nanos() {
+            return p999Nanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * 自创建或上次清零以来平均每秒调用次数 | Average calls per second since creation or the last reset
+         */
+        public double getThroughputPerSecond() {
+            return throughputPerSecond;
+        }
+    }
+}
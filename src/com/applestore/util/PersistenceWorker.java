@@ -0,0 +1,185 @@
+package com.applestore.util;
+
+import com.applestore.model.Product;
+import com.applestore.service.CatalogListener;
+import com.applestore.service.ProductManager;
+
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 后台持久化线程 | Background Persistence Worker
+ * 修改只标记为脏，连续的修改在延迟到期或累计到批量大小时合并为一次保存 |
+ * Mutations only mark the catalog dirty; bursts are coalesced into one save once the delay expires or the batch size is reached
+ *
+ * 退出时（包括 JVM 关闭钩子）会把未保存的修改刷到磁盘 | Pending changes are flushed on exit, including from a JVM shutdown hook
+ */
+public class PersistenceWorker implements CatalogListener {
+    public static final long DEFAULT_DELAY_MILLIS = 500;
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    private final ProductManager productManager;
+    private final long delayMillis;
+    private final int batchSize;
+    private final ScheduledExecutorService executor;
+    private final Thread shutdownHook;
+
+    // 以下字段由 this 保护 | The fields below are guarded by this
+    private int pendingChanges;
+    private ScheduledFuture<?> scheduledSave;
+    private boolean closed;
+
+    public PersistenceWorker(ProductManager productManager) {
+        this(productManager, DEFAULT_DELAY_MILLIS, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param delayMillis 第一次修改后等待多久保存 | How long to wait after the first change before saving
+     * @param batchSize   累计多少次修改后立即保存 | Number of changes that triggers an immediate save
+     */
+    public PersistenceWorker(ProductManager productManager, long delayMillis, int batchSize) {
+        this.productManager = productManager;
+        this.delayMillis = Math.max(0, delayMillis);
+        this.batchSize = Math.max(1, batchSize);
+
+        ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "applestore-persistence");
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.setRemoveOnCancelPolicy(true);
+        this.executor = pool;
+
+        this.shutdownHook = new Thread(this::close, "applestore-persistence-flush");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    @Override
+    public void productAdded(Product product) {
+        markDirty();
+    }
+
+    @Override
+    public void productsAdded(List<Product> products) {
+        markDirty(products.size());
+    }
+
+    @Override
+    public void productUpdated(Product product) {
+        markDirty();
+    }
+
+    @Override
+    public void stockAdjusted(List<Product> products) {
+        markDirty(products.size());
+    }
+
+    @Override
+    public void productRemoved(String id) {
+        markDirty();
+    }
+
+    @Override
+    public void catalogReplaced() {
+        markDirty();
+    }
+
+    /**
+     * 标记目录已修改 | Mark the catalog as modified
+     */
+    public void markDirty() {
+        markDirty(1);
+    }
+
+    /**
+     * 标记目录已修改，一次计入多次修改 | Mark the catalog as modified, counting several changes at once
+     */
+    public synchronized void markDirty(int changes) {
+        if (closed) {
+            return;
+        }
+        pendingChanges += changes;
+        if (pendingChanges >= batchSize) {
+            // 批量已满：把等待中的保存提前到现在 | Batch full: bring the pending save forward to now
+            if (scheduledSave == null || scheduledSave.getDelay(TimeUnit.MILLISECONDS) > 0) {
+                if (scheduledSave != null) {
+                    scheduledSave.cancel(false);
+                }
+                scheduledSave = executor.schedule(this::save, 0, TimeUnit.MILLISECONDS);
+            }
+        } else if (scheduledSave == null) {
+            scheduledSave = executor.schedule(this::save, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 是否有尚未保存的修改 | Whether there are unsaved changes
+     */
+    public synchronized boolean isDirty() {
+        return pendingChanges > 0;
+    }
+
+    private void save() {
+        synchronized (this) {
+            scheduledSave = null;
+            if (pendingChanges == 0) {
+                return;
+            }
+            pendingChanges = 0;
+        }
+
+        if (!FileManager.saveProducts(productManager, false)) {
+            // 保存失败：保持为脏并稍后重试 | Save failed: stay dirty and retry later
+            synchronized (this) {
+                pendingChanges++;
+                if (scheduledSave == null && !closed) {
+                    scheduledSave = executor.schedule(this::save, Math.max(delayMillis, 1000), TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+    }
+
+    /**
+     * 停止后台线程并保存剩余的修改 | Stop the background thread and save any remaining changes
+     */
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (scheduledSave != null) {
+                scheduledSave.cancel(false);
+                scheduledSave = null;
+            }
+        }
+
+        // 等待正在进行的保存结束，避免两个保存交错 | Wait for an in-flight save so two saves never interleave
+        executor.shutdown();
+        try {
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        boolean dirty;
+        synchronized (this) {
+            dirty = pendingChanges > 0;
+            pendingChanges = 0;
+        }
+        if (dirty) {
+            FileManager.saveProducts(productManager, false);
+        }
+
+        if (Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // JVM 正在关闭 | JVM is already shutting down
+            }
+        }
+    }
+}
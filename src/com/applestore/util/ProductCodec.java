@@ -0,0 +1,472 @@
+package com.applestore.util;
+
+import com.applestore.model.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 产品二进制编解码器 | Product Binary Codec
+ * 手写的紧凑格式，取代 Java 默认序列化 | Hand-rolled compact format replacing default Java serialization
+ *
+ * 目录格式 | Catalog format: [magic "APCT"][版本 version][记录数 count] 之后为 count 条产品记录 | followed by count product records
+ * 产品记录 | Product record: [类型 type][ID][型号 model][价格 price][库存 stock][颜色 color][存储 storage][子类字段 subclass fields]
+ *
+ * 编码细节 | Encoding details:
+ * 字符串为变长长度前缀的 UTF-8；目录内重复出现的字符串（颜色、型号等）写成字典下标 |
+ * Strings are varint length-prefixed UTF-8; within a catalog, repeated strings (colors, models...) are written as dictionary indexes.
+ * 8 位十六进制 ID 压成 4 字节，整分价格写成变长整数 | 8-digit hex IDs are packed into 4 bytes, whole-cent prices are written as varints.
+ *
+ * 读写经过自带的非同步字节缓冲区，避免 DataInputStream/BufferedInputStream 每字节加锁的开销 |
+ * Reads and writes go through private unsynchronized byte buffers, avoiding the per-byte locking of DataInputStream/BufferedInputStream.
+ */
+public final class ProductCodec {
+    public static final int MAGIC = 0x41504354; // "APCT"
+    public static final int VERSION = 1;
+
+    private static final int TYPE_MASK = 0x0F;
+    private static final int FLAG_PACKED_ID = 0x10; // ID 为 8 位小写十六进制 | ID is 8 lowercase hex digits
+    private static final int FLAG_CENTS = 0x20; // 价格为整分 | Price is a whole number of cents
+
+    private static final byte TYPE_VISION_PRO = 1;
+    private static final byte TYPE_MACBOOK = 2;
+    private static final byte TYPE_IPAD = 3;
+    private static final byte TYPE_IPHONE = 4;
+    private static final byte TYPE_WATCH = 5;
+    private static final byte TYPE_AIRPODS = 6;
+
+    private static final long MAX_CENTS = 1L << 50;
+    private static final int MAX_DICTIONARY_SIZE = 1 << 20;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private ProductCodec() {
+    }
+
+    /**
+     * 写入整个目录（不关闭输出流） | Write a whole catalog (the stream is not closed)
+     */
+    public static void writeCatalog(OutputStream out, Collection<Product> products) throws IOException {
+        writeCatalog(out, products, products.size());
+    }
+
+    /**
+     * 写入 count 个产品组成的目录，例如目录快照（不关闭输出流） | Write a catalog of count products, e.g. a catalog snapshot (the stream is not closed)
+     *
+     * @throws IOException 实际产品数与 count 不符时 | If the actual number of products differs from count
+     */
+    public static void writeCatalog(OutputStream out, Iterable<Product> products, int count) throws IOException {
+        Encoder encoder = new Encoder(out, BUFFER_SIZE);
+        encoder.writeInt(MAGIC);
+        encoder.writeInt(VERSION);
+        encoder.writeInt(count);
+        Map<String, Integer> dictionary = new HashMap<>();
+        int written = 0;
+        for (Product product : products) {
+            if (written++ == count) {
+                break;
+            }
+            write(encoder, product, dictionary);
+        }
+        if (written != count) {
+            throw new IOException("产品数与声明的不符: " + written + " | Product count differs from the declared one: " + written);
+        }
+        encoder.flush();
+    }
+
+    /**
+     * 读取整个目录 | Read a whole catalog
+     */
+    public static List<Product> readCatalog(InputStream in) throws IOException {
+        Decoder decoder = new Decoder(in, new byte[BUFFER_SIZE], 0, 0);
+        if (decoder.readInt() != MAGIC) {
+            throw new IOException("不是产品目录文件 | Not a product catalog file");
+        }
+        int version = decoder.readInt();
+        if (version != VERSION) {
+            throw new IOException("不支持的目录版本: " + version + " | Unsupported catalog version: " + version);
+        }
+        int count = decoder.readInt();
+        if (count < 0) {
+            throw new IOException("记录数无效: " + count + " | Invalid record count: " + count);
+        }
+        List<Product> products = new ArrayList<>(count);
+        List<String> dictionary = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            products.add(read(decoder, dictionary));
+        }
+        return products;
+    }
+
+    /**
+     * 编码单个独立的产品记录（不使用字典） | Encode one standalone product record (no dictionary)
+     */
+    public static byte[] encode(Product product) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        Encoder encoder = new Encoder(bytes, 256);
+        try {
+            write(encoder, product, null);
+            encoder.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // 内存流不会抛出 | In-memory stream never throws
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 解码单个独立的产品记录 | Decode one standalone product record
+     */
+    public static Product decode(byte[] data, int offset, int length) throws IOException {
+        return read(new Decoder(null, data, offset, offset + length), null);
+    }
+
+    private static void write(Encoder out, Product product, Map<String, Integer> dictionary) throws IOException {
+        String id = product.getId();
+        boolean packedId = isHexId(id);
+        long cents = toCents(product.getPrice());
+
+        int header = typeOf(product);
+        if (packedId) {
+            header |= FLAG_PACKED_ID;
+        }
+        if (cents >= 0) {
+            header |= FLAG_CENTS;
+        }
+        out.writeByte(header);
+
+        if (packedId) {
+            out.writeInt((int) Long.parseLong(id, 16));
+        } else {
+            writeString(out, id, dictionary);
+        }
+        writeString(out, product.getModel(), dictionary);
+        if (cents >= 0) {
+            out.writeVarLong(cents);
+        } else {
+            out.writeLong(Double.doubleToLongBits(product.getPrice()));
+        }
+        out.writeVarInt(product.getStock());
+        writeString(out, product.getColor(), dictionary);
+        out.writeVarInt(product.getStorage());
+
+        if (product instanceof MacBook) {
+            MacBook mb = (MacBook) product;
+            writeString(out, mb.getScreenSize(), dictionary);
+            writeString(out, mb.getChip(), dictionary);
+        } else if (product instanceof iPad) {
+            iPad ipad = (iPad) product;
+            writeString(out, ipad.getScreenSize(), dictionary);
+            out.writeByte(ipad.isCellular() ? 1 : 0);
+        } else if (product instanceof iPhone) {
+            iPhone iphone = (iPhone) product;
+            writeString(out, iphone.getScreenSize(), dictionary);
+            writeString(out, iphone.getCamera(), dictionary);
+        } else if (product instanceof AppleWatch) {
+            AppleWatch watch = (AppleWatch) product;
+            writeString(out, watch.getCaseSize(), dictionary);
+            writeString(out, watch.getCaseMaterial(), dictionary);
+            out.writeByte(watch.isCellular() ? 1 : 0);
+        } else if (product instanceof AirPods) {
+            AirPods airpods = (AirPods) product;
+            writeString(out, airpods.getNoiseCancellation(), dictionary);
+            out.writeVarInt(airpods.getBatteryLife());
+        }
+    }
+
+    private static Product read(Decoder in, List<String> dictionary) throws IOException {
+        int header = in.readByte();
+        String id = (header & FLAG_PACKED_ID) != 0 ? unpackId(in.readInt()) : readString(in, dictionary);
+        String model = readString(in, dictionary);
+        double price = (header & FLAG_CENTS) != 0
+                ? in.readVarLong() / 100.0
+                : Double.longBitsToDouble(in.readLong());
+        int stock = in.readVarInt();
+        String color = readString(in, dictionary);
+        int storage = in.readVarInt();
+
+        Product product;
+        switch (header & TYPE_MASK) {
+            case TYPE_VISION_PRO:
+                product = new AppleVisionPro(model, price, stock, color, storage);
+                break;
+            case TYPE_MACBOOK:
+                product = new MacBook(model, price, stock, color, storage,
+                        readString(in, dictionary), readString(in, dictionary));
+                break;
+            case TYPE_IPAD:
+                product = new iPad(model, price, stock, color, storage,
+                        readString(in, dictionary), in.readByte() != 0);
+                break;
+            case TYPE_IPHONE:
+                product = new iPhone(model, price, stock, color, storage,
+                        readString(in, dictionary), readString(in, dictionary));
+                break;
+            case TYPE_WATCH:
+                product = new AppleWatch(model, price, stock, color, storage,
+                        readString(in, dictionary), readString(in, dictionary), in.readByte() != 0);
+                break;
+            case TYPE_AIRPODS:
+                product = new AirPods(model, price, stock, color, storage,
+                        readString(in, dictionary), in.readVarInt());
+                break;
+            default:
+                throw new IOException("未知的产品类型: " + (header & TYPE_MASK) + " | Unknown product type: " + (header & TYPE_MASK));
+        }
+        product.setId(id);
+        return product;
+    }
+
+    private static byte typeOf(Product product) {
+        if (product instanceof AppleVisionPro) return TYPE_VISION_PRO;
+        if (product instanceof MacBook) return TYPE_MACBOOK;
+        if (product instanceof iPad) return TYPE_IPAD;
+        if (product instanceof iPhone) return TYPE_IPHONE;
+        if (product instanceof AppleWatch) return TYPE_WATCH;
+        if (product instanceof AirPods) return TYPE_AIRPODS;
+        throw new IllegalArgumentException("不支持的产品类型: " + product.getClass().getName() + " | Unsupported product type: " + product.getClass().getName());
+    }
+
+    /**
+     * 价格换算为整分，无法精确表示时返回 -1 | Price in whole cents, or -1 when not exactly representable
+     */
+    private static long toCents(double price) {
+        if (!(price >= 0) || price * 100 >= MAX_CENTS) {
+            return -1;
+        }
+        long cents = Math.round(price * 100);
+        return cents / 100.0 == price ? cents : -1;
+    }
+
+    /**
+     * 是否为可压缩的 8 位小写十六进制 ID | Whether the ID is a packable 8-digit lowercase hex string
+     */
+    private static boolean isHexId(String id) {
+        if (id == null || id.length() != 8) {
+            return false;
+        }
+        for (int i = 0; i < 8; i++) {
+            char c = id.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String unpackId(int packed) {
+        String hex = Integer.toHexString(packed);
+        return "00000000".substring(hex.length()) + hex;
+    }
+
+    /**
+     * 字符串头部变长整数 | String header varint:
+     * 0 = null；奇数 = 字典下标 (v >>> 1)；偶数 = 字面量，长度 (v >>> 1) - 1 |
+     * 0 = null; odd = dictionary index (v >>> 1); even = literal of length (v >>> 1) - 1
+     */
+    private static void writeString(Encoder out, String value, Map<String, Integer> dictionary) throws IOException {
+        if (value == null) {
+            out.writeVarInt(0);
+            return;
+        }
+        if (dictionary != null) {
+            Integer index = dictionary.get(value);
+            if (index != null) {
+                out.writeVarInt((index << 1) | 1);
+                return;
+            }
+            if (dictionary.size() < MAX_DICTIONARY_SIZE) {
+                dictionary.put(value, dictionary.size());
+            }
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeVarInt((bytes.length + 1) << 1);
+        out.writeBytes(bytes);
+    }
+
+    private static String readString(Decoder in, List<String> dictionary) throws IOException {
+        int header = in.readVarInt();
+        if (header == 0) {
+            return null;
+        }
+        if ((header & 1) != 0) {
+            int index = header >>> 1;
+            if (dictionary == null || index >= dictionary.size()) {
+                throw new IOException("字典下标越界: " + index + " | Dictionary index out of range: " + index);
+            }
+            return dictionary.get(index);
+        }
+        String value = in.readUtf8((header >>> 1) - 1);
+        if (dictionary != null && dictionary.size() < MAX_DICTIONARY_SIZE) {
+            dictionary.add(value);
+        }
+        return value;
+    }
+
+    /**
+     * 带缓冲的编码器 | Buffered encoder
+     */
+    private static final class Encoder {
+        private final OutputStream out;
+        private final byte[] buffer;
+        private int position;
+
+        Encoder(OutputStream out, int bufferSize) {
+            this.out = out;
+            this.buffer = new byte[bufferSize];
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (position + bytes > buffer.length) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+
+        void writeByte(int value) throws IOException {
+            ensure(1);
+            buffer[position++] = (byte) value;
+        }
+
+        void writeInt(int value) throws IOException {
+            ensure(4);
+            buffer[position++] = (byte) (value >>> 24);
+            buffer[position++] = (byte) (value >>> 16);
+            buffer[position++] = (byte) (value >>> 8);
+            buffer[position++] = (byte) value;
+        }
+
+        void writeLong(long value) throws IOException {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        void writeVarInt(int value) throws IOException {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeVarLong(long value) throws IOException {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeBytes(byte[] bytes) throws IOException {
+            if (bytes.length > buffer.length) {
+                flush();
+                out.write(bytes);
+                return;
+            }
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+    }
+
+    /**
+     * 带缓冲的解码器，in 为 null 时只解码给定的字节区间 | Buffered decoder; with a null stream it only decodes the given byte range
+     */
+    private static final class Decoder {
+        private final InputStream in;
+        private byte[] buffer;
+        private int position;
+        private int limit;
+
+        Decoder(InputStream in, byte[] buffer, int position, int limit) {
+            this.in = in;
+            this.buffer = buffer;
+            this.position = position;
+            this.limit = limit;
+        }
+
+        /**
+         * 保证缓冲区中至少有 bytes 个字节 | Make sure at least this many bytes are buffered
+         */
+        private void require(int bytes) throws IOException {
+            if (limit - position >= bytes) {
+                return;
+            }
+            if (in == null) {
+                throw new EOFException();
+            }
+            int remaining = limit - position;
+            if (bytes > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(bytes, buffer.length * 2));
+            }
+            System.arraycopy(buffer, position, buffer, 0, remaining);
+            position = 0;
+            limit = remaining;
+            while (limit < bytes) {
+                int read = in.read(buffer, limit, buffer.length - limit);
+                if (read < 0) {
+                    throw new EOFException();
+                }
+                limit += read;
+            }
+        }
+
+        int readByte() throws IOException {
+            require(1);
+            return buffer[position++] & 0xFF;
+        }
+
+        int readInt() throws IOException {
+            require(4);
+            int value = (buffer[position] & 0xFF) << 24
+                    | (buffer[position + 1] & 0xFF) << 16
+                    | (buffer[position + 2] & 0xFF) << 8
+                    | (buffer[position + 3] & 0xFF);
+            position += 4;
+            return value;
+        }
+
+        long readLong() throws IOException {
+            return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+        }
+
+        int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("变长整数格式错误 | Malformed varint");
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 70; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("变长整数格式错误 | Malformed varint");
+        }
+
+        String readUtf8(int length) throws IOException {
+            if (length < 0) {
+                throw new IOException("字符串长度无效: " + length + " | Invalid string length: " + length);
+            }
+            require(length);
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,436 @@
+package com.applestore.util;
+
+import com.applestore.model.Product;
+import com.applestore.service.CatalogListener;
+import com.applestore.service.ProductManager;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * 预写日志 | Write-Ahead Log
+ * 每次修改只向日志追加一条记录，定期写快照并清空日志 | Each mutation appends one record; a snapshot is written periodically and the log is truncated
+ *
+ * 文件格式 | File format: [magic][version] 之后为若干 [长度 length][CRC32][操作 op][ID][产品 product]
+ * 产品以 ProductCodec 编码；版本 1 的日志为 Java 序列化，仍可重放 | Products use ProductCodec; version 1 logs hold Java serialization and can still be replayed
+ * 记录均为完整状态的覆盖、删除或库存绝对值，重放是幂等的 | Records are full-state upserts, deletes or absolute stock values, so replay is idempotent
+ * 库存记录只作用于仍存在的产品，晚到的记录不会让已删除的产品复活 | Stock records only apply to products that still exist, so a late one never resurrects a deleted product
+ *
+ * 压缩在后台线程上进行：先在日志的锁内把当前日志改名为 .old 并开始新日志，再在锁外写快照，成功后删掉 .old。
+ * 日志的锁内从不等待目录的锁，而写入方会持有写锁调用监听器，反过来等待就会死锁。恢复时依次重放 .old 和当前日志；
+ * 两者合起来是上次快照以来的全部记录，重放到任何更新的快照上结果都相同 |
+ * Compaction runs on a background thread: the current log is renamed to .old and a new one started under the log's monitor, then the
+ * snapshot is written outside it and .old deleted once it succeeds. The log never waits for the manager's lock while holding its own
+ * monitor, since writers call listeners holding the write lock and waiting the other way round would deadlock. Recovery replays .old,
+ * then the current log; together they hold every record since the last snapshot, so replaying them onto any newer snapshot gives the same result
+ */
+public class WriteAheadLog implements CatalogListener {
+    private static final String LOG_FILE = FileManager.DATA_DIR + "/products.wal";
+    // 压缩中、快照尚未写好的上一段日志 | The previous log segment, kept while a compaction's snapshot is not yet written
+    private static final String PREVIOUS_LOG_FILE = LOG_FILE + ".old";
+    private static final int MAGIC = 0x4157414C; // "AWAL"
+    private static final int VERSION = 2;
+    private static final int LEGACY_VERSION = 1;
+    private static final int HEADER_LENGTH = 8;
+    private static final int MAX_RECORD_LENGTH = 1 << 20;
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+    private static final byte OP_STOCK = 3;
+    private static final byte OP_CLEAR = 4;
+
+    public static final int DEFAULT_COMPACT_THRESHOLD = 1000;
+
+    private final ProductManager productManager;
+    private final int compactThreshold;
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "applestore-wal-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // 同一时间只做一次压缩 | Only one compaction at a time
+    private final Object checkpointLock = new Object();
+
+    // 以下字段由 this 保护 | The fields below are guarded by this
+    private DataOutputStream out;
+    private int recordsSinceSnapshot;
+    private boolean compactionPending;
+
+    public WriteAheadLog(ProductManager productManager) {
+        this(productManager, DEFAULT_COMPACT_THRESHOLD);
+    }
+
+    /**
+     * @param compactThreshold 追加多少条记录后写快照并压缩日志（日志还需不短于目录） | Records appended before snapshotting and compacting the log (the log must also be at least as long as the catalog)
+     */
+    public WriteAheadLog(ProductManager productManager, int compactThreshold) {
+        this.productManager = productManager;
+        this.compactThreshold = Math.max(1, compactThreshold);
+    }
+
+    /**
+     * 恢复数据：加载最新快照并重放日志尾部 | Recover: load the latest snapshot and replay the log tail
+     */
+    public static List<Product> recover() {
+        List<Product> snapshot = FileManager.loadProducts();
+        File previous = new File(PREVIOUS_LOG_FILE);
+        File current = new File(LOG_FILE);
+        if (previous.length() == 0 && current.length() == 0) {
+            return snapshot;
+        }
+
+        Map<String, Product> catalog = new LinkedHashMap<>();
+        for (Product product : snapshot) {
+            catalog.putIfAbsent(product.getId(), product);
+        }
+
+        int applied = replay(previous, catalog) + replay(current, catalog);
+        if (applied > 0) {
+            ColorPrinter.printSuccess("已重放 " + applied + " 条日志记录 | Replayed " + applied + " log records");
+        }
+        return new ArrayList<>(catalog.values());
+    }
+
+    /**
+     * 把一个日志文件重放到目录上，截掉损坏的尾部 | Replay one log file onto the catalog, truncating a damaged tail
+     *
+     * @return 重放的记录数 | Number of records replayed
+     */
+    private static int replay(File file, Map<String, Product> catalog) {
+        if (file.length() == 0) {
+            return 0;
+        }
+        long validLength = 0;
+        int applied = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int version = in.readInt() == MAGIC ? in.readInt() : -1;
+            if (version != VERSION && version != LEGACY_VERSION) {
+                ColorPrinter.printWarning("日志文件格式无法识别，已忽略 | Unrecognized log file format, ignored");
+                return 0;
+            }
+            validLength = HEADER_LENGTH;
+
+            byte[] payload;
+            while ((payload = readRecord(in)) != null) {
+                apply(payload, version, catalog);
+                validLength += 8 + payload.length;
+                applied++;
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            ColorPrinter.printError("重放日志失败: " + e.getMessage() + " | Failed to replay log: " + e.getMessage());
+        }
+
+        // 截掉崩溃时写了一半的尾部记录 | Drop a record torn by a crash
+        if (validLength > 0 && validLength < file.length()) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength);
+            } catch (IOException e) {
+                ColorPrinter.printError("截断日志失败: " + e.getMessage() + " | Failed to truncate log: " + e.getMessage());
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * 读取一条记录，日志结束或尾部损坏时返回 null | Read one record, null at end of log or on a torn tail
+     */
+    private static byte[] readRecord(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length <= 0 || length > MAX_RECORD_LENGTH) {
+                return null;
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            return checksum(payload) == checksum ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static void apply(byte[] payload, int version, Map<String, Product> catalog) throws IOException, ClassNotFoundException {
+        DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+        byte op = record.readByte();
+        String id = record.readUTF();
+        if (op == OP_PUT) {
+            Product product;
+            if (version == LEGACY_VERSION) {
+                product = (Product) new ObjectInputStream(record).readObject();
+            } else {
+                int offset = payload.length - record.available();
+                product = ProductCodec.decode(payload, offset, payload.length - offset);
+            }
+            // 已有键原位覆盖，保持顺序 | Existing keys are replaced in place, keeping order
+            catalog.put(id, product);
+        } else if (op == OP_DELETE) {
+            catalog.remove(id);
+        } else if (op == OP_STOCK) {
+            Product product = catalog.get(id);
+            if (product != null) {
+                product.setStock(record.readInt());
+            }
+        } else if (op == OP_CLEAR) {
+            catalog.clear();
+        }
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * 打开日志 | Open the log
+     * 先把恢复出的状态写成快照，日志从当前版本的空文件开始；快照在日志的锁外写 |
+     * Snapshot the recovered state first, so the log starts empty in the current version; the snapshot is written outside the log's monitor
+     */
+    public void open() {
+        if (!FileManager.saveProducts(productManager)) {
+            ColorPrinter.printError("无法写入快照，预写日志未开启 | Cannot write snapshot, write-ahead log not enabled");
+            return;
+        }
+        openLog();
+    }
+
+    private synchronized void openLog() {
+        try {
+            // 快照已包含两段日志的内容 | The snapshot already holds both log segments
+            Files.deleteIfExists(new File(PREVIOUS_LOG_FILE).toPath());
+            out = newLog();
+        } catch (IOException e) {
+            ColorPrinter.printError("打开日志失败: " + e.getMessage() + " | Failed to open log: " + e.getMessage());
+            out = null;
+        }
+    }
+
+    public synchronized boolean isOpen() {
+        return out != null;
+    }
+
+    /**
+     * 以空的当前版本日志覆盖日志文件 | Replace the log file with an empty log in the current version
+     */
+    private static DataOutputStream newLog() throws IOException {
+        DataOutputStream log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(LOG_FILE, false)));
+        log.writeInt(MAGIC);
+        log.writeInt(VERSION);
+        log.flush();
+        return log;
+    }
+
+    @Override
+    public void productAdded(Product product) {
+        append(OP_PUT, product.getId(), product);
+    }
+
+    @Override
+    public void productUpdated(Product product) {
+        append(OP_PUT, product.getId(), product);
+    }
+
+    @Override
+    public void productRemoved(String id) {
+        append(OP_DELETE, id, null);
+    }
+
+    /**
+     * 记一条清空记录和新目录的全部产品，不在写锁下写快照 | Log a clear record and every product of the new catalog rather than snapshotting under the write lock
+     */
+    @Override
+    public void catalogReplaced() {
+        List<Product> products = productManager.getAllProducts();
+        synchronized (this) {
+            if (out == null) {
+                return;
+            }
+            try {
+                writeRecord(OP_CLEAR, "", null);
+            } catch (IOException e) {
+                ColorPrinter.printError("写入日志失败: " + e.getMessage() + " | Failed to write log: " + e.getMessage());
+                return;
+            }
+            recordsSinceSnapshot++;
+            appendBatch(OP_PUT, products);
+        }
+    }
+
+    @Override
+    public void productsAdded(List<Product> products) {
+        appendBatch(OP_PUT, products);
+    }
+
+    /**
+     * 整批库存变更只刷新一次，并发结账成组提交时每组只写一次 | A whole batch of stock changes is flushed once, so group-committed checkouts cost one write per group
+     */
+    @Override
+    public void stockAdjusted(List<Product> products) {
+        appendBatch(OP_STOCK, products);
+    }
+
+    /**
+     * 追加一批记录，只刷新一次 | Append a batch of records with a single flush
+     */
+    private synchronized void appendBatch(byte op, List<Product> products) {
+        if (out == null) {
+            return;
+        }
+        try {
+            for (Product product : products) {
+                writeRecord(op, product.getId(), product);
+            }
+            out.flush();
+        } catch (IOException e) {
+            ColorPrinter.printError("写入日志失败: " + e.getMessage() + " | Failed to write log: " + e.getMessage());
+            return;
+        }
+        recordsSinceSnapshot += products.size();
+        maybeCheckpoint();
+    }
+
+    /**
+     * 追加一条记录 | Append one record
+     */
+    private synchronized void append(byte op, String id, Product product) {
+        if (out == null) {
+            return;
+        }
+        try {
+            writeRecord(op, id, product);
+            out.flush();
+        } catch (IOException e) {
+            ColorPrinter.printError("写入日志失败: " + e.getMessage() + " | Failed to write log: " + e.getMessage());
+            return;
+        }
+        recordsSinceSnapshot++;
+        maybeCheckpoint();
+    }
+
+    private void writeRecord(byte op, String id, Product product) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream record = new DataOutputStream(bytes);
+        record.writeByte(op);
+        record.writeUTF(id);
+        if (op == OP_STOCK) {
+            // 写入时读取当前库存，最后写入的记录总是最新值 | Reads the live stock when written, so the last record always holds the latest value
+            record.writeInt(product.getStock());
+        } else if (product != null) {
+            record.write(ProductCodec.encode(product));
+        }
+        byte[] payload = bytes.toByteArray();
+
+        out.writeInt(payload.length);
+        out.writeInt(checksum(payload));
+        out.write(payload);
+    }
+
+    /**
+     * 日志记录数达到阈值且不少于目录大小时在后台压缩，大批量导入时快照开销按记录均摊 |
+     * Compact in the background once the log reaches the threshold and at least the catalog size, so bulk imports amortize snapshot cost per record
+     * 在日志的锁内调用；只读目录大小，不等待目录的锁 | Called under the log's monitor; only reads the catalog size, never waiting for the manager's lock
+     */
+    private void maybeCheckpoint() {
+        if (!compactionPending && recordsSinceSnapshot >= compactThreshold && recordsSinceSnapshot >= productManager.getProductCount()) {
+            compactionPending = true;
+            compactor.execute(this::checkpoint);
+        }
+    }
+
+    /**
+     * 写快照并清空日志 | Write a snapshot and truncate the log
+     * 先切换到新日志，再在日志的锁外写快照，成功后删掉旧日志；中途崩溃时重放两段日志仍然正确 |
+     * Switch to a new log first, then write the snapshot outside the log's monitor and delete the old log once it succeeds;
+     * replaying both segments after a crash midway is still correct
+     */
+    public void checkpoint() {
+        synchronized (checkpointLock) {
+            try {
+                if (!rotate()) {
+                    return;
+                }
+                if (FileManager.saveProducts(productManager, false)) {
+                    new File(PREVIOUS_LOG_FILE).delete();
+                }
+            } finally {
+                synchronized (this) {
+                    compactionPending = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * 把当前日志改名为 .old 并开始新日志；上次的快照失败、.old 仍在时继续写当前日志 |
+     * Rename the current log to .old and start a new one; if the last snapshot failed and .old is still there, keep writing the current log
+     *
+     * @return 日志是否仍然打开 | Whether the log is still open
+     */
+    private synchronized boolean rotate() {
+        if (out == null) {
+            return false;
+        }
+        Path previous = new File(PREVIOUS_LOG_FILE).toPath();
+        if (Files.exists(previous)) {
+            return true;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            ColorPrinter.printError("压缩日志失败: " + e.getMessage() + " | Failed to compact log: " + e.getMessage());
+        }
+        try {
+            try {
+                Files.move(new File(LOG_FILE).toPath(), previous, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(new File(LOG_FILE).toPath(), previous);
+            }
+            out = newLog();
+            recordsSinceSnapshot = 0;
+        } catch (IOException e) {
+            ColorPrinter.printError("压缩日志失败: " + e.getMessage() + " | Failed to compact log: " + e.getMessage());
+            // 接着写原来的日志 | Carry on appending to the old log
+            try {
+                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(LOG_FILE, true)));
+            } catch (IOException reopen) {
+                ColorPrinter.printError("重新打开日志失败，预写日志已关闭 | Failed to reopen log, write-ahead log disabled");
+                out = null;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 写最终快照并关闭日志 | Write a final snapshot and close the log
+     */
+    public void close() {
+        synchronized (this) {
+            if (out == null) {
+                return;
+            }
+        }
+        checkpoint();
+        synchronized (this) {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    ColorPrinter.printError("关闭日志失败: " + e.getMessage() + " | Failed to close log: " + e.getMessage());
+                }
+                out = null;
+            }
+        }
+        compactor.shutdown();
+    }
+}